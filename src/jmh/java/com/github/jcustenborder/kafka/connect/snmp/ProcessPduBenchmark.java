@@ -0,0 +1,80 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp;
+
+import com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.smi.UdpAddress;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The dispatcher side of the task: processPdu() for a synthetic v2c trap, including conversion and buffering.
+ * The buffer is drained in batches as poll() would, so its cost is part of the measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessPduBenchmark {
+  static final int DRAIN_EVERY = 1024;
+
+  SnmpTrapSourceTask task;
+  CommandResponderEvent<UdpAddress> event;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.BATCH_SIZE_CONF, String.valueOf(DRAIN_EVERY));
+    settings.put(SnmpTrapSourceConnectorConfig.COLLECT_METRICS_SNMP, "false");
+    task = new SnmpTrapSourceTask();
+    task.start(settings);
+    event = PDUGen.createV2Event(PDUGen.createV2Trap("1.3.6.1.6.3.1.1.5.3", "some string"), "10.0.0.1/161", "public");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    task.stop();
+  }
+
+  @State(Scope.Thread)
+  public static class Counter {
+    int processed;
+  }
+
+  @Benchmark
+  public void processPdu(Counter counter) {
+    task.processPdu(event);
+    if (++counter.processed % DRAIN_EVERY == 0) {
+      task.getRecordBuffer().drain(DRAIN_EVERY);
+    }
+  }
+}
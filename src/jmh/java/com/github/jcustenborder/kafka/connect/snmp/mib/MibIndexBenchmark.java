@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.mib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.smi.OID;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of mapping a compiled MIB index at start and of resolving OID names. Run with {@code -prof gc}: a resolve
+ * that hits the name cache should not allocate, a miss walks the mapped trie and builds the name.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MibIndexBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class IndexState {
+    @Param({"50000"})
+    public int objects;
+
+    Path dir;
+    Path indexFile;
+    OidNameResolver resolver;
+    OidNameResolver uncached;
+    OID[] oids;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      dir = Files.createTempDirectory("mib-benchmark");
+      List<String> lines = new ArrayList<>(objects);
+      for (int i = 0; i < objects; i++) {
+        lines.add("1.3.6.1.4.1." + (i % 997) + ".1." + i + " BENCH-MIB::object" + i);
+      }
+      Path namesFile = dir.resolve("names.txt");
+      Files.write(namesFile, lines);
+      indexFile = dir.resolve("names.idx");
+      MibIndex index = MibIndex.load(namesFile, indexFile);
+      resolver = new OidNameResolver(index, 16_384);
+      uncached = new OidNameResolver(index, 1);
+      oids = new OID[1024];
+      for (int i = 0; i < oids.length; i++) {
+        int object = i * (objects / oids.length);
+        oids[i] = new OID("1.3.6.1.4.1." + (object % 997) + ".1." + object + "." + i);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      try (Stream<Path> files = Files.list(dir)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(dir);
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public MibIndex open(IndexState state) throws IOException {
+    return MibIndex.open(state.indexFile);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public String resolveCached(IndexState state) {
+    return state.resolver.resolve(state.oids[state.next++ & (state.oids.length - 1)]);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public String resolveUncached(IndexState state) {
+    return state.uncached.resolve(state.oids[state.next++ & (state.oids.length - 1)]);
+  }
+}
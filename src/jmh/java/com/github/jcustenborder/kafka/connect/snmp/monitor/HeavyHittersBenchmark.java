@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of counting a trap source on the dispatcher path with the default capacity, when there are far more
+ * distinct sources than tracked ones so almost every add evicts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HeavyHittersBenchmark {
+  @Param({"1000"})
+  public int capacity;
+
+  @Param({"40000"})
+  public int sources;
+
+  HeavyHitters<String> heavyHitters;
+  String[] keys;
+  int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    heavyHitters = new HeavyHitters<>(capacity, 60_000L, 1, System.nanoTime());
+    keys = new String[sources];
+    for (int i = 0; i < sources; i++) {
+      keys[i] = "10.0." + (i >> 8) + "." + (i & 0xff);
+    }
+  }
+
+  @Benchmark
+  public void add() {
+    heavyHitters.add(keys[next], System.nanoTime());
+    next = next + 1 == keys.length ? 0 : next + 1;
+  }
+}
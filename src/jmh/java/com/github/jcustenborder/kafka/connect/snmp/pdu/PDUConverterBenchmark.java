@@ -0,0 +1,227 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfig;
+import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfigTest;
+import com.github.jcustenborder.kafka.connect.snmp.enums.OutputFormat;
+import org.apache.kafka.common.utils.SystemTime;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Gauge32;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Opaque;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the PDU to SourceRecord conversion. Run with {@code -prof gc} to see allocations per operation;
+ * the validate parameter compares the default path with converter.validate.records enabled and
+ * {@link #convertOutputFormat} compares the STRUCT output with RAW_BER encoding the decoded PDU again.
+ * {@link #convertReceivedRawBer} is the RAW_BER path of the task, slicing the PDU out of the received message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PDUConverterBenchmark {
+
+  static final OID BINDING_OID = new OID("1.3.6.1.4.1.28458.1.26.3.1.1.1.0");
+
+  static Variable variableFor(String syntax) {
+    switch (syntax) {
+      case PDUConverter.VariableBindingConstants.FIELD_COUNTER32:
+        return new Counter32(123456L);
+      case PDUConverter.VariableBindingConstants.FIELD_COUNTER64:
+        return new Counter64(1234567890123L);
+      case PDUConverter.VariableBindingConstants.FIELD_GAUGE32:
+        return new Gauge32(42L);
+      case PDUConverter.VariableBindingConstants.FIELD_INTEGER:
+        return new Integer32(7);
+      case PDUConverter.VariableBindingConstants.FIELD_IPADDRESS:
+        return new IpAddress("192.168.10.20");
+      case PDUConverter.VariableBindingConstants.FIELD_NULL:
+        return new Null();
+      case PDUConverter.VariableBindingConstants.FIELD_OBJECTIDENTIFIER:
+        return new OID("1.3.6.1.6.3.1.1.5.3");
+      case PDUConverter.VariableBindingConstants.FIELD_OCTETSTRING:
+        return new OctetString("GigabitEthernet0/1 link down");
+      case PDUConverter.VariableBindingConstants.FIELD_OPAQUE:
+        return new Opaque(new byte[]{0x01, 0x02, 0x03, 0x04});
+      case PDUConverter.VariableBindingConstants.FIELD_TIMETICKS:
+        return new TimeTicks(5000L);
+      default:
+        throw new IllegalArgumentException(syntax);
+    }
+  }
+
+  static PDU createTrap(int variableBindings) {
+    PDU pdu = new PDU();
+    pdu.setType(PDU.TRAP);
+    pdu.add(new VariableBinding(SnmpConstants.sysUpTime, new TimeTicks(5000)));
+    pdu.add(new VariableBinding(SnmpConstants.snmpTrapOID, new OID("1.3.6.1.6.3.1.1.5.3")));
+    for (int i = pdu.size(); i < variableBindings; i++) {
+      pdu.add(PDUGen.createCustomVarBinding("1.3.6.1.2.1.2.2.1." + i, "value " + i));
+    }
+    while (pdu.size() > variableBindings) {
+      pdu.trim();
+    }
+    return pdu;
+  }
+
+  static PDUConverter createConverter(boolean validate) {
+    return createConverter(validate, OutputFormat.STRUCT);
+  }
+
+  static PDUConverter createConverter(boolean validate, OutputFormat outputFormat) {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.VALIDATE_RECORDS_CONF, String.valueOf(validate));
+    settings.put(SnmpTrapSourceConnectorConfig.OUTPUT_FORMAT_CONF, outputFormat.name());
+    return new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+  }
+
+  @State(Scope.Thread)
+  public static class VariableBindingState {
+    @Param({
+        PDUConverter.VariableBindingConstants.FIELD_COUNTER32,
+        PDUConverter.VariableBindingConstants.FIELD_COUNTER64,
+        PDUConverter.VariableBindingConstants.FIELD_GAUGE32,
+        PDUConverter.VariableBindingConstants.FIELD_INTEGER,
+        PDUConverter.VariableBindingConstants.FIELD_IPADDRESS,
+        PDUConverter.VariableBindingConstants.FIELD_NULL,
+        PDUConverter.VariableBindingConstants.FIELD_OBJECTIDENTIFIER,
+        PDUConverter.VariableBindingConstants.FIELD_OCTETSTRING,
+        PDUConverter.VariableBindingConstants.FIELD_OPAQUE,
+        PDUConverter.VariableBindingConstants.FIELD_TIMETICKS
+    })
+    public String syntax;
+
+    @Param({"false", "true"})
+    public boolean validate;
+
+    PDUConverter converter;
+    VariableBinding binding;
+
+    @Setup
+    public void setup() {
+      converter = createConverter(validate);
+      binding = new VariableBinding(BINDING_OID, variableFor(syntax));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TrapState {
+    @Param({"1", "10", "100"})
+    public int variableBindings;
+
+    @Param({"false", "true"})
+    public boolean validate;
+
+    PDUConverter converter;
+    CommandResponderEvent<UdpAddress> event;
+
+    @Setup
+    public void setup() {
+      converter = createConverter(validate);
+      event = PDUGen.createV2Event(createTrap(variableBindings), "10.0.0.1/161", "public");
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class OutputFormatState {
+    @Param({"1", "10", "100"})
+    public int variableBindings;
+
+    @Param({"STRUCT", "RAW_BER"})
+    public OutputFormat outputFormat;
+
+    PDUConverter converter;
+    CommandResponderEvent<UdpAddress> event;
+
+    @Setup
+    public void setup() {
+      converter = createConverter(false, outputFormat);
+      event = PDUGen.createV2Event(createTrap(variableBindings), "10.0.0.1/161", "public");
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ReceivedState {
+    @Param({"1", "10", "100"})
+    public int variableBindings;
+
+    PDUConverter converter;
+    CommandResponderEvent<UdpAddress> event;
+    ByteBuffer message;
+
+    @Setup
+    public void setup() throws IOException {
+      converter = createConverter(false, OutputFormat.RAW_BER);
+      PDU pdu = createTrap(variableBindings);
+      event = PDUGen.createV2Event(pdu, "10.0.0.1/161", "public");
+      message = ByteBuffer.wrap(RawCapturingMessageDispatcherTest.message(SnmpConstants.version2c, pdu));
+    }
+  }
+
+  @Benchmark
+  public Struct convertVariableBinding(VariableBindingState state) {
+    return state.converter.convertVariableBinding(state.binding);
+  }
+
+  @Benchmark
+  public SourceRecord convert(TrapState state) {
+    return state.converter.convert(state.event);
+  }
+
+  @Benchmark
+  public SourceRecord convertOutputFormat(OutputFormatState state) {
+    return state.converter.convert(state.event);
+  }
+
+  @Benchmark
+  public SourceRecord convertReceivedRawBer(ReceivedState state) {
+    byte[] receivedBer = RawCapturingMessageDispatcher.communityPdu(state.message);
+    return state.converter.convert(state.event, 0L, receivedBer, PDUConverter.EMPTY, PDUConverter.EMPTY);
+  }
+}
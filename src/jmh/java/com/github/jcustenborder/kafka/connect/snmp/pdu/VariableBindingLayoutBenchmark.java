@@ -0,0 +1,119 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfig;
+import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfigTest;
+import com.github.jcustenborder.kafka.connect.snmp.enums.VariableBindingLayout;
+import org.apache.kafka.common.utils.SystemTime;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.apache.kafka.connect.json.JsonConverterConfig;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.storage.ConverterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion plus {@link JsonConverter} serialization of a trap with the SPARSE, COMPACT and TYPED variable binding
+ * layout. The serialized size of one trap is printed by the setup, the throughput covers both steps.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariableBindingLayoutBenchmark {
+
+  /**
+   * Trap with bindings cycling through every SMI type the converter supports.
+   */
+  static PDU createTrap(int variableBindings) {
+    PDU pdu = PDUConverterBenchmark.createTrap(2);
+    String[] syntaxes = {
+        PDUConverter.VariableBindingConstants.FIELD_COUNTER32,
+        PDUConverter.VariableBindingConstants.FIELD_COUNTER64,
+        PDUConverter.VariableBindingConstants.FIELD_GAUGE32,
+        PDUConverter.VariableBindingConstants.FIELD_INTEGER,
+        PDUConverter.VariableBindingConstants.FIELD_IPADDRESS,
+        PDUConverter.VariableBindingConstants.FIELD_OBJECTIDENTIFIER,
+        PDUConverter.VariableBindingConstants.FIELD_OCTETSTRING,
+        PDUConverter.VariableBindingConstants.FIELD_OPAQUE,
+        PDUConverter.VariableBindingConstants.FIELD_TIMETICKS
+    };
+    for (int i = pdu.size(); i < variableBindings; i++) {
+      pdu.add(new VariableBinding(new OID("1.3.6.1.2.1.2.2.1." + i), PDUConverterBenchmark.variableFor(syntaxes[i % syntaxes.length])));
+    }
+    return pdu;
+  }
+
+  @State(Scope.Thread)
+  public static class LayoutState {
+    @Param({"10", "100"})
+    public int variableBindings;
+
+    @Param({"SPARSE", "COMPACT", "TYPED"})
+    public VariableBindingLayout layout;
+
+    @Param({"false", "true"})
+    public boolean schemasEnable;
+
+    PDUConverter converter;
+    JsonConverter jsonConverter;
+    CommandResponderEvent<UdpAddress> event;
+
+    @Setup
+    public void setup() {
+      Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+      settings.put(SnmpTrapSourceConnectorConfig.VARIABLE_BINDING_LAYOUT_CONF, layout.name());
+      converter = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+      jsonConverter = new JsonConverter();
+      Map<String, Object> jsonSettings = new HashMap<>();
+      jsonSettings.put(JsonConverterConfig.SCHEMAS_ENABLE_CONFIG, schemasEnable);
+      jsonSettings.put(JsonConverterConfig.TYPE_CONFIG, ConverterType.VALUE.getName());
+      jsonConverter.configure(jsonSettings);
+      event = PDUGen.createV2Event(createTrap(variableBindings), "10.0.0.1/161", "public");
+
+      SourceRecord record = converter.convert(event);
+      byte[] serialized = jsonConverter.fromConnectData(record.topic(), record.valueSchema(), record.value());
+      System.out.printf("%n%s bindings=%d schemas.enable=%s: %d bytes per trap%n", layout, variableBindings,
+          schemasEnable, serialized.length);
+    }
+  }
+
+  @Benchmark
+  public byte[] convertAndSerialize(LayoutState state) {
+    SourceRecord record = state.converter.convert(state.event);
+    return state.jsonConverter.fromConnectData(record.topic(), record.valueSchema(), record.value());
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.transport.TransportListener;
+import org.snmp4j.transport.UdpTransportMapping;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Datagrams received per second over loopback by {@link TunedUdpTransportMapping}, the {@link DefaultUdpTransportMapping}
+ * behind listen.protocol UDP with one receive call per datagram, and by {@link EpollUdpTransportMapping}, which reads
+ * recvmmsg batches. The listener only counts, so the score is the cost of the transport itself. The sender keeps at
+ * most {@link #WINDOW} datagrams in flight and both sockets get the same SO_RCVBUF, so none should be dropped;
+ * datagrams that never arrive are printed as lost.
+ * <p>
+ * The sender shares the machine with the receiver, so the score also carries the cost of sending. The datagrams per
+ * second per core printed after every iteration divide the datagrams by the CPU time of the receiving thread(s) only.
+ * Batching pays off once datagrams queue up in the socket, which needs the receiver on a core of its own. Run with
+ * {@code -Djmh.args="UdpTransportBenchmark"}, the epoll variant needs Linux.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UdpTransportBenchmark {
+  static final int BURST = 64;
+  static final int WINDOW = 512;
+  static final int DATAGRAM_BYTES = 160;
+  static final int RECEIVE_BUFFER_BYTES = 4 << 20;
+  static final long LOST_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  @Param({"DEFAULT", "EPOLL"})
+  public String transport;
+
+  UdpTransportMapping mapping;
+  DatagramChannel sender;
+  final ByteBuffer datagram = ByteBuffer.allocateDirect(DATAGRAM_BYTES);
+  final AtomicLong received = new AtomicLong();
+  final Set<Long> receivingThreads = ConcurrentHashMap.newKeySet();
+  final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  long sent;
+  long lost;
+  long iterationPackets;
+  long iterationCpuNanos;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    UdpAddress address = new UdpAddress(InetAddress.getLoopbackAddress(), 0);
+    if ("EPOLL".equals(transport)) {
+      EpollUdpTransportMapping epoll = new EpollUdpTransportMapping(address, 1, EpollUdpTransportMapping.DEFAULT_BATCH_SIZE,
+          EpollUdpTransportMapping.DEFAULT_MAX_DATAGRAM_BYTES, false);
+      epoll.setReceiveBufferSize(RECEIVE_BUFFER_BYTES);
+      mapping = epoll;
+    } else {
+      mapping = new TunedUdpTransportMapping(address, RECEIVE_BUFFER_BYTES);
+    }
+    mapping.setAsyncMsgProcessingSupported(false);
+    mapping.addTransportListener(new TransportListener() {
+      @Override
+      public <A extends Address> void processMessage(TransportMapping<? super A> source, A peer, ByteBuffer message,
+                                                     TransportStateReference stateReference) {
+        if (received.getAndIncrement() % 4096 == 0) {
+          receivingThreads.add(Thread.currentThread().getId());
+        }
+      }
+    });
+    mapping.listen();
+    UdpAddress listening = mapping.getListenAddress();
+    sender = DatagramChannel.open();
+    sender.connect(new InetSocketAddress(listening.getInetAddress(), listening.getPort()));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    sender.close();
+    mapping.close();
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    iterationPackets = received.get();
+    iterationCpuNanos = receiverCpuNanos();
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() {
+    awaitInFlight(0);
+    long packets = received.get() - iterationPackets;
+    long cpuNanos = receiverCpuNanos() - iterationCpuNanos;
+    if (cpuNanos > 0L) {
+      System.out.printf("%n%s: %,d datagrams, %,.0f datagrams/s per receiving core, %,d lost%n",
+          transport, packets, packets * 1e9 / cpuNanos, lost);
+      if (mapping instanceof EpollUdpTransportMapping) {
+        System.out.printf("%.1f datagrams per read wake-up%n", ((EpollUdpTransportMapping) mapping).getPacketsPerRead());
+      }
+    }
+  }
+
+  long receiverCpuNanos() {
+    long total = 0L;
+    for (long id : receivingThreads) {
+      long cpu = threads.getThreadCpuTime(id);
+      if (cpu > 0L) {
+        total += cpu;
+      }
+    }
+    return total;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST)
+  public void receive() throws IOException {
+    for (int i = 0; i < BURST; i++) {
+      datagram.clear();
+      sender.write(datagram);
+    }
+    sent += BURST;
+    awaitInFlight(WINDOW);
+  }
+
+  /**
+   * Waits until at most {@code inFlight} datagrams are unaccounted for, counting the rest as lost if they do not
+   * arrive in time, so a drop in the socket cannot stall the benchmark.
+   */
+  void awaitInFlight(int inFlight) {
+    long deadline = 0L;
+    while (sent - received.get() > inFlight) {
+      if (deadline == 0L) {
+        deadline = System.nanoTime() + LOST_AFTER_NANOS;
+      } else if (System.nanoTime() - deadline >= 0L) {
+        long missing = sent - received.get();
+        lost += missing;
+        sent -= missing;
+        return;
+      }
+      Thread.yield();
+    }
+  }
+}
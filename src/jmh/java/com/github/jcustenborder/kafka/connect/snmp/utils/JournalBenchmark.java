@@ -0,0 +1,116 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.SpilledTrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.UdpAddress;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Dispatcher threads journaling encoded traps with group commit, acknowledging and truncating as the task would.
+ * <p>
+ * Budget: with the default 10 ms fsync interval the journal has to sustain 100k appends per second of a 10 binding
+ * trap on one thread, so it stays well ahead of the conversion it precedes, and write at most 1.1 bytes per byte of
+ * encoded trap. The write amplification of each iteration is printed at its end; entries are written once and
+ * segments deleted whole, so it is the 12 byte frame over the trap size. Run on the disk the journal will use, a
+ * tmpfs hides the fsync cost: {@code -jvmArgs -Djournal.benchmark.dir=/var/lib/connect}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+  static final int TRUNCATE_EVERY = 1 << 16;
+
+  @Param({"1", "10", "100"})
+  public int variableBindings;
+
+  @Param({"1", "10"})
+  public long fsyncIntervalMs;
+
+  Path directory;
+  Journal journal;
+  byte[] payload;
+
+  @Setup(Level.Iteration)
+  public void setup() throws IOException {
+    PDU pdu = PDUGen.createV2Trap("1.3.6.1.6.3.1.1.5.3", "GigabitEthernet0/1 link down");
+    for (int i = pdu.size(); i < variableBindings; i++) {
+      pdu.add(PDUGen.createCustomVarBinding("1.3.6.1.2.1.2.2.1." + i, "value " + i));
+    }
+    payload = SpilledTrap.encode(new UdpAddress("10.0.0.1/161"), "public".getBytes(StandardCharsets.UTF_8), pdu, 0L);
+    String parent = System.getProperty("journal.benchmark.dir");
+    directory = parent == null ? Files.createTempDirectory("journal") : Files.createTempDirectory(Path.of(parent), "journal");
+    journal = new Journal(directory, 64 * 1024 * 1024, fsyncIntervalMs);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    journal.close();
+    System.out.printf("%n%d byte trap, write amplification %.3f, %d fsync(s) averaging %d us%n",
+        payload.length, (double) journal.writtenBytes() / journal.appendedBytes(), journal.fsyncs(),
+        journal.fsyncs() == 0L ? 0L : TimeUnit.NANOSECONDS.toMicros(journal.fsyncNanos() / journal.fsyncs()));
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private long appendAndAck() throws IOException {
+    long offset = journal.append(payload);
+    journal.ack(offset);
+    if ((offset & (TRUNCATE_EVERY - 1)) == 0) {
+      journal.truncate();
+    }
+    return offset;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long appendOneThread() throws IOException {
+    return appendAndAck();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public long appendFourThreads() throws IOException {
+    return appendAndAck();
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import com.github.jcustenborder.kafka.connect.snmp.enums.OverflowPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher threads adding to the buffer while a single poll() thread drains it.
+ * <p>
+ * The producer count of each group is fixed by {@link GroupThreads}; use JMH's {@code -tg} option to run other
+ * splits, e.g. {@code -tg 8,1} for eight producers against the one consumer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class RecordBufferBenchmark {
+  static final Object RECORD = new Object();
+
+  @Param({"1024"})
+  public int batchSize;
+
+  @Param({"65536"})
+  public int capacity;
+
+  RecordBuffer<Object> buffer;
+
+  @Setup
+  public void setup() {
+    buffer = new RecordBuffer<>(capacity, 0L, OverflowPolicy.DROP_NEWEST, 0L);
+  }
+
+  @Benchmark
+  @Group("oneProducer")
+  @GroupThreads(1)
+  public boolean addOneProducer() {
+    return buffer.add(RECORD, 1024);
+  }
+
+  @Benchmark
+  @Group("oneProducer")
+  @GroupThreads(1)
+  public List<Object> drainOneProducer() {
+    return buffer.drain(batchSize);
+  }
+
+  @Benchmark
+  @Group("fourProducers")
+  @GroupThreads(4)
+  public boolean addFourProducers() {
+    return buffer.add(RECORD, 1024);
+  }
+
+  @Benchmark
+  @Group("fourProducers")
+  @GroupThreads(1)
+  public List<Object> drainFourProducers() {
+    return buffer.drain(batchSize);
+  }
+}
@@ -24,13 +24,15 @@ import org.apache.kafka.connect.source.SourceConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 @DocumentationImportant("This connector listens on a network port. Running more than one task or running in distributed " +
-    "mode can cause some undesired effects if another task already has the port open. It is recommended that you run this " +
-    "connector in :term:`Standalone Mode`.")
+    "mode can cause some undesired effects if another task already has the port open. To run more than one task either give " +
+    "every task its own port with `listen.ports` or let them share `listen.port` with `listen.port.shared`.")
 @Description("Connector is used to receive syslog messages over UDP.")
 public class SnmpTrapSourceConnector extends SourceConnector {
 
@@ -55,14 +57,46 @@ public class SnmpTrapSourceConnector extends SourceConnector {
     return SnmpTrapSourceTask.class;
   }
 
+  /**
+   * Task ids are the index into the returned list, so the same settings and tasks.max always give a task the same
+   * id and port.
+   */
   @Override
   public List<Map<String, String>> taskConfigs(int i) {
+    if (!this.config.listenPorts.isEmpty()) {
+      List<Integer> ports = this.config.listenPorts;
+      if (ports.size() > i) {
+        log.warn("taskConfigs() - {} port(s) configured but tasks.max is {}, ports {} are not listened on.",
+            ports.size(), i, ports.subList(i, ports.size()));
+      }
+      int tasks = Math.min(i, ports.size());
+      List<Map<String, String>> taskConfigs = new ArrayList<>(tasks);
+      for (int taskId = 0; taskId < tasks; taskId++) {
+        taskConfigs.add(taskConfig(taskId, ports.get(taskId)));
+      }
+      return taskConfigs;
+    }
+    if (this.config.listenPortShared) {
+      List<Map<String, String>> taskConfigs = new ArrayList<>(i);
+      for (int taskId = 0; taskId < i; taskId++) {
+        taskConfigs.add(taskConfig(taskId, this.config.listenPort));
+      }
+      return taskConfigs;
+    }
     if (i > 1) {
-      log.warn("This task only supports one instance of the connector.");
+      log.warn("This task only supports one instance of the connector unless {} or {} is set.",
+          SnmpTrapSourceConnectorConfig.LISTEN_PORTS_CONF, SnmpTrapSourceConnectorConfig.LISTEN_PORT_SHARED_CONF);
     }
     return Collections.singletonList(this.settings);
   }
 
+  private Map<String, String> taskConfig(int taskId, int port) {
+    Map<String, String> taskConfig = new LinkedHashMap<>(this.settings);
+    taskConfig.put(SnmpTrapSourceConnectorConfig.TASK_ID_CONF, Integer.toString(taskId));
+    taskConfig.put(SnmpTrapSourceConnectorConfig.LISTEN_PORT_CONF, Integer.toString(port));
+    return taskConfig;
+  }
+
   @Override
   public void stop() {
     log.info("Shutting down task {}", this.taskClass().getSimpleName());
@@ -17,18 +17,37 @@
 package com.github.jcustenborder.kafka.connect.snmp;
 
 import com.github.jcustenborder.kafka.connect.snmp.enums.AuthenticationProtocol;
+import com.github.jcustenborder.kafka.connect.snmp.enums.DispatcherMode;
+import com.github.jcustenborder.kafka.connect.snmp.enums.InformAckMode;
+import com.github.jcustenborder.kafka.connect.snmp.enums.OutputFormat;
+import com.github.jcustenborder.kafka.connect.snmp.enums.OverflowPolicy;
 import com.github.jcustenborder.kafka.connect.snmp.enums.PrivacyProtocol;
+import com.github.jcustenborder.kafka.connect.snmp.enums.RateLimitKey;
+import com.github.jcustenborder.kafka.connect.snmp.enums.VariableBindingLayout;
+import com.github.jcustenborder.kafka.connect.snmp.filter.TrapFilter;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.TopicRouter;
+import com.github.jcustenborder.kafka.connect.snmp.transport.EpollUdpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.transport.NioTcpTransportMapping;
 import com.github.jcustenborder.kafka.connect.utils.config.validators.Validators;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigDef.Importance;
 import org.apache.kafka.common.config.ConfigDef.Type;
+import org.apache.kafka.common.config.ConfigException;
+import org.snmp4j.smi.OID;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 
 public class SnmpTrapSourceConnectorConfig extends AbstractConfig {
+  private static final Pattern DOTTED_OID = Pattern.compile("\\d+(\\.\\d+)*");
 
   public static final String LISTEN_ADDRESS_CONF = "listen.address";
   static final String LISTEN_ADDRESS_DEFAULT = "0.0.0.0";
@@ -36,16 +55,78 @@ public class SnmpTrapSourceConnectorConfig extends AbstractConfig {
 
   public static final String LISTEN_PROTOCOL_CONF = "listen.protocol";
   static final String LISTEN_PROTOCOL_DEFAULT = "UDP";
-  static final String LISTEN_PROTOCOL_DOC = "Protocol to listen with..";
+  static final String LISTEN_PROTOCOL_DOC = "Protocol to listen with. UDP_EPOLL receives UDP through the native Linux epoll transport, " +
+      "reading listen.udp.batch.size datagrams per system call.";
 
   public static final String LISTEN_PORT_CONF = "listen.port";
   static final int LISTEN_PORT_DEFAULT = 10161;
   static final String LISTEN_PORT_DOC = "Port to listen on.";
 
+  public static final String LISTEN_PORTS_CONF = "listen.ports";
+  static final String LISTEN_PORTS_DOC = "Ports to spread over the tasks, as a list of ports and ranges such as 10161,10170-10179. " +
+      "Each task listens on one port, so at most tasks.max ports are used. When empty listen.port is used.";
+
+  public static final String LISTEN_PORT_SHARED_CONF = "listen.port.shared";
+  static final boolean LISTEN_PORT_SHARED_DEFAULT = false;
+  static final String LISTEN_PORT_SHARED_DOC = "Allow tasks.max tasks to listen on listen.port at the same time. Every task binds the port with SO_REUSEPORT " +
+      "and the kernel balances traps between them. Ignored when listen.ports is set.";
+
+  public static final String TASK_ID_CONF = "task.id";
+  static final int TASK_ID_DEFAULT = -1;
+  static final String TASK_ID_DOC = "Set by the connector for every task it starts; used to name the task's metrics and threads.";
+
+  public static final String LISTEN_UDP_SOCKETS_CONF = "listen.udp.sockets";
+  static final int LISTEN_UDP_SOCKETS_DEFAULT = 1;
+  static final String LISTEN_UDP_SOCKETS_DOC = "Number of UDP sockets opened on listen.address and listen.port with SO_REUSEPORT, each read by its own thread. " +
+      "1 uses a single socket without SO_REUSEPORT.";
+
+  public static final String LISTEN_UDP_BATCH_SIZE_CONF = "listen.udp.batch.size";
+  static final int LISTEN_UDP_BATCH_SIZE_DEFAULT = EpollUdpTransportMapping.DEFAULT_BATCH_SIZE;
+  static final String LISTEN_UDP_BATCH_SIZE_DOC = "Maximum number of datagrams read with one recvmmsg call with listen.protocol UDP_EPOLL.";
+
+  public static final String LISTEN_UDP_MAX_DATAGRAM_BYTES_CONF = "listen.udp.max.datagram.bytes";
+  static final int LISTEN_UDP_MAX_DATAGRAM_BYTES_DEFAULT = EpollUdpTransportMapping.DEFAULT_MAX_DATAGRAM_BYTES;
+  static final String LISTEN_UDP_MAX_DATAGRAM_BYTES_DOC = "Room reserved for every datagram of a batch with listen.protocol UDP_EPOLL. " +
+      "Longer datagrams are truncated and dropped as undecodable.";
+
+  public static final String LISTEN_RECEIVE_BUFFER_BYTES_CONF = "listen.receive.buffer.bytes";
+  static final int LISTEN_RECEIVE_BUFFER_BYTES_DEFAULT = 0;
+  static final String LISTEN_RECEIVE_BUFFER_BYTES_DOC = "SO_RCVBUF of the listening UDP or TCP socket(s). 0 keeps the operating system default. " +
+      "The kernel may cap it, on Linux at net.core.rmem_max.";
+
+  public static final String LISTEN_TCP_MAX_CONNECTIONS_CONF = "listen.tcp.max.connections";
+  static final int LISTEN_TCP_MAX_CONNECTIONS_DEFAULT = 10_000;
+  static final String LISTEN_TCP_MAX_CONNECTIONS_DOC = "Maximum number of agent connections held open with listen.protocol TCP. " +
+      "Connections above it are reset as soon as they are accepted.";
+
+  public static final String LISTEN_TCP_IDLE_TIMEOUT_MS_CONF = "listen.tcp.idle.timeout.ms";
+  static final long LISTEN_TCP_IDLE_TIMEOUT_MS_DEFAULT = 300_000L;
+  static final String LISTEN_TCP_IDLE_TIMEOUT_MS_DOC = "Time in ms after which a TCP connection that sent nothing is closed. 0 keeps idle connections open.";
+
+  public static final String LISTEN_TCP_READ_BUFFER_BYTES_CONF = "listen.tcp.read.buffer.bytes";
+  static final int LISTEN_TCP_READ_BUFFER_BYTES_DEFAULT = NioTcpTransportMapping.DEFAULT_READ_BUFFER_BYTES;
+  static final String LISTEN_TCP_READ_BUFFER_BYTES_DOC = "Bytes read from a TCP connection at once, into a buffer per selector thread. " +
+      "A connection only holds a buffer of its own while a message is incomplete, sized to that message.";
+
+  public static final String LISTEN_TCP_SELECTOR_THREADS_CONF = "listen.tcp.selector.threads";
+  static final int LISTEN_TCP_SELECTOR_THREADS_DEFAULT = 0;
+  static final String LISTEN_TCP_SELECTOR_THREADS_DOC = "Threads reading TCP connections, which are assigned to them round robin. " +
+      "0 uses one per available processor.";
+
   public static final String DISPATCHER_THREAD_POOL_SIZE_CONF = "dispatcher.thread.pool.size";
   static final int DISPATCHER_THREAD_POOL_SIZE_DEFAULT = 10;
   static final String DISPATCHER_THREAD_POOL_SIZE_DOC = "Number of threads to allocate for the thread pool.";
 
+  public static final String DISPATCHER_MODE_CONF = "dispatcher.mode";
+  static final String DISPATCHER_MODE_DEFAULT = DispatcherMode.THREAD_POOL.name();
+  static final String DISPATCHER_MODE_DOC = "Worker pool running inbound messages when snmp4j.multithreaded is true. THREAD_POOL is the snmp4j ThreadPool, " +
+      "which blocks the listener while all threads are busy. EXECUTOR uses dispatcher.thread.pool.size threads and VIRTUAL_THREAD a virtual thread " +
+      "per message (platform threads before Java 21); both reject messages over dispatcher.max.in.flight instead of blocking.";
+
+  public static final String DISPATCHER_MAX_IN_FLIGHT_CONF = "dispatcher.max.in.flight";
+  static final int DISPATCHER_MAX_IN_FLIGHT_DEFAULT = 10_000;
+  static final String DISPATCHER_MAX_IN_FLIGHT_DOC = "Maximum number of messages queued or running in the EXECUTOR and VIRTUAL_THREAD dispatcher modes.";
+
   public static final String USE_MULTITHREADED_PROCESSING = "snmp4j.multithreaded";
   static final boolean USE_MULTITHREADED_PROCESSING_DEFAULT = false;
   static final String USE_MULTITHREADED_PROCESSING_DOC = "With true snmp4j is used in multithreaded mode with asyncMessageProcessing on";
@@ -54,14 +135,191 @@ public class SnmpTrapSourceConnectorConfig extends AbstractConfig {
   public static final String TOPIC_CONF = "topic";
   static final String TOPIC_DOC = "topic";
 
+  public static final String TOPIC_ROUTES_CONF = "topic.routes";
+  static final String TOPIC_ROUTES_DOC = "Routes traps to other topics than `topic`. Entries are oid:<trap OID prefix>=<topic>, " +
+      "peer:<network>=<topic> or security.name:<name>=<topic>. The longest trap OID prefix wins, then the most specific " +
+      "peer network, then the security name; traps matching no route go to `topic`.";
+
   public static final String BATCH_SIZE_CONF = "batch.size";
   static final String BATCH_SIZE_DOC = "Number of records to return in a single batch.";
   static final int BATCH_SIZE_DEFAULT = 1024;
 
   public static final String POLL_BACKOFF_MS_CONF = "poll.backoff.ms";
-  static final String POLL_BACKOFF_MS_DOC = "The amount of time in ms to wait if no records are returned.";
+  static final String POLL_BACKOFF_MS_DOC = "The maximum amount of time in ms poll() waits for a record when the buffer is empty.";
   static final int POLL_BACKOFF_MS_DEFAULT = 250;
 
+  public static final String LINGER_MS_CONF = "linger.ms";
+  static final String LINGER_MS_DOC = "The maximum amount of time in ms poll() waits for min.batch.size records once the first record has arrived. " +
+      "0 returns as soon as any record is buffered.";
+  static final int LINGER_MS_DEFAULT = 0;
+
+  public static final String MIN_BATCH_SIZE_CONF = "min.batch.size";
+  static final String MIN_BATCH_SIZE_DOC = "Number of buffered records that ends the linger.ms wait early.";
+  static final int MIN_BATCH_SIZE_DEFAULT = 1;
+
+  public static final String BUFFER_CAPACITY_RECORDS_CONF = "buffer.capacity.records";
+  static final String BUFFER_CAPACITY_RECORDS_DOC = "Maximum number of records held in memory waiting for poll(). Rounded up to the next power of two. " +
+      "Every task allocates its slots up front, about 20 bytes each and 28 with metrics.collect.snmp, 1.8 MB for the default.";
+  static final int BUFFER_CAPACITY_RECORDS_DEFAULT = 1 << 16;
+
+  public static final String BUFFER_CAPACITY_BYTES_CONF = "buffer.capacity.bytes";
+  static final String BUFFER_CAPACITY_BYTES_DOC = "Maximum estimated size in bytes of records held in memory waiting for poll(). 0 disables the limit.";
+  static final long BUFFER_CAPACITY_BYTES_DEFAULT = 0L;
+
+  public static final String BUFFER_OVERFLOW_POLICY_CONF = "buffer.overflow.policy";
+  static final String BUFFER_OVERFLOW_POLICY_DOC = "What to do with a trap when the buffer is full. DROP_NEWEST discards the incoming trap, " +
+      "DROP_OLDEST evicts the oldest buffered trap and BLOCK waits up to buffer.block.timeout.ms for room before discarding it.";
+  static final String BUFFER_OVERFLOW_POLICY_DEFAULT = OverflowPolicy.DROP_NEWEST.toString();
+
+  public static final String BUFFER_BLOCK_TIMEOUT_MS_CONF = "buffer.block.timeout.ms";
+  static final String BUFFER_BLOCK_TIMEOUT_MS_DOC = "The amount of time in ms a dispatcher thread waits for room in the buffer with the BLOCK overflow policy.";
+  static final long BUFFER_BLOCK_TIMEOUT_MS_DEFAULT = 100L;
+
+  public static final String JOURNAL_DIR_CONF = "journal.dir";
+  static final String JOURNAL_DIR_DOC = "Directory for an append-only journal of received traps. Records then carry their journal " +
+      "offset, traps Kafka has not acknowledged are replayed when the task starts, and segments are deleted once all their " +
+      "traps are acknowledged. Empty disables the journal. Tasks of one connector use a subdirectory per task.";
+  static final String JOURNAL_DIR_DEFAULT = "";
+
+  public static final String JOURNAL_SEGMENT_BYTES_CONF = "journal.segment.bytes";
+  static final String JOURNAL_SEGMENT_BYTES_DOC = "Size after which the journal starts a new segment file. Segments are deleted as a whole.";
+  static final int JOURNAL_SEGMENT_BYTES_DEFAULT = 64 * 1024 * 1024;
+
+  public static final String JOURNAL_FSYNC_INTERVAL_MS_CONF = "journal.fsync.interval.ms";
+  static final String JOURNAL_FSYNC_INTERVAL_MS_DOC = "How often journaled traps are written and fsynced together. Traps received within " +
+      "the last interval can be lost if the host crashes.";
+  static final long JOURNAL_FSYNC_INTERVAL_MS_DEFAULT = 10L;
+
+  public static final String SPILL_DIR_CONF = "spill.dir";
+  static final String SPILL_DIR_DOC = "Directory for memory-mapped segment files that take traps once the in-memory buffer passes " +
+      "spill.watermark. Spilled traps are replayed in arrival order when the buffer has drained. Empty disables spilling. " +
+      "Tasks of one connector use a subdirectory per task.";
+  static final String SPILL_DIR_DEFAULT = "";
+
+  public static final String SPILL_WATERMARK_CONF = "spill.watermark";
+  static final String SPILL_WATERMARK_DOC = "Fill ratio of the in-memory buffer, by records or bytes, above which traps are spilled to disk.";
+  static final double SPILL_WATERMARK_DEFAULT = 0.8;
+
+  public static final String SPILL_SEGMENT_BYTES_CONF = "spill.segment.bytes";
+  static final String SPILL_SEGMENT_BYTES_DOC = "Size of one spill segment file.";
+  static final int SPILL_SEGMENT_BYTES_DEFAULT = 64 * 1024 * 1024;
+
+  public static final String SPILL_MAX_BYTES_CONF = "spill.max.bytes";
+  static final String SPILL_MAX_BYTES_DOC = "Disk space the spill segments of a task may take. Traps that do not fit are dropped.";
+  static final long SPILL_MAX_BYTES_DEFAULT = 1024L * 1024L * 1024L;
+
+  public static final String FILTER_INCLUDE_TRAP_OIDS_CONF = "filter.include.trap.oids";
+  static final String FILTER_INCLUDE_TRAP_OIDS_DOC = "If set, only traps whose snmpTrapOID.0 starts with one of these OID prefixes are kept.";
+
+  public static final String FILTER_EXCLUDE_TRAP_OIDS_CONF = "filter.exclude.trap.oids";
+  static final String FILTER_EXCLUDE_TRAP_OIDS_DOC = "Traps whose snmpTrapOID.0 starts with one of these OID prefixes are dropped before conversion.";
+
+  public static final String FILTER_INCLUDE_PEERS_CONF = "filter.include.peers";
+  static final String FILTER_INCLUDE_PEERS_DOC = "If set, only traps from peers in one of these networks, such as 10.0.0.0/8 or 2001:db8::/32, are kept.";
+
+  public static final String FILTER_EXCLUDE_PEERS_CONF = "filter.exclude.peers";
+  static final String FILTER_EXCLUDE_PEERS_DOC = "Traps from peers in one of these networks are dropped before conversion.";
+
+  public static final String FILTER_INCLUDE_SECURITY_NAMES_CONF = "filter.include.security.names";
+  static final String FILTER_INCLUDE_SECURITY_NAMES_DOC = "If set, only traps with one of these security names (the community for v1 and v2c) are kept.";
+
+  public static final String FILTER_EXCLUDE_SECURITY_NAMES_CONF = "filter.exclude.security.names";
+  static final String FILTER_EXCLUDE_SECURITY_NAMES_DOC = "Traps with one of these security names (the community for v1 and v2c) are dropped before conversion.";
+
+  public static final String INFORM_ACK_MODE_CONF = "inform.ack.mode";
+  static final String INFORM_ACK_MODE_DOC = "How INFORMs are handled. DISABLED drops them like other non-trap PDUs, ON_RECEIVE " +
+      "converts them like traps and acknowledges them once buffered, ON_COMMIT acknowledges them only after Kafka has " +
+      "acknowledged the record. INFORMs that are dropped or rate limited are not acknowledged, so the agent retransmits them. " +
+      "INFORMs excluded by a filter or suppressed as repeats by dedup.window.ms are acknowledged at once in every mode; " +
+      "with ON_COMMIT a repeat is acknowledged without waiting for the record of the first INFORM to be committed.";
+  static final String INFORM_ACK_MODE_DEFAULT = InformAckMode.ON_RECEIVE.toString();
+
+  public static final String INFORM_ACK_MAX_PENDING_CONF = "inform.ack.max.pending";
+  static final String INFORM_ACK_MAX_PENDING_DOC = "Maximum number of INFORMs waiting for their acknowledgement. Above it " +
+      "INFORMs are dropped without a response.";
+  static final int INFORM_ACK_MAX_PENDING_DEFAULT = 10_000;
+
+  public static final String INFORM_ACK_TIMEOUT_MS_CONF = "inform.ack.timeout.ms";
+  static final String INFORM_ACK_TIMEOUT_MS_DOC = "With inform.ack.mode ON_COMMIT, how long an INFORM waits for its record to " +
+      "be committed before it is given up without a response.";
+  static final long INFORM_ACK_TIMEOUT_MS_DEFAULT = 30_000L;
+
+  public static final String DEDUP_WINDOW_MS_CONF = "dedup.window.ms";
+  static final long DEDUP_WINDOW_MS_DEFAULT = 0L;
+  static final String DEDUP_WINDOW_MS_DOC = "Time in ms during which repeats of a trap from the same peer with the same variable bindings are suppressed. " +
+      "When the window ends the last repeat is emitted with the number of suppressed traps in the " +
+      "snmp.dedup.suppressed header. 0 disables deduplication.";
+
+  public static final String DEDUP_IGNORE_OIDS_CONF = "dedup.ignore.oids";
+  static final String DEDUP_IGNORE_OIDS_DEFAULT = "1.3.6.1.2.1.1.3.0";
+  static final String DEDUP_IGNORE_OIDS_DOC = "Variable binding OIDs left out when comparing traps, for values that change on every retransmission. " +
+      "Defaults to sysUpTime.0.";
+
+  public static final String DEDUP_MAX_ENTRIES_CONF = "dedup.max.entries";
+  static final int DEDUP_MAX_ENTRIES_DEFAULT = 100_000;
+  static final String DEDUP_MAX_ENTRIES_DOC = "Maximum number of distinct traps remembered for deduplication, the oldest window is closed beyond it.";
+
+  public static final String RATE_LIMIT_PER_SECOND_CONF = "rate.limit.traps.per.second";
+  static final double RATE_LIMIT_PER_SECOND_DEFAULT = 0.0;
+  static final String RATE_LIMIT_PER_SECOND_DOC = "Sustained number of traps per second accepted from one source, counted per rate.limit.key. " +
+      "Traps over the limit are dropped before they are converted. 0 disables rate limiting.";
+
+  public static final String RATE_LIMIT_BURST_CONF = "rate.limit.burst";
+  static final int RATE_LIMIT_BURST_DEFAULT = 100;
+  static final String RATE_LIMIT_BURST_DOC = "Number of traps a quiet source may send at once before rate.limit.traps.per.second applies.";
+
+  public static final String RATE_LIMIT_KEY_CONF = "rate.limit.key";
+  static final String RATE_LIMIT_KEY_DEFAULT = RateLimitKey.PEER.name();
+  static final String RATE_LIMIT_KEY_DOC = "What the rate limit is counted per: the peer IP address, or the peer IP address and snmpTrapOID.0 together.";
+
+  public static final String RATE_LIMIT_MAX_SOURCES_CONF = "rate.limit.max.sources";
+  static final int RATE_LIMIT_MAX_SOURCES_DEFAULT = 100_000;
+  static final String RATE_LIMIT_MAX_SOURCES_DOC = "Maximum number of sources with a token bucket, the least recently seen is evicted beyond it.";
+
+  public static final String RATE_LIMIT_IDLE_MS_CONF = "rate.limit.idle.ms";
+  static final long RATE_LIMIT_IDLE_MS_DEFAULT = 300_000L;
+  static final String RATE_LIMIT_IDLE_MS_DOC = "Time in ms after which the token bucket of a quiet source is evicted.";
+
+  public static final String OUTPUT_FORMAT_CONF = "output.format";
+  static final String OUTPUT_FORMAT_DEFAULT = OutputFormat.STRUCT.name();
+  static final String OUTPUT_FORMAT_DOC = "STRUCT writes the decoded variable bindings as a struct. RAW_BER skips the decoding and writes " +
+      "the BER encoded PDU as bytes, with the peer address, SNMP version, security name and receive time as headers; the " +
+      "DecodeRawTrap transformation turns it back into the struct where needed.";
+
+  public static final String VALIDATE_RECORDS_CONF = "converter.validate.records";
+  static final String VALIDATE_RECORDS_DOC = "Validate every converted variable binding against its schema. Useful when debugging, costs CPU on every trap.";
+  static final boolean VALIDATE_RECORDS_DEFAULT = false;
+
+  public static final String VARIABLE_BINDING_LAYOUT_CONF = "converter.variable.binding.layout";
+  static final String VARIABLE_BINDING_LAYOUT_DEFAULT = VariableBindingLayout.SPARSE.name();
+  static final String VARIABLE_BINDING_LAYOUT_DOC = "SPARSE writes every variable binding with one optional field per SMI type. COMPACT " +
+      "writes the OID, the type and the value in one of three slots: long for the numeric types, string for IP addresses, " +
+      "OIDs and octet strings, bytes for opaque values. TYPED writes a flat struct per trap signature (trap OID and the " +
+      "OID and type of every binding) with one field per binding named after its OID.";
+
+  public static final String TYPED_SCHEMA_CACHE_SIZE_CONF = "converter.typed.schema.cache.size";
+  static final String TYPED_SCHEMA_CACHE_SIZE_DOC = "Maximum number of trap signatures whose TYPED schema is cached, the least recently used is rebuilt when seen again.";
+  static final int TYPED_SCHEMA_CACHE_SIZE_DEFAULT = 1_000;
+
+  public static final String MIB_NAMES_FILE_CONF = "mib.names.file";
+  static final String MIB_NAMES_FILE_DOC = "Flat export of MIB object names, one OID and name per line (e.g. " +
+      "'1.3.6.1.6.3.1.1.5.3 IF-MIB::linkDown' or the output of snmptranslate -Tz). When set, records carry the " +
+      "symbolic name of the trap OID and of every variable binding, with the instance suffix of the longest named prefix.";
+  static final String MIB_NAMES_FILE_DEFAULT = "";
+
+  public static final String MIB_INDEX_FILE_CONF = "mib.index.file";
+  static final String MIB_INDEX_FILE_DOC = "Compiled binary index of mib.names.file that is memory-mapped on start. It is rebuilt " +
+      "when missing or older than the names file. Defaults to the names file with an .idx suffix.";
+  static final String MIB_INDEX_FILE_DEFAULT = "";
+
+  public static final String MIB_NAME_CACHE_SIZE_CONF = "mib.name.cache.size";
+  static final String MIB_NAME_CACHE_SIZE_DOC = "Number of resolved OID names cached, rounded up to a power of two.";
+  static final int MIB_NAME_CACHE_SIZE_DEFAULT = 16_384;
+
+  public static final String OID_CACHE_SIZE_CONF = "converter.oid.cache.size";
+  static final String OID_CACHE_SIZE_DOC = "Maximum number of OIDs whose dotted string form is cached between traps. 0 disables the cache.";
+  static final int OID_CACHE_SIZE_DEFAULT = 10_000;
+
   public static final String MPV3_ENABLED_CONF = "mpv3.enabled";
   static final String MPV3_ENABLED_DOC = "Configuration property to enable MPv3 support";
   static final boolean MPV3_ENABLED_DEFAULT = false;
@@ -90,19 +348,99 @@ public class SnmpTrapSourceConnectorConfig extends AbstractConfig {
   static final String USM_AUTHENTICATION_PROTOCOL_DOC = "Authentication protocl for USM with MPv3";
   static final String USM_AUTHENTICATION_PROTOCOL_DEFAULT = AuthenticationProtocol.MD5.toString();
 
+  public static final String USM_USERS_FILE_CONF = "usm.users.file";
+  static final String USM_USERS_FILE_DOC = "File with additional MPv3 users, one per line: name, authentication protocol or NONE, " +
+      "authentication passphrase or -, privacy protocol or NONE, privacy passphrase or -, and optionally comma separated " +
+      "hex engine IDs whose keys are localized on load. Empty disables.";
+  static final String USM_USERS_FILE_DEFAULT = "";
+
+  public static final String USM_USERS_RELOAD_INTERVAL_MS_CONF = "usm.users.reload.interval.ms";
+  static final String USM_USERS_RELOAD_INTERVAL_MS_DOC = "How often usm.users.file is checked for changes, which are applied " +
+      "without restarting the task. 0 disables reloading.";
+  static final long USM_USERS_RELOAD_INTERVAL_MS_DEFAULT = 30_000L;
+
+  public static final String USM_KEYS_CACHE_FILE_CONF = "usm.keys.cache.file";
+  static final String USM_KEYS_CACHE_FILE_DOC = "File that localized USM keys are persisted to, so they are not derived " +
+      "from the passphrases again after a restart. Holds key material and is written readable by the owner only. " +
+      "Empty keeps keys in memory only.";
+  static final String USM_KEYS_CACHE_FILE_DEFAULT = "";
+
   public static final String COLLECT_METRICS_SNMP = "metrics.collect.snmp";
   static final String COLLECT_METRICS_SNMP_DOC = "Defined if collect metrics from SNMP Source Task";
   static final boolean COLLECT_METRICS_SNMP_DEFAULT = true;
 
+  public static final String TOP_SOURCES_CAPACITY_CONF = "metrics.top.sources.capacity";
+  static final int TOP_SOURCES_CAPACITY_DEFAULT = 1000;
+  static final String TOP_SOURCES_CAPACITY_DOC = "Number of peer addresses and trap OIDs each dispatcher thread stripe tracks to report the heaviest trap sources. " +
+      "Memory stays bounded whatever the number of devices. 0 disables tracking.";
+
+  public static final String TOP_SOURCES_WINDOW_MS_CONF = "metrics.top.sources.window.ms";
+  static final long TOP_SOURCES_WINDOW_MS_DEFAULT = 60_000L;
+  static final String TOP_SOURCES_WINDOW_MS_DOC = "Length in ms of the window the heaviest trap sources are counted over.";
+
+  public static final String UDP_DROPS_SAMPLE_INTERVAL_MS_CONF = "metrics.udp.drops.interval.ms";
+  static final String UDP_DROPS_SAMPLE_INTERVAL_MS_DOC = "How often in ms the kernel drop counter of the UDP listen socket(s) is read from /proc/net/udp. " +
+      "0 disables sampling. Only available on Linux.";
+  static final long UDP_DROPS_SAMPLE_INTERVAL_MS_DEFAULT = 10_000L;
+
 
   public final String listenAddress;
   public final int listenPort;
   public final String listenProtocol;
+  public final List<Integer> listenPorts;
+  public final boolean listenPortShared;
+  public final int taskId;
+  public final int listenUdpSockets;
+  public final int listenUdpBatchSize;
+  public final int listenUdpMaxDatagramBytes;
+  public final int listenReceiveBufferBytes;
+  public final int listenTcpMaxConnections;
+  public final long listenTcpIdleTimeoutMs;
+  public final int listenTcpReadBufferBytes;
+  public final int listenTcpSelectorThreads;
   public final int dispatcherThreadPoolSize;
+  public final DispatcherMode dispatcherMode;
+  public final int dispatcherMaxInFlight;
   public final boolean snmp4jUseMultithreaded;
   public final String topic;
   public final int batchSize;
   public final int pollBackoffMs;
+  public final int lingerMs;
+  public final int minBatchSize;
+  public final int bufferCapacityRecords;
+  public final long bufferCapacityBytes;
+  public final OverflowPolicy bufferOverflowPolicy;
+  public final long bufferBlockTimeoutMs;
+  public final String journalDir;
+  public final int journalSegmentBytes;
+  public final long journalFsyncIntervalMs;
+  public final String spillDir;
+  public final double spillWatermark;
+  public final int spillSegmentBytes;
+  public final long spillMaxBytes;
+  public final boolean validateRecords;
+  public final OutputFormat outputFormat;
+  public final VariableBindingLayout variableBindingLayout;
+  public final int typedSchemaCacheSize;
+  public final String mibNamesFile;
+  public final String mibIndexFile;
+  public final int mibNameCacheSize;
+  public final List<String> topicRoutes;
+  public final List<OID> filterIncludeTrapOids;
+  public final List<OID> filterExcludeTrapOids;
+  public final List<String> filterIncludePeers;
+  public final List<String> filterExcludePeers;
+  public final List<String> filterIncludeSecurityNames;
+  public final List<String> filterExcludeSecurityNames;
+  public final long dedupWindowMs;
+  public final List<OID> dedupIgnoreOids;
+  public final int dedupMaxEntries;
+  public final double rateLimitPerSecond;
+  public final int rateLimitBurst;
+  public final RateLimitKey rateLimitKey;
+  public final int rateLimitMaxSources;
+  public final long rateLimitIdleMs;
+  public final int oidCacheSize;
   public final boolean mpv3Enabled;
   public final String username;
   public final boolean noAuthNoPrivEnabled;
@@ -110,8 +448,17 @@ public class SnmpTrapSourceConnectorConfig extends AbstractConfig {
   public final String authenticationPassphrase;
   public final AuthenticationProtocol authenticationProtocol;
   public final PrivacyProtocol privacyProtocol;
+  public final InformAckMode informAckMode;
+  public final int informAckMaxPending;
+  public final long informAckTimeoutMs;
+  public final String usmUsersFile;
+  public final long usmUsersReloadIntervalMs;
+  public final String usmKeysCacheFile;
 
   public final boolean collectSnmpMetrics;
+  public final long udpDropsSampleIntervalMs;
+  public final int topSourcesCapacity;
+  public final long topSourcesWindowMs;
 
 
   public SnmpTrapSourceConnectorConfig(Map<String, String> parsedConfig) {
@@ -120,35 +467,153 @@ public class SnmpTrapSourceConnectorConfig extends AbstractConfig {
     this.listenAddress = this.getString(LISTEN_ADDRESS_CONF);
     this.listenPort = this.getInt(LISTEN_PORT_CONF);
     this.listenProtocol = this.getString(LISTEN_PROTOCOL_CONF);
+    this.listenPorts = parsePorts(this.getList(LISTEN_PORTS_CONF));
+    this.listenPortShared = this.getBoolean(LISTEN_PORT_SHARED_CONF);
+    this.taskId = this.getInt(TASK_ID_CONF);
+    this.listenUdpSockets = this.getInt(LISTEN_UDP_SOCKETS_CONF);
+    this.listenUdpBatchSize = this.getInt(LISTEN_UDP_BATCH_SIZE_CONF);
+    this.listenUdpMaxDatagramBytes = this.getInt(LISTEN_UDP_MAX_DATAGRAM_BYTES_CONF);
+    this.listenReceiveBufferBytes = this.getInt(LISTEN_RECEIVE_BUFFER_BYTES_CONF);
+    this.listenTcpMaxConnections = this.getInt(LISTEN_TCP_MAX_CONNECTIONS_CONF);
+    this.listenTcpIdleTimeoutMs = this.getLong(LISTEN_TCP_IDLE_TIMEOUT_MS_CONF);
+    this.listenTcpReadBufferBytes = this.getInt(LISTEN_TCP_READ_BUFFER_BYTES_CONF);
+    this.listenTcpSelectorThreads = this.getInt(LISTEN_TCP_SELECTOR_THREADS_CONF);
     this.dispatcherThreadPoolSize = this.getInt(DISPATCHER_THREAD_POOL_SIZE_CONF);
+    this.dispatcherMode = DispatcherMode.valueOf(this.getString(DISPATCHER_MODE_CONF).toUpperCase());
+    this.dispatcherMaxInFlight = this.getInt(DISPATCHER_MAX_IN_FLIGHT_CONF);
     this.snmp4jUseMultithreaded = this.getBoolean(USE_MULTITHREADED_PROCESSING);
     this.topic = this.getString(TOPIC_CONF);
+    this.topicRoutes = this.getList(TOPIC_ROUTES_CONF);
     this.batchSize = this.getInt(BATCH_SIZE_CONF);
     this.pollBackoffMs = this.getInt(POLL_BACKOFF_MS_CONF);
+    this.lingerMs = this.getInt(LINGER_MS_CONF);
+    this.minBatchSize = this.getInt(MIN_BATCH_SIZE_CONF);
+    this.bufferCapacityRecords = this.getInt(BUFFER_CAPACITY_RECORDS_CONF);
+    this.bufferCapacityBytes = this.getLong(BUFFER_CAPACITY_BYTES_CONF);
+    this.bufferOverflowPolicy = OverflowPolicy.valueOf(this.getString(BUFFER_OVERFLOW_POLICY_CONF).toUpperCase());
+    this.bufferBlockTimeoutMs = this.getLong(BUFFER_BLOCK_TIMEOUT_MS_CONF);
+    this.journalDir = this.getString(JOURNAL_DIR_CONF);
+    this.journalSegmentBytes = this.getInt(JOURNAL_SEGMENT_BYTES_CONF);
+    this.journalFsyncIntervalMs = this.getLong(JOURNAL_FSYNC_INTERVAL_MS_CONF);
+    this.spillDir = this.getString(SPILL_DIR_CONF);
+    this.spillWatermark = this.getDouble(SPILL_WATERMARK_CONF);
+    this.spillSegmentBytes = this.getInt(SPILL_SEGMENT_BYTES_CONF);
+    this.spillMaxBytes = this.getLong(SPILL_MAX_BYTES_CONF);
+    this.validateRecords = this.getBoolean(VALIDATE_RECORDS_CONF);
+    this.outputFormat = OutputFormat.valueOf(this.getString(OUTPUT_FORMAT_CONF).toUpperCase());
+    this.variableBindingLayout = VariableBindingLayout.valueOf(this.getString(VARIABLE_BINDING_LAYOUT_CONF).toUpperCase());
+    this.typedSchemaCacheSize = this.getInt(TYPED_SCHEMA_CACHE_SIZE_CONF);
+    this.mibNamesFile = this.getString(MIB_NAMES_FILE_CONF);
+    String mibIndexFile = this.getString(MIB_INDEX_FILE_CONF);
+    this.mibIndexFile = mibIndexFile.isEmpty() && !this.mibNamesFile.isEmpty() ? this.mibNamesFile + ".idx" : mibIndexFile;
+    this.mibNameCacheSize = this.getInt(MIB_NAME_CACHE_SIZE_CONF);
+    this.filterIncludeTrapOids = parseOids(FILTER_INCLUDE_TRAP_OIDS_CONF, this.getList(FILTER_INCLUDE_TRAP_OIDS_CONF));
+    this.filterExcludeTrapOids = parseOids(FILTER_EXCLUDE_TRAP_OIDS_CONF, this.getList(FILTER_EXCLUDE_TRAP_OIDS_CONF));
+    this.filterIncludePeers = this.getList(FILTER_INCLUDE_PEERS_CONF);
+    this.filterExcludePeers = this.getList(FILTER_EXCLUDE_PEERS_CONF);
+    this.filterIncludeSecurityNames = this.getList(FILTER_INCLUDE_SECURITY_NAMES_CONF);
+    this.filterExcludeSecurityNames = this.getList(FILTER_EXCLUDE_SECURITY_NAMES_CONF);
+    this.informAckMode = InformAckMode.valueOf(this.getString(INFORM_ACK_MODE_CONF).toUpperCase());
+    this.informAckMaxPending = this.getInt(INFORM_ACK_MAX_PENDING_CONF);
+    this.informAckTimeoutMs = this.getLong(INFORM_ACK_TIMEOUT_MS_CONF);
+    this.dedupWindowMs = this.getLong(DEDUP_WINDOW_MS_CONF);
+    this.dedupIgnoreOids = parseOids(DEDUP_IGNORE_OIDS_CONF, this.getList(DEDUP_IGNORE_OIDS_CONF));
+    this.dedupMaxEntries = this.getInt(DEDUP_MAX_ENTRIES_CONF);
+    this.rateLimitPerSecond = this.getDouble(RATE_LIMIT_PER_SECOND_CONF);
+    this.rateLimitBurst = this.getInt(RATE_LIMIT_BURST_CONF);
+    this.rateLimitKey = RateLimitKey.valueOf(this.getString(RATE_LIMIT_KEY_CONF).toUpperCase());
+    this.rateLimitMaxSources = this.getInt(RATE_LIMIT_MAX_SOURCES_CONF);
+    this.rateLimitIdleMs = this.getLong(RATE_LIMIT_IDLE_MS_CONF);
+    this.oidCacheSize = this.getInt(OID_CACHE_SIZE_CONF);
     this.mpv3Enabled = this.getBoolean(MPV3_ENABLED_CONF);
     this.collectSnmpMetrics = this.getBoolean(COLLECT_METRICS_SNMP);
+    this.udpDropsSampleIntervalMs = this.getLong(UDP_DROPS_SAMPLE_INTERVAL_MS_CONF);
+    this.topSourcesCapacity = this.getInt(TOP_SOURCES_CAPACITY_CONF);
+    this.topSourcesWindowMs = this.getLong(TOP_SOURCES_WINDOW_MS_CONF);
     this.username = this.getString(USM_USERNAME);
     this.noAuthNoPrivEnabled = this.getBoolean(USM_NO_AUTH_NO_PRIV_ENABLED_CONF);
     this.authenticationPassphrase = this.getString(USM_AUTHENTICATION_PASSPHRASE);
     this.privacyPassphrase = this.getString(USM_PRIVACY_PASSPHRASE);
     this.authenticationProtocol =  AuthenticationProtocol.valueOf(this.getString(USM_AUTHENTICATION_PROTOCOL).toUpperCase());
     this.privacyProtocol = PrivacyProtocol.valueOf(this.getString(USM_PRIVACY_PROTOCOL).toUpperCase());
+    this.usmUsersFile = this.getString(USM_USERS_FILE_CONF);
+    this.usmUsersReloadIntervalMs = this.getLong(USM_USERS_RELOAD_INTERVAL_MS_CONF);
+    this.usmKeysCacheFile = this.getString(USM_KEYS_CACHE_FILE_CONF);
   }
 
   public static ConfigDef conf() {
     String[] authProtocols = Arrays.stream(AuthenticationProtocol.values()).map(Enum::toString).toArray(String[]::new);
     String[] privProtocols = Arrays.stream(PrivacyProtocol.values()).map(Enum::toString).toArray(String[]::new);
+    String[] overflowPolicies = Arrays.stream(OverflowPolicy.values()).map(Enum::toString).toArray(String[]::new);
+    String[] informAckModes = Arrays.stream(InformAckMode.values()).map(Enum::toString).toArray(String[]::new);
+    String[] dispatcherModes = Arrays.stream(DispatcherMode.values()).map(Enum::toString).toArray(String[]::new);
+    String[] rateLimitKeys = Arrays.stream(RateLimitKey.values()).map(Enum::toString).toArray(String[]::new);
+    String[] outputFormats = Arrays.stream(OutputFormat.values()).map(Enum::toString).toArray(String[]::new);
+    String[] variableBindingLayouts = Arrays.stream(VariableBindingLayout.values()).map(Enum::toString).toArray(String[]::new);
 
     return new ConfigDef()
         .define(TOPIC_CONF, Type.STRING, Importance.HIGH, TOPIC_DOC)
+        .define(TOPIC_ROUTES_CONF, Type.LIST, "", SnmpTrapSourceConnectorConfig::validateTopicRoutes, Importance.MEDIUM, TOPIC_ROUTES_DOC)
         .define(LISTEN_ADDRESS_CONF, Type.STRING, LISTEN_ADDRESS_DEFAULT, Importance.LOW, LISTEN_ADDRESS_DOC)
         .define(LISTEN_PORT_CONF, Type.INT, LISTEN_PORT_DEFAULT, Validators.validPort(1025, 65535), Importance.LOW, LISTEN_PORT_DOC)
-        .define(LISTEN_PROTOCOL_CONF, Type.STRING, LISTEN_PROTOCOL_DEFAULT, ConfigDef.ValidString.in("UDP", "TCP"), Importance.LOW, LISTEN_PROTOCOL_DOC)
+        .define(LISTEN_PORTS_CONF, Type.LIST, "", (name, value) -> parsePorts((List<?>) value), Importance.LOW, LISTEN_PORTS_DOC)
+        .define(LISTEN_PORT_SHARED_CONF, Type.BOOLEAN, LISTEN_PORT_SHARED_DEFAULT, Importance.LOW, LISTEN_PORT_SHARED_DOC)
+        .define(TASK_ID_CONF, Type.INT, TASK_ID_DEFAULT, ConfigDef.Range.atLeast(-1), Importance.LOW, TASK_ID_DOC)
+        .define(LISTEN_PROTOCOL_CONF, Type.STRING, LISTEN_PROTOCOL_DEFAULT, ConfigDef.ValidString.in("UDP", "UDP_EPOLL", "TCP"), Importance.LOW, LISTEN_PROTOCOL_DOC)
+        .define(LISTEN_RECEIVE_BUFFER_BYTES_CONF, Type.INT, LISTEN_RECEIVE_BUFFER_BYTES_DEFAULT, ConfigDef.Range.atLeast(0), Importance.LOW, LISTEN_RECEIVE_BUFFER_BYTES_DOC)
+        .define(LISTEN_TCP_MAX_CONNECTIONS_CONF, Type.INT, LISTEN_TCP_MAX_CONNECTIONS_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, LISTEN_TCP_MAX_CONNECTIONS_DOC)
+        .define(LISTEN_TCP_IDLE_TIMEOUT_MS_CONF, Type.LONG, LISTEN_TCP_IDLE_TIMEOUT_MS_DEFAULT, ConfigDef.Range.atLeast(0L), Importance.LOW, LISTEN_TCP_IDLE_TIMEOUT_MS_DOC)
+        .define(LISTEN_TCP_READ_BUFFER_BYTES_CONF, Type.INT, LISTEN_TCP_READ_BUFFER_BYTES_DEFAULT, ConfigDef.Range.atLeast(512), Importance.LOW, LISTEN_TCP_READ_BUFFER_BYTES_DOC)
+        .define(LISTEN_TCP_SELECTOR_THREADS_CONF, Type.INT, LISTEN_TCP_SELECTOR_THREADS_DEFAULT, ConfigDef.Range.between(0, 256), Importance.LOW, LISTEN_TCP_SELECTOR_THREADS_DOC)
+        .define(LISTEN_UDP_SOCKETS_CONF, Type.INT, LISTEN_UDP_SOCKETS_DEFAULT, ConfigDef.Range.between(1, 64), Importance.LOW, LISTEN_UDP_SOCKETS_DOC)
+        .define(LISTEN_UDP_BATCH_SIZE_CONF, Type.INT, LISTEN_UDP_BATCH_SIZE_DEFAULT, ConfigDef.Range.between(1, 1024), Importance.LOW, LISTEN_UDP_BATCH_SIZE_DOC)
+        .define(LISTEN_UDP_MAX_DATAGRAM_BYTES_CONF, Type.INT, LISTEN_UDP_MAX_DATAGRAM_BYTES_DEFAULT, ConfigDef.Range.between(484, 65507), Importance.LOW, LISTEN_UDP_MAX_DATAGRAM_BYTES_DOC)
 
         .define(BATCH_SIZE_CONF, Type.INT, BATCH_SIZE_DEFAULT, ConfigDef.Range.between(10, Integer.MAX_VALUE), Importance.MEDIUM, BATCH_SIZE_DOC)
         .define(POLL_BACKOFF_MS_CONF, Type.INT, POLL_BACKOFF_MS_DEFAULT, ConfigDef.Range.between(10, Integer.MAX_VALUE), Importance.MEDIUM, POLL_BACKOFF_MS_DOC)
+        .define(LINGER_MS_CONF, Type.INT, LINGER_MS_DEFAULT, ConfigDef.Range.atLeast(0), Importance.MEDIUM, LINGER_MS_DOC)
+        .define(MIN_BATCH_SIZE_CONF, Type.INT, MIN_BATCH_SIZE_DEFAULT, ConfigDef.Range.atLeast(1), Importance.MEDIUM, MIN_BATCH_SIZE_DOC)
+        .define(BUFFER_CAPACITY_RECORDS_CONF, Type.INT, BUFFER_CAPACITY_RECORDS_DEFAULT, ConfigDef.Range.between(1, 1 << 30), Importance.MEDIUM, BUFFER_CAPACITY_RECORDS_DOC)
+        .define(BUFFER_CAPACITY_BYTES_CONF, Type.LONG, BUFFER_CAPACITY_BYTES_DEFAULT, ConfigDef.Range.atLeast(0L), Importance.MEDIUM, BUFFER_CAPACITY_BYTES_DOC)
+        .define(BUFFER_OVERFLOW_POLICY_CONF, Type.STRING, BUFFER_OVERFLOW_POLICY_DEFAULT, ConfigDef.ValidString.in(overflowPolicies), Importance.MEDIUM, BUFFER_OVERFLOW_POLICY_DOC)
+        .define(BUFFER_BLOCK_TIMEOUT_MS_CONF, Type.LONG, BUFFER_BLOCK_TIMEOUT_MS_DEFAULT, ConfigDef.Range.atLeast(0L), Importance.LOW, BUFFER_BLOCK_TIMEOUT_MS_DOC)
+        .define(JOURNAL_DIR_CONF, Type.STRING, JOURNAL_DIR_DEFAULT, Importance.MEDIUM, JOURNAL_DIR_DOC)
+        .define(JOURNAL_SEGMENT_BYTES_CONF, Type.INT, JOURNAL_SEGMENT_BYTES_DEFAULT, ConfigDef.Range.atLeast(4096), Importance.LOW, JOURNAL_SEGMENT_BYTES_DOC)
+        .define(JOURNAL_FSYNC_INTERVAL_MS_CONF, Type.LONG, JOURNAL_FSYNC_INTERVAL_MS_DEFAULT, ConfigDef.Range.atLeast(1L), Importance.LOW, JOURNAL_FSYNC_INTERVAL_MS_DOC)
+        .define(SPILL_DIR_CONF, Type.STRING, SPILL_DIR_DEFAULT, Importance.MEDIUM, SPILL_DIR_DOC)
+        .define(SPILL_WATERMARK_CONF, Type.DOUBLE, SPILL_WATERMARK_DEFAULT, ConfigDef.Range.between(0.0, 1.0), Importance.LOW, SPILL_WATERMARK_DOC)
+        .define(SPILL_SEGMENT_BYTES_CONF, Type.INT, SPILL_SEGMENT_BYTES_DEFAULT, ConfigDef.Range.atLeast(4096), Importance.LOW, SPILL_SEGMENT_BYTES_DOC)
+        .define(SPILL_MAX_BYTES_CONF, Type.LONG, SPILL_MAX_BYTES_DEFAULT, ConfigDef.Range.atLeast(4096L), Importance.MEDIUM, SPILL_MAX_BYTES_DOC)
+        .define(FILTER_INCLUDE_TRAP_OIDS_CONF, Type.LIST, "", (name, value) -> parseOids(name, (List<?>) value), Importance.MEDIUM, FILTER_INCLUDE_TRAP_OIDS_DOC)
+        .define(FILTER_EXCLUDE_TRAP_OIDS_CONF, Type.LIST, "", (name, value) -> parseOids(name, (List<?>) value), Importance.MEDIUM, FILTER_EXCLUDE_TRAP_OIDS_DOC)
+        .define(FILTER_INCLUDE_PEERS_CONF, Type.LIST, "", SnmpTrapSourceConnectorConfig::validateCidrs, Importance.MEDIUM, FILTER_INCLUDE_PEERS_DOC)
+        .define(FILTER_EXCLUDE_PEERS_CONF, Type.LIST, "", SnmpTrapSourceConnectorConfig::validateCidrs, Importance.MEDIUM, FILTER_EXCLUDE_PEERS_DOC)
+        .define(FILTER_INCLUDE_SECURITY_NAMES_CONF, Type.LIST, "", Importance.MEDIUM, FILTER_INCLUDE_SECURITY_NAMES_DOC)
+        .define(FILTER_EXCLUDE_SECURITY_NAMES_CONF, Type.LIST, "", Importance.MEDIUM, FILTER_EXCLUDE_SECURITY_NAMES_DOC)
+        .define(INFORM_ACK_MODE_CONF, Type.STRING, INFORM_ACK_MODE_DEFAULT, ConfigDef.ValidString.in(informAckModes), Importance.MEDIUM, INFORM_ACK_MODE_DOC)
+        .define(INFORM_ACK_MAX_PENDING_CONF, Type.INT, INFORM_ACK_MAX_PENDING_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, INFORM_ACK_MAX_PENDING_DOC)
+        .define(INFORM_ACK_TIMEOUT_MS_CONF, Type.LONG, INFORM_ACK_TIMEOUT_MS_DEFAULT, ConfigDef.Range.atLeast(1L), Importance.LOW, INFORM_ACK_TIMEOUT_MS_DOC)
+        .define(DEDUP_WINDOW_MS_CONF, Type.LONG, DEDUP_WINDOW_MS_DEFAULT, ConfigDef.Range.atLeast(0L), Importance.MEDIUM, DEDUP_WINDOW_MS_DOC)
+        .define(DEDUP_IGNORE_OIDS_CONF, Type.LIST, DEDUP_IGNORE_OIDS_DEFAULT, (name, value) -> parseOids(name, (List<?>) value), Importance.LOW, DEDUP_IGNORE_OIDS_DOC)
+        .define(DEDUP_MAX_ENTRIES_CONF, Type.INT, DEDUP_MAX_ENTRIES_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, DEDUP_MAX_ENTRIES_DOC)
+        .define(RATE_LIMIT_PER_SECOND_CONF, Type.DOUBLE, RATE_LIMIT_PER_SECOND_DEFAULT, ConfigDef.Range.atLeast(0.0), Importance.MEDIUM, RATE_LIMIT_PER_SECOND_DOC)
+        .define(RATE_LIMIT_BURST_CONF, Type.INT, RATE_LIMIT_BURST_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, RATE_LIMIT_BURST_DOC)
+        .define(RATE_LIMIT_KEY_CONF, Type.STRING, RATE_LIMIT_KEY_DEFAULT, ConfigDef.ValidString.in(rateLimitKeys), Importance.LOW, RATE_LIMIT_KEY_DOC)
+        .define(RATE_LIMIT_MAX_SOURCES_CONF, Type.INT, RATE_LIMIT_MAX_SOURCES_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, RATE_LIMIT_MAX_SOURCES_DOC)
+        .define(RATE_LIMIT_IDLE_MS_CONF, Type.LONG, RATE_LIMIT_IDLE_MS_DEFAULT, ConfigDef.Range.atLeast(1L), Importance.LOW, RATE_LIMIT_IDLE_MS_DOC)
+        .define(OUTPUT_FORMAT_CONF, Type.STRING, OUTPUT_FORMAT_DEFAULT, ConfigDef.ValidString.in(outputFormats), Importance.MEDIUM, OUTPUT_FORMAT_DOC)
+        .define(VARIABLE_BINDING_LAYOUT_CONF, Type.STRING, VARIABLE_BINDING_LAYOUT_DEFAULT, ConfigDef.ValidString.in(variableBindingLayouts), Importance.MEDIUM, VARIABLE_BINDING_LAYOUT_DOC)
+        .define(TYPED_SCHEMA_CACHE_SIZE_CONF, Type.INT, TYPED_SCHEMA_CACHE_SIZE_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, TYPED_SCHEMA_CACHE_SIZE_DOC)
+        .define(MIB_NAMES_FILE_CONF, Type.STRING, MIB_NAMES_FILE_DEFAULT, Importance.MEDIUM, MIB_NAMES_FILE_DOC)
+        .define(MIB_INDEX_FILE_CONF, Type.STRING, MIB_INDEX_FILE_DEFAULT, Importance.LOW, MIB_INDEX_FILE_DOC)
+        .define(MIB_NAME_CACHE_SIZE_CONF, Type.INT, MIB_NAME_CACHE_SIZE_DEFAULT, ConfigDef.Range.between(1, 1 << 30), Importance.LOW, MIB_NAME_CACHE_SIZE_DOC)
+        .define(VALIDATE_RECORDS_CONF, Type.BOOLEAN, VALIDATE_RECORDS_DEFAULT, Importance.LOW, VALIDATE_RECORDS_DOC)
+        .define(OID_CACHE_SIZE_CONF, Type.INT, OID_CACHE_SIZE_DEFAULT, ConfigDef.Range.atLeast(0), Importance.LOW, OID_CACHE_SIZE_DOC)
         .define(MPV3_ENABLED_CONF, Type.BOOLEAN, MPV3_ENABLED_DEFAULT, Importance.MEDIUM, MPV3_ENABLED_DOC)
         .define(COLLECT_METRICS_SNMP, Type.BOOLEAN, COLLECT_METRICS_SNMP_DEFAULT, Importance.MEDIUM, COLLECT_METRICS_SNMP_DOC)
+        .define(TOP_SOURCES_CAPACITY_CONF, Type.INT, TOP_SOURCES_CAPACITY_DEFAULT, ConfigDef.Range.atLeast(0), Importance.LOW, TOP_SOURCES_CAPACITY_DOC)
+        .define(TOP_SOURCES_WINDOW_MS_CONF, Type.LONG, TOP_SOURCES_WINDOW_MS_DEFAULT, ConfigDef.Range.atLeast(1L), Importance.LOW, TOP_SOURCES_WINDOW_MS_DOC)
+        .define(UDP_DROPS_SAMPLE_INTERVAL_MS_CONF, Type.LONG, UDP_DROPS_SAMPLE_INTERVAL_MS_DEFAULT, ConfigDef.Range.atLeast(0L), Importance.LOW, UDP_DROPS_SAMPLE_INTERVAL_MS_DOC)
 
         // MPv3 configs
         .define(USM_USERNAME, Type.STRING, USM_USERNAME_DEFAULT, Importance.MEDIUM, USM_USERNAME_DOC)
@@ -157,10 +622,80 @@ public class SnmpTrapSourceConnectorConfig extends AbstractConfig {
         .define(USM_PRIVACY_PASSPHRASE, Type.STRING, USM_PRIVACY_PASSPHRASE_DEFAULT, Importance.MEDIUM, USM_PRIVACY_PASSPHRASE_DOC)
         .define(USM_AUTHENTICATION_PROTOCOL, Type.STRING, USM_AUTHENTICATION_PROTOCOL_DEFAULT, ConfigDef.ValidString.in(authProtocols), Importance.MEDIUM, USM_AUTHENTICATION_PROTOCOL_DOC)
         .define(USM_PRIVACY_PROTOCOL, Type.STRING, USM_PRIVACY_PROTOCOL_DEFAULT, ConfigDef.ValidString.in(privProtocols), Importance.MEDIUM, USM_PRIVACY_PROTOCOL_DOC)
+        .define(USM_USERS_FILE_CONF, Type.STRING, USM_USERS_FILE_DEFAULT, Importance.MEDIUM, USM_USERS_FILE_DOC)
+        .define(USM_USERS_RELOAD_INTERVAL_MS_CONF, Type.LONG, USM_USERS_RELOAD_INTERVAL_MS_DEFAULT, ConfigDef.Range.atLeast(0L), Importance.LOW, USM_USERS_RELOAD_INTERVAL_MS_DOC)
+        .define(USM_KEYS_CACHE_FILE_CONF, Type.STRING, USM_KEYS_CACHE_FILE_DEFAULT, Importance.LOW, USM_KEYS_CACHE_FILE_DOC)
 
         // Snmp4j configs
         .define(USE_MULTITHREADED_PROCESSING, Type.BOOLEAN, USE_MULTITHREADED_PROCESSING_DEFAULT, Importance.LOW, USE_MULTITHREADED_PROCESSING_DOC)
-        .define(DISPATCHER_THREAD_POOL_SIZE_CONF, Type.INT, DISPATCHER_THREAD_POOL_SIZE_DEFAULT, ConfigDef.Range.between(1, 100), Importance.LOW, DISPATCHER_THREAD_POOL_SIZE_DOC);
+        .define(DISPATCHER_THREAD_POOL_SIZE_CONF, Type.INT, DISPATCHER_THREAD_POOL_SIZE_DEFAULT, ConfigDef.Range.between(1, 100), Importance.LOW, DISPATCHER_THREAD_POOL_SIZE_DOC)
+        .define(DISPATCHER_MODE_CONF, Type.STRING, DISPATCHER_MODE_DEFAULT, ConfigDef.ValidString.in(dispatcherModes), Importance.LOW, DISPATCHER_MODE_DOC)
+        .define(DISPATCHER_MAX_IN_FLIGHT_CONF, Type.INT, DISPATCHER_MAX_IN_FLIGHT_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, DISPATCHER_MAX_IN_FLIGHT_DOC);
+  }
+
+  @SuppressWarnings("unchecked")
+  static void validateTopicRoutes(String name, Object value) {
+    try {
+      new TopicRouter(TOPIC_CONF, (List<String>) value);
+    } catch (IllegalArgumentException e) {
+      throw new ConfigException(name, value, e.getMessage());
+    }
+  }
+
+  static void validateCidrs(String name, Object value) {
+    for (Object cidr : (List<?>) value) {
+      try {
+        TrapFilter.validateCidr(cidr.toString().trim());
+      } catch (IllegalArgumentException e) {
+        throw new ConfigException(name, cidr, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Parses dotted numeric OIDs such as {@code 1.3.6.1.2.1.1.3.0}, a leading dot is allowed.
+   */
+  static List<OID> parseOids(String name, List<?> entries) {
+    List<OID> oids = new ArrayList<>(entries.size());
+    for (Object entry : entries) {
+      String value = entry.toString().trim();
+      if (value.isEmpty()) {
+        continue;
+      }
+      String dotted = value.startsWith(".") ? value.substring(1) : value;
+      if (!DOTTED_OID.matcher(dotted).matches()) {
+        throw new ConfigException(name, value, "Not a dotted numeric OID");
+      }
+      oids.add(new OID(dotted));
+    }
+    return Collections.unmodifiableList(oids);
+  }
+
+  /**
+   * Expands entries like {@code 10161} and {@code 10170-10179} into distinct ports, keeping their order.
+   */
+  static List<Integer> parsePorts(List<?> entries) {
+    Set<Integer> ports = new LinkedHashSet<>();
+    for (Object entry : entries) {
+      String value = entry.toString().trim();
+      if (value.isEmpty()) {
+        continue;
+      }
+      try {
+        int dash = value.indexOf('-');
+        int from = Integer.parseInt(value.substring(0, dash < 0 ? value.length() : dash).trim());
+        int to = dash < 0 ? from : Integer.parseInt(value.substring(dash + 1).trim());
+        if (from < 1025 || to > 65535 || from > to) {
+          throw new ConfigException(LISTEN_PORTS_CONF, value, "Ports must be between 1025 and 65535 with ranges written low-high");
+        }
+        for (int port = from; port <= to; port++) {
+          ports.add(port);
+        }
+      } catch (NumberFormatException e) {
+        throw new ConfigException(LISTEN_PORTS_CONF, value, "Not a port or port range");
+      }
+    }
+    return Collections.unmodifiableList(new ArrayList<>(ports));
   }
 
 }
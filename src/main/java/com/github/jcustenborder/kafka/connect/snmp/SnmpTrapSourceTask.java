@@ -16,12 +16,35 @@
  */
 package com.github.jcustenborder.kafka.connect.snmp;
 
-import com.github.jcustenborder.kafka.connect.snmp.enums.AuthenticationProtocol;
-import com.github.jcustenborder.kafka.connect.snmp.enums.PrivacyProtocol;
+import com.github.jcustenborder.kafka.connect.snmp.enums.InformAckMode;
+import com.github.jcustenborder.kafka.connect.snmp.enums.OutputFormat;
+import com.github.jcustenborder.kafka.connect.snmp.enums.RateLimitKey;
+import com.github.jcustenborder.kafka.connect.snmp.filter.TrapFilter;
+import com.github.jcustenborder.kafka.connect.snmp.mib.MibIndex;
+import com.github.jcustenborder.kafka.connect.snmp.mib.OidNameResolver;
+import com.github.jcustenborder.kafka.connect.snmp.monitor.HeavyHitters;
 import com.github.jcustenborder.kafka.connect.snmp.monitor.SnmpMetrics;
+import com.github.jcustenborder.kafka.connect.snmp.monitor.UdpDropSampler;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.InformResponder;
 import com.github.jcustenborder.kafka.connect.snmp.pdu.PDUConverter;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.RawCapturingMessageDispatcher;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.SpilledTrap;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.TrapDeduplicator;
+import com.github.jcustenborder.kafka.connect.snmp.transport.EpollUdpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.transport.NioTcpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.transport.ReceiveBufferSized;
+import com.github.jcustenborder.kafka.connect.snmp.transport.ReusePortUdpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.transport.TunedUdpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.usm.CachingUsm;
+import com.github.jcustenborder.kafka.connect.snmp.usm.LocalizedKeyCache;
+import com.github.jcustenborder.kafka.connect.snmp.usm.UsmUserStore;
+import com.github.jcustenborder.kafka.connect.snmp.utils.ExecutorWorkerPool;
+import com.github.jcustenborder.kafka.connect.snmp.utils.Journal;
 import com.github.jcustenborder.kafka.connect.snmp.utils.RecordBuffer;
+import com.github.jcustenborder.kafka.connect.snmp.utils.SourceRateLimiter;
+import com.github.jcustenborder.kafka.connect.snmp.utils.SpillQueue;
 import com.github.jcustenborder.kafka.connect.snmp.utils.Utils;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.utils.SystemTime;
 import org.apache.kafka.common.utils.Time;
 import org.apache.kafka.connect.errors.ConnectException;
@@ -38,6 +61,7 @@ import org.snmp4j.Snmp;
 import org.snmp4j.mp.MPv1;
 import org.snmp4j.mp.MPv2c;
 import org.snmp4j.mp.MPv3;
+import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.security.AuthHMAC384SHA512;
 import org.snmp4j.security.AuthMD5;
 import org.snmp4j.security.AuthSHA;
@@ -46,17 +70,19 @@ import org.snmp4j.security.PrivAES128;
 import org.snmp4j.security.PrivAES256;
 import org.snmp4j.security.SecurityModels;
 import org.snmp4j.security.SecurityProtocols;
-import org.snmp4j.security.USM;
 import org.snmp4j.security.UsmUser;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.IpAddress;
 import org.snmp4j.smi.OID;
 import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.TcpAddress;
 import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
 import org.snmp4j.transport.AbstractTransportMapping;
-import org.snmp4j.transport.DefaultTcpTransportMapping;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.transport.UdpTransportMapping;
 import org.snmp4j.util.MultiThreadedMessageDispatcher;
 import org.snmp4j.util.ThreadPool;
+import org.snmp4j.util.WorkerPool;
 import org.weakref.jmx.MBeanExporter;
 
 import javax.management.MBeanServer;
@@ -64,15 +90,30 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
   static final Logger log = LoggerFactory.getLogger(SnmpTrapSourceTask.class);
   private MBeanServer mbs;
   private MBeanExporter exporter;
   private SnmpMetrics metrics;
-  private final String metricsName = "com.github.jcustenborder.kafka.connect.snmp:name=Metrics";
+  static final String METRICS_NAME = "com.github.jcustenborder.kafka.connect.snmp:name=Metrics";
+  static final String JOURNAL_PARTITION_KEY = "journal";
+  static final String JOURNAL_OFFSET_KEY = "offset";
+  private String metricsName = METRICS_NAME;
+  static final int RECORD_OVERHEAD_BYTES = 512;
+  static final int VARIABLE_BINDING_OVERHEAD_BYTES = 256;
 
   @Override
   public String version() {
@@ -86,13 +127,90 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
   PDUConverter converter;
   Time time = new SystemTime();
   private RecordBuffer<SourceRecord> recordBuffer;
+  private volatile boolean stopping;
+  private UdpDropSampler udpDropSampler;
+  private UsmUserStore usmUsers;
+  private InformResponder informResponder;
+  private HeavyHitters<InetAddress> topPeers;
+  private HeavyHitters<OID> topTrapOids;
+  private TrapFilter trapFilter;
+  private TrapDeduplicator deduplicator;
+  private final Queue<Suppressed> expiredWindows = new ConcurrentLinkedQueue<>();
+  private SourceRateLimiter<Object> rateLimiter;
+  private SpillQueue spill;
+  private int spillWatermarkRecords;
+  private long spillWatermarkBytes;
+  private Journal journal;
+  private Map<String, String> journalPartition;
+  private Iterator<Journal.Entry> journalReplay;
+  private long journalRecoveredOffset;
 
   @Override
   public void start(Map<String, String> settings) {
     this.config = new SnmpTrapSourceConnectorConfig(settings);
-    this.converter = new PDUConverter(this.time, config);
-    this.recordBuffer = new RecordBuffer<>();
+    this.stopping = false;
+    this.converter = new PDUConverter(this.time, config, loadMibNames());
+    this.recordBuffer = new RecordBuffer<>(
+        this.config.bufferCapacityRecords,
+        this.config.bufferCapacityBytes,
+        this.config.bufferOverflowPolicy,
+        this.config.bufferBlockTimeoutMs
+    );
+    this.recordBuffer.onEviction(this::evicted);
+    this.metricsName = metricsName(this.config.taskId);
     this.metrics = new SnmpMetrics();
+    this.metrics.trackRecordBuffer(this.recordBuffer);
+    if (!this.config.journalDir.isEmpty()) {
+      setupJournal();
+    }
+    if (!this.config.spillDir.isEmpty()) {
+      setupSpill();
+    }
+    this.trapFilter = new TrapFilter(this.config.filterIncludeTrapOids, this.config.filterExcludeTrapOids,
+        this.config.filterIncludePeers, this.config.filterExcludePeers,
+        this.config.filterIncludeSecurityNames, this.config.filterExcludeSecurityNames);
+    if (this.trapFilter.isEmpty()) {
+      this.trapFilter = null;
+    } else {
+      this.metrics.trackTrapFilter(this.trapFilter);
+      log.info("start() - Filtering traps with {}", this.trapFilter.rules());
+    }
+    if (this.config.dedupWindowMs > 0L) {
+      this.deduplicator = new TrapDeduplicator(this.config.dedupWindowMs, this.config.dedupMaxEntries,
+          this.config.dedupIgnoreOids, (lastDuplicate, suppressed) -> this.expiredWindows.add(new Suppressed(lastDuplicate, suppressed)));
+      this.metrics.trackDeduplicator(this.deduplicator);
+      log.info("start() - Suppressing repeated traps within {} ms, ignoring {}", this.config.dedupWindowMs, this.config.dedupIgnoreOids);
+    } else {
+      this.deduplicator = null;
+    }
+    if (this.config.rateLimitPerSecond > 0.0) {
+      this.rateLimiter = new SourceRateLimiter<>(this.config.rateLimitPerSecond, this.config.rateLimitBurst,
+          this.config.rateLimitMaxSources, this.config.rateLimitIdleMs);
+      this.metrics.trackRateLimiter(this.rateLimiter);
+      log.info("start() - Rate limiting traps to {}/s with a burst of {} per {}",
+          this.config.rateLimitPerSecond, this.config.rateLimitBurst, this.config.rateLimitKey);
+    } else {
+      this.rateLimiter = null;
+    }
+    if (this.config.collectSnmpMetrics) {
+      this.recordBuffer.trackResidency(this.metrics::recordBufferResidency);
+      if (this.config.topSourcesCapacity > 0) {
+        this.topPeers = new HeavyHitters<>(this.config.topSourcesCapacity, this.config.topSourcesWindowMs);
+        // The trap OID belongs to the received PDU, a tracked one is copied
+        this.topTrapOids = new HeavyHitters<>(this.config.topSourcesCapacity, this.config.topSourcesWindowMs, OID::new);
+        this.metrics.trackTopSources(this.topPeers, this.topTrapOids);
+      }
+    }
+    this.metrics.trackOidCache(this.converter.getOidCache());
+    this.metrics.trackTopicRouter(this.converter.getTopicRouter());
+    this.metrics.trackTypedSchemas(this.converter.getTypedSchemaCache());
+    this.metrics.trackMibNames(this.converter.getNames());
+    if (this.config.informAckMode != InformAckMode.DISABLED) {
+      this.informResponder = new InformResponder("InformResponder-" + this.config.listenPort,
+          this.config.informAckMaxPending, this.config.informAckTimeoutMs, this.metrics::recordInformAck);
+      this.metrics.trackInformResponder(this.informResponder);
+      log.info("start() - Acknowledging INFORMs {}, at most {} pending", this.config.informAckMode, this.config.informAckMaxPending);
+    }
 
     if (config.collectSnmpMetrics) {
       try {
@@ -102,19 +220,31 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
       }
     }
 
-    log.info("start() - Setting listen address with {} on {}:{}", this.config.listenProtocol, this.config.listenAddress, this.config.listenPort);
+    log.info("start() - Task {} setting listen address with {} on {}:{}",
+        this.config.taskId, this.config.listenProtocol, this.config.listenAddress, this.config.listenPort);
     log.info("start() - MPv3 support: {}", this.config.mpv3Enabled);
-
-    this.transport = setupTransport(this.config.listenAddress, this.config.listenProtocol, this.config.listenPort);
+    log.info("start() - Record buffer capacity {} record(s), {} byte(s), overflow policy {}",
+        this.recordBuffer.capacity(), this.config.bufferCapacityBytes, this.config.bufferOverflowPolicy);
+
+    this.transport = setupTransport(this.config);
+    if (this.transport instanceof ReusePortUdpTransportMapping) {
+      this.metrics.trackUdpSockets((ReusePortUdpTransportMapping) this.transport);
+    } else if (this.transport instanceof EpollUdpTransportMapping) {
+      this.metrics.trackEpollUdp((EpollUdpTransportMapping) this.transport);
+    } else if (this.transport instanceof NioTcpTransportMapping) {
+      this.metrics.trackTcpConnections((NioTcpTransportMapping) this.transport);
+    }
 
     if (this.config.snmp4jUseMultithreaded) {
-      log.info("start() - Configuring ThreadPool DispatchPool to {} thread(s)", this.config.dispatcherThreadPoolSize);
-      ThreadPool pool = ThreadPool.create("DispatchPool", this.config.dispatcherThreadPoolSize);
+      WorkerPool pool = createWorkerPool(this.config);
+      if (pool instanceof ExecutorWorkerPool) {
+        this.metrics.trackDispatcher((ExecutorWorkerPool) pool);
+      }
       log.info("start() - Configuring multithreaded message dispatcher");
-      this.messageDispatcher = createMultiMessageDispatcher(pool, this.config.mpv3Enabled);
+      this.messageDispatcher = createMultiMessageDispatcher(pool, this.config);
     } else {
       log.info("start() - Configuring single threaded dispatcher");
-      this.messageDispatcher = createSingleMessageDispatcher(this.config.mpv3Enabled);
+      this.messageDispatcher = createSingleMessageDispatcher(this.config);
       this.transport.setAsyncMsgProcessingSupported(false);
     }
 
@@ -130,10 +260,86 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
     try {
       this.transport.listen();
       this.transport.setPriority(java.lang.Thread.MAX_PRIORITY); // Set the listener as highest priority
-    } catch (IOException e) {
+    } catch (IOException | UnsupportedOperationException e) {
       throw new ConnectException("Exception thrown while calling transport.listen()", e);
     }
 
+    if (this.transport instanceof ReceiveBufferSized) {
+      log.info("start() - Receive buffer size requested {} byte(s), effective {} byte(s)",
+          this.config.listenReceiveBufferBytes, ((ReceiveBufferSized) this.transport).getEffectiveReceiveBufferSize());
+    }
+
+    if (this.config.collectSnmpMetrics && this.config.udpDropsSampleIntervalMs > 0
+        && this.config.listenProtocol.startsWith("UDP")) {
+      this.udpDropSampler = new UdpDropSampler(this.config.listenPort, this.config.udpDropsSampleIntervalMs);
+      this.metrics.trackUdpDrops(this.udpDropSampler);
+    }
+
+  }
+
+  private OidNameResolver loadMibNames() {
+    if (this.config.mibNamesFile.isEmpty()) {
+      return null;
+    }
+    Path namesFile = Paths.get(this.config.mibNamesFile);
+    Path indexFile = Paths.get(this.config.mibIndexFile);
+    try {
+      MibIndex index = MibIndex.load(namesFile, indexFile);
+      log.info("start() - Resolving OID names with {} ({} nodes)", indexFile, index.nodes());
+      return new OidNameResolver(index, this.config.mibNameCacheSize);
+    } catch (IOException e) {
+      throw new ConnectException("Could not load MIB names from " + namesFile, e);
+    }
+  }
+
+  /**
+   * Tasks of one connector share the configured directory, each in its own subdirectory.
+   */
+  private Path taskDirectory(String directory) {
+    Path path = Paths.get(directory);
+    return this.config.taskId < 0 ? path : path.resolve("task-" + this.config.taskId);
+  }
+
+  private void setupJournal() {
+    Path directory = taskDirectory(this.config.journalDir);
+    try {
+      this.journal = new Journal(directory, this.config.journalSegmentBytes, this.config.journalFsyncIntervalMs);
+    } catch (IOException e) {
+      throw new ConnectException("Could not open journal directory " + directory, e);
+    }
+    this.journalPartition = Collections.singletonMap(JOURNAL_PARTITION_KEY, directory.toAbsolutePath().toString());
+    // Kafka acknowledges records out of order, so the journal's own acknowledgements decide what is replayed
+    this.journalReplay = this.journal.replay();
+    this.journalRecoveredOffset = this.journal.nextOffset();
+    this.metrics.trackJournal(this.journal);
+    log.info("start() - Journaling traps to {}, fsync every {} ms, replaying {} unacknowledged trap(s)",
+        directory, this.config.journalFsyncIntervalMs, this.journal.unacknowledged());
+  }
+
+  private Map<String, Long> journalOffset(long offset) {
+    return Collections.singletonMap(JOURNAL_OFFSET_KEY, offset);
+  }
+
+  private void setupSpill() {
+    Path directory = taskDirectory(this.config.spillDir);
+    try {
+      this.spill = new SpillQueue(directory, this.config.spillSegmentBytes, this.config.spillMaxBytes);
+    } catch (IOException e) {
+      throw new ConnectException("Could not open spill directory " + directory, e);
+    }
+    this.spillWatermarkRecords = (int) Math.max(1L, (long) (this.recordBuffer.capacity() * this.config.spillWatermark));
+    this.spillWatermarkBytes = this.config.bufferCapacityBytes > 0L
+        ? (long) (this.config.bufferCapacityBytes * this.config.spillWatermark) : Long.MAX_VALUE;
+    this.metrics.trackSpill(this.spill);
+    log.info("start() - Spilling traps to {} above {} buffered record(s), at most {} byte(s)",
+        directory, this.spillWatermarkRecords, this.config.spillMaxBytes);
+  }
+
+  /**
+   * Tasks started by a connector get their task id in the MBean name, so several tasks can share a worker JVM.
+   */
+  static String metricsName(int taskId) {
+    return taskId < 0 ? METRICS_NAME : METRICS_NAME + ",task=" + taskId;
   }
 
   private void wireMetricsToJMX(SnmpMetrics metrics) {
@@ -144,28 +350,171 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
 
   @Override
   public List<SourceRecord> poll() {
+    // Read before stopping, so a stop() that lands after the check still ends the wait below
+    final long wakeUps = this.recordBuffer.wakeUpCount();
+    if (this.stopping) {
+      return null;
+    }
     try {
-      if (this.recordBuffer.isEmpty()) {
-        Thread.sleep(this.config.pollBackoffMs);
-      } else {
+      if (this.deduplicator != null) {
+        this.deduplicator.cleanUp();
+        List<SourceRecord> summaries = emitSuppressed();
+        if (!summaries.isEmpty()) {
+          metrics.addPolled(summaries.size());
+          return summaries;
+        }
+      }
+      if (this.journalReplay != null) {
+        // Traps journaled before the restart are older than anything received since
+        List<SourceRecord> replayed = replayJournal();
+        if (!replayed.isEmpty()) {
+          metrics.addPolled(replayed.size());
+          return replayed;
+        }
+      }
+      final boolean spilled = this.spill != null && !this.spill.isEmpty();
+      // Wait for the first record, then linger for a fuller batch if configured
+      if (!spilled && !this.recordBuffer.await(1, this.config.pollBackoffMs, TimeUnit.MILLISECONDS, wakeUps)) {
+        return null;
+      }
+      if (!spilled && this.config.lingerMs > 0 && this.config.minBatchSize > 1 && !this.stopping) {
+        this.recordBuffer.await(Math.min(this.config.minBatchSize, this.config.batchSize), this.config.lingerMs,
+            TimeUnit.MILLISECONDS, wakeUps);
+      }
+      if (log.isDebugEnabled()) {
         log.debug("poll() - Non-empty buffer, draining {} records", Math.min(recordBuffer.size(), config.batchSize));
         if (this.config.snmp4jUseMultithreaded) {
           log.debug("poll() - Pending snmp requests count {}", this.snmp.getPendingAsyncRequestCount());
         } else {
           log.debug("poll() - Pending snmp requests count {}", this.snmp.getPendingSyncRequestCount());
         }
-        List<SourceRecord> batch = recordBuffer.drain(this.config.batchSize);
-        metrics.addPolled(batch.size());
-        return batch.isEmpty() ? null : batch; // We want this to be null according to Kafka Connect poll() spec
       }
+      List<SourceRecord> batch = recordBuffer.drain(this.config.batchSize);
+      if (spilled && batch.size() < this.config.batchSize) {
+        // The buffer holds the oldest traps, replay the spill once it has drained
+        replaySpilled(batch);
+      }
+      metrics.addPolled(batch.size());
+      return batch.isEmpty() ? null : batch; // We want this to be null according to Kafka Connect poll() spec
     } catch (Exception err) {
       log.error("poll() - Issue with draining", err);
     }
     return null;
   }
 
+  private List<SourceRecord> replayJournal() {
+    List<SourceRecord> batch = new ArrayList<>();
+    try {
+      while (batch.size() < this.config.batchSize && this.journalReplay.hasNext()) {
+        Journal.Entry entry = this.journalReplay.next();
+        try {
+          batch.add(this.converter.convert(SpilledTrap.decode(entry.payload()), this.journalPartition, journalOffset(entry.offset())));
+        } catch (IOException | RuntimeException e) {
+          log.warn("replayJournal() - Dropped journaled trap {} that could not be decoded", entry.offset(), e);
+          this.journal.ack(entry.offset());
+        }
+      }
+      if (!this.journalReplay.hasNext()) {
+        this.journalReplay = null;
+      }
+    } catch (RuntimeException e) {
+      log.error("replayJournal() - Could not read the journal, skipping the rest of the replay", e);
+      this.journalReplay = null;
+    }
+    return batch;
+  }
+
+  private void replaySpilled(List<SourceRecord> batch) {
+    while (batch.size() < this.config.batchSize) {
+      byte[] bytes = this.spill.poll();
+      if (bytes == null) {
+        return;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      long offset = buffer.getLong();
+      if (this.journal != null && offset >= 0L && offset < this.journalRecoveredOffset) {
+        // Spilled before the restart and journaled as well, the journal replay has emitted it unless it was acknowledged
+        continue;
+      }
+      try {
+        final long convertStart = System.nanoTime();
+        SpilledTrap trap = SpilledTrap.decode(buffer);
+        batch.add(offset < 0L || this.journal == null
+            ? this.converter.convert(trap, PDUConverter.EMPTY, PDUConverter.EMPTY)
+            : this.converter.convert(trap, this.journalPartition, journalOffset(offset)));
+        metrics.recordConversion(System.nanoTime() - convertStart);
+      } catch (IOException | RuntimeException e) {
+        log.warn("replaySpilled() - Dropped a spilled trap that could not be decoded", e);
+        ackJournal(offset);
+      }
+    }
+  }
+
+  /**
+   * Called for every record Kafka acknowledged, or that a transformation filtered out.
+   */
+  @Override
+  public void commitRecord(SourceRecord record, RecordMetadata metadata) {
+    final InformResponder informResponder = this.informResponder;
+    if (informResponder != null && this.config.informAckMode == InformAckMode.ON_COMMIT) {
+      informResponder.committed(record);
+    }
+    ackJournal(record);
+  }
+
+  /**
+   * Called for every record the DROP_OLDEST overflow policy evicted from the buffer, it will not reach Kafka.
+   */
+  private void evicted(SourceRecord record) {
+    final InformResponder informResponder = this.informResponder;
+    if (informResponder != null && this.config.informAckMode == InformAckMode.ON_COMMIT) {
+      informResponder.discard(record);
+    }
+    ackJournal(record);
+  }
+
+  private void ackJournal(SourceRecord record) {
+    if (this.journal != null && this.journalPartition.equals(record.sourcePartition())) {
+      Object offset = record.sourceOffset().get(JOURNAL_OFFSET_KEY);
+      if (offset instanceof Long) {
+        this.journal.ack((Long) offset);
+      }
+    }
+  }
+
+  /**
+   * Deletes journal segments whose traps have all been acknowledged.
+   */
+  @Override
+  public void commit() {
+    if (this.journal != null) {
+      int deleted = this.journal.truncate();
+      if (deleted > 0) {
+        log.debug("commit() - Deleted {} acknowledged journal segment(s)", deleted);
+      }
+    }
+  }
+
+  private void ackJournal(long offset) {
+    if (this.journal != null && offset >= 0L) {
+      this.journal.ack(offset);
+    }
+  }
+
   @Override
   public void stop() {
+    this.stopping = true;
+    if (this.recordBuffer != null) {
+      this.recordBuffer.wakeUp();
+    }
+    if (this.udpDropSampler != null) {
+      this.udpDropSampler.close();
+      this.udpDropSampler = null;
+    }
+    if (this.usmUsers != null) {
+      this.usmUsers.close();
+      this.usmUsers = null;
+    }
     log.info("stop() - closing transport.");
     try {
       if (this.transport != null) {
@@ -178,6 +527,22 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
     } catch (IOException e) {
       log.error("Exception thrown while closing transport.", e);
     }
+    // After the dispatcher, INFORMs still being processed may use it until then
+    if (this.informResponder != null) {
+      this.informResponder.close();
+      this.informResponder = null;
+    }
+
+    if (this.spill != null) {
+      this.spill.close();
+    }
+    if (this.journal != null) {
+      try {
+        this.journal.close();
+      } catch (IOException e) {
+        log.error("stop() - Could not close the journal", e);
+      }
+    }
 
     try {
       if (mbs != null && exporter != null) {
@@ -190,6 +555,9 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
 
   @Override
   public void processPdu(CommandResponderEvent event) {
+    final long received = System.nanoTime();
+    // stop() may close the responder meanwhile, read it once
+    final InformResponder informResponder = this.informResponder;
     metrics.incrementToProcess();
     log.debug("processPdu() - Received event from {}", event.getPeerAddress());
     PDU pdu = event.getPDU();
@@ -198,41 +566,280 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
 
     if (null == pdu) {
       log.warn("Null PDU received from {}", event.getPeerAddress());
+      metrics.incrementDroppedNullPdu();
       return;
     }
 
-    if (PDU.TRAP != pdu.getType()) {
+    final boolean inform = PDU.INFORM == pdu.getType() && informResponder != null;
+    if (PDU.TRAP != pdu.getType() && !inform) {
       log.debug("Message received from {} was not a trap. message={}", event.getPeerAddress(), event);
+      metrics.incrementDroppedNotTrap();
+      return;
+    }
+    if (inform) {
+      event.setProcessed(true);
+      metrics.incrementInformsReceived();
+    }
+
+    if (this.topPeers != null) {
+      trackSource(event.getPeerAddress(), pdu, received);
+    }
+
+    if (this.trapFilter != null && !this.trapFilter.accept(Utils.inetAddressOf(event.getPeerAddress()), event.getSecurityName(), Utils.trapOidOf(pdu))) {
+      log.debug("processPdu() - Filtered trap from {}", event.getPeerAddress());
+      metrics.incrementDroppedFiltered();
+      if (inform) {
+        // Dropped on purpose, a retransmission would only be filtered again
+        informResponder.acknowledge(event, received);
+      }
       return;
     }
 
-    SourceRecord sourceRecord = converter.convert(event);
-    this.recordBuffer.add(sourceRecord);
+    if (this.deduplicator != null && this.deduplicator.isDuplicate(peerOf(event.getPeerAddress()), event)) {
+      log.debug("processPdu() - Suppressed repeated trap from {}", event.getPeerAddress());
+      if (inform) {
+        // Also with ON_COMMIT, a repeat does not wait for the first INFORM's record, see inform.ack.mode
+        informResponder.acknowledge(event, received);
+      }
+      return;
+    }
+
+    if (this.rateLimiter != null && !this.rateLimiter.tryAcquire(rateLimitKey(event.getPeerAddress(), pdu), received)) {
+      log.debug("processPdu() - Rate limit exceeded, dropped trap from {}", event.getPeerAddress());
+      metrics.incrementDroppedRateLimited();
+      return;
+    }
+
+    // One timestamp for the record and its journaled copy, so a replay is identical
+    final long receivedMillis = this.time.milliseconds();
+    byte[] encoded = null;
+    long journalOffset = -1L;
+    if (this.journal != null && (encoded = encode(event, pdu, receivedMillis)) != null) {
+      try {
+        journalOffset = this.journal.append(encoded);
+      } catch (IOException e) {
+        log.warn("processPdu() - Could not journal trap from {}", event.getPeerAddress(), e);
+      }
+    }
+
+    // INFORMs are not spilled, when the buffer is full they are left unacknowledged for the agent to retransmit
+    if (this.spill != null && !inform) {
+      final boolean aboveWatermark = aboveSpillWatermark();
+      if (aboveWatermark || this.spill.isSpilling()) {
+        SpillQueue.Append spilled = spill(event, pdu, receivedMillis, encoded, journalOffset, aboveWatermark);
+        if (spilled == SpillQueue.Append.DROPPED) {
+          return;
+        }
+        if (spilled == SpillQueue.Append.APPENDED) {
+          metrics.recordReceiveToEnqueue(System.nanoTime() - received);
+          metrics.incrementProcessed();
+          return;
+        }
+      }
+    }
+
+    final long convertStart = System.nanoTime();
+    final byte[] receivedBer = this.config.outputFormat == OutputFormat.RAW_BER ? RawCapturingMessageDispatcher.receivedPdu() : null;
+    SourceRecord sourceRecord = journalOffset < 0L
+        ? converter.convert(event, receivedMillis, receivedBer, PDUConverter.EMPTY, PDUConverter.EMPTY)
+        : converter.convert(event, receivedMillis, receivedBer, this.journalPartition, journalOffset(journalOffset));
+    final long converted = System.nanoTime();
+    metrics.recordConversion(converted - convertStart);
+    // Registered before the record is buffered, poll() may hand it to Kafka right away
+    final boolean ackOnCommit = inform && this.config.informAckMode == InformAckMode.ON_COMMIT;
+    if (ackOnCommit && !informResponder.register(sourceRecord, event, received)) {
+      // Counted as rejected by the responder, left unacknowledged for the agent to retransmit
+      log.debug("processPdu() - Too many INFORMs waiting for a response, dropped INFORM from {}", event.getPeerAddress());
+      ackJournal(journalOffset);
+      return;
+    }
+    if (!this.recordBuffer.add(sourceRecord, estimateRecordBytes(pdu))) {
+      log.debug("processPdu() - Buffer full, dropped trap from {}", event.getPeerAddress());
+      ackJournal(journalOffset);
+      if (ackOnCommit) {
+        informResponder.discard(sourceRecord);
+      }
+      return;
+    }
+    if (inform && this.config.informAckMode == InformAckMode.ON_RECEIVE) {
+      informResponder.acknowledge(event, received);
+    }
+    metrics.recordReceiveToEnqueue(System.nanoTime() - received);
     metrics.incrementProcessed();
   }
 
-  private static AbstractTransportMapping<?> setupTransport(String address, String listenProtocol, int port) {
-    InetAddress inetAddress = setupAddress(address);
+  private boolean aboveSpillWatermark() {
+    return this.recordBuffer.size() >= this.spillWatermarkRecords || this.recordBuffer.sizeInBytes() >= this.spillWatermarkBytes;
+  }
 
+  /**
+   * @return the trap in its compact binary form, null if it cannot be encoded
+   */
+  private byte[] encode(CommandResponderEvent<?> event, PDU pdu, long receivedMillis) {
     try {
-      if ("UDP".equals(listenProtocol)) {
-        return setupUdpTransport(inetAddress, port);
+      return SpilledTrap.encode(event.getPeerAddress(), event.getSecurityName(), pdu, receivedMillis);
+    } catch (IOException | RuntimeException e) {
+      log.debug("encode() - Could not encode trap from {}", event.getPeerAddress(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the raw trap, prefixed with its journal offset, to the disk spill instead of converting it. Once
+   * something is spilled every trap goes to disk until poll() has replayed the spill, so traps are emitted in
+   * arrival order.
+   *
+   * @param start whether to start spilling, otherwise the trap is only spilled behind traps already on disk
+   * @return {@link SpillQueue.Append#NOT_SPILLING} if the trap should be buffered in memory instead, also when it
+   *     could not be encoded
+   */
+  private SpillQueue.Append spill(CommandResponderEvent<?> event, PDU pdu, long receivedMillis, byte[] encoded,
+                                  long journalOffset, boolean start) {
+    final byte[] bytes = encoded != null ? encoded : encode(event, pdu, receivedMillis);
+    if (bytes == null) {
+      return SpillQueue.Append.NOT_SPILLING;
+    }
+    byte[] entry = ByteBuffer.allocate(Long.BYTES + bytes.length).putLong(journalOffset).put(bytes).array();
+    SpillQueue.Append result = this.spill.appendIfSpilling(entry, start);
+    if (result == SpillQueue.Append.DROPPED) {
+      log.debug("spill() - Spill full, dropped trap from {}", event.getPeerAddress());
+      ackJournal(journalOffset);
+    }
+    return result;
+  }
+
+  /**
+   * A deduplication window that ended with repeats, queued by whichever thread ran the cache maintenance.
+   */
+  private static final class Suppressed {
+    final CommandResponderEvent<?> lastDuplicate;
+    final int count;
+
+    Suppressed(CommandResponderEvent<?> lastDuplicate, int count) {
+      this.lastDuplicate = lastDuplicate;
+      this.count = count;
+    }
+  }
+
+  /**
+   * Converts the last repeat of every trap whose deduplication window has ended, with the number of repeats
+   * suppressed. The summaries go straight into the batch; they are not journaled, so they are not replayed after
+   * a restart.
+   */
+  private List<SourceRecord> emitSuppressed() {
+    List<SourceRecord> batch = new ArrayList<>();
+    Suppressed window;
+    while (batch.size() < this.config.batchSize && (window = this.expiredWindows.poll()) != null) {
+      SourceRecord sourceRecord = converter.convert(window.lastDuplicate);
+      sourceRecord.headers().addInt(TrapDeduplicator.SUPPRESSED_COUNT_HEADER, window.count);
+      batch.add(sourceRecord);
+    }
+    return batch;
+  }
+
+  /**
+   * The peer's IP without the port, agents may send every trap from a different source port.
+   */
+  private static Object peerOf(Address peerAddress) {
+    return peerAddress instanceof IpAddress ? ((IpAddress) peerAddress).getInetAddress() : peerAddress;
+  }
+
+  private Object rateLimitKey(Address peerAddress, PDU pdu) {
+    Object peer = peerOf(peerAddress);
+    if (this.config.rateLimitKey == RateLimitKey.PEER) {
+      return peer;
+    }
+    return new PeerAndTrapOid(peer, pdu.getVariable(SnmpConstants.snmpTrapOID));
+  }
+
+  /**
+   * Rate limit key of {@link RateLimitKey#PEER_AND_TRAP_OID}. The trap OID belongs to a decoded PDU that is not
+   * reused, so it is safe to keep as part of the key.
+   */
+  static final class PeerAndTrapOid {
+    private final Object peer;
+    private final Variable trapOid;
+
+    PeerAndTrapOid(Object peer, Variable trapOid) {
+      this.peer = peer;
+      this.trapOid = trapOid;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PeerAndTrapOid)) {
+        return false;
+      }
+      PeerAndTrapOid other = (PeerAndTrapOid) o;
+      return Objects.equals(peer, other.peer) && Objects.equals(trapOid, other.trapOid);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Objects.hashCode(peer) + Objects.hashCode(trapOid);
+    }
+  }
+
+  private void trackSource(Address peerAddress, PDU pdu, long nowNanos) {
+    if (peerAddress instanceof IpAddress) {
+      this.topPeers.add(((IpAddress) peerAddress).getInetAddress(), nowNanos);
+    }
+    Variable trapOid = pdu.getVariable(SnmpConstants.snmpTrapOID);
+    if (trapOid instanceof OID) {
+      this.topTrapOids.add((OID) trapOid, nowNanos);
+    }
+  }
+
+  /**
+   * Rough heap footprint of the converted record. The BER length is already known to the PDU and scales with
+   * the varbind payload, the per binding overhead accounts for the Struct built for each of them.
+   */
+  static int estimateRecordBytes(PDU pdu) {
+    return RECORD_OVERHEAD_BYTES + pdu.size() * VARIABLE_BINDING_OVERHEAD_BYTES + pdu.getBERLength();
+  }
+
+  private static AbstractTransportMapping<?> setupTransport(SnmpTrapSourceConnectorConfig config) {
+    InetAddress inetAddress = setupAddress(config.listenAddress);
+    boolean reusePort = config.listenPortShared && config.listenPorts.isEmpty();
+
+    try {
+      if ("UDP".equals(config.listenProtocol)) {
+        return setupUdpTransport(inetAddress, config.listenPort, config.listenUdpSockets, config.listenReceiveBufferBytes, reusePort);
+      } else if ("UDP_EPOLL".equals(config.listenProtocol)) {
+        return setupEpollUdpTransport(inetAddress, config, reusePort);
       } else {
-        return setupTcpTransport(inetAddress, port);
+        return setupTcpTransport(inetAddress, config, reusePort);
       }
     } catch (IOException ex) {
       throw new ConnectException("Exception thrown while configuring transport.", ex);
     }
   }
 
-  private static DefaultUdpTransportMapping setupUdpTransport(InetAddress addr, int port) throws IOException {
+  private static UdpTransportMapping setupUdpTransport(InetAddress addr, int port, int sockets, int receiveBufferBytes,
+                                                       boolean reusePort) throws IOException {
     UdpAddress udpAddress = new UdpAddress(addr, port);
-    return new DefaultUdpTransportMapping(udpAddress);
+    if (sockets > 1 || reusePort) {
+      log.info("setupUdpTransport() - Using {} SO_REUSEPORT sockets", sockets);
+      ReusePortUdpTransportMapping mapping = new ReusePortUdpTransportMapping(udpAddress, sockets);
+      mapping.setReceiveBufferSize(receiveBufferBytes);
+      return mapping;
+    }
+    return new TunedUdpTransportMapping(udpAddress, receiveBufferBytes);
+  }
+
+  private static EpollUdpTransportMapping setupEpollUdpTransport(InetAddress addr, SnmpTrapSourceConnectorConfig config,
+                                                                boolean reusePort) {
+    EpollUdpTransportMapping mapping = new EpollUdpTransportMapping(new UdpAddress(addr, config.listenPort),
+        config.listenUdpSockets, config.listenUdpBatchSize, config.listenUdpMaxDatagramBytes, reusePort);
+    mapping.setReceiveBufferSize(config.listenReceiveBufferBytes);
+    return mapping;
   }
 
-  private static DefaultTcpTransportMapping setupTcpTransport(InetAddress addr, int port) throws IOException {
-    TcpAddress tcpAddress = new TcpAddress(addr, port);
-    return new DefaultTcpTransportMapping(tcpAddress);
+  private static NioTcpTransportMapping setupTcpTransport(InetAddress addr, SnmpTrapSourceConnectorConfig config,
+                                                          boolean reusePort) {
+    TcpAddress tcpAddress = new TcpAddress(addr, config.listenPort);
+    return new NioTcpTransportMapping(tcpAddress, config.listenTcpMaxConnections, config.listenTcpIdleTimeoutMs,
+        config.listenTcpReadBufferBytes, config.listenTcpSelectorThreads, config.listenReceiveBufferBytes, reusePort);
   }
 
   private static InetAddress setupAddress(String listenAddress) throws ConnectException {
@@ -259,25 +866,15 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
     return securityProtocols;
   }
 
-  private OID convertPrivacyProtocol(PrivacyProtocol privacyProtocol) {
-    return switch (privacyProtocol) {
-      case DES3 -> Priv3DES.ID;
-      case AES128 -> PrivAES128.ID;
-      case AES256 -> PrivAES256.ID;
-    };
-  }
-
-  private OID convertAuthenticationProtocol(AuthenticationProtocol authenticationProtocol) {
-    return switch (authenticationProtocol) {
-      case MD5 -> AuthMD5.ID;
-      case SHA -> AuthSHA.ID;
-      case SHA2_512 -> AuthHMAC384SHA512.ID;
-    };
-  }
-
   private void setupMpv3Usm(Snmp snmp, SnmpTrapSourceConnectorConfig config, SecurityProtocols sp) {
     MPv3 mpv3 = ((MPv3) snmp.getMessageProcessingModel(MPv3.ID));
-    USM usm = new USM(sp, new OctetString("SNMP Connector"), 0);
+    LocalizedKeyCache keyCache;
+    try {
+      keyCache = new LocalizedKeyCache(sp, config.usmKeysCacheFile.isEmpty() ? null : Paths.get(config.usmKeysCacheFile));
+    } catch (IOException e) {
+      throw new ConnectException("Could not read localized USM keys from " + config.usmKeysCacheFile, e);
+    }
+    CachingUsm usm = new CachingUsm(sp, new OctetString("SNMP Connector"), 0, keyCache);
     usm.setEngineDiscoveryEnabled(true);
     SecurityModels sm = SecurityModels.getInstance().addSecurityModel(usm);
     if (config.noAuthNoPrivEnabled) {
@@ -293,14 +890,22 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
     } else if (Utils.noneNull(config.username, config.privacyPassphrase, config.authenticationPassphrase)) {
       UsmUser uu = new UsmUser(
           new OctetString(config.username),
-          convertAuthenticationProtocol(config.authenticationProtocol),
+          UsmUserStore.authenticationProtocol(config.authenticationProtocol),
           new OctetString(config.authenticationPassphrase),
-          convertPrivacyProtocol(config.privacyProtocol),
+          UsmUserStore.privacyProtocol(config.privacyProtocol),
           new OctetString(config.privacyPassphrase)
       );
       usm.addUser(uu);
       log.info("Added user {} to handle MPv3", config.username);
     }
+    if (!config.usmUsersFile.isEmpty()) {
+      try {
+        this.usmUsers = new UsmUserStore(usm, Paths.get(config.usmUsersFile), config.usmUsersReloadIntervalMs);
+      } catch (IOException e) {
+        throw new ConnectException("Could not load USM users from " + config.usmUsersFile, e);
+      }
+    }
+    this.metrics.trackUsm(keyCache, this.usmUsers);
     mpv3.setSecurityModels(sm);
   }
 
@@ -313,14 +918,36 @@ public class SnmpTrapSourceTask extends SourceTask implements CommandResponder {
     return md;
   }
 
-  private static MessageDispatcher createSingleMessageDispatcher(boolean mpv3Enabled) {
-    MessageDispatcher md = new MessageDispatcherImpl();
-    return addMessageProcessingModels(md, mpv3Enabled);
+  /**
+   * The RAW_BER output writes PDUs as received, which needs the message at hand while the PDU is processed.
+   */
+  private static MessageDispatcherImpl createMessageDispatcher(SnmpTrapSourceConnectorConfig config) {
+    return config.outputFormat == OutputFormat.RAW_BER ? new RawCapturingMessageDispatcher() : new MessageDispatcherImpl();
+  }
+
+  private static MessageDispatcher createSingleMessageDispatcher(SnmpTrapSourceConnectorConfig config) {
+    MessageDispatcher md = createMessageDispatcher(config);
+    return addMessageProcessingModels(md, config.mpv3Enabled);
+  }
+
+  private static WorkerPool createWorkerPool(SnmpTrapSourceConnectorConfig config) {
+    switch (config.dispatcherMode) {
+      case EXECUTOR:
+        log.info("start() - Configuring executor DispatchPool to {} thread(s), at most {} message(s) in flight",
+            config.dispatcherThreadPoolSize, config.dispatcherMaxInFlight);
+        return ExecutorWorkerPool.fixed("DispatchPool", config.dispatcherThreadPoolSize, config.dispatcherMaxInFlight);
+      case VIRTUAL_THREAD:
+        log.info("start() - Configuring virtual thread DispatchPool, at most {} message(s) in flight", config.dispatcherMaxInFlight);
+        return ExecutorWorkerPool.virtualThreads("DispatchPool", config.dispatcherMaxInFlight);
+      default:
+        log.info("start() - Configuring ThreadPool DispatchPool to {} thread(s)", config.dispatcherThreadPoolSize);
+        return ThreadPool.create("DispatchPool", config.dispatcherThreadPoolSize);
+    }
   }
 
-  private static MessageDispatcher createMultiMessageDispatcher(ThreadPool threadPool, boolean mpv3Enabled) {
-    MultiThreadedMessageDispatcher md = new MultiThreadedMessageDispatcher(threadPool, new MessageDispatcherImpl());
-    return addMessageProcessingModels(md, mpv3Enabled);
+  private static MessageDispatcher createMultiMessageDispatcher(WorkerPool workerPool, SnmpTrapSourceConnectorConfig config) {
+    MultiThreadedMessageDispatcher md = new MultiThreadedMessageDispatcher(workerPool, createMessageDispatcher(config));
+    return addMessageProcessingModels(md, config.mpv3Enabled);
   }
 
   public RecordBuffer<SourceRecord> getRecordBuffer() {
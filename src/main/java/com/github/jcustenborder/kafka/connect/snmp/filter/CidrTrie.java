@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.filter;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.InetAddress;
+
+/**
+ * Maps IPv4 and IPv6 networks in CIDR notation to values and finds the most specific network of an address.
+ * <p>
+ * A binary trie over the address bits, one per address family, so a lookup walks at most 32 or 128 nodes and
+ * allocates nothing but the copy of the address bytes. Built once from configuration and read-only afterwards, lookups are thread safe.
+ *
+ * @param <V>
+ */
+public class CidrTrie<V> {
+  private static final class Node<V> {
+    Node<V> zero;
+    Node<V> one;
+    V value;
+  }
+
+  private final Node<V> ipv4 = new Node<>();
+  private final Node<V> ipv6 = new Node<>();
+  private int size;
+
+  /**
+   * @param cidr an IP address, optionally followed by /prefix length
+   * @throws IllegalArgumentException if {@code cidr} is not a network in CIDR notation
+   */
+  public void put(String cidr, V value) {
+    int slash = cidr.indexOf('/');
+    InetAddress network = parseAddress(slash < 0 ? cidr : cidr.substring(0, slash));
+    int prefixLength;
+    try {
+      prefixLength = slash < 0 ? network.getAddress().length * 8 : Integer.parseInt(cidr.substring(slash + 1));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid prefix length in " + cidr, e);
+    }
+    put(network, prefixLength, value);
+  }
+
+  private static InetAddress parseAddress(String address) {
+    // Only literals, InetAddress.getByName would resolve anything else, even cafe.beef, through DNS
+    try {
+      return InetAddresses.forString(address);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Not an IP address: " + address, e);
+    }
+  }
+
+  public void put(InetAddress network, int prefixLength, V value) {
+    byte[] address = network.getAddress();
+    if (prefixLength < 0 || prefixLength > address.length * 8) {
+      throw new IllegalArgumentException("Invalid prefix length " + prefixLength + " for " + network.getHostAddress());
+    }
+    Node<V> node = address.length == 4 ? ipv4 : ipv6;
+    for (int bit = 0; bit < prefixLength; bit++) {
+      if (isSet(address, bit)) {
+        if (node.one == null) {
+          node.one = new Node<>();
+        }
+        node = node.one;
+      } else {
+        if (node.zero == null) {
+          node.zero = new Node<>();
+        }
+        node = node.zero;
+      }
+    }
+    if (node.value == null) {
+      size++;
+    }
+    node.value = value;
+  }
+
+  /**
+   * @return the value of the longest network containing {@code address}, null if none does
+   */
+  public V longestPrefix(InetAddress address) {
+    byte[] bytes = address.getAddress();
+    Node<V> node = bytes.length == 4 ? ipv4 : ipv6;
+    V match = node.value;
+    for (int bit = 0; bit < bytes.length * 8; bit++) {
+      node = isSet(bytes, bit) ? node.one : node.zero;
+      if (node == null) {
+        break;
+      }
+      if (node.value != null) {
+        match = node.value;
+      }
+    }
+    return match;
+  }
+
+  private static boolean isSet(byte[] address, int bit) {
+    return (address[bit >>> 3] & (0x80 >>> (bit & 7))) != 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.filter;
+
+import org.snmp4j.smi.OID;
+
+import java.util.Arrays;
+
+/**
+ * Maps OID prefixes to values and finds the longest prefix of an OID in one walk down its sub-identifiers.
+ * <p>
+ * Children are kept in sorted int arrays and found by binary search, so a lookup neither boxes sub-identifiers
+ * nor allocates. Built once from configuration and read-only afterwards, lookups are thread safe.
+ *
+ * @param <V>
+ */
+public class OidPrefixTrie<V> {
+  private static final int[] NO_KEYS = new int[0];
+
+  private static final class Node<V> {
+    int[] keys = NO_KEYS;
+    Node<V>[] children = newArray(0);
+    V value;
+
+    Node<V> child(int subIdentifier) {
+      int index = Arrays.binarySearch(keys, subIdentifier);
+      return index < 0 ? null : children[index];
+    }
+
+    Node<V> addChild(int subIdentifier) {
+      int index = Arrays.binarySearch(keys, subIdentifier);
+      if (index >= 0) {
+        return children[index];
+      }
+      int insert = -index - 1;
+      int[] newKeys = new int[keys.length + 1];
+      Node<V>[] newChildren = newArray(children.length + 1);
+      System.arraycopy(keys, 0, newKeys, 0, insert);
+      System.arraycopy(children, 0, newChildren, 0, insert);
+      System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+      System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+      Node<V> child = new Node<>();
+      newKeys[insert] = subIdentifier;
+      newChildren[insert] = child;
+      keys = newKeys;
+      children = newChildren;
+      return child;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <V> Node<V>[] newArray(int size) {
+      return new Node[size];
+    }
+  }
+
+  private final Node<V> root = new Node<>();
+  private int size;
+
+  public void put(OID prefix, V value) {
+    Node<V> node = root;
+    for (int i = 0; i < prefix.size(); i++) {
+      node = node.addChild(prefix.get(i));
+    }
+    if (node.value == null) {
+      size++;
+    }
+    node.value = value;
+  }
+
+  /**
+   * @return the value of the longest prefix of {@code oid}, null if no prefix matches
+   */
+  public V longestPrefix(OID oid) {
+    Node<V> node = root;
+    V match = root.value;
+    for (int i = 0; i < oid.size(); i++) {
+      node = node.child(oid.get(i));
+      if (node == null) {
+        break;
+      }
+      if (node.value != null) {
+        match = node.value;
+      }
+    }
+    return match;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+}
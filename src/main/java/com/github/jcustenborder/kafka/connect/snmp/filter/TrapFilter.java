@@ -0,0 +1,177 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.filter;
+
+import org.snmp4j.smi.OID;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Include and exclude rules on trap OID prefix, peer network and security name (the community for v1 and v2c),
+ * evaluated before a trap is converted.
+ * <p>
+ * A trap is rejected if any exclude rule matches it, or if a dimension has include rules and none of them matches.
+ * OID prefixes and networks are compiled into tries, so the cost does not grow with the number of rules. Every rule
+ * counts its hits, a dimension's include rules also count the traps that matched none of them.
+ */
+public class TrapFilter {
+
+  public static final class Rule {
+    private final String name;
+    private final LongAdder hits = new LongAdder();
+
+    Rule(String name) {
+      this.name = name;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public long hits() {
+      return hits.sum();
+    }
+
+    void hit() {
+      hits.increment();
+    }
+
+    @Override
+    public String toString() {
+      return name + " hits=" + hits();
+    }
+  }
+
+  private final OidPrefixTrie<Rule> includeTrapOids = new OidPrefixTrie<>();
+  private final OidPrefixTrie<Rule> excludeTrapOids = new OidPrefixTrie<>();
+  private final CidrTrie<Rule> includePeers = new CidrTrie<>();
+  private final CidrTrie<Rule> excludePeers = new CidrTrie<>();
+  private final Map<String, Rule> includeSecurityNames = new HashMap<>();
+  private final Map<String, Rule> excludeSecurityNames = new HashMap<>();
+  private final Rule noIncludedTrapOid = new Rule("include.trap.oids no match");
+  private final Rule noIncludedPeer = new Rule("include.peers no match");
+  private final Rule noIncludedSecurityName = new Rule("include.security.names no match");
+  private final List<Rule> rules = new ArrayList<>();
+  private final LongAdder rejected = new LongAdder();
+
+  public TrapFilter(List<OID> includeTrapOids, List<OID> excludeTrapOids,
+                    List<String> includePeers, List<String> excludePeers,
+                    List<String> includeSecurityNames, List<String> excludeSecurityNames) {
+    for (OID oid : excludeTrapOids) {
+      this.excludeTrapOids.put(oid, rule("exclude.trap.oids=" + oid.toDottedString()));
+    }
+    for (String cidr : excludePeers) {
+      this.excludePeers.put(cidr, rule("exclude.peers=" + cidr));
+    }
+    for (String name : excludeSecurityNames) {
+      this.excludeSecurityNames.put(name, rule("exclude.security.names=" + name));
+    }
+    for (OID oid : includeTrapOids) {
+      this.includeTrapOids.put(oid, rule("include.trap.oids=" + oid.toDottedString()));
+    }
+    for (String cidr : includePeers) {
+      this.includePeers.put(cidr, rule("include.peers=" + cidr));
+    }
+    for (String name : includeSecurityNames) {
+      this.includeSecurityNames.put(name, rule("include.security.names=" + name));
+    }
+    if (!this.includeTrapOids.isEmpty()) {
+      this.rules.add(noIncludedTrapOid);
+    }
+    if (!this.includePeers.isEmpty()) {
+      this.rules.add(noIncludedPeer);
+    }
+    if (!this.includeSecurityNames.isEmpty()) {
+      this.rules.add(noIncludedSecurityName);
+    }
+  }
+
+  private Rule rule(String name) {
+    Rule rule = new Rule(name);
+    rules.add(rule);
+    return rule;
+  }
+
+  /**
+   * Checks that {@code cidr} is an IP address, optionally followed by /prefix length.
+   *
+   * @throws IllegalArgumentException if it is not
+   */
+  public static void validateCidr(String cidr) {
+    new CidrTrie<String>().put(cidr, cidr);
+  }
+
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * @param peer the peer's IP address, null if the transport has none
+   * @param securityName the community or USM user name, null if unknown
+   * @param trapOid the value of snmpTrapOID.0, null if the trap has none
+   * @return false if the trap should be dropped
+   */
+  public boolean accept(InetAddress peer, byte[] securityName, OID trapOid) {
+    String name = securityName == null || (includeSecurityNames.isEmpty() && excludeSecurityNames.isEmpty())
+        ? null : new String(securityName, StandardCharsets.UTF_8);
+
+    if (matches(excludeTrapOids.isEmpty() || trapOid == null ? null : excludeTrapOids.longestPrefix(trapOid))
+        || matches(excludePeers.isEmpty() || peer == null ? null : excludePeers.longestPrefix(peer))
+        || matches(name == null ? null : excludeSecurityNames.get(name))) {
+      rejected.increment();
+      return false;
+    }
+    if (!includeTrapOids.isEmpty() && !matches(trapOid == null ? null : includeTrapOids.longestPrefix(trapOid))) {
+      return reject(noIncludedTrapOid);
+    }
+    if (!includePeers.isEmpty() && !matches(peer == null ? null : includePeers.longestPrefix(peer))) {
+      return reject(noIncludedPeer);
+    }
+    if (!includeSecurityNames.isEmpty() && !matches(name == null ? null : includeSecurityNames.get(name))) {
+      return reject(noIncludedSecurityName);
+    }
+    return true;
+  }
+
+  private static boolean matches(Rule rule) {
+    if (rule == null) {
+      return false;
+    }
+    rule.hit();
+    return true;
+  }
+
+  private boolean reject(Rule noMatch) {
+    noMatch.hit();
+    rejected.increment();
+    return false;
+  }
+
+  public List<Rule> rules() {
+    return Collections.unmodifiableList(rules);
+  }
+
+  public long rejected() {
+    return rejected.sum();
+  }
+}
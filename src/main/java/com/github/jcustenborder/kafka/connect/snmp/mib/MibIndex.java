@@ -0,0 +1,291 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.mib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.smi.OID;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * Read-only OID to name trie in a memory-mapped file, built once from a flat export of the MIBs.
+ * <p>
+ * Nodes are stored breadth first so the children of a node are one sorted run of edges, searched with a binary
+ * search over absolute reads of the mapped buffer. A lookup walks the OID's sub-identifiers without allocating
+ * and returns the deepest named node on the path. Opening the index maps the file and checks its header, so the
+ * cost at start does not grow with the number of MIB objects.
+ * <pre>
+ * int magic | int version | int nodes | int edges | int name bytes
+ * nodes: int name offset (-1 without name) | int first edge | int edge count
+ * edges: int sub-identifier | int child node, sorted by sub-identifier per node
+ * names: short length | UTF-8 bytes
+ * </pre>
+ */
+public final class MibIndex {
+  private static final Logger log = LoggerFactory.getLogger(MibIndex.class);
+
+  static final int MAGIC = 0x4D494258;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 5 * Integer.BYTES;
+  static final int NODE_BYTES = 3 * Integer.BYTES;
+  static final int EDGE_BYTES = 2 * Integer.BYTES;
+
+  /**
+   * Returned by {@link #lookup(OID)} when no prefix of the OID has a name.
+   */
+  public static final long NOT_FOUND = -1L;
+
+  private static final Pattern DOTTED_OID = Pattern.compile("\\.?\\d+(\\.\\d+)*");
+
+  private final ByteBuffer buffer;
+  private final int nodes;
+  private final int edgesStart;
+  private final int namesStart;
+  private final AtomicReferenceArray<String> names;
+
+  private MibIndex(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a MIB index of version " + VERSION);
+    }
+    this.nodes = buffer.getInt(8);
+    int edges = buffer.getInt(12);
+    int nameBytes = buffer.getInt(16);
+    this.edgesStart = HEADER_BYTES + nodes * NODE_BYTES;
+    this.namesStart = edgesStart + edges * EDGE_BYTES;
+    if (nodes < 1 || namesStart + (long) nameBytes != buffer.capacity()) {
+      throw new IOException("Truncated MIB index");
+    }
+    this.names = new AtomicReferenceArray<>(nodes);
+  }
+
+  /**
+   * Maps a compiled index.
+   */
+  public static MibIndex open(Path indexFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new MibIndex(mapped);
+    }
+  }
+
+  /**
+   * Maps the index compiled from the names file, compiling it first if it is missing or older than the names file.
+   */
+  public static MibIndex load(Path namesFile, Path indexFile) throws IOException {
+    if (!Files.exists(indexFile)
+        || Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(namesFile)) < 0) {
+      long started = System.nanoTime();
+      int entries = compile(namesFile, indexFile);
+      log.info("load() - Compiled {} names from {} to {} in {} ms", entries, namesFile, indexFile,
+          (System.nanoTime() - started) / 1_000_000L);
+    }
+    return open(indexFile);
+  }
+
+  /**
+   * Compiles a flat export with one OID and its name per line, in either order and separated by whitespace or
+   * {@code =}, e.g. {@code 1.3.6.1.6.3.1.1.5.3 IF-MIB::linkDown} or the quoted {@code "ifIndex" "1.3.6.1.2.1.2.2.1.1"}
+   * of {@code snmptranslate -Tz}. Blank lines and lines starting with # are skipped, a later line wins for an OID.
+   *
+   * @return the number of names in the index
+   */
+  public static int compile(Path namesFile, Path indexFile) throws IOException {
+    Node root = new Node();
+    int entries = 0;
+    try (BufferedReader reader = Files.newBufferedReader(namesFile, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] tokens = line.replace("\"", "").split("[\\s=]+");
+        if (tokens.length != 2) {
+          throw new IOException(String.format("%s:%d: expected an OID and a name", namesFile, lineNumber));
+        }
+        boolean oidFirst = DOTTED_OID.matcher(tokens[0]).matches();
+        String oid = oidFirst ? tokens[0] : tokens[1];
+        String name = oidFirst ? tokens[1] : tokens[0];
+        if (!DOTTED_OID.matcher(oid).matches()) {
+          throw new IOException(String.format("%s:%d: '%s' is not a dotted OID", namesFile, lineNumber, oid));
+        }
+        if (root.put(new OID(oid.startsWith(".") ? oid.substring(1) : oid).getValue(), name)) {
+          entries++;
+        }
+      }
+    }
+    // Tasks of one connector may compile the same index at the same time, each into its own temp file
+    Path temp = Files.createTempFile(indexFile.toAbsolutePath().getParent(), indexFile.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, root.serialize());
+      Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return entries;
+  }
+
+  /**
+   * Trie node used while compiling.
+   */
+  static final class Node {
+    final TreeMap<Integer, Node> children = new TreeMap<>(Integer::compareUnsigned);
+    String name;
+
+    /**
+     * @return true if the OID had no name yet
+     */
+    boolean put(int[] oid, String name) {
+      Node node = this;
+      for (int subId : oid) {
+        node = node.children.computeIfAbsent(subId, k -> new Node());
+      }
+      boolean added = node.name == null;
+      node.name = name;
+      return added;
+    }
+
+    byte[] serialize() {
+      List<Node> order = new ArrayList<>();
+      ArrayDeque<Node> queue = new ArrayDeque<>();
+      queue.add(this);
+      while (!queue.isEmpty()) {
+        Node node = queue.poll();
+        order.add(node);
+        queue.addAll(node.children.values());
+      }
+      int edges = order.size() - 1;
+      List<byte[]> nameBytes = new ArrayList<>();
+      int namesLength = 0;
+      for (Node node : order) {
+        if (node.name != null) {
+          byte[] bytes = node.name.getBytes(StandardCharsets.UTF_8);
+          nameBytes.add(bytes);
+          namesLength += Short.BYTES + bytes.length;
+        }
+      }
+      ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + order.size() * NODE_BYTES + edges * EDGE_BYTES + namesLength);
+      out.putInt(MAGIC).putInt(VERSION).putInt(order.size()).putInt(edges).putInt(namesLength);
+      // Children were queued in node order, so node i's children follow those of nodes before it
+      int nextChild = 1;
+      int nameOffset = 0;
+      int named = 0;
+      for (Node node : order) {
+        if (node.name != null) {
+          out.putInt(nameOffset);
+          nameOffset += Short.BYTES + nameBytes.get(named++).length;
+        } else {
+          out.putInt(-1);
+        }
+        out.putInt(nextChild - 1).putInt(node.children.size());
+        nextChild += node.children.size();
+      }
+      int child = 1;
+      for (Node node : order) {
+        for (Map.Entry<Integer, Node> e : node.children.entrySet()) {
+          out.putInt(e.getKey()).putInt(child++);
+        }
+      }
+      for (byte[] bytes : nameBytes) {
+        out.putShort((short) bytes.length).put(bytes);
+      }
+      return out.array();
+    }
+  }
+
+  /**
+   * Finds the deepest named node on the OID's path without allocating.
+   *
+   * @return the node in the upper and the number of matched sub-identifiers in the lower 32 bits, or
+   * {@link #NOT_FOUND}
+   */
+  public long lookup(OID oid) {
+    final int size = oid.size();
+    int node = 0;
+    long best = NOT_FOUND;
+    for (int i = 0; i < size; i++) {
+      node = child(node, oid.get(i));
+      if (node < 0) {
+        break;
+      }
+      if (buffer.getInt(HEADER_BYTES + node * NODE_BYTES) >= 0) {
+        best = ((long) node << 32) | (i + 1);
+      }
+    }
+    return best;
+  }
+
+  private int child(int node, int subId) {
+    int base = HEADER_BYTES + node * NODE_BYTES;
+    int low = buffer.getInt(base + 4);
+    int high = low + buffer.getInt(base + 8) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int edge = edgesStart + mid * EDGE_BYTES;
+      // Sub-identifiers are unsigned 32 bit values
+      int cmp = Integer.compareUnsigned(buffer.getInt(edge), subId);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return buffer.getInt(edge + 4);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param node node from {@link #lookup(OID)}
+   * @return the node's name, decoded once and then shared
+   */
+  public String name(int node) {
+    String name = names.get(node);
+    if (name == null) {
+      int offset = namesStart + buffer.getInt(HEADER_BYTES + node * NODE_BYTES);
+      byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+      buffer.get(offset + Short.BYTES, bytes);
+      name = new String(bytes, StandardCharsets.UTF_8);
+      names.set(node, name);
+    }
+    return name;
+  }
+
+  public int nodes() {
+    return nodes;
+  }
+}
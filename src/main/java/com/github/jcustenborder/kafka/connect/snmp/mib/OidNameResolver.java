@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.mib;
+
+import org.snmp4j.smi.OID;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Symbolic names of OIDs from a {@link MibIndex}: the longest named prefix followed by the remaining
+ * sub-identifiers as instance suffix, e.g. {@code IF-MIB::ifIndex.3}.
+ * <p>
+ * Resolved names are kept in a two-way set associative cache indexed by the OID's hash. A hit compares the OID
+ * with the cached keys and returns the cached string, so it allocates nothing. A miss puts a copy of the OID, which
+ * is mutable when decoded from a PDU, in the first way and moves the previous entry to the second, so two OIDs with
+ * the same set do not keep evicting each other.
+ */
+public class OidNameResolver {
+  private final MibIndex index;
+  private final AtomicReferenceArray<Entry> slots;
+  private final int setMask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private static final class Entry {
+    final OID oid;
+    final String name;
+
+    Entry(OID oid, String name) {
+      this.oid = oid;
+      this.name = name;
+    }
+  }
+
+  /**
+   * @param cacheSize number of cached names, rounded up to the next power of two and at least 2
+   */
+  public OidNameResolver(MibIndex index, int cacheSize) {
+    if (cacheSize < 1 || cacheSize > (1 << 30)) {
+      throw new IllegalArgumentException("cacheSize must be between 1 and 2^30, was " + cacheSize);
+    }
+    int size = cacheSize <= 2 ? 2 : Integer.highestOneBit(cacheSize - 1) << 1;
+    this.index = index;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.setMask = size / 2 - 1;
+  }
+
+  /**
+   * @return the symbolic name of the OID, null if no prefix of it is in the index
+   */
+  public String resolve(OID oid) {
+    if (oid == null) {
+      return null;
+    }
+    int hash = oid.hashCode();
+    int slot = ((hash ^ (hash >>> 16)) & setMask) << 1;
+    Entry first = slots.get(slot);
+    if (first != null && first.oid.equals(oid)) {
+      hits.increment();
+      return first.name;
+    }
+    Entry second = slots.get(slot + 1);
+    if (second != null && second.oid.equals(oid)) {
+      hits.increment();
+      return second.name;
+    }
+    misses.increment();
+    String name = lookup(oid);
+    // Racing misses may drop an entry or store one twice, either only costs a later miss
+    slots.set(slot + 1, first);
+    slots.set(slot, new Entry(new OID(oid), name));
+    return name;
+  }
+
+  private String lookup(OID oid) {
+    long found = index.lookup(oid);
+    if (found == MibIndex.NOT_FOUND) {
+      return null;
+    }
+    String name = index.name((int) (found >>> 32));
+    int matched = (int) found;
+    if (matched == oid.size()) {
+      return name;
+    }
+    StringBuilder builder = new StringBuilder(name);
+    for (int i = matched; i < oid.size(); i++) {
+      builder.append('.').append(oid.getUnsigned(i));
+    }
+    return builder.toString();
+  }
+
+  public MibIndex index() {
+    return index;
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+}
@@ -16,20 +16,24 @@
  */
 package com.github.jcustenborder.kafka.connect.snmp.monitor;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Striped counter, dispatcher threads incrementing it do not contend on a single cache line.
+ */
 public class Counter {
 
-  private final AtomicInteger count = new AtomicInteger(0);
+  private final LongAdder count = new LongAdder();
 
   public void increment() {
-    count.incrementAndGet();
+    count.increment();
   }
 
-  public void add(int n) {
-    count.addAndGet(n);
+  public void add(long n) {
+    count.add(n);
   }
-  public int get() {
-    return count.get();
+
+  public long get() {
+    return count.sum();
   }
 }
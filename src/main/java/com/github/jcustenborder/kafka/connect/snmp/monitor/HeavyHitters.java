@@ -0,0 +1,316 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.monitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Approximate top-K of the most frequent keys over a sliding window, in memory bounded by {@code capacity}
+ * whatever the number of distinct keys.
+ * <p>
+ * Each stripe is a Space-Saving summary: a key not yet tracked evicts the key with the lowest count and inherits
+ * that count as its error, so a key that really is frequent can never be missed. The counters are kept as a
+ * Stream-Summary, hung off buckets of equal count in a list ordered by count, so both counting a key and evicting
+ * the least frequent one take constant time. Updating threads are spread over the stripes by thread id, so they
+ * rarely wait for each other's lock. Counts cover the previous and the current window, windows roll over every
+ * {@code windowMs}.
+ *
+ * @param <K>
+ */
+public class HeavyHitters<K> {
+  private final int capacity;
+  private final long windowNanos;
+  private final UnaryOperator<K> copyKey;
+  private final Stripe<K>[] stripes;
+  private final int mask;
+  private final long startNanos;
+  private final AtomicLong epoch = new AtomicLong();
+
+  public static final class Hitter<K> {
+    public final K key;
+    public final long count;
+    public final long error;
+    public final double ratePerSecond;
+
+    Hitter(K key, long count, long error, double ratePerSecond) {
+      this.key = key;
+      this.count = count;
+      this.error = error;
+      this.ratePerSecond = ratePerSecond;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s count=%d error=%d rate=%.1f/s", key, count, error, ratePerSecond);
+    }
+  }
+
+  private static final class Counted<K> {
+    K key;
+    long current;
+    long previous;
+    long error;
+    Bucket<K> bucket;
+    Counted<K> prev;
+    Counted<K> next;
+
+    long total() {
+      return current + previous;
+    }
+  }
+
+  /**
+   * The counters with the same total, in a list of buckets ordered by total.
+   */
+  private static final class Bucket<K> {
+    final long total;
+    Counted<K> head;
+    Bucket<K> prev;
+    Bucket<K> next;
+
+    Bucket(long total) {
+      this.total = total;
+    }
+  }
+
+  private static final class Stripe<K> {
+    final Map<K, Counted<K>> counters;
+    Bucket<K> lowest;
+    long epoch;
+
+    Stripe(int capacity) {
+      this.counters = new HashMap<>(capacity * 2);
+    }
+
+    void increment(Counted<K> counted) {
+      Bucket<K> from = counted.bucket;
+      long total = counted.total() + 1;
+      counted.current++;
+      Bucket<K> to = from.next;
+      if (to == null || to.total != total) {
+        to = new Bucket<>(total);
+        insertAfter(from, to);
+      }
+      unlink(counted);
+      link(counted, to);
+    }
+
+    /**
+     * Unlinks a counter with the lowest total for the newcomer, which keeps the total and so the bucket.
+     */
+    Counted<K> evictLowest() {
+      Counted<K> evicted = lowest.head;
+      counters.remove(evicted.key);
+      return evicted;
+    }
+
+    void link(Counted<K> counted, Bucket<K> bucket) {
+      counted.bucket = bucket;
+      counted.prev = null;
+      counted.next = bucket.head;
+      if (bucket.head != null) {
+        bucket.head.prev = counted;
+      }
+      bucket.head = counted;
+    }
+
+    void unlink(Counted<K> counted) {
+      Bucket<K> bucket = counted.bucket;
+      if (counted.prev != null) {
+        counted.prev.next = counted.next;
+      } else {
+        bucket.head = counted.next;
+      }
+      if (counted.next != null) {
+        counted.next.prev = counted.prev;
+      }
+      counted.prev = null;
+      counted.next = null;
+      counted.bucket = null;
+      if (bucket.head == null) {
+        remove(bucket);
+      }
+    }
+
+    void insertAfter(Bucket<K> before, Bucket<K> bucket) {
+      bucket.prev = before;
+      bucket.next = before == null ? lowest : before.next;
+      if (bucket.next != null) {
+        bucket.next.prev = bucket;
+      }
+      if (before == null) {
+        lowest = bucket;
+      } else {
+        before.next = bucket;
+      }
+    }
+
+    void remove(Bucket<K> bucket) {
+      if (bucket.prev != null) {
+        bucket.prev.next = bucket.next;
+      } else {
+        lowest = bucket.next;
+      }
+      if (bucket.next != null) {
+        bucket.next.prev = bucket.prev;
+      }
+    }
+
+    /**
+     * Rebuilds the buckets after the totals changed, once per window.
+     */
+    void rebucket() {
+      List<Counted<K>> all = new ArrayList<>(counters.values());
+      all.sort(Comparator.comparingLong(Counted::total));
+      lowest = null;
+      Bucket<K> last = null;
+      for (Counted<K> counted : all) {
+        if (last == null || last.total != counted.total()) {
+          Bucket<K> bucket = new Bucket<>(counted.total());
+          insertAfter(last, bucket);
+          last = bucket;
+        }
+        link(counted, last);
+      }
+    }
+  }
+
+  public HeavyHitters(int capacity, long windowMs) {
+    this(capacity, windowMs, UnaryOperator.identity());
+  }
+
+  /**
+   * @param copyKey applied to a key when it starts being tracked, to copy keys that their owner may change
+   */
+  public HeavyHitters(int capacity, long windowMs, UnaryOperator<K> copyKey) {
+    this(capacity, windowMs, copyKey, Runtime.getRuntime().availableProcessors(), System.nanoTime());
+  }
+
+  HeavyHitters(int capacity, long windowMs, int concurrency, long startNanos) {
+    this(capacity, windowMs, UnaryOperator.identity(), concurrency, startNanos);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  HeavyHitters(int capacity, long windowMs, UnaryOperator<K> copyKey, int concurrency, long startNanos) {
+    if (capacity < 1 || windowMs < 1) {
+      throw new IllegalArgumentException("capacity and windowMs must be positive");
+    }
+    int stripeCount = concurrency <= 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+    this.capacity = capacity;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    this.copyKey = copyKey;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      this.stripes[i] = new Stripe<>(capacity);
+    }
+    this.mask = stripeCount - 1;
+    this.startNanos = startNanos;
+  }
+
+  public void add(K key, long nowNanos) {
+    long currentEpoch = epochAt(nowNanos);
+    Stripe<K> stripe = stripes[(int) Thread.currentThread().getId() & mask];
+    synchronized (stripe) {
+      roll(stripe, currentEpoch);
+      Counted<K> counted = stripe.counters.get(key);
+      if (counted == null) {
+        counted = admit(stripe, copyKey.apply(key));
+      }
+      stripe.increment(counted);
+    }
+  }
+
+  private Counted<K> admit(Stripe<K> stripe, K key) {
+    Counted<K> counted;
+    if (stripe.counters.size() < capacity) {
+      counted = new Counted<>();
+      Bucket<K> zero = stripe.lowest;
+      if (zero == null || zero.total != 0L) {
+        zero = new Bucket<>(0L);
+        stripe.insertAfter(null, zero);
+      }
+      stripe.link(counted, zero);
+    } else {
+      // The newcomer may have been seen up to the evicted key's count times before, reuse the object to avoid garbage
+      counted = stripe.evictLowest();
+      counted.error = counted.total();
+      counted.current = counted.total();
+      counted.previous = 0L;
+    }
+    counted.key = key;
+    stripe.counters.put(key, counted);
+    return counted;
+  }
+
+  private long epochAt(long nowNanos) {
+    long current = epoch.get();
+    long actual = Math.max(0L, (nowNanos - startNanos) / windowNanos);
+    if (actual > current) {
+      epoch.compareAndSet(current, actual);
+    }
+    return Math.max(actual, epoch.get());
+  }
+
+  private static <K> void roll(Stripe<K> stripe, long currentEpoch) {
+    if (stripe.epoch == currentEpoch) {
+      return;
+    }
+    boolean adjacent = stripe.epoch + 1 == currentEpoch;
+    stripe.counters.values().removeIf(counted -> {
+      counted.previous = adjacent ? counted.current : 0L;
+      counted.current = 0L;
+      counted.error = Math.min(counted.error, counted.previous);
+      return counted.previous == 0L;
+    });
+    stripe.rebucket();
+    stripe.epoch = currentEpoch;
+  }
+
+  /**
+   * @return up to {@code n} keys with the highest counts over the previous and current window, highest first
+   */
+  public List<Hitter<K>> top(int n, long nowNanos) {
+    long currentEpoch = epochAt(nowNanos);
+    Map<K, long[]> merged = new HashMap<>();
+    for (Stripe<K> stripe : stripes) {
+      synchronized (stripe) {
+        roll(stripe, currentEpoch);
+        for (Map.Entry<K, Counted<K>> entry : stripe.counters.entrySet()) {
+          long[] totals = merged.computeIfAbsent(entry.getKey(), k -> new long[2]);
+          totals[0] += entry.getValue().total();
+          totals[1] += entry.getValue().error;
+        }
+      }
+    }
+    long windowStart = startNanos + Math.max(0L, currentEpoch - 1) * windowNanos;
+    double seconds = Math.max(1L, nowNanos - windowStart) / (double) TimeUnit.SECONDS.toNanos(1);
+    List<Hitter<K>> hitters = new ArrayList<>(merged.size());
+    merged.forEach((key, totals) -> hitters.add(new Hitter<>(key, totals[0], totals[1], totals[0] / seconds)));
+    hitters.sort(Comparator.comparingLong((Hitter<K> h) -> h.count).reversed());
+    return hitters.size() > n ? new ArrayList<>(hitters.subList(0, n)) : hitters;
+  }
+
+  public List<Hitter<K>> top(int n) {
+    return top(n, System.nanoTime());
+  }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.monitor;
+
+import org.weakref.jmx.Managed;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative longs, recorded from many threads and read over JMX.
+ * <p>
+ * Every power of two is split into {@link #SUB_BUCKETS} linear buckets, so a reported percentile is the upper
+ * bound of its bucket and at most 1/16 above the recorded value. Buckets are {@link LongAdder}s, so dispatcher
+ * threads recording into the same bucket do not contend on one cache line. {@link #reset()} starts a new window.
+ */
+public class Histogram {
+  static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private volatile Window window = new Window();
+
+  private static final class Window {
+    final LongAdder[] buckets = new LongAdder[BUCKETS];
+    final LongAdder count = new LongAdder();
+    final AtomicLong max = new AtomicLong();
+
+    Window() {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+  }
+
+  static int bucketOf(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) Math.max(0L, value);
+    }
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  public void record(long value) {
+    Window current = this.window;
+    current.buckets[bucketOf(value)].increment();
+    current.count.increment();
+    if (value > current.max.get()) {
+      current.max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  /**
+   * @param quantile between 0 and 1
+   * @return the value below which {@code quantile} of the recordings in this window fall, 0 if there are none
+   */
+  public long percentile(double quantile) {
+    Window current = this.window;
+    long[] counts = new long[BUCKETS];
+    long total = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = current.buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0L) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+    long seen = 0L;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), current.max.get());
+      }
+    }
+    return current.max.get();
+  }
+
+  @Managed
+  public long getCount() {
+    return window.count.sum();
+  }
+
+  @Managed
+  public long getP50() {
+    return percentile(0.5);
+  }
+
+  @Managed
+  public long getP99() {
+    return percentile(0.99);
+  }
+
+  @Managed
+  public long getP999() {
+    return percentile(0.999);
+  }
+
+  @Managed
+  public long getMax() {
+    return window.max.get();
+  }
+
+  /**
+   * Starts a new window. Recordings racing with the reset may land in the discarded window.
+   */
+  @Managed
+  public void reset() {
+    this.window = new Window();
+  }
+}
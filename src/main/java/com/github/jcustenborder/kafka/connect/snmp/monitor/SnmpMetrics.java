@@ -16,12 +16,64 @@
  */
 package com.github.jcustenborder.kafka.connect.snmp.monitor;
 
+import com.github.jcustenborder.kafka.connect.snmp.filter.TrapFilter;
+import com.github.jcustenborder.kafka.connect.snmp.mib.OidNameResolver;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.InformResponder;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.OidStringCache;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.TopicRouter;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.TypedSchemaCache;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.TrapDeduplicator;
+import com.github.jcustenborder.kafka.connect.snmp.transport.EpollUdpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.transport.NioTcpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.transport.ReusePortUdpTransportMapping;
+import com.github.jcustenborder.kafka.connect.snmp.usm.LocalizedKeyCache;
+import com.github.jcustenborder.kafka.connect.snmp.usm.UsmUserStore;
+import com.github.jcustenborder.kafka.connect.snmp.utils.ExecutorWorkerPool;
+import com.github.jcustenborder.kafka.connect.snmp.utils.Journal;
+import com.github.jcustenborder.kafka.connect.snmp.utils.RecordBuffer;
+import com.github.jcustenborder.kafka.connect.snmp.utils.SourceRateLimiter;
+import com.github.jcustenborder.kafka.connect.snmp.utils.SpillQueue;
 import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
 
 public class SnmpMetrics {
   final Counter processed;
   final Counter toProcess;
   final Counter polled;
+  final Counter droppedNullPdu = new Counter();
+  final Counter droppedNotTrap = new Counter();
+  final Counter droppedRateLimited = new Counter();
+  final Counter droppedFiltered = new Counter();
+  final Histogram receiveToEnqueueNanos = new Histogram();
+  final Histogram conversionNanos = new Histogram();
+  final Histogram bufferResidencyNanos = new Histogram();
+  final Histogram pollBatchSize = new Histogram();
+  final Counter informsReceived = new Counter();
+  final Histogram informAckNanos = new Histogram();
+  private volatile RecordBuffer<?> recordBuffer;
+  private volatile OidStringCache oidCache;
+  private volatile ReusePortUdpTransportMapping udpSockets;
+  private volatile EpollUdpTransportMapping epollUdp;
+  private volatile NioTcpTransportMapping tcpConnections;
+  private volatile UdpDropSampler udpDropSampler;
+  private volatile ExecutorWorkerPool dispatcher;
+  private volatile Journal journal;
+  private volatile SpillQueue spill;
+  private volatile TopicRouter topicRouter;
+  private volatile TypedSchemaCache typedSchemas;
+  private volatile OidNameResolver mibNames;
+  private volatile LocalizedKeyCache usmKeys;
+  private volatile InformResponder informResponder;
+  private volatile UsmUserStore usmUsers;
+  private volatile TrapFilter trapFilter;
+  private volatile TrapDeduplicator deduplicator;
+  private volatile SourceRateLimiter<?> rateLimiter;
+  private volatile HeavyHitters<InetAddress> topPeers;
+  private volatile HeavyHitters<?> topTrapOids;
+  static final int TOP_N = 20;
 
   public SnmpMetrics() {
     processed = new Counter();
@@ -39,20 +91,620 @@ public class SnmpMetrics {
 
   public void addPolled(int n) {
     this.polled.add(n);
+    this.pollBatchSize.record(n);
+  }
+
+  public void incrementDroppedNullPdu() {
+    this.droppedNullPdu.increment();
+  }
+
+  public void incrementDroppedNotTrap() {
+    this.droppedNotTrap.increment();
+  }
+
+  public void incrementDroppedRateLimited() {
+    this.droppedRateLimited.increment();
+  }
+
+  public void incrementDroppedFiltered() {
+    this.droppedFiltered.increment();
+  }
+
+  public void recordReceiveToEnqueue(long nanos) {
+    this.receiveToEnqueueNanos.record(nanos);
+  }
+
+  public void incrementInformsReceived() {
+    this.informsReceived.increment();
+  }
+
+  public void recordInformAck(long nanos) {
+    this.informAckNanos.record(nanos);
+  }
+
+  public void recordConversion(long nanos) {
+    this.conversionNanos.record(nanos);
+  }
+
+  public void recordBufferResidency(long nanos) {
+    this.bufferResidencyNanos.record(nanos);
+  }
+
+  public void trackRecordBuffer(RecordBuffer<?> recordBuffer) {
+    this.recordBuffer = recordBuffer;
+  }
+
+  public void trackOidCache(OidStringCache oidCache) {
+    this.oidCache = oidCache;
+  }
+
+  public void trackTcpConnections(NioTcpTransportMapping tcpConnections) {
+    this.tcpConnections = tcpConnections;
+  }
+
+  public void trackUdpSockets(ReusePortUdpTransportMapping udpSockets) {
+    this.udpSockets = udpSockets;
+  }
+
+  public void trackEpollUdp(EpollUdpTransportMapping epollUdp) {
+    this.epollUdp = epollUdp;
+  }
+
+  public void trackUdpDrops(UdpDropSampler udpDropSampler) {
+    this.udpDropSampler = udpDropSampler;
+  }
+
+  public void trackDispatcher(ExecutorWorkerPool dispatcher) {
+    this.dispatcher = dispatcher;
+  }
+
+  public void trackJournal(Journal journal) {
+    this.journal = journal;
+  }
+
+  public void trackSpill(SpillQueue spill) {
+    this.spill = spill;
+  }
+
+  public void trackTopicRouter(TopicRouter topicRouter) {
+    this.topicRouter = topicRouter;
+  }
+
+  public void trackTypedSchemas(TypedSchemaCache typedSchemas) {
+    this.typedSchemas = typedSchemas;
+  }
+
+  public void trackMibNames(OidNameResolver mibNames) {
+    this.mibNames = mibNames;
+  }
+
+  public void trackUsm(LocalizedKeyCache usmKeys, UsmUserStore usmUsers) {
+    this.usmKeys = usmKeys;
+    this.usmUsers = usmUsers;
+  }
+
+  public void trackInformResponder(InformResponder informResponder) {
+    this.informResponder = informResponder;
+  }
+
+  public void trackTrapFilter(TrapFilter trapFilter) {
+    this.trapFilter = trapFilter;
+  }
+
+  public void trackDeduplicator(TrapDeduplicator deduplicator) {
+    this.deduplicator = deduplicator;
+  }
+
+  public void trackRateLimiter(SourceRateLimiter<?> rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  public void trackTopSources(HeavyHitters<InetAddress> topPeers, HeavyHitters<?> topTrapOids) {
+    this.topPeers = topPeers;
+    this.topTrapOids = topTrapOids;
   }
 
   @Managed
-  public int getProcessed() {
+  public long getProcessed() {
     return processed.get();
   }
 
   @Managed
-  public int getToProcess() {
+  public long getToProcess() {
     return toProcess.get();
   }
 
   @Managed
-  public int getPolled() {
+  public long getPolled() {
     return polled.get();
   }
+
+  @Managed
+  public long getDroppedNullPdu() {
+    return droppedNullPdu.get();
+  }
+
+  @Managed
+  public long getDroppedNotTrap() {
+    return droppedNotTrap.get();
+  }
+
+  @Managed
+  public long getDroppedRateLimited() {
+    return droppedRateLimited.get();
+  }
+
+  @Managed
+  public long getDroppedFiltered() {
+    return droppedFiltered.get();
+  }
+
+  @Managed(description = "Filter rules with the number of traps each matched")
+  public String[] getFilterRuleHits() {
+    TrapFilter filter = this.trapFilter;
+    return filter == null ? new String[0] : filter.rules().stream().map(TrapFilter.Rule::toString).toArray(String[]::new);
+  }
+
+  @Managed
+  public long getDedupSuppressed() {
+    TrapDeduplicator dedup = this.deduplicator;
+    return dedup == null ? 0L : dedup.suppressed();
+  }
+
+  @Managed
+  public long getDedupWindows() {
+    TrapDeduplicator dedup = this.deduplicator;
+    return dedup == null ? 0L : dedup.size();
+  }
+
+  @Managed
+  public long getRateLimitedSources() {
+    SourceRateLimiter<?> limiter = this.rateLimiter;
+    return limiter == null ? 0L : limiter.size();
+  }
+
+  @Managed
+  @Nested
+  public Histogram getReceiveToEnqueueNanos() {
+    return receiveToEnqueueNanos;
+  }
+
+  @Managed
+  @Nested
+  public Histogram getConversionNanos() {
+    return conversionNanos;
+  }
+
+  @Managed
+  @Nested
+  public Histogram getBufferResidencyNanos() {
+    return bufferResidencyNanos;
+  }
+
+  @Managed
+  @Nested
+  public Histogram getPollBatchSize() {
+    return pollBatchSize;
+  }
+
+  @Managed(description = "Time from receiving an INFORM to sending its acknowledgement")
+  @Nested
+  public Histogram getInformAckNanos() {
+    return informAckNanos;
+  }
+
+  @Managed(description = "Start a new window for all histograms")
+  public void resetHistograms() {
+    receiveToEnqueueNanos.reset();
+    conversionNanos.reset();
+    bufferResidencyNanos.reset();
+    pollBatchSize.reset();
+    informAckNanos.reset();
+  }
+
+  @Managed
+  public int getBufferOccupancy() {
+    RecordBuffer<?> buffer = this.recordBuffer;
+    return buffer == null ? 0 : buffer.size();
+  }
+
+  @Managed
+  public long getBufferOccupancyBytes() {
+    RecordBuffer<?> buffer = this.recordBuffer;
+    return buffer == null ? 0L : buffer.sizeInBytes();
+  }
+
+  @Managed
+  public int getBufferCapacity() {
+    RecordBuffer<?> buffer = this.recordBuffer;
+    return buffer == null ? 0 : buffer.capacity();
+  }
+
+  @Managed
+  public int getBufferHighWaterMark() {
+    RecordBuffer<?> buffer = this.recordBuffer;
+    return buffer == null ? 0 : buffer.highWaterMark();
+  }
+
+  @Managed
+  public long getBufferDroppedNewest() {
+    RecordBuffer<?> buffer = this.recordBuffer;
+    return buffer == null ? 0L : buffer.droppedNewest();
+  }
+
+  @Managed
+  public long getBufferDroppedOldest() {
+    RecordBuffer<?> buffer = this.recordBuffer;
+    return buffer == null ? 0L : buffer.droppedOldest();
+  }
+
+  @Managed
+  public long getBufferDroppedBlockTimeout() {
+    RecordBuffer<?> buffer = this.recordBuffer;
+    return buffer == null ? 0L : buffer.droppedBlockTimeout();
+  }
+
+  @Managed(description = "Bytes written to the journal, including the entry framing")
+  public long getJournalWrittenBytes() {
+    Journal j = this.journal;
+    return j == null ? 0L : j.writtenBytes();
+  }
+
+  @Managed(description = "Journal bytes written per byte of encoded trap")
+  public double getJournalWriteAmplification() {
+    Journal j = this.journal;
+    long appended = j == null ? 0L : j.appendedBytes();
+    return appended == 0L ? 0.0 : (double) j.writtenBytes() / appended;
+  }
+
+  @Managed
+  public long getJournalFsyncs() {
+    Journal j = this.journal;
+    return j == null ? 0L : j.fsyncs();
+  }
+
+  @Managed
+  public long getJournalAverageFsyncMicros() {
+    Journal j = this.journal;
+    long fsyncs = j == null ? 0L : j.fsyncs();
+    return fsyncs == 0L ? 0L : TimeUnit.NANOSECONDS.toMicros(j.fsyncNanos() / fsyncs);
+  }
+
+  @Managed
+  public int getJournalSegments() {
+    Journal j = this.journal;
+    return j == null ? 0 : j.segments();
+  }
+
+  @Managed(description = "Journaled traps not yet acknowledged by Kafka")
+  public long getJournalUnacknowledged() {
+    Journal j = this.journal;
+    return j == null ? 0L : j.unacknowledged();
+  }
+
+  @Managed(description = "Bytes of traps written to the disk spill")
+  public long getSpilledBytes() {
+    SpillQueue queue = this.spill;
+    return queue == null ? 0L : queue.spilledBytes();
+  }
+
+  @Managed(description = "Bytes of traps replayed from the disk spill")
+  public long getSpillReplayedBytes() {
+    SpillQueue queue = this.spill;
+    return queue == null ? 0L : queue.replayedBytes();
+  }
+
+  @Managed(description = "Bytes of traps dropped because the disk spill was full")
+  public long getSpillDroppedBytes() {
+    SpillQueue queue = this.spill;
+    return queue == null ? 0L : queue.droppedBytes();
+  }
+
+  @Managed(description = "Traps dropped because the disk spill was full")
+  public long getSpillDroppedRecords() {
+    SpillQueue queue = this.spill;
+    return queue == null ? 0L : queue.droppedRecords();
+  }
+
+  @Managed
+  public long getSpillBacklogBytes() {
+    SpillQueue queue = this.spill;
+    return queue == null ? 0L : queue.backlogBytes();
+  }
+
+  @Managed
+  public int getSpillBacklogRecords() {
+    SpillQueue queue = this.spill;
+    return queue == null ? 0 : queue.size();
+  }
+
+  @Managed
+  public int getSpillSegments() {
+    SpillQueue queue = this.spill;
+    return queue == null ? 0 : queue.segments();
+  }
+
+  @Managed(description = "Topics with the number of records routed to each")
+  public String[] getTopicRecords() {
+    TopicRouter router = this.topicRouter;
+    return router == null ? new String[0] : router.routes().stream().map(TopicRouter.Route::toString).toArray(String[]::new);
+  }
+
+  @Managed
+  public long getOidCacheSize() {
+    OidStringCache cache = this.oidCache;
+    return cache == null ? 0L : cache.size();
+  }
+
+  @Managed
+  public long getOidCacheHits() {
+    OidStringCache cache = this.oidCache;
+    return cache == null ? 0L : cache.stats().hitCount();
+  }
+
+  @Managed
+  public long getOidCacheMisses() {
+    OidStringCache cache = this.oidCache;
+    return cache == null ? 0L : cache.stats().missCount();
+  }
+
+  @Managed
+  public long getOidCacheEvictions() {
+    OidStringCache cache = this.oidCache;
+    return cache == null ? 0L : cache.stats().evictionCount();
+  }
+
+  @Managed(description = "Trap signatures with a cached TYPED schema")
+  public long getTypedSchemaCacheSize() {
+    TypedSchemaCache cache = this.typedSchemas;
+    return cache == null ? 0L : cache.size();
+  }
+
+  @Managed(description = "Share of traps whose TYPED schema was already cached")
+  public double getTypedSchemaCacheHitRate() {
+    TypedSchemaCache cache = this.typedSchemas;
+    return cache == null ? 0.0 : cache.stats().hitRate();
+  }
+
+  @Managed(description = "TYPED schemas built, one per new or evicted trap signature")
+  public long getTypedSchemasBuilt() {
+    TypedSchemaCache cache = this.typedSchemas;
+    return cache == null ? 0L : cache.stats().missCount();
+  }
+
+  @Managed
+  public long getTypedSchemaCacheEvictions() {
+    TypedSchemaCache cache = this.typedSchemas;
+    return cache == null ? 0L : cache.stats().evictionCount();
+  }
+
+  @Managed(description = "Nodes in the memory-mapped MIB index")
+  public int getMibIndexNodes() {
+    OidNameResolver names = this.mibNames;
+    return names == null ? 0 : names.index().nodes();
+  }
+
+  @Managed
+  public long getMibNameCacheHits() {
+    OidNameResolver names = this.mibNames;
+    return names == null ? 0L : names.hits();
+  }
+
+  @Managed
+  public long getMibNameCacheMisses() {
+    OidNameResolver names = this.mibNames;
+    return names == null ? 0L : names.misses();
+  }
+
+  @Managed
+  public long getInformsReceived() {
+    return informsReceived.get();
+  }
+
+  @Managed(description = "INFORMs waiting to be committed or for their acknowledgement to be sent")
+  public int getInformAcksPending() {
+    InformResponder responder = this.informResponder;
+    return responder == null ? 0 : responder.pending();
+  }
+
+  @Managed
+  public long getInformAcksSent() {
+    InformResponder responder = this.informResponder;
+    return responder == null ? 0L : responder.sent();
+  }
+
+  @Managed
+  public long getInformAcksFailed() {
+    InformResponder responder = this.informResponder;
+    return responder == null ? 0L : responder.failed();
+  }
+
+  @Managed(description = "INFORMs given up because their record was not committed in time")
+  public long getInformAcksExpired() {
+    InformResponder responder = this.informResponder;
+    return responder == null ? 0L : responder.expired();
+  }
+
+  @Managed(description = "INFORMs not acknowledged because too many were pending")
+  public long getInformAcksRejected() {
+    InformResponder responder = this.informResponder;
+    return responder == null ? 0L : responder.rejected();
+  }
+
+  @Managed(description = "Users loaded from usm.users.file")
+  public int getUsmUsers() {
+    UsmUserStore users = this.usmUsers;
+    return users == null ? 0 : users.size();
+  }
+
+  @Managed
+  public long getUsmUserReloads() {
+    UsmUserStore users = this.usmUsers;
+    return users == null ? 0L : users.reloads();
+  }
+
+  @Managed
+  public long getUsmUserFailedReloads() {
+    UsmUserStore users = this.usmUsers;
+    return users == null ? 0L : users.failedReloads();
+  }
+
+  @Managed(description = "Localized USM keys held in memory")
+  public int getUsmLocalizedKeys() {
+    LocalizedKeyCache keys = this.usmKeys;
+    return keys == null ? 0 : keys.size();
+  }
+
+  @Managed
+  public long getUsmKeyCacheHits() {
+    LocalizedKeyCache keys = this.usmKeys;
+    return keys == null ? 0L : keys.hits();
+  }
+
+  @Managed(description = "USM keys localized from passphrases")
+  public long getUsmKeyDerivations() {
+    LocalizedKeyCache keys = this.usmKeys;
+    return keys == null ? 0L : keys.derivations();
+  }
+
+  @Managed
+  public double getUsmKeyDerivationAverageMicros() {
+    LocalizedKeyCache keys = this.usmKeys;
+    long derivations = keys == null ? 0L : keys.derivations();
+    return derivations == 0L ? 0.0 : keys.derivationNanos() / 1000.0 / derivations;
+  }
+
+  @Managed(description = "Agent connections currently open with listen.protocol TCP")
+  public int getTcpOpenConnections() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0 : transport.getOpenConnections();
+  }
+
+  @Managed
+  public long getTcpAcceptedConnections() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0L : transport.getAcceptedConnections();
+  }
+
+  @Managed(description = "TCP connections accepted during the last full second")
+  public long getTcpAcceptRate() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0L : transport.getAcceptRate();
+  }
+
+  @Managed(description = "TCP connections reset because listen.tcp.max.connections were open")
+  public long getTcpRejectedConnections() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0L : transport.getRejectedConnections();
+  }
+
+  @Managed
+  public long getTcpIdleClosedConnections() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0L : transport.getIdleClosedConnections();
+  }
+
+  @Managed
+  public long getTcpBytesRead() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0L : transport.getBytesRead();
+  }
+
+  @Managed
+  public long getTcpMessagesRead() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0L : transport.getMessagesRead();
+  }
+
+  @Managed(description = "TCP connections closed because a message could not be framed")
+  public long getTcpFramingErrors() {
+    NioTcpTransportMapping transport = this.tcpConnections;
+    return transport == null ? 0L : transport.getFramingErrors();
+  }
+
+  @Managed
+  public long[] getUdpSocketPackets() {
+    ReusePortUdpTransportMapping transport = this.udpSockets;
+    return transport == null ? new long[0] : transport.getPacketsPerSocket();
+  }
+
+  @Managed
+  public long[] getUdpSocketBytes() {
+    ReusePortUdpTransportMapping transport = this.udpSockets;
+    return transport == null ? new long[0] : transport.getBytesPerSocket();
+  }
+
+  @Managed(description = "Datagrams received through the epoll transport")
+  public long getEpollUdpPackets() {
+    EpollUdpTransportMapping transport = this.epollUdp;
+    return transport == null ? 0L : transport.getPackets();
+  }
+
+  @Managed
+  public long getEpollUdpBytes() {
+    EpollUdpTransportMapping transport = this.epollUdp;
+    return transport == null ? 0L : transport.getBytes();
+  }
+
+  @Managed(description = "Read wake-ups of the epoll event loops")
+  public long getEpollUdpReads() {
+    EpollUdpTransportMapping transport = this.epollUdp;
+    return transport == null ? 0L : transport.getReads();
+  }
+
+  @Managed(description = "Average datagrams received per read wake-up of the epoll event loops")
+  public double getEpollUdpPacketsPerRead() {
+    EpollUdpTransportMapping transport = this.epollUdp;
+    return transport == null ? 0.0 : transport.getPacketsPerRead();
+  }
+
+  @Managed
+  public long getEpollUdpSendFailures() {
+    EpollUdpTransportMapping transport = this.epollUdp;
+    return transport == null ? 0L : transport.getSendFailures();
+  }
+
+  @Managed
+  public long getUdpKernelDrops() {
+    UdpDropSampler sampler = this.udpDropSampler;
+    return sampler == null ? 0L : sampler.getDrops();
+  }
+
+  @Managed
+  public long getUdpKernelReceiveQueueBytes() {
+    UdpDropSampler sampler = this.udpDropSampler;
+    return sampler == null ? 0L : sampler.getReceiveQueueBytes();
+  }
+
+  @Managed
+  public int getDispatcherInFlight() {
+    ExecutorWorkerPool pool = this.dispatcher;
+    return pool == null ? 0 : pool.getInFlight();
+  }
+
+  @Managed
+  public long getDispatcherRejected() {
+    ExecutorWorkerPool pool = this.dispatcher;
+    return pool == null ? 0L : pool.getRejected();
+  }
+
+  @Managed(description = "Peers sending the most traps over the last one to two windows, with their rate")
+  public String[] getTopPeers() {
+    return describe(this.topPeers);
+  }
+
+  @Managed(description = "Most frequent trap OIDs over the last one to two windows, with their rate")
+  public String[] getTopTrapOids() {
+    return describe(this.topTrapOids);
+  }
+
+  private static String[] describe(HeavyHitters<?> heavyHitters) {
+    if (heavyHitters == null) {
+      return new String[0];
+    }
+    return heavyHitters.top(TOP_N).stream()
+        .map(h -> String.format("%s count=%d error=%d rate=%.1f/s",
+            h.key instanceof InetAddress ? ((InetAddress) h.key).getHostAddress() : h.key, h.count, h.error, h.ratePerSecond))
+        .toArray(String[]::new);
+  }
 }
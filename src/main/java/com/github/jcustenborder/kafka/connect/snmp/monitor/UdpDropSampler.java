@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.monitor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically reads the kernel's UDP socket table (/proc/net/udp and /proc/net/udp6) and sums the drop counter
+ * and receive queue of the sockets bound to the listen port. Datagrams counted here never reached the connector,
+ * which tells a full socket buffer apart from a slow Kafka.
+ * <p>
+ * Only available on Linux; elsewhere the sampler logs once and stays at zero.
+ */
+public class UdpDropSampler implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(UdpDropSampler.class);
+  static final List<Path> PROC_NET_UDP = List.of(Paths.get("/proc/net/udp"), Paths.get("/proc/net/udp6"));
+
+  // Column indexes of a /proc/net/udp line split on whitespace
+  static final int LOCAL_ADDRESS_COLUMN = 1;
+  static final int QUEUES_COLUMN = 4;
+  static final int DROPS_COLUMN = 12;
+
+  private final int port;
+  private final List<Path> files;
+  private final ScheduledExecutorService executor;
+  private volatile long drops;
+  private volatile long receiveQueueBytes;
+  private volatile int sockets;
+
+  public UdpDropSampler(int port, long intervalMs) {
+    this(port, intervalMs, PROC_NET_UDP);
+  }
+
+  UdpDropSampler(int port, long intervalMs, List<Path> files) {
+    this.port = port;
+    this.files = files;
+    this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "UdpDropSampler-" + port);
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (files.stream().noneMatch(Files::isReadable)) {
+      log.info("UdpDropSampler() - {} not readable, kernel UDP drops are not sampled", files);
+    } else {
+      this.executor.scheduleWithFixedDelay(this::sample, 0L, intervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  void sample() {
+    long totalDrops = 0L;
+    long totalQueued = 0L;
+    int matched = 0;
+    for (Path file : files) {
+      if (!Files.isReadable(file)) {
+        continue;
+      }
+      try {
+        for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+          long[] parsed = parseLine(line, port);
+          if (parsed != null) {
+            totalQueued += parsed[0];
+            totalDrops += parsed[1];
+            matched++;
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        log.debug("sample() - Could not read {}", file, e);
+      }
+    }
+    this.receiveQueueBytes = totalQueued;
+    this.drops = totalDrops;
+    this.sockets = matched;
+  }
+
+  /**
+   * @return receive queue bytes and drops of a socket bound to {@code port}, null for other lines and the header
+   */
+  static long[] parseLine(String line, int port) {
+    String[] columns = line.trim().split("\\s+");
+    if (columns.length <= DROPS_COLUMN || !columns[0].endsWith(":")) {
+      return null;
+    }
+    String localAddress = columns[LOCAL_ADDRESS_COLUMN];
+    int separator = localAddress.lastIndexOf(':');
+    if (separator < 0 || Integer.parseInt(localAddress.substring(separator + 1), 16) != port) {
+      return null;
+    }
+    String queues = columns[QUEUES_COLUMN];
+    long receiveQueue = Long.parseLong(queues.substring(queues.indexOf(':') + 1), 16);
+    long socketDrops = Long.parseLong(columns[DROPS_COLUMN]);
+    return new long[]{receiveQueue, socketDrops};
+  }
+
+  public long getDrops() {
+    return drops;
+  }
+
+  public long getReceiveQueueBytes() {
+    return receiveQueueBytes;
+  }
+
+  public int getSockets() {
+    return sockets;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.MessageException;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.mp.StatusInformation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Sends the responses that acknowledge INFORMs from a dedicated thread, so the dispatcher threads never wait on the
+ * transport. Responses are queued and sent in batches of up to {@link #BATCH_SIZE}.
+ * <p>
+ * An INFORM is either acknowledged as soon as it is received, or registered with the record it was converted to and
+ * acknowledged once {@link #committed(Object)} reports that Kafka has the record. A registered INFORM that is not
+ * committed within the timeout is given up without a response; the agent then retransmits it. The number of INFORMs
+ * waiting for a response is bounded, above it new INFORMs are rejected and likewise left to the retransmission.
+ */
+public class InformResponder implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(InformResponder.class);
+  static final int BATCH_SIZE = 256;
+  static final long IDLE_POLL_MS = 100L;
+
+  static final class Pending {
+    final Object record;
+    final CommandResponderEvent<?> event;
+    final long receivedNanos;
+    boolean done;
+
+    Pending(Object record, CommandResponderEvent<?> event, long receivedNanos) {
+      this.record = record;
+      this.event = event;
+      this.receivedNanos = receivedNanos;
+    }
+  }
+
+  private final int maxPending;
+  private final long timeoutNanos;
+  private final LongConsumer latencyListener;
+  private final LinkedBlockingQueue<Pending> responses = new LinkedBlockingQueue<>();
+  // Registered INFORMs waiting for their record to be committed, by record identity and in arrival order
+  private final Map<Object, Pending> uncommitted = new IdentityHashMap<>();
+  private final ArrayDeque<Pending> uncommittedOrder = new ArrayDeque<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final Thread sender;
+  private volatile boolean running = true;
+
+  /**
+   * @param maxPending INFORMs that may wait for a response at the same time
+   * @param timeoutMs how long a registered INFORM waits for its record to be committed
+   * @param latencyListener receives the time in ns from receiving an INFORM to sending its response, may be null
+   */
+  public InformResponder(String name, int maxPending, long timeoutMs, LongConsumer latencyListener) {
+    this.maxPending = maxPending;
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    this.latencyListener = latencyListener;
+    this.sender = new Thread(this::run, name);
+    this.sender.setDaemon(true);
+    this.sender.start();
+  }
+
+  /**
+   * Queues the response to an INFORM.
+   *
+   * @return false if too many INFORMs are waiting for a response
+   */
+  public boolean acknowledge(CommandResponderEvent<?> event, long receivedNanos) {
+    if (!reserve()) {
+      return false;
+    }
+    responses.add(new Pending(null, event, receivedNanos));
+    return true;
+  }
+
+  /**
+   * Holds the response to an INFORM until {@link #committed(Object)} is called with its record.
+   *
+   * @return false if too many INFORMs are waiting for a response
+   */
+  public boolean register(Object record, CommandResponderEvent<?> event, long receivedNanos) {
+    if (!reserve()) {
+      return false;
+    }
+    Pending entry = new Pending(record, event, receivedNanos);
+    synchronized (uncommitted) {
+      uncommitted.put(record, entry);
+      uncommittedOrder.add(entry);
+    }
+    return true;
+  }
+
+  /**
+   * Queues the response for the INFORM the record was converted from, if any.
+   */
+  public void committed(Object record) {
+    Pending entry = take(record);
+    if (entry != null) {
+      responses.add(entry);
+    }
+  }
+
+  /**
+   * Forgets the INFORM the record was converted from without responding, e.g. because the record was dropped.
+   */
+  public void discard(Object record) {
+    if (take(record) != null) {
+      pending.decrementAndGet();
+    }
+  }
+
+  private Pending take(Object record) {
+    synchronized (uncommitted) {
+      if (uncommitted.isEmpty()) {
+        return null;
+      }
+      Pending entry = uncommitted.remove(record);
+      if (entry != null) {
+        entry.done = true;
+      }
+      return entry;
+    }
+  }
+
+  private boolean reserve() {
+    if (pending.incrementAndGet() > maxPending) {
+      pending.decrementAndGet();
+      rejected.increment();
+      return false;
+    }
+    return true;
+  }
+
+  private void run() {
+    List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+    while (running) {
+      try {
+        Pending first = responses.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+          responses.drainTo(batch, BATCH_SIZE - 1);
+          for (Pending entry : batch) {
+            respond(entry);
+          }
+          pending.addAndGet(-batch.size());
+          batch.clear();
+        }
+        expireUncommitted();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.warn("run() - Unexpected error while acknowledging INFORMs", e);
+      }
+    }
+    responses.drainTo(batch);
+    for (Pending entry : batch) {
+      respond(entry);
+    }
+    pending.addAndGet(-batch.size());
+  }
+
+  void respond(Pending entry) {
+    CommandResponderEvent<?> event = entry.event;
+    PDU response = (PDU) event.getPDU().clone();
+    response.setType(PDU.RESPONSE);
+    response.setErrorStatus(PDU.noError);
+    response.setErrorIndex(0);
+    try {
+      int status = event.getMessageDispatcher().returnResponsePdu(event.getMessageProcessingModel(),
+          event.getSecurityModel(), event.getSecurityName(), event.getSecurityLevel(), response,
+          event.getMaxSizeResponsePDU(), event.getStateReference(), new StatusInformation());
+      if (status != SnmpConstants.SNMP_ERROR_SUCCESS) {
+        log.debug("respond() - Could not acknowledge INFORM from {}, status {}", event.getPeerAddress(), status);
+        failed.increment();
+        return;
+      }
+    } catch (MessageException | RuntimeException e) {
+      log.debug("respond() - Could not acknowledge INFORM from {}", event.getPeerAddress(), e);
+      failed.increment();
+      return;
+    }
+    sent.increment();
+    if (latencyListener != null) {
+      latencyListener.accept(System.nanoTime() - entry.receivedNanos);
+    }
+  }
+
+  void expireUncommitted() {
+    long now = System.nanoTime();
+    synchronized (uncommitted) {
+      Pending head;
+      while ((head = uncommittedOrder.peek()) != null) {
+        if (head.done) {
+          uncommittedOrder.poll();
+        } else if (now - head.receivedNanos >= timeoutNanos) {
+          uncommittedOrder.poll();
+          head.done = true;
+          uncommitted.remove(head.record);
+          pending.decrementAndGet();
+          expired.increment();
+        } else {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return INFORMs waiting to be committed or for their response to be sent
+   */
+  public int pending() {
+    return pending.get();
+  }
+
+  public long sent() {
+    return sent.sum();
+  }
+
+  public long failed() {
+    return failed.sum();
+  }
+
+  public long expired() {
+    return expired.sum();
+  }
+
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  /**
+   * Stops the sender after trying to send the responses that are already queued.
+   */
+  @Override
+  public void close() {
+    running = false;
+    try {
+      sender.join(TimeUnit.SECONDS.toMillis(1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (sender.isAlive()) {
+      sender.interrupt();
+    }
+  }
+}
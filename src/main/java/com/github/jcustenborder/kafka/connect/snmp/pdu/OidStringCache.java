@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.snmp4j.smi.OID;
+
+/**
+ * Bounded cache from OID to its dotted string, so OIDs repeated across traps are not formatted again.
+ * <p>
+ * Lookups are keyed by the OID itself (hash and equality over its sub-identifiers), so a hit does not build a
+ * temporary string. The key is copied on a miss because OIDs decoded from a PDU are mutable. Eviction is the
+ * LRU approximation of Guava's cache.
+ */
+public class OidStringCache {
+  private final Cache<OID, String> cache;
+  private final boolean enabled;
+
+  public OidStringCache(int maximumSize) {
+    this.enabled = maximumSize > 0;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(maximumSize, 0))
+        .recordStats()
+        .build();
+  }
+
+  public String toDottedString(OID oid) {
+    if (!enabled) {
+      return oid.toDottedString();
+    }
+    String dotted = cache.getIfPresent(oid);
+    if (dotted == null) {
+      dotted = oid.toDottedString();
+      cache.put(new OID(oid), dotted);
+    }
+    return dotted;
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+}
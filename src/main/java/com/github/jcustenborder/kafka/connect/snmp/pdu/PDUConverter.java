@@ -17,26 +17,44 @@
 package com.github.jcustenborder.kafka.connect.snmp.pdu;
 
 import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfig;
-import com.google.common.base.Charsets;
+import com.github.jcustenborder.kafka.connect.snmp.enums.OutputFormat;
+import com.github.jcustenborder.kafka.connect.snmp.enums.VariableBindingLayout;
+import com.github.jcustenborder.kafka.connect.snmp.mib.OidNameResolver;
+import com.github.jcustenborder.kafka.connect.snmp.utils.Utils;
 import com.google.common.collect.ImmutableMap;
 import org.apache.kafka.common.utils.Time;
+import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.ConnectHeaders;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snmp4j.CommandResponderEvent;
 import org.snmp4j.PDU;
+import org.snmp4j.PDUv1;
+import org.snmp4j.SNMP4JSettings;
+import org.snmp4j.ScopedPDU;
+import org.snmp4j.asn1.BERInputStream;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Opaque;
 import org.snmp4j.smi.SMIConstants;
 import org.snmp4j.smi.Variable;
 import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.util.SimpleOIDTextFormat;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 public class PDUConverter {
   private static final Logger log = LoggerFactory.getLogger(PDUConverter.class);
@@ -60,18 +78,143 @@ public class PDUConverter {
       .field(VariableBindingConstants.FIELD_OPAQUE, SchemaBuilder.string().doc("opaque value.").optional().build())
       .field(VariableBindingConstants.FIELD_TIMETICKS, SchemaBuilder.int32().doc("timeticks value.").optional().build())
       .build();
-  static final Schema VALUE_SCHEMA = SchemaBuilder.struct()
+  public static final Schema VALUE_SCHEMA = SchemaBuilder.struct()
       .name("com.github.jcustenborder.kafka.connect.snmp.Trap")
       .field(ValueSchemaConstants.FIELD_PEER_ADDRESS, SchemaBuilder.string().doc("Remote address of the host sending the trap.").build())
       .field(ValueSchemaConstants.FIELD_SECURITY_NAME, SchemaBuilder.string().doc("Community name the event was sent to.").build())
       .field(ValueSchemaConstants.FIELD_VARIABLES, SchemaBuilder.array(VARIABLE_BINDING_SCHEMA).doc("Variables for this trap.").build())
       .build();
+  static final Schema COMPACT_VARIABLE_BINDING_SCHEMA = SchemaBuilder.struct()
+      .name("com.github.jcustenborder.kafka.connect.snmp.CompactVariableBinding")
+      .field(VariableBindingConstants.FIELD_OID, SchemaBuilder.string().doc("OID.").build())
+      .field(VariableBindingConstants.FIELD_TYPE, SchemaBuilder.string().doc("Syntax type for variable binding.").build())
+      .field(CompactVariableBindingConstants.FIELD_LONG, SchemaBuilder.int64().doc("Counter32, Counter64, Gauge32, Integer or TimeTicks value.").optional().build())
+      .field(CompactVariableBindingConstants.FIELD_STRING, SchemaBuilder.string().doc("IpAddress, OID or octet string value.").optional().build())
+      .field(CompactVariableBindingConstants.FIELD_BYTES, SchemaBuilder.bytes().doc("Opaque value.").optional().build())
+      .build();
+  public static final Schema COMPACT_VALUE_SCHEMA = SchemaBuilder.struct()
+      .name("com.github.jcustenborder.kafka.connect.snmp.CompactTrap")
+      .field(ValueSchemaConstants.FIELD_PEER_ADDRESS, SchemaBuilder.string().doc("Remote address of the host sending the trap.").build())
+      .field(ValueSchemaConstants.FIELD_SECURITY_NAME, SchemaBuilder.string().doc("Community name the event was sent to.").build())
+      .field(ValueSchemaConstants.FIELD_VARIABLES, SchemaBuilder.array(COMPACT_VARIABLE_BINDING_SCHEMA).doc("Variables for this trap.").build())
+      .build();
+  static final Schema NAME_SCHEMA = SchemaBuilder.string().doc("Symbolic name from the MIB index.").optional().build();
+  static final Schema TRAP_NAME_SCHEMA = SchemaBuilder.string().doc("Symbolic name of the snmpTrapOID from the MIB index.").optional().build();
+  // With a MIB index the schemas gain a trailing optional name field, the other fields keep their positions
+  static final Schema NAMED_VARIABLE_BINDING_SCHEMA = withNameField(VARIABLE_BINDING_SCHEMA);
+  static final Schema NAMED_VALUE_SCHEMA = namedValueSchema(VALUE_SCHEMA, NAMED_VARIABLE_BINDING_SCHEMA);
+  static final Schema NAMED_COMPACT_VARIABLE_BINDING_SCHEMA = withNameField(COMPACT_VARIABLE_BINDING_SCHEMA);
+  static final Schema NAMED_COMPACT_VALUE_SCHEMA = namedValueSchema(COMPACT_VALUE_SCHEMA, NAMED_COMPACT_VARIABLE_BINDING_SCHEMA);
+  public static final Schema RAW_VALUE_SCHEMA = SchemaBuilder.bytes()
+      .name("com.github.jcustenborder.kafka.connect.snmp.RawTrap")
+      .doc("BER encoded PDU of the trap, see the snmp.* headers for the rest of the trap.")
+      .build();
+
+  private static Schema withNameField(Schema bindingSchema) {
+    SchemaBuilder builder = SchemaBuilder.struct().name(bindingSchema.name());
+    for (Field field : bindingSchema.fields()) {
+      builder.field(field.name(), field.schema());
+    }
+    return builder.field(VariableBindingConstants.FIELD_NAME, NAME_SCHEMA).build();
+  }
+
+  private static Schema namedValueSchema(Schema valueSchema, Schema namedBindingSchema) {
+    return SchemaBuilder.struct()
+        .name(valueSchema.name())
+        .field(ValueSchemaConstants.FIELD_PEER_ADDRESS, valueSchema.field(ValueSchemaConstants.FIELD_PEER_ADDRESS).schema())
+        .field(ValueSchemaConstants.FIELD_SECURITY_NAME, valueSchema.field(ValueSchemaConstants.FIELD_SECURITY_NAME).schema())
+        .field(ValueSchemaConstants.FIELD_VARIABLES, SchemaBuilder.array(namedBindingSchema).doc("Variables for this trap.").build())
+        .field(ValueSchemaConstants.FIELD_TRAP_NAME, TRAP_NAME_SCHEMA)
+        .build();
+  }
 
-  private final SnmpTrapSourceConnectorConfig config;
+  public static final String HEADER_PEER_ADDRESS = "snmp.peer.address";
+  public static final String HEADER_VERSION = "snmp.version";
+  public static final String HEADER_SECURITY_NAME = "snmp.security.name";
+  public static final String HEADER_RECEIVED_MS = "snmp.received.ms";
+
+  private final boolean validate;
+  private final OidStringCache oidCache;
+  private final TopicRouter topicRouter;
+  private final boolean raw;
+  private final boolean compact;
+  private final Schema bindingSchema;
+  private final Schema valueSchema;
+  private final OidNameResolver names;
+  private final Field peerAddressField;
+  private final Field securityNameField;
+  private final Field variablesField;
+  private final Field bindingNameField;
+  private final Field trapNameField;
+  private final TypedSchemaCache typedSchemas;
 
   public PDUConverter(Time time, SnmpTrapSourceConnectorConfig config) {
+    this(time, config, null);
+  }
+
+  /**
+   * @param names symbolic names added to the trap and its bindings, null for none
+   */
+  public PDUConverter(Time time, SnmpTrapSourceConnectorConfig config, OidNameResolver names) {
+    this(time, config.validateRecords, config.oidCacheSize, config.variableBindingLayout, config.typedSchemaCacheSize,
+        new TopicRouter(config.topic, config.topicRoutes), config.outputFormat, names);
+  }
+
+  /**
+   * Converter that only turns PDUs into values, used to decode raw traps outside of the task.
+   */
+  public PDUConverter(Time time, boolean validate, int oidCacheSize, VariableBindingLayout layout, int typedSchemaCacheSize) {
+    this(time, validate, oidCacheSize, layout, typedSchemaCacheSize, new TopicRouter("", Collections.emptyList()),
+        OutputFormat.STRUCT, null);
+  }
+
+  private PDUConverter(Time time, boolean validate, int oidCacheSize, VariableBindingLayout layout,
+                       int typedSchemaCacheSize, TopicRouter topicRouter, OutputFormat outputFormat,
+                       OidNameResolver names) {
     this.time = time;
-    this.config = config;
+    this.validate = validate;
+    this.oidCache = new OidStringCache(oidCacheSize);
+    this.topicRouter = topicRouter;
+    this.raw = outputFormat == OutputFormat.RAW_BER;
+    this.compact = layout == VariableBindingLayout.COMPACT;
+    this.names = names;
+    if (names == null) {
+      this.bindingSchema = compact ? COMPACT_VARIABLE_BINDING_SCHEMA : VARIABLE_BINDING_SCHEMA;
+      this.valueSchema = compact ? COMPACT_VALUE_SCHEMA : VALUE_SCHEMA;
+    } else {
+      this.bindingSchema = compact ? NAMED_COMPACT_VARIABLE_BINDING_SCHEMA : NAMED_VARIABLE_BINDING_SCHEMA;
+      this.valueSchema = compact ? NAMED_COMPACT_VALUE_SCHEMA : NAMED_VALUE_SCHEMA;
+    }
+    this.peerAddressField = valueSchema.field(ValueSchemaConstants.FIELD_PEER_ADDRESS);
+    this.securityNameField = valueSchema.field(ValueSchemaConstants.FIELD_SECURITY_NAME);
+    this.variablesField = valueSchema.field(ValueSchemaConstants.FIELD_VARIABLES);
+    this.bindingNameField = bindingSchema.field(VariableBindingConstants.FIELD_NAME);
+    this.trapNameField = valueSchema.field(ValueSchemaConstants.FIELD_TRAP_NAME);
+    this.typedSchemas = layout == VariableBindingLayout.TYPED
+        ? new TypedSchemaCache(typedSchemaCacheSize, names != null)
+        : null;
+  }
+
+  /**
+   * @return the schemas of the TYPED layout, null with the other layouts
+   */
+  public TypedSchemaCache getTypedSchemaCache() {
+    return typedSchemas;
+  }
+
+  /**
+   * @return the MIB names, null without a MIB index
+   */
+  public OidNameResolver getNames() {
+    return names;
+  }
+
+  public OidStringCache getOidCache() {
+    return oidCache;
+  }
+
+  public TopicRouter getTopicRouter() {
+    return topicRouter;
   }
 
   static class KeySchemaConstants {
@@ -83,6 +226,7 @@ public class PDUConverter {
     public static final String FIELD_PEER_ADDRESS = "peerAddress";
     public static final String FIELD_SECURITY_NAME = "securityName";
     public static final String FIELD_VARIABLES = "variables";
+    public static final String FIELD_TRAP_NAME = "trapName";
   }
 
   static class VariableBindingConstants {
@@ -98,121 +242,349 @@ public class PDUConverter {
     public static final String FIELD_OCTETSTRING = "octetString";
     public static final String FIELD_OPAQUE = "opaque";
     public static final String FIELD_TIMETICKS = "timeticks";
+    public static final String FIELD_NAME = "name";
   }
 
-  Struct convertVariableBinding(VariableBinding binding) {
-    log.trace("convertVariableBinding() - converting {}", binding);
-    Struct struct = new Struct(VARIABLE_BINDING_SCHEMA);
+  static class CompactVariableBindingConstants {
+    public static final String FIELD_LONG = "long";
+    public static final String FIELD_STRING = "string";
+    public static final String FIELD_BYTES = "bytes";
+  }
 
-    final String oid = binding.getOid().toDottedString();
-    log.trace("convertVariableBinding() - oid = '{}'", oid);
-    struct.put(VariableBindingConstants.FIELD_OID, oid);
+  /**
+   * Fields of the schemas resolved once, so the hot path does not look them up by name for every binding.
+   */
+  static class Fields {
+    static final Field KEY_PEER_ADDRESS = KEY_SCHEMA.field(KeySchemaConstants.FIELD_PEER_ADDRESS);
+
+    static final Field OID = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_OID);
+    static final Field TYPE = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_TYPE);
+    static final Field COUNTER32 = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_COUNTER32);
+    static final Field COUNTER64 = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_COUNTER64);
+    static final Field GAUGE32 = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_GAUGE32);
+    static final Field INTEGER = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_INTEGER);
+    static final Field IPADDRESS = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_IPADDRESS);
+    static final Field NULL = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_NULL);
+    static final Field OBJECTIDENTIFIER = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_OBJECTIDENTIFIER);
+    static final Field OCTETSTRING = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_OCTETSTRING);
+    static final Field OPAQUE = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_OPAQUE);
+    static final Field TIMETICKS = VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_TIMETICKS);
+
+    static final Field COMPACT_OID = COMPACT_VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_OID);
+    static final Field COMPACT_TYPE = COMPACT_VARIABLE_BINDING_SCHEMA.field(VariableBindingConstants.FIELD_TYPE);
+    static final Field COMPACT_LONG = COMPACT_VARIABLE_BINDING_SCHEMA.field(CompactVariableBindingConstants.FIELD_LONG);
+    static final Field COMPACT_STRING = COMPACT_VARIABLE_BINDING_SCHEMA.field(CompactVariableBindingConstants.FIELD_STRING);
+    static final Field COMPACT_BYTES = COMPACT_VARIABLE_BINDING_SCHEMA.field(CompactVariableBindingConstants.FIELD_BYTES);
+  }
+
+  Struct convertVariableBinding(VariableBinding binding) {
+    final boolean trace = log.isTraceEnabled();
+    if (trace) {
+      log.trace("convertVariableBinding() - converting {}", binding);
+    }
+    final String oid = oidCache.toDottedString(binding.getOid());
 
     final Variable variable = binding.getVariable();
-    final String syntaxType;
+    final int syntax = binding.getSyntax();
+    final Field field;
     final Object value;
 
-    log.trace("convertVariableBinding() - binding.getSyntax() = '{}'", binding.getSyntax());
-    switch (binding.getSyntax()) {
+    switch (syntax) {
       case SMIConstants.SYNTAX_COUNTER32:
-        syntaxType = VariableBindingConstants.FIELD_COUNTER32;
+        field = Fields.COUNTER32;
         value = variable.toInt();
         break;
       case SMIConstants.SYNTAX_COUNTER64:
-        syntaxType = VariableBindingConstants.FIELD_COUNTER64;
+        field = Fields.COUNTER64;
         value = variable.toLong();
         break;
       case SMIConstants.SYNTAX_GAUGE32:
-        syntaxType = VariableBindingConstants.FIELD_GAUGE32;
+        field = Fields.GAUGE32;
         value = variable.toInt();
         break;
       case SMIConstants.SYNTAX_INTEGER:
-        syntaxType = VariableBindingConstants.FIELD_INTEGER;
+        field = Fields.INTEGER;
         value = variable.toInt();
         break;
       case SMIConstants.SYNTAX_IPADDRESS:
-        syntaxType = VariableBindingConstants.FIELD_IPADDRESS;
+        field = Fields.IPADDRESS;
         value = variable.toString();
         break;
       case SMIConstants.SYNTAX_NULL:
-        syntaxType = VariableBindingConstants.FIELD_NULL;
+        field = Fields.NULL;
         value = null;
         break;
       case SMIConstants.SYNTAX_OBJECT_IDENTIFIER:
-        syntaxType = VariableBindingConstants.FIELD_OBJECTIDENTIFIER;
-        value = variable.toString();
+        field = Fields.OBJECTIDENTIFIER;
+        // OID.toString() only equals the dotted form with the default text format
+        value = SNMP4JSettings.getOIDTextFormat() instanceof SimpleOIDTextFormat
+            ? oidCache.toDottedString((OID) variable)
+            : variable.toString();
         break;
       case SMIConstants.SYNTAX_OCTET_STRING:
-        syntaxType = VariableBindingConstants.FIELD_OCTETSTRING;
+        field = Fields.OCTETSTRING;
         value = variable.toString();
         break;
       case SMIConstants.SYNTAX_OPAQUE:
-        syntaxType = VariableBindingConstants.FIELD_OPAQUE;
+        field = Fields.OPAQUE;
         value = variable.toString();
         break;
       case SMIConstants.SYNTAX_TIMETICKS:
-        syntaxType = VariableBindingConstants.FIELD_TIMETICKS;
+        field = Fields.TIMETICKS;
         value = variable.toInt();
         break;
       default:
         throw new UnsupportedOperationException(
-            String.format("%s is an unsupported syntaxType.", binding.getSyntax())
+            String.format("%s is an unsupported syntaxType.", syntax)
         );
     }
 
-    log.trace("convertVariableBinding() - syntaxType = '{}'", syntaxType);
-    struct.put(VariableBindingConstants.FIELD_TYPE, syntaxType);
-    log.trace("convertVariableBinding() - Setting field '{}' to '{}'.", syntaxType, value);
-    struct.put(syntaxType, value);
-    struct.validate();
+    if (trace) {
+      log.trace("convertVariableBinding() - oid = '{}' syntaxType = '{}' value = '{}'", oid, field.name(), value);
+    }
+    final Struct struct;
+    if (compact) {
+      struct = new Struct(bindingSchema);
+      struct.put(Fields.COMPACT_OID, oid);
+      struct.put(Fields.COMPACT_TYPE, field.name());
+      if (value instanceof Number) {
+        // toLong() keeps the unsigned 32 bit types positive where toInt() wraps them
+        struct.put(Fields.COMPACT_LONG, variable.toLong());
+      } else if (field == Fields.OPAQUE) {
+        struct.put(Fields.COMPACT_BYTES, ((Opaque) variable).getValue());
+      } else if (value != null) {
+        struct.put(Fields.COMPACT_STRING, value);
+      }
+    } else {
+      struct = new Struct(bindingSchema);
+      struct.put(Fields.OID, oid);
+      // The field name doubles as the type tag
+      struct.put(Fields.TYPE, field.name());
+      struct.put(field, value);
+    }
+    if (names != null) {
+      struct.put(bindingNameField, names.resolve(binding.getOid()));
+    }
+    if (validate) {
+      struct.validate();
+    }
     return struct;
   }
 
-  static final Map<String, Object> EMPTY = ImmutableMap.of();
+  public static final Map<String, Object> EMPTY = ImmutableMap.of();
 
   public SourceRecord convert(CommandResponderEvent<?> event) {
-    Struct key = new Struct(KEY_SCHEMA);
-    Struct value = new Struct(VALUE_SCHEMA);
+    return convert(event, EMPTY, EMPTY);
+  }
 
-    final PDU pdu = event.getPDU();
+  /**
+   * @param sourcePartition the journal the trap was written to
+   * @param sourceOffset the trap's position in the journal
+   */
+  public SourceRecord convert(CommandResponderEvent<?> event, Map<String, ?> sourcePartition, Map<String, ?> sourceOffset) {
+    return convert(event, this.time.milliseconds(), sourcePartition, sourceOffset);
+  }
+
+  /**
+   * @param receivedMillis the record timestamp, the one the journaled copy of the trap carries
+   */
+  public SourceRecord convert(CommandResponderEvent<?> event, long receivedMillis, Map<String, ?> sourcePartition,
+                              Map<String, ?> sourceOffset) {
+    return convert(event, receivedMillis, null, sourcePartition, sourceOffset);
+  }
 
-    final String peerAddress = event.getPeerAddress().toString();
-    final String securityName = new String(event.getSecurityName(), Charsets.UTF_8);
-    log.trace("convert() - peerAddress = '{}'", peerAddress);
-    log.trace("convert() - securityName = '{}'", securityName);
+  /**
+   * @param receivedBer the PDU as received, written as is by the RAW_BER output format; null to encode the decoded
+   *     PDU, see {@link RawCapturingMessageDispatcher#receivedPdu()}
+   */
+  public SourceRecord convert(CommandResponderEvent<?> event, long receivedMillis, byte[] receivedBer,
+                              Map<String, ?> sourcePartition, Map<String, ?> sourceOffset) {
+    return convert(event.getPeerAddress(), event.getSecurityName(), event.getPDU(), receivedMillis, receivedBer,
+        sourcePartition, sourceOffset);
+  }
 
-    key.put(KeySchemaConstants.FIELD_PEER_ADDRESS, peerAddress);
-    value.put(ValueSchemaConstants.FIELD_PEER_ADDRESS, peerAddress);
-    value.put(ValueSchemaConstants.FIELD_SECURITY_NAME, securityName);
+  /**
+   * Converts a trap replayed from the disk spill or the journal, keeping the time it was received as the record
+   * timestamp.
+   */
+  public SourceRecord convert(SpilledTrap trap, Map<String, ?> sourcePartition, Map<String, ?> sourceOffset) {
+    return convert(trap.peerAddress(), trap.securityName(), trap.pdu(), trap.receivedMillis(), null, sourcePartition,
+        sourceOffset);
+  }
 
-    List<VariableBinding> pduContents = Arrays.asList(pdu.toArray());
+  SourceRecord convert(Address address, byte[] securityNameBytes, PDU pdu, long timestamp, byte[] receivedBer,
+                       Map<String, ?> sourcePartition, Map<String, ?> sourceOffset) {
+    Struct key = new Struct(KEY_SCHEMA);
 
-    if (!pduContents.isEmpty()) {
-      AtomicInteger ai = new AtomicInteger(0);
+    final String peerAddress = address.toString();
+    final String securityName = new String(securityNameBytes, StandardCharsets.UTF_8);
+    if (log.isTraceEnabled()) {
+      log.trace("convert() - peerAddress = '{}' securityName = '{}'", peerAddress, securityName);
+    }
+    key.put(Fields.KEY_PEER_ADDRESS, peerAddress);
 
-      List<Struct> bindingStructs = pduContents
-          .stream()
-          .map((vb) -> {
-            log.trace("convert() - processing VariableBinding({})", ai.getAndIncrement());
-            return convertVariableBinding(vb);
-          })
-          .collect(Collectors.toList());
+    final String topic = this.topicRouter.isEmpty()
+        ? this.topicRouter.route(null, null, null).topic()
+        : this.topicRouter.route(Utils.inetAddressOf(address), securityName, Utils.trapOidOf(pdu)).topic();
 
-      log.trace("convert() - Setting {} variables to {}", bindingStructs.size(), ValueSchemaConstants.FIELD_VARIABLES);
-      value.put(ValueSchemaConstants.FIELD_VARIABLES, bindingStructs);
+    if (raw) {
+      ConnectHeaders headers = new ConnectHeaders();
+      headers.addString(HEADER_PEER_ADDRESS, peerAddress);
+      headers.addInt(HEADER_VERSION, versionOf(pdu));
+      headers.addString(HEADER_SECURITY_NAME, securityName);
+      headers.addLong(HEADER_RECEIVED_MS, timestamp);
+      return new SourceRecord(
+          sourcePartition,
+          sourceOffset,
+          topic,
+          null,
+          KEY_SCHEMA,
+          key,
+          RAW_VALUE_SCHEMA,
+          receivedBer != null ? receivedBer : encodeRaw(pdu),
+          timestamp,
+          headers
+      );
     }
 
+    final Struct value = convertValue(peerAddress, securityName, pdu);
     return new SourceRecord(
-        EMPTY,
-        EMPTY,
-        this.config.topic,
+        sourcePartition,
+        sourceOffset,
+        topic,
         null,
         KEY_SCHEMA,
         key,
-        VALUE_SCHEMA,
+        value.schema(),
         value,
-        this.time.milliseconds()
+        timestamp
     );
   }
 
+  /**
+   * Builds the value struct of a trap, its schema depends on the variable binding layout.
+   */
+  public Struct convertValue(String peerAddress, String securityName, PDU pdu) {
+    if (typedSchemas != null) {
+      return convertTypedValue(peerAddress, securityName, pdu);
+    }
+    final boolean trace = log.isTraceEnabled();
+    Struct value = new Struct(valueSchema);
+    value.put(peerAddressField, peerAddress);
+    value.put(securityNameField, securityName);
+
+    final int size = pdu.size();
+    if (size > 0) {
+      List<Struct> bindingStructs = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        bindingStructs.add(convertVariableBinding(pdu.get(i)));
+      }
+
+      if (trace) {
+        log.trace("convert() - Setting {} variables to {}", size, ValueSchemaConstants.FIELD_VARIABLES);
+      }
+      value.put(variablesField, bindingStructs);
+    }
+    if (names != null) {
+      value.put(trapNameField, names.resolve(Utils.trapOidOf(pdu)));
+    }
+    return value;
+  }
+
+  private Struct convertTypedValue(String peerAddress, String securityName, PDU pdu) {
+    final OID trapOid = Utils.trapOidOf(pdu);
+    final Schema schema = typedSchemas.schemaFor(trapOid, pdu);
+    final List<Field> fields = schema.fields();
+    Struct value = new Struct(schema);
+    // The typed schemas start with the same two fields as VALUE_SCHEMA
+    value.put(fields.get(0), peerAddress);
+    value.put(fields.get(1), securityName);
+    final int size = pdu.size();
+    for (int i = 0; i < size; i++) {
+      value.put(fields.get(i + 2), typedValue(pdu.get(i)));
+    }
+    if (names != null) {
+      value.put(fields.get(size + 2), names.resolve(trapOid));
+    }
+    if (validate) {
+      value.validate();
+    }
+    return value;
+  }
+
+  /**
+   * Value of a binding as stored by the TYPED layout, see {@link TypedSchemaCache#fieldSchema(int)}.
+   */
+  Object typedValue(VariableBinding binding) {
+    final Variable variable = binding.getVariable();
+    switch (binding.getSyntax()) {
+      case SMIConstants.SYNTAX_COUNTER32:
+      case SMIConstants.SYNTAX_COUNTER64:
+      case SMIConstants.SYNTAX_GAUGE32:
+      case SMIConstants.SYNTAX_INTEGER:
+      case SMIConstants.SYNTAX_TIMETICKS:
+        return variable.toLong();
+      case SMIConstants.SYNTAX_OPAQUE:
+        return ((Opaque) variable).getValue();
+      case SMIConstants.SYNTAX_NULL:
+        return null;
+      case SMIConstants.SYNTAX_OBJECT_IDENTIFIER:
+        return SNMP4JSettings.getOIDTextFormat() instanceof SimpleOIDTextFormat
+            ? oidCache.toDottedString((OID) variable)
+            : variable.toString();
+      case SMIConstants.SYNTAX_IPADDRESS:
+      case SMIConstants.SYNTAX_OCTET_STRING:
+        return variable.toString();
+      default:
+        throw new UnsupportedOperationException(
+            String.format("%s is an unsupported syntaxType.", binding.getSyntax())
+        );
+    }
+  }
+
+  /**
+   * @return the value of the {@link #HEADER_VERSION} header, one of the {@link SnmpConstants} versions
+   */
+  static int versionOf(PDU pdu) {
+    if (pdu instanceof ScopedPDU) {
+      return SnmpConstants.version3;
+    }
+    return pdu instanceof PDUv1 ? SnmpConstants.version1 : SnmpConstants.version2c;
+  }
+
+  static byte[] encodeRaw(PDU pdu) {
+    ByteBuffer buffer = ByteBuffer.allocate(pdu.getBERLength());
+    try {
+      pdu.encodeBER(new BEROutputStream(buffer));
+    } catch (IOException e) {
+      throw new DataException("Could not BER encode " + pdu, e);
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Decodes the value of a {@link OutputFormat#RAW_BER} record.
+   *
+   * @param version value of the {@link #HEADER_VERSION} header
+   */
+  public static PDU decodeRaw(byte[] ber, int version) {
+    final PDU pdu;
+    switch (version) {
+      case SnmpConstants.version1:
+        pdu = new PDUv1();
+        break;
+      case SnmpConstants.version3:
+        pdu = new ScopedPDU();
+        break;
+      default:
+        pdu = new PDU();
+    }
+    try {
+      pdu.decodeBER(new BERInputStream(ByteBuffer.wrap(ber)));
+    } catch (IOException e) {
+      throw new DataException("Could not decode BER encoded trap", e);
+    }
+    return pdu;
+  }
+
 }
@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.asn1.BER;
+import org.snmp4j.asn1.BERInputStream;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Address;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Message dispatcher that keeps the message being dispatched visible to the command responder, so the RAW_BER
+ * output can pass the PDU through as received instead of encoding the decoded PDU again.
+ * <p>
+ * The command responder runs on the thread that dispatches the message, also behind a
+ * {@link org.snmp4j.util.MultiThreadedMessageDispatcher}, so the message is kept in a thread local for the duration
+ * of the dispatch.
+ */
+public class RawCapturingMessageDispatcher extends MessageDispatcherImpl {
+  private static final ThreadLocal<ByteBuffer> MESSAGE = new ThreadLocal<>();
+
+  @Override
+  public <A extends Address> void processMessage(TransportMapping<? super A> sourceTransport, A incomingAddress,
+                                                 BERInputStream wholeMessage, TransportStateReference tmStateReference) {
+    MESSAGE.set(wholeMessage.getBuffer().duplicate());
+    try {
+      super.processMessage(sourceTransport, incomingAddress, wholeMessage, tmStateReference);
+    } finally {
+      MESSAGE.remove();
+    }
+  }
+
+  /**
+   * @return the BER encoded PDU of the SNMPv1 or SNMPv2c message dispatched on this thread, null outside of a
+   *     dispatch or for SNMPv3 messages, whose PDU may be encrypted
+   */
+  public static byte[] receivedPdu() {
+    ByteBuffer message = MESSAGE.get();
+    return message == null ? null : communityPdu(message);
+  }
+
+  /**
+   * Slices the PDU out of {@code SEQUENCE { version INTEGER, community OCTET STRING, pdu }}.
+   */
+  static byte[] communityPdu(ByteBuffer message) {
+    ByteBuffer buffer = message.duplicate();
+    BERInputStream in = new BERInputStream(buffer);
+    BER.MutableByte type = new BER.MutableByte();
+    try {
+      int length = BER.decodeHeader(in, type);
+      if (type.getValue() != BER.SEQUENCE) {
+        return null;
+      }
+      long end = in.getPosition() + length;
+      int version = BER.decodeInteger(in, type);
+      if (version != SnmpConstants.version1 && version != SnmpConstants.version2c) {
+        return null;
+      }
+      in.skip(BER.decodeHeader(in, type));
+      int start = (int) in.getPosition();
+      if (end > buffer.limit() || end <= start) {
+        return null;
+      }
+      byte[] pdu = new byte[(int) end - start];
+      buffer.get(start, pdu);
+      return pdu;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
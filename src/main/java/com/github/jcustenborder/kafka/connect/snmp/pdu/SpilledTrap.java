@@ -0,0 +1,126 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.snmp4j.PDU;
+import org.snmp4j.PDUv1;
+import org.snmp4j.ScopedPDU;
+import org.snmp4j.asn1.BERInputStream;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.TcpAddress;
+import org.snmp4j.smi.TransportIpAddress;
+import org.snmp4j.smi.UdpAddress;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary form of a received trap for the disk spill: arrival time, peer, security name and the PDU in
+ * its BER encoding, so a trap costs about as much on disk as it did on the wire and is converted only when replayed.
+ * <pre>
+ * long receivedMillis | byte transport | byte address length | address | short port
+ * | short security name length | security name | byte PDU kind | BER encoded PDU
+ * </pre>
+ */
+public final class SpilledTrap {
+  static final byte TRANSPORT_UDP = 1;
+  static final byte TRANSPORT_TCP = 2;
+  static final byte KIND_PDU = 0;
+  static final byte KIND_SCOPED_PDU = 1;
+  static final byte KIND_PDU_V1 = 2;
+
+  private final Address peerAddress;
+  private final byte[] securityName;
+  private final PDU pdu;
+  private final long receivedMillis;
+
+  SpilledTrap(Address peerAddress, byte[] securityName, PDU pdu, long receivedMillis) {
+    this.peerAddress = peerAddress;
+    this.securityName = securityName;
+    this.pdu = pdu;
+    this.receivedMillis = receivedMillis;
+  }
+
+  public Address peerAddress() {
+    return peerAddress;
+  }
+
+  public byte[] securityName() {
+    return securityName;
+  }
+
+  public PDU pdu() {
+    return pdu;
+  }
+
+  public long receivedMillis() {
+    return receivedMillis;
+  }
+
+  /**
+   * @return the encoded trap, null if the peer is not a UDP or TCP address
+   */
+  public static byte[] encode(Address peerAddress, byte[] securityName, PDU pdu, long receivedMillis) throws IOException {
+    final byte transport;
+    // Exact classes, subclasses such as TlsAddress would not survive the round trip
+    if (peerAddress != null && peerAddress.getClass() == UdpAddress.class) {
+      transport = TRANSPORT_UDP;
+    } else if (peerAddress != null && peerAddress.getClass() == TcpAddress.class) {
+      transport = TRANSPORT_TCP;
+    } else {
+      return null;
+    }
+    byte[] address = ((TransportIpAddress) peerAddress).getInetAddress().getAddress();
+    byte[] name = securityName == null ? new byte[0] : securityName;
+    ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 2 + address.length + Short.BYTES
+        + Short.BYTES + name.length + 1 + pdu.getBERLength());
+    buffer.putLong(receivedMillis);
+    buffer.put(transport);
+    buffer.put((byte) address.length);
+    buffer.put(address);
+    buffer.putShort((short) ((TransportIpAddress) peerAddress).getPort());
+    buffer.putShort((short) name.length);
+    buffer.put(name);
+    buffer.put(pdu instanceof ScopedPDU ? KIND_SCOPED_PDU : pdu instanceof PDUv1 ? KIND_PDU_V1 : KIND_PDU);
+    pdu.encodeBER(new BEROutputStream(buffer));
+    return buffer.array();
+  }
+
+  public static SpilledTrap decode(byte[] bytes) throws IOException {
+    return decode(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Decodes the trap from the buffer's position to its limit.
+   */
+  public static SpilledTrap decode(ByteBuffer buffer) throws IOException {
+    long receivedMillis = buffer.getLong();
+    byte transport = buffer.get();
+    byte[] address = new byte[buffer.get()];
+    buffer.get(address);
+    int port = buffer.getShort() & 0xFFFF;
+    InetAddress inetAddress = InetAddress.getByAddress(address);
+    Address peerAddress = transport == TRANSPORT_TCP ? new TcpAddress(inetAddress, port) : new UdpAddress(inetAddress, port);
+    byte[] securityName = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(securityName);
+    byte kind = buffer.get();
+    PDU pdu = kind == KIND_SCOPED_PDU ? new ScopedPDU() : kind == KIND_PDU_V1 ? new PDUv1() : new PDU();
+    pdu.decodeBER(new BERInputStream(buffer.slice()));
+    return new SpilledTrap(peerAddress, securityName, pdu, receivedMillis);
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import com.github.jcustenborder.kafka.connect.snmp.filter.CidrTrie;
+import com.github.jcustenborder.kafka.connect.snmp.filter.OidPrefixTrie;
+import org.snmp4j.smi.OID;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the Kafka topic of a trap from its trap OID, peer network or security name.
+ * <p>
+ * Routes are written as {@code oid:1.3.6.1.4.1.9=cisco-traps}, {@code peer:10.0.0.0/8=lab-traps} or
+ * {@code security.name:public=public-traps}. The longest matching trap OID prefix wins, then the most specific peer
+ * network, then the security name; a trap matching none goes to the default topic. OID prefixes and networks are
+ * compiled into tries and security names into a hash map when the task starts, so a lookup does not get slower with
+ * more routes. Every topic counts the records routed to it.
+ */
+public class TopicRouter {
+  static final String OID_PREFIX = "oid:";
+  static final String PEER_PREFIX = "peer:";
+  static final String SECURITY_NAME_PREFIX = "security.name:";
+  private static final Pattern DOTTED_OID = Pattern.compile("\\d+(\\.\\d+)*");
+
+  public static final class Route {
+    private final String topic;
+    private final LongAdder records = new LongAdder();
+
+    Route(String topic) {
+      this.topic = topic;
+    }
+
+    public String topic() {
+      return topic;
+    }
+
+    public long records() {
+      return records.sum();
+    }
+
+    @Override
+    public String toString() {
+      return topic + " records=" + records();
+    }
+  }
+
+  private final Route defaultRoute;
+  private final Map<String, Route> routesByTopic = new LinkedHashMap<>();
+  private final OidPrefixTrie<Route> trapOids = new OidPrefixTrie<>();
+  private final CidrTrie<Route> peers = new CidrTrie<>();
+  private final Map<String, Route> securityNames = new HashMap<>();
+
+  /**
+   * @throws IllegalArgumentException if a route is malformed
+   */
+  public TopicRouter(String defaultTopic, List<String> routes) {
+    this.defaultRoute = route(defaultTopic);
+    for (String entry : routes) {
+      String value = entry.trim();
+      int equals = value.lastIndexOf('=');
+      if (equals < 0 || equals == value.length() - 1) {
+        throw new IllegalArgumentException("Expected <type>:<match>=<topic> but was " + value);
+      }
+      String match = value.substring(0, equals).trim();
+      Route route = route(value.substring(equals + 1).trim());
+      if (match.startsWith(OID_PREFIX)) {
+        String oid = match.substring(OID_PREFIX.length()).trim();
+        oid = oid.startsWith(".") ? oid.substring(1) : oid;
+        if (!DOTTED_OID.matcher(oid).matches()) {
+          throw new IllegalArgumentException("Not a dotted numeric OID in " + value);
+        }
+        this.trapOids.put(new OID(oid), route);
+      } else if (match.startsWith(PEER_PREFIX)) {
+        this.peers.put(match.substring(PEER_PREFIX.length()).trim(), route);
+      } else if (match.startsWith(SECURITY_NAME_PREFIX)) {
+        this.securityNames.put(match.substring(SECURITY_NAME_PREFIX.length()), route);
+      } else {
+        throw new IllegalArgumentException("Route must start with oid:, peer: or security.name: but was " + value);
+      }
+    }
+  }
+
+  private Route route(String topic) {
+    return routesByTopic.computeIfAbsent(topic, Route::new);
+  }
+
+  /**
+   * @return true if every trap goes to the default topic
+   */
+  public boolean isEmpty() {
+    return trapOids.isEmpty() && peers.isEmpty() && securityNames.isEmpty();
+  }
+
+  /**
+   * Finds the route of a trap and counts the record against it.
+   *
+   * @param peer the peer's IP address, null if the transport has none
+   * @param securityName the community or USM user name, null if unknown
+   * @param trapOid the value of snmpTrapOID.0, null if the trap has none
+   */
+  public Route route(InetAddress peer, String securityName, OID trapOid) {
+    Route route = null;
+    if (trapOid != null && !trapOids.isEmpty()) {
+      route = trapOids.longestPrefix(trapOid);
+    }
+    if (route == null && peer != null && !peers.isEmpty()) {
+      route = peers.longestPrefix(peer);
+    }
+    if (route == null && securityName != null && !securityNames.isEmpty()) {
+      route = securityNames.get(securityName);
+    }
+    if (route == null) {
+      route = defaultRoute;
+    }
+    route.records.increment();
+    return route;
+  }
+
+  public Collection<Route> routes() {
+    return Collections.unmodifiableCollection(routesByTopic.values());
+  }
+}
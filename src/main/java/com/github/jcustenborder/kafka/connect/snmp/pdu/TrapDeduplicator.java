@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Suppresses retransmissions of a trap within a time window.
+ * <p>
+ * A trap is identified by its peer and every variable binding (which includes snmpTrapOID.0) except the ignored
+ * OIDs, so values that change between retransmissions such as sysUpTime.0 do not defeat it. The bindings are
+ * compared with equals(), a 64 bit hash of them only spreads the keys, so traps that merely collide on hashCode()
+ * are never taken for one another.
+ * The first trap of a window is emitted; duplicates within {@code windowMs} of it are counted and dropped. When
+ * the window expires with duplicates, the last duplicate is handed to the {@link ExpiredListener} together with
+ * the count so it can be emitted as a summary.
+ * <p>
+ * Windows live in a Guava cache bounded by {@code maxEntries}. Expiry follows the cache's write order queue, it
+ * only looks at the oldest entries and never scans the whole map.
+ */
+public class TrapDeduplicator {
+  public static final String SUPPRESSED_COUNT_HEADER = "snmp.dedup.suppressed";
+
+  public interface ExpiredListener {
+    void expired(CommandResponderEvent<?> lastDuplicate, int suppressed);
+  }
+
+  static final class Window {
+    final AtomicInteger suppressed = new AtomicInteger();
+    volatile CommandResponderEvent<?> lastDuplicate;
+  }
+
+  /**
+   * The peer and the compared bindings of a trap. The bindings belong to a decoded PDU that is not reused.
+   */
+  static final class Key {
+    final Object peer;
+    final List<VariableBinding> bindings;
+    final int hash;
+
+    Key(Object peer, PDU pdu, Set<OID> ignoredOids) {
+      this.peer = peer;
+      this.bindings = new ArrayList<>(pdu.size());
+      for (int i = 0; i < pdu.size(); i++) {
+        VariableBinding variableBinding = pdu.get(i);
+        if (!ignoredOids.contains(variableBinding.getOid())) {
+          this.bindings.add(variableBinding);
+        }
+      }
+      long hash = TrapDeduplicator.hash(peer, pdu, ignoredOids);
+      this.hash = (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hash == other.hash && Objects.equals(peer, other.peer) && bindings.equals(other.bindings);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private final Cache<Key, Window> windows;
+  private final Set<OID> ignoredOids;
+  private final LongAdder suppressed = new LongAdder();
+
+  public TrapDeduplicator(long windowMs, int maxEntries, Collection<OID> ignoredOids, ExpiredListener listener) {
+    this(windowMs, maxEntries, ignoredOids, listener, Ticker.systemTicker());
+  }
+
+  TrapDeduplicator(long windowMs, int maxEntries, Collection<OID> ignoredOids, ExpiredListener listener, Ticker ticker) {
+    this.ignoredOids = new HashSet<>(ignoredOids);
+    this.windows = CacheBuilder.newBuilder()
+        .ticker(ticker)
+        .expireAfterWrite(windowMs, TimeUnit.MILLISECONDS)
+        .maximumSize(maxEntries)
+        .removalListener((RemovalNotification<Key, Window> notification) -> {
+          Window window = notification.getValue();
+          if (notification.wasEvicted() && window != null && window.suppressed.get() > 0) {
+            listener.expired(window.lastDuplicate, window.suppressed.get());
+          }
+        })
+        .build();
+  }
+
+  /**
+   * @return true if the trap repeats one seen within the window and should be dropped
+   */
+  public boolean isDuplicate(Object peer, CommandResponderEvent<?> event) {
+    Window window = windows.asMap().putIfAbsent(new Key(peer, event.getPDU(), ignoredOids), new Window());
+    if (window == null) {
+      return false;
+    }
+    window.lastDuplicate = event;
+    window.suppressed.incrementAndGet();
+    suppressed.increment();
+    return true;
+  }
+
+  /**
+   * Expires windows that are due. Guava otherwise only expires entries while the cache is being written to.
+   */
+  public void cleanUp() {
+    windows.cleanUp();
+  }
+
+  public long size() {
+    return windows.size();
+  }
+
+  public long suppressed() {
+    return suppressed.sum();
+  }
+
+  static long hash(Object peer, PDU pdu, Set<OID> ignoredOids) {
+    long hash = mix(0xcbf29ce484222325L, peer == null ? 0 : peer.hashCode());
+    for (int i = 0; i < pdu.size(); i++) {
+      VariableBinding variableBinding = pdu.get(i);
+      if (ignoredOids.contains(variableBinding.getOid())) {
+        continue;
+      }
+      hash = mix(hash, variableBinding.getOid().hashCode());
+      hash = mix(hash, variableBinding.getVariable().hashCode());
+    }
+    // Murmur3 finalizer, spreads the FNV state over all 64 bits
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static long mix(long hash, int value) {
+    return (hash ^ value) * 0x100000001b3L;
+  }
+}
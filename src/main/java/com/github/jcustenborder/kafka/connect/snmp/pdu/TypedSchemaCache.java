@@ -0,0 +1,198 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.SMIConstants;
+import org.snmp4j.smi.VariableBinding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Bounded cache of the flat value schemas of the TYPED layout, one per trap signature: the trap OID and the OID and
+ * syntax of every variable binding in order. A trap with a known signature reuses the schema instance, so neither
+ * the schema nor its fields are built on the hot path and a schema registry sees the same schema every time.
+ * <p>
+ * The schema has the peer address and security name followed by one optional field per binding, named after
+ * its OID ({@code oid_1_3_6_1_2_1_1_3_0}). Numeric types are int64, opaque values bytes and all others strings.
+ * Names are derived from the signature only, so they are stable across restarts and tasks. With a MIB index a
+ * trailing optional trapName field holds the symbolic name of the trap OID.
+ */
+public class TypedSchemaCache {
+  static final String SCHEMA_NAME_PREFIX = "com.github.jcustenborder.kafka.connect.snmp.typed.Trap";
+
+  private final Cache<Signature, Schema> cache;
+  private final boolean trapName;
+
+  public TypedSchemaCache(int maximumSize) {
+    this(maximumSize, false);
+  }
+
+  public TypedSchemaCache(int maximumSize, boolean trapName) {
+    this.trapName = trapName;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Lookup key, holds the PDU's OIDs until a miss copies them.
+   */
+  static final class Signature {
+    private final OID trapOid;
+    private final OID[] oids;
+    private final int[] syntaxes;
+    private final int hash;
+
+    Signature(OID trapOid, OID[] oids, int[] syntaxes) {
+      this.trapOid = trapOid;
+      this.oids = oids;
+      this.syntaxes = syntaxes;
+      this.hash = 31 * (31 * (trapOid == null ? 0 : trapOid.hashCode()) + Arrays.hashCode(oids)) + Arrays.hashCode(syntaxes);
+    }
+
+    static Signature of(OID trapOid, PDU pdu) {
+      final int size = pdu.size();
+      OID[] oids = new OID[size];
+      int[] syntaxes = new int[size];
+      for (int i = 0; i < size; i++) {
+        VariableBinding binding = pdu.get(i);
+        oids[i] = binding.getOid();
+        syntaxes[i] = binding.getSyntax();
+      }
+      return new Signature(trapOid, oids, syntaxes);
+    }
+
+    Signature copy() {
+      OID[] copies = new OID[oids.length];
+      for (int i = 0; i < oids.length; i++) {
+        copies[i] = new OID(oids[i]);
+      }
+      return new Signature(trapOid == null ? null : new OID(trapOid), copies, syntaxes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Signature)) {
+        return false;
+      }
+      Signature other = (Signature) o;
+      return hash == other.hash
+          && Arrays.equals(syntaxes, other.syntaxes)
+          && Arrays.equals(oids, other.oids)
+          && (trapOid == null ? other.trapOid == null : trapOid.equals(other.trapOid));
+    }
+  }
+
+  /**
+   * @param trapOid snmpTrapOID of the trap, null if it has none
+   * @return the schema for the trap's signature, built on the first trap with it
+   */
+  public Schema schemaFor(OID trapOid, PDU pdu) {
+    Signature signature = Signature.of(trapOid, pdu);
+    Schema schema = cache.getIfPresent(signature);
+    if (schema == null) {
+      Signature key = signature.copy();
+      schema = build(key, trapName);
+      cache.put(key, schema);
+    }
+    return schema;
+  }
+
+  static Schema build(Signature signature, boolean trapName) {
+    StringBuilder name = new StringBuilder(SCHEMA_NAME_PREFIX);
+    if (signature.trapOid != null) {
+      name.append('_').append(signature.trapOid.toDottedString().replace('.', '_'));
+    }
+    // A digest of the text form is stable across JVMs, and unlike a 32 bit hash two signatures of one trap OID
+    // will not share a schema name in practice
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < signature.oids.length; i++) {
+      text.append(signature.oids[i].toDottedString()).append(':').append(signature.syntaxes[i]).append(',');
+    }
+    name.append('_').append(Hashing.sha256().hashString(text, StandardCharsets.UTF_8).toString(), 0, 16);
+
+    SchemaBuilder builder = SchemaBuilder.struct()
+        .name(name.toString())
+        .doc(signature.trapOid == null ? "Trap without snmpTrapOID." : "Trap " + signature.trapOid.toDottedString() + ".")
+        .field(PDUConverter.ValueSchemaConstants.FIELD_PEER_ADDRESS, SchemaBuilder.string().doc("Remote address of the host sending the trap.").build())
+        .field(PDUConverter.ValueSchemaConstants.FIELD_SECURITY_NAME, SchemaBuilder.string().doc("Community name the event was sent to.").build());
+    Set<String> fieldNames = new HashSet<>();
+    for (int i = 0; i < signature.oids.length; i++) {
+      String dotted = signature.oids[i].toDottedString();
+      String fieldName = "oid_" + dotted.replace('.', '_');
+      if (!fieldNames.add(fieldName)) {
+        // The same OID twice in one trap, suffixed with the binding index
+        fieldName = fieldName + "__" + i;
+        fieldNames.add(fieldName);
+      }
+      builder.field(fieldName, fieldSchema(signature.syntaxes[i]).doc(dotted).build());
+    }
+    if (trapName) {
+      builder.field(PDUConverter.ValueSchemaConstants.FIELD_TRAP_NAME, PDUConverter.TRAP_NAME_SCHEMA);
+    }
+    return builder.build();
+  }
+
+  static SchemaBuilder fieldSchema(int syntax) {
+    switch (syntax) {
+      case SMIConstants.SYNTAX_COUNTER32:
+      case SMIConstants.SYNTAX_COUNTER64:
+      case SMIConstants.SYNTAX_GAUGE32:
+      case SMIConstants.SYNTAX_INTEGER:
+      case SMIConstants.SYNTAX_TIMETICKS:
+        return SchemaBuilder.int64().optional();
+      case SMIConstants.SYNTAX_OPAQUE:
+        return SchemaBuilder.bytes().optional();
+      case SMIConstants.SYNTAX_IPADDRESS:
+      case SMIConstants.SYNTAX_NULL:
+      case SMIConstants.SYNTAX_OBJECT_IDENTIFIER:
+      case SMIConstants.SYNTAX_OCTET_STRING:
+        return SchemaBuilder.string().optional();
+      default:
+        throw new UnsupportedOperationException(
+            String.format("%s is an unsupported syntaxType.", syntax)
+        );
+    }
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.transforms;
+
+import com.github.jcustenborder.kafka.connect.snmp.enums.VariableBindingLayout;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.PDUConverter;
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigDef.Importance;
+import org.apache.kafka.common.config.ConfigDef.Type;
+import org.apache.kafka.common.utils.Time;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.header.Header;
+import org.apache.kafka.connect.header.Headers;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.snmp4j.PDU;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Turns a trap written with output.format RAW_BER back into the struct the connector writes with STRUCT, so the
+ * BER decoding can be done by the consumers that need the variable bindings instead of in the connector.
+ * Records without a raw trap value are passed on unchanged.
+ *
+ * @param <R>
+ */
+public class DecodeRawTrap<R extends ConnectRecord<R>> implements Transformation<R> {
+  public static final String OID_CACHE_SIZE_CONF = "oid.cache.size";
+  static final String OID_CACHE_SIZE_DOC = "Maximum number of OIDs whose dotted string form is cached between traps. 0 disables the cache.";
+  static final int OID_CACHE_SIZE_DEFAULT = 10_000;
+
+  public static final String VARIABLE_BINDING_LAYOUT_CONF = "variable.binding.layout";
+  static final String VARIABLE_BINDING_LAYOUT_DOC = "Layout of the decoded variable bindings, SPARSE or COMPACT as with converter.variable.binding.layout.";
+  static final String VARIABLE_BINDING_LAYOUT_DEFAULT = VariableBindingLayout.SPARSE.name();
+
+  public static final String TYPED_SCHEMA_CACHE_SIZE_CONF = "typed.schema.cache.size";
+  static final String TYPED_SCHEMA_CACHE_SIZE_DOC = "Maximum number of trap signatures whose TYPED schema is cached.";
+  static final int TYPED_SCHEMA_CACHE_SIZE_DEFAULT = 1_000;
+
+  public static final ConfigDef CONFIG_DEF = new ConfigDef()
+      .define(OID_CACHE_SIZE_CONF, Type.INT, OID_CACHE_SIZE_DEFAULT, ConfigDef.Range.atLeast(0), Importance.LOW, OID_CACHE_SIZE_DOC)
+      .define(VARIABLE_BINDING_LAYOUT_CONF, Type.STRING, VARIABLE_BINDING_LAYOUT_DEFAULT,
+          ConfigDef.ValidString.in(Arrays.stream(VariableBindingLayout.values()).map(Enum::toString).toArray(String[]::new)),
+          Importance.MEDIUM, VARIABLE_BINDING_LAYOUT_DOC)
+      .define(TYPED_SCHEMA_CACHE_SIZE_CONF, Type.INT, TYPED_SCHEMA_CACHE_SIZE_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, TYPED_SCHEMA_CACHE_SIZE_DOC);
+
+  private PDUConverter converter;
+
+  @Override
+  public void configure(Map<String, ?> settings) {
+    AbstractConfig config = new AbstractConfig(CONFIG_DEF, settings);
+    this.converter = new PDUConverter(Time.SYSTEM, false, config.getInt(OID_CACHE_SIZE_CONF),
+        VariableBindingLayout.valueOf(config.getString(VARIABLE_BINDING_LAYOUT_CONF).toUpperCase()),
+        config.getInt(TYPED_SCHEMA_CACHE_SIZE_CONF));
+  }
+
+  @Override
+  public R apply(R record) {
+    if (record.valueSchema() == null || !PDUConverter.RAW_VALUE_SCHEMA.name().equals(record.valueSchema().name())) {
+      return record;
+    }
+    Headers headers = record.headers();
+    PDU pdu = PDUConverter.decodeRaw((byte[]) record.value(), ((Number) header(headers, PDUConverter.HEADER_VERSION)).intValue());
+    Struct value = converter.convertValue(
+        (String) header(headers, PDUConverter.HEADER_PEER_ADDRESS),
+        (String) header(headers, PDUConverter.HEADER_SECURITY_NAME),
+        pdu
+    );
+    return record.newRecord(
+        record.topic(),
+        record.kafkaPartition(),
+        record.keySchema(),
+        record.key(),
+        value.schema(),
+        value,
+        record.timestamp(),
+        headers
+    );
+  }
+
+  private static Object header(Headers headers, String key) {
+    Header header = headers.lastWithName(key);
+    if (header == null || header.value() == null) {
+      throw new DataException("Raw trap is missing the " + key + " header");
+    }
+    return header.value();
+  }
+
+  @Override
+  public ConfigDef config() {
+    return CONFIG_DEF;
+  }
+
+  @Override
+  public void close() {
+  }
+}
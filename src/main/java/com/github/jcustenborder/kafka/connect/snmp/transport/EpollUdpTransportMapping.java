@@ -0,0 +1,318 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.UdpTransportMapping;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UDP transport on the native Linux epoll transport of Netty. Every socket is read by its own event loop with
+ * recvmmsg, up to {@code batchSize} datagrams per system call, into a pooled direct buffer that the datagrams are
+ * sliced from. With more than one socket they share the port through SO_REUSEPORT, as in
+ * {@link ReusePortUdpTransportMapping}.
+ * <p>
+ * A datagram longer than {@code maxDatagramBytes} is truncated by the kernel and then fails to decode, so the limit
+ * has to cover the largest trap expected.
+ */
+public class EpollUdpTransportMapping extends UdpTransportMapping implements ReceiveBufferSized {
+  private static final Logger log = LoggerFactory.getLogger(EpollUdpTransportMapping.class);
+
+  public static final int DEFAULT_BATCH_SIZE = 32;
+  public static final int DEFAULT_MAX_DATAGRAM_BYTES = 4096;
+  static final long SHUTDOWN_TIMEOUT_MS = 1000L;
+
+  private final int socketCount;
+  private final int batchSize;
+  private final int maxDatagramBytes;
+  private final boolean reusePort;
+  private final Channel[] channels;
+  private final LongAdder packets = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder reads = new LongAdder();
+  private final LongAdder sendFailures = new LongAdder();
+  private EventLoopGroup group;
+  private volatile UdpAddress boundAddress;
+  private volatile boolean listening;
+  private int priority = Thread.NORM_PRIORITY;
+  private int receiveBufferSize;
+
+  /**
+   * @param socketCount number of sockets and event loop threads
+   * @param batchSize maximum number of datagrams read with one recvmmsg call
+   * @param maxDatagramBytes room reserved for every datagram of a batch
+   * @param reusePort set SO_REUSEPORT even with a single socket, to share the port with other tasks
+   */
+  public EpollUdpTransportMapping(UdpAddress udpAddress, int socketCount, int batchSize, int maxDatagramBytes,
+                                  boolean reusePort) {
+    super(udpAddress);
+    if (socketCount < 1) {
+      throw new IllegalArgumentException("socketCount must be at least 1, was " + socketCount);
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize must be at least 1, was " + batchSize);
+    }
+    this.socketCount = socketCount;
+    this.batchSize = batchSize;
+    this.maxDatagramBytes = maxDatagramBytes;
+    this.reusePort = reusePort || socketCount > 1;
+    this.channels = new Channel[socketCount];
+  }
+
+  public static boolean isAvailable() {
+    return Epoll.isAvailable();
+  }
+
+  @Override
+  public synchronized void listen() throws IOException {
+    if (listening) {
+      throw new IllegalStateException("Transport mapping is already listening on " + udpAddress);
+    }
+    if (!Epoll.isAvailable()) {
+      throw new IOException("The native epoll transport is not available", Epoll.unavailabilityCause());
+    }
+    EventLoopGroup loops = new EpollEventLoopGroup(socketCount,
+        new DefaultThreadFactory("EpollUdpTransportMapping_" + udpAddress, true, priority));
+    Bootstrap bootstrap = new Bootstrap()
+        .group(loops)
+        .channel(EpollDatagramChannel.class)
+        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        // A receive buffer with room for more than one datagram makes the channel read with recvmmsg
+        .option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, maxDatagramBytes)
+        .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(batchSize * maxDatagramBytes))
+        .option(EpollChannelOption.SO_REUSEPORT, reusePort)
+        .handler(new Receiver());
+    if (receiveBufferSize > 0) {
+      bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+    }
+    InetSocketAddress bindAddress = new InetSocketAddress(udpAddress.getInetAddress(), udpAddress.getPort());
+    try {
+      for (int i = 0; i < socketCount; i++) {
+        ChannelFuture bound = bootstrap.bind(bindAddress).awaitUninterruptibly();
+        if (!bound.isSuccess()) {
+          throw new IOException("Failed to bind " + udpAddress, bound.cause());
+        }
+        channels[i] = bound.channel();
+      }
+    } catch (IOException | RuntimeException e) {
+      closeChannels();
+      loops.shutdownGracefully(0L, SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      throw e;
+    }
+    InetSocketAddress local = (InetSocketAddress) channels[0].localAddress();
+    this.boundAddress = new UdpAddress(local.getAddress(), local.getPort());
+    this.group = loops;
+    this.listening = true;
+    log.info("listen() - Listening on {} with {} epoll socket(s), up to {} datagram(s) of {} byte(s) per read",
+        udpAddress, socketCount, batchSize, maxDatagramBytes);
+  }
+
+  private class Receiver extends SimpleChannelInboundHandler<DatagramPacket> {
+    Receiver() {
+      super(DatagramPacket.class, true);
+    }
+
+    @Override
+    public boolean isSharable() {
+      return true;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) {
+      ByteBuf content = packet.content();
+      int length = content.readableBytes();
+      packets.increment();
+      bytes.add(length);
+
+      ByteBuffer message;
+      if (isAsyncMsgProcessingSupported()) {
+        // The dispatcher keeps the buffer past this call, but the slice goes back to the pool once it returns
+        byte[] copy = new byte[length];
+        content.readBytes(copy);
+        message = ByteBuffer.wrap(copy);
+      } else {
+        message = content.nioBuffer();
+      }
+
+      InetSocketAddress from = packet.sender();
+      UdpAddress peer = new UdpAddress(from.getAddress(), from.getPort());
+      TransportStateReference stateReference = new TransportStateReference(
+          EpollUdpTransportMapping.this, udpAddress, null, SecurityLevel.undefined, SecurityLevel.undefined, false,
+          ctx.channel()
+      );
+      try {
+        fireProcessMessage(peer, message, stateReference);
+      } catch (RuntimeException e) {
+        log.error("channelRead0() - Failed to process message from {} on {}", peer, udpAddress, e);
+      }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+      reads.increment();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      log.warn("exceptionCaught() - Failed to read from {}", udpAddress, cause);
+    }
+  }
+
+  @Override
+  public void sendMessage(UdpAddress targetAddress, byte[] message, TransportStateReference tmStateReference,
+                          long timeoutMillis, int maxRetries) throws IOException {
+    Channel channel = null;
+    if (tmStateReference != null && tmStateReference.getSessionID() instanceof Channel) {
+      channel = (Channel) tmStateReference.getSessionID();
+    }
+    if (channel == null) {
+      channel = channels[0];
+    }
+    if (channel == null || !channel.isActive()) {
+      throw new IOException("Transport mapping is not listening on " + udpAddress);
+    }
+    InetSocketAddress target = new InetSocketAddress(targetAddress.getInetAddress(), targetAddress.getPort());
+    // Not awaited, the caller may be running on the event loop itself
+    channel.writeAndFlush(new DatagramPacket(Unpooled.wrappedBuffer(message), target)).addListener(future -> {
+      if (!future.isSuccess()) {
+        sendFailures.increment();
+        log.debug("sendMessage() - Failed to send {} byte(s) to {}", message.length, targetAddress, future.cause());
+      }
+    });
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    listening = false;
+    closeChannels();
+    EventLoopGroup loops = this.group;
+    this.group = null;
+    if (loops != null) {
+      loops.shutdownGracefully(0L, SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS).awaitUninterruptibly(SHUTDOWN_TIMEOUT_MS * 2);
+    }
+  }
+
+  private void closeChannels() {
+    for (int i = 0; i < socketCount; i++) {
+      Channel channel = channels[i];
+      channels[i] = null;
+      if (channel != null) {
+        channel.close().awaitUninterruptibly(SHUTDOWN_TIMEOUT_MS);
+      }
+    }
+  }
+
+  /**
+   * Sets SO_RCVBUF for every socket, takes effect on the next listen().
+   */
+  public void setReceiveBufferSize(int receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
+  @Override
+  public int getEffectiveReceiveBufferSize() {
+    Channel channel = channels[0];
+    if (channel == null) {
+      return -1;
+    }
+    return channel.config().getOption(ChannelOption.SO_RCVBUF);
+  }
+
+  @Override
+  public UdpAddress getListenAddress() {
+    UdpAddress bound = boundAddress;
+    return bound != null ? bound : udpAddress;
+  }
+
+  @Override
+  public boolean isListening() {
+    return listening;
+  }
+
+  @Override
+  public synchronized void setPriority(int newPriority) {
+    this.priority = newPriority;
+    EventLoopGroup loops = this.group;
+    if (loops != null) {
+      for (EventExecutor loop : loops) {
+        loop.execute(() -> Thread.currentThread().setPriority(newPriority));
+      }
+    }
+  }
+
+  @Override
+  public int getPriority() {
+    return priority;
+  }
+
+  public int getSocketCount() {
+    return socketCount;
+  }
+
+  public long getPackets() {
+    return packets.sum();
+  }
+
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  /**
+   * Read wake-ups of the event loops, each reading one or more recvmmsg batches.
+   */
+  public long getReads() {
+    return reads.sum();
+  }
+
+  /**
+   * Average number of datagrams handed to the dispatcher per read wake-up, 1 means nothing was batched.
+   */
+  public double getPacketsPerRead() {
+    long currentReads = reads.sum();
+    return currentReads == 0L ? 0.0 : (double) packets.sum() / currentReads;
+  }
+
+  public long getSendFailures() {
+    return sendFailures.sum();
+  }
+}
@@ -0,0 +1,671 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.smi.TcpAddress;
+import org.snmp4j.transport.AbstractSocketEntry;
+import org.snmp4j.transport.DefaultTcpTransportMapping;
+import org.snmp4j.transport.MessageLength;
+import org.snmp4j.transport.MessageLengthDecoder;
+import org.snmp4j.transport.TcpTransportMapping;
+import org.snmp4j.transport.TransportType;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TCP transport for many long-lived agent connections. One thread accepts connections and hands them round robin
+ * to a number of selector threads, which read and frame the SNMP messages and pass them to the message dispatcher.
+ * <p>
+ * Connections above the maximum are reset as soon as they are accepted, and connections that send nothing for the
+ * idle timeout are closed. Reads go into a buffer per selector thread; a connection only holds a buffer of its own
+ * while a message is incomplete, sized to that message, so idle connections cost no buffer memory. When accept
+ * fails, for example because the process is out of file descriptors, the acceptor backs off for up to a second.
+ */
+public class NioTcpTransportMapping extends TcpTransportMapping<NioTcpTransportMapping.Connection> implements ReceiveBufferSized {
+  private static final Logger log = LoggerFactory.getLogger(NioTcpTransportMapping.class);
+  public static final int DEFAULT_READ_BUFFER_BYTES = 64 * 1024;
+  static final long MAX_SELECT_MS = 1000L;
+  static final long MIN_ACCEPT_BACKOFF_MS = 10L;
+  static final long MAX_ACCEPT_BACKOFF_MS = 1000L;
+  static final int MAX_PENDING_WRITES = 1024;
+
+  private final int maxConnections;
+  private final long idleTimeoutNanos;
+  private final int readBufferBytes;
+  private final int selectorCount;
+  private final int receiveBufferSize;
+  private final boolean reusePort;
+  private final Map<TcpAddress, Connection> connections = new ConcurrentHashMap<>();
+  private final AtomicInteger openConnections = new AtomicInteger();
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder idleClosed = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder messagesRead = new LongAdder();
+  private final LongAdder framingErrors = new LongAdder();
+  private final AcceptRate acceptRate = new AcceptRate();
+  private MessageLengthDecoder messageLengthDecoder = new DefaultTcpTransportMapping.SnmpMesssageLengthDecoder();
+  private volatile ServerSocketChannel server;
+  private volatile TcpAddress boundAddress;
+  private volatile Reactor[] reactors;
+  private volatile Thread acceptor;
+  private volatile boolean listening;
+  private volatile int effectiveReceiveBufferSize = -1;
+  private int priority = Thread.NORM_PRIORITY;
+
+  /**
+   * @param maxConnections connections held open at the same time
+   * @param idleTimeoutMs how long a connection may send nothing before it is closed, 0 to keep it open
+   * @param readBufferBytes bytes read from a connection at once
+   * @param selectorThreads threads reading connections, 0 for one per available processor
+   * @param receiveBufferSize SO_RCVBUF inherited by accepted connections, 0 for the operating system default
+   * @param reusePort bind with SO_REUSEPORT, so several tasks in one host can accept on the same port
+   */
+  public NioTcpTransportMapping(TcpAddress tcpAddress, int maxConnections, long idleTimeoutMs, int readBufferBytes,
+                                int selectorThreads, int receiveBufferSize, boolean reusePort) {
+    super(tcpAddress);
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("maxConnections must be at least 1, was " + maxConnections);
+    }
+    this.maxConnections = maxConnections;
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+    this.readBufferBytes = readBufferBytes;
+    this.selectorCount = selectorThreads > 0 ? selectorThreads : Runtime.getRuntime().availableProcessors();
+    this.receiveBufferSize = receiveBufferSize;
+    this.reusePort = reusePort;
+  }
+
+  /**
+   * A connection accepted from an agent.
+   */
+  public final class Connection extends AbstractSocketEntry<TcpAddress> {
+    private final Reactor reactor;
+    private final TransportStateReference stateReference;
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private volatile SelectionKey key;
+    // Incomplete message in write mode, only touched by the reactor thread
+    private ByteBuffer partial;
+    private volatile long lastReadNanos = System.nanoTime();
+    private boolean closed;
+
+    Connection(TcpAddress peerAddress, SocketChannel channel, Reactor reactor) {
+      super(peerAddress, channel);
+      this.reactor = reactor;
+      this.stateReference = new TransportStateReference(NioTcpTransportMapping.this, peerAddress, null,
+          SecurityLevel.undefined, SecurityLevel.undefined, false, this);
+    }
+
+    synchronized void write(ByteBuffer message) throws IOException {
+      if (closed) {
+        throw new IOException("Connection to " + getPeerAddress() + " is closed");
+      }
+      if (pendingWrites.isEmpty() && key != null) {
+        socketChannel.write(message);
+      }
+      if (message.hasRemaining()) {
+        if (pendingWrites.size() >= MAX_PENDING_WRITES) {
+          throw new IOException("Connection to " + getPeerAddress() + " does not read its responses");
+        }
+        pendingWrites.add(message);
+        if (key != null) {
+          key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+          reactor.selector.wakeup();
+        }
+      }
+    }
+
+    synchronized void flush() throws IOException {
+      while (!pendingWrites.isEmpty()) {
+        ByteBuffer message = pendingWrites.peek();
+        socketChannel.write(message);
+        if (message.hasRemaining()) {
+          return;
+        }
+        pendingWrites.poll();
+      }
+      key.interestOps(SelectionKey.OP_READ);
+    }
+
+    synchronized void registered(SelectionKey key) {
+      this.key = key;
+      if (!pendingWrites.isEmpty()) {
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    }
+
+    /**
+     * @return false if the connection was already closed
+     */
+    synchronized boolean markClosed() {
+      if (closed) {
+        return false;
+      }
+      closed = true;
+      pendingWrites.clear();
+      return true;
+    }
+
+    @Override
+    public void closeSession() {
+      closeConnection(this);
+    }
+
+    @Override
+    public Object getSessionID() {
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return "Connection[" + getPeerAddress() + "]";
+    }
+  }
+
+  final class Reactor implements Runnable {
+    final Selector selector;
+    final ByteBuffer readBuffer;
+    final ConcurrentLinkedQueue<Connection> registrations = new ConcurrentLinkedQueue<>();
+    Thread thread;
+    private long nextIdleCheckNanos;
+
+    Reactor() throws IOException {
+      this.selector = Selector.open();
+      this.readBuffer = ByteBuffer.allocateDirect(readBufferBytes);
+    }
+
+    void register(Connection connection) {
+      registrations.add(connection);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      final long selectMs = idleTimeoutNanos > 0L
+          ? Math.max(1L, Math.min(MAX_SELECT_MS, TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 4)) : MAX_SELECT_MS;
+      while (listening) {
+        try {
+          selector.select(selectMs);
+          Connection registration;
+          while ((registration = registrations.poll()) != null) {
+            try {
+              registration.registered(registration.getSocketChannel().register(selector, SelectionKey.OP_READ, registration));
+            } catch (ClosedChannelException e) {
+              closeConnection(registration);
+            }
+          }
+          Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+          while (selected.hasNext()) {
+            SelectionKey key = selected.next();
+            selected.remove();
+            handle(key);
+          }
+          if (idleTimeoutNanos > 0L) {
+            evictIdle();
+          }
+        } catch (IOException | RuntimeException e) {
+          if (listening) {
+            log.warn("run() - Selector failed on {}", getListenAddress(), e);
+          }
+        }
+      }
+      for (SelectionKey key : selector.keys()) {
+        closeConnection((Connection) key.attachment());
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        log.debug("run() - Could not close selector", e);
+      }
+    }
+
+    private void handle(SelectionKey key) {
+      Connection connection = (Connection) key.attachment();
+      try {
+        if (key.isValid() && key.isReadable()) {
+          read(connection);
+        }
+        if (key.isValid() && key.isWritable()) {
+          connection.flush();
+        }
+      } catch (IOException | RuntimeException e) {
+        log.debug("handle() - Closing {}", connection, e);
+        closeConnection(connection);
+      }
+    }
+
+    private void read(Connection connection) throws IOException {
+      ByteBuffer buffer = readBuffer;
+      buffer.clear();
+      int read = connection.getSocketChannel().read(buffer);
+      if (read < 0) {
+        closeConnection(connection);
+        return;
+      }
+      if (read == 0) {
+        return;
+      }
+      bytesRead.add(read);
+      connection.lastReadNanos = System.nanoTime();
+      buffer.flip();
+      ByteBuffer data = buffer;
+      if (connection.partial != null) {
+        data = ensureRemaining(connection.partial, buffer.remaining()).put(buffer);
+        data.flip();
+      }
+      int incomplete = frame(connection, data);
+      if (!data.hasRemaining()) {
+        connection.partial = null;
+      } else if (data == buffer) {
+        connection.partial = ByteBuffer.allocate(Math.max(data.remaining(), incomplete)).put(data);
+      } else {
+        connection.partial = data.compact();
+      }
+    }
+
+    private void evictIdle() {
+      long now = System.nanoTime();
+      if (now - nextIdleCheckNanos < 0L) {
+        return;
+      }
+      nextIdleCheckNanos = now + Math.min(idleTimeoutNanos / 4, TimeUnit.MILLISECONDS.toNanos(MAX_SELECT_MS));
+      for (SelectionKey key : selector.keys()) {
+        Connection connection = (Connection) key.attachment();
+        if (now - connection.lastReadNanos >= idleTimeoutNanos) {
+          log.debug("evictIdle() - Closing idle {}", connection);
+          idleClosed.increment();
+          closeConnection(connection);
+        }
+      }
+    }
+  }
+
+  static ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return buffer;
+    }
+    ByteBuffer larger = ByteBuffer.allocate(buffer.position() + bytes);
+    buffer.flip();
+    return larger.put(buffer);
+  }
+
+  /**
+   * Passes every complete message in {@code data} to the dispatcher and leaves the rest in it.
+   *
+   * @return length of the incomplete message at the start of the rest, 0 if its header is incomplete as well
+   */
+  int frame(Connection connection, ByteBuffer data) throws IOException {
+    while (data.remaining() >= messageLengthDecoder.getMinHeaderLength()) {
+      // The decoder reports the header length as an absolute position, so it must see the message at offset 0
+      MessageLength length = messageLengthDecoder.getMessageLength(data.slice());
+      int total = length.getMessageLength();
+      if (total <= 0 || total > getMaxInboundMessageSize()) {
+        framingErrors.increment();
+        throw new IOException("Message of " + total + " bytes from " + connection.getPeerAddress()
+            + " exceeds the maximum of " + getMaxInboundMessageSize());
+      }
+      if (data.remaining() < total) {
+        return total;
+      }
+      byte[] message = new byte[total];
+      data.get(message);
+      messagesRead.increment();
+      fireProcessMessage(connection.getPeerAddress(), ByteBuffer.wrap(message), connection.stateReference);
+    }
+    return 0;
+  }
+
+  @Override
+  public synchronized void listen() throws IOException {
+    if (listening) {
+      throw new IllegalStateException("Transport mapping is already listening on " + tcpAddress);
+    }
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    Reactor[] started = new Reactor[selectorCount];
+    try {
+      channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      if (reusePort) {
+        channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+      }
+      if (receiveBufferSize > 0) {
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+      }
+      effectiveReceiveBufferSize = channel.getOption(StandardSocketOptions.SO_RCVBUF);
+      channel.bind(new InetSocketAddress(tcpAddress.getInetAddress(), tcpAddress.getPort()), maxConnections);
+      for (int i = 0; i < selectorCount; i++) {
+        started[i] = new Reactor();
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      for (Reactor reactor : started) {
+        if (reactor != null) {
+          reactor.selector.close();
+        }
+      }
+      throw e;
+    }
+    InetSocketAddress local = (InetSocketAddress) channel.getLocalAddress();
+    this.boundAddress = new TcpAddress(local.getAddress(), local.getPort());
+    this.server = channel;
+    this.reactors = started;
+    this.listening = true;
+    for (int i = 0; i < selectorCount; i++) {
+      Thread thread = new Thread(started[i], "NioTcpTransportMapping_" + tcpAddress + "-" + i);
+      thread.setDaemon(true);
+      thread.setPriority(priority);
+      started[i].thread = thread;
+      thread.start();
+    }
+    Thread thread = new Thread(this::accept, "NioTcpTransportMapping_" + tcpAddress + "-accept");
+    thread.setDaemon(true);
+    thread.setPriority(priority);
+    this.acceptor = thread;
+    thread.start();
+    log.info("listen() - Listening on {} with {} selector thread(s), at most {} connection(s)",
+        boundAddress, selectorCount, maxConnections);
+  }
+
+  private void accept() {
+    final ServerSocketChannel channel = this.server;
+    final Reactor[] started = this.reactors;
+    int next = 0;
+    long backoffMs = 0L;
+    while (listening) {
+      SocketChannel socket;
+      try {
+        socket = channel.accept();
+        backoffMs = 0L;
+      } catch (ClosedChannelException e) {
+        break;
+      } catch (IOException e) {
+        if (!listening) {
+          break;
+        }
+        // Errors such as EMFILE persist until connections close, retrying at once would spin and flood the log
+        if (backoffMs == 0L) {
+          log.warn("accept() - Failed to accept a connection on {}, backing off", boundAddress, e);
+        } else {
+          log.debug("accept() - Failed to accept a connection on {}", boundAddress, e);
+        }
+        backoffMs = Math.min(MAX_ACCEPT_BACKOFF_MS, Math.max(MIN_ACCEPT_BACKOFF_MS, backoffMs * 2));
+        try {
+          Thread.sleep(backoffMs);
+        } catch (InterruptedException interrupted) {
+          break;
+        }
+        continue;
+      }
+      try {
+        if (openConnections.get() >= maxConnections) {
+          rejected.increment();
+          socket.setOption(StandardSocketOptions.SO_LINGER, 0);
+          socket.close();
+          continue;
+        }
+        socket.configureBlocking(false);
+        InetSocketAddress remote = (InetSocketAddress) socket.getRemoteAddress();
+        TcpAddress peer = new TcpAddress(remote.getAddress(), remote.getPort());
+        Reactor reactor = started[next];
+        next = next + 1 == started.length ? 0 : next + 1;
+        Connection connection = new Connection(peer, socket, reactor);
+        openConnections.incrementAndGet();
+        accepted.increment();
+        acceptRate.record(System.nanoTime());
+        Connection previous = connections.put(peer, connection);
+        if (previous != null) {
+          closeConnection(previous);
+        }
+        reactor.register(connection);
+      } catch (IOException e) {
+        log.debug("accept() - Could not set up connection", e);
+        try {
+          socket.close();
+        } catch (IOException ignored) {
+          // already failing
+        }
+      }
+    }
+  }
+
+  void closeConnection(Connection connection) {
+    if (!connection.markClosed()) {
+      return;
+    }
+    connections.remove(connection.getPeerAddress(), connection);
+    openConnections.decrementAndGet();
+    SelectionKey key = connection.key;
+    if (key != null) {
+      key.cancel();
+    }
+    try {
+      connection.getSocketChannel().close();
+    } catch (IOException e) {
+      log.debug("closeConnection() - Could not close {}", connection, e);
+    }
+  }
+
+  @Override
+  public void sendMessage(TcpAddress address, byte[] message, TransportStateReference tmStateReference,
+                          long timeoutMillis, int maxRetries) throws IOException {
+    Connection connection = null;
+    if (tmStateReference != null && tmStateReference.getSessionID() instanceof Connection) {
+      connection = (Connection) tmStateReference.getSessionID();
+    }
+    if (connection == null) {
+      connection = connections.get(address);
+    }
+    if (connection == null) {
+      throw new IOException("No connection from " + address + " to respond to");
+    }
+    connection.write(ByteBuffer.wrap(message));
+  }
+
+  @Override
+  public synchronized boolean close(TcpAddress remoteAddress) {
+    Connection connection = connections.get(remoteAddress);
+    if (connection == null) {
+      return false;
+    }
+    closeConnection(connection);
+    return true;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!listening) {
+      return;
+    }
+    listening = false;
+    server.close();
+    for (Reactor reactor : reactors) {
+      reactor.selector.wakeup();
+    }
+    Thread thread = acceptor;
+    if (thread != null && thread != Thread.currentThread()) {
+      // Ends a backoff sleep, the accept itself already failed with the closed channel
+      thread.interrupt();
+      join(thread);
+    }
+    for (Reactor reactor : reactors) {
+      join(reactor.thread);
+    }
+    for (Connection connection : connections.values()) {
+      closeConnection(connection);
+    }
+  }
+
+  private static void join(Thread thread) {
+    if (thread == null || thread == Thread.currentThread()) {
+      return;
+    }
+    try {
+      thread.join(MAX_SELECT_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void wakeupServerSelector() {
+    Reactor[] started = reactors;
+    if (started != null) {
+      for (Reactor reactor : started) {
+        reactor.selector.wakeup();
+      }
+    }
+  }
+
+  @Override
+  public Map<TcpAddress, Connection> getSockets() {
+    return Collections.unmodifiableMap(connections);
+  }
+
+  @Override
+  public TransportType getSupportedTransportType() {
+    return TransportType.receiver;
+  }
+
+  /**
+   * Connections sending a longer message are closed.
+   */
+  public void setMaxInboundMessageSize(int maxInboundMessageSize) {
+    this.maxInboundMessageSize = maxInboundMessageSize;
+  }
+
+  @Override
+  public MessageLengthDecoder getMessageLengthDecoder() {
+    return messageLengthDecoder;
+  }
+
+  @Override
+  public void setMessageLengthDecoder(MessageLengthDecoder messageLengthDecoder) {
+    this.messageLengthDecoder = messageLengthDecoder;
+  }
+
+  @Override
+  public TcpAddress getListenAddress() {
+    TcpAddress bound = boundAddress;
+    return bound != null ? bound : tcpAddress;
+  }
+
+  @Override
+  public boolean isListening() {
+    return listening;
+  }
+
+  @Override
+  public synchronized void setPriority(int newPriority) {
+    this.priority = newPriority;
+  }
+
+  @Override
+  public int getPriority() {
+    return priority;
+  }
+
+  @Override
+  public int getEffectiveReceiveBufferSize() {
+    return effectiveReceiveBufferSize;
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public int getOpenConnections() {
+    return openConnections.get();
+  }
+
+  public long getAcceptedConnections() {
+    return accepted.sum();
+  }
+
+  public long getRejectedConnections() {
+    return rejected.sum();
+  }
+
+  public long getIdleClosedConnections() {
+    return idleClosed.sum();
+  }
+
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  public long getMessagesRead() {
+    return messagesRead.sum();
+  }
+
+  public long getFramingErrors() {
+    return framingErrors.sum();
+  }
+
+  /**
+   * @return connections accepted during the last full second
+   */
+  public long getAcceptRate() {
+    return acceptRate.lastSecond(System.nanoTime());
+  }
+
+  /**
+   * Accepted connections per whole second, only updated by the acceptor thread.
+   */
+  static final class AcceptRate {
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private long second = Long.MIN_VALUE;
+    private long current;
+    private long previous;
+
+    synchronized void record(long nowNanos) {
+      roll(nowNanos);
+      current++;
+    }
+
+    synchronized long lastSecond(long nowNanos) {
+      roll(nowNanos);
+      return previous;
+    }
+
+    private void roll(long nowNanos) {
+      long now = Math.floorDiv(nowNanos, SECOND_NANOS);
+      if (now != second) {
+        previous = now == second + 1 ? current : 0L;
+        current = 0L;
+        second = now;
+      }
+    }
+  }
+}
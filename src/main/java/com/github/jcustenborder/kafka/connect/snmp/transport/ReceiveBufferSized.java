@@ -0,0 +1,28 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+/**
+ * Transport mapping whose socket receive buffer can be read back after listen(), as the kernel may double or
+ * cap the requested size.
+ */
+public interface ReceiveBufferSized {
+
+  /**
+   * @return SO_RCVBUF of the listening socket(s) as reported by the kernel, -1 if not listening
+   */
+  int getEffectiveReceiveBufferSize();
+}
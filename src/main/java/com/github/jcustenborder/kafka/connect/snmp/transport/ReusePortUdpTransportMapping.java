@@ -0,0 +1,253 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.UdpTransportMapping;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * UDP transport that opens several sockets on the same address and port with SO_REUSEPORT, each read by its
+ * own thread. The kernel spreads incoming datagrams over the sockets by source address and port, and every
+ * reader hands its datagrams to the same message dispatcher.
+ */
+public class ReusePortUdpTransportMapping extends UdpTransportMapping implements ReceiveBufferSized {
+  private static final Logger log = LoggerFactory.getLogger(ReusePortUdpTransportMapping.class);
+
+  private final int socketCount;
+  private final DatagramChannel[] channels;
+  private final Thread[] readers;
+  private final AtomicLongArray packets;
+  private final AtomicLongArray bytes;
+  private volatile boolean listening;
+  private int priority = Thread.NORM_PRIORITY;
+  private int receiveBufferSize;
+
+  public ReusePortUdpTransportMapping(UdpAddress udpAddress, int socketCount) {
+    super(udpAddress);
+    if (socketCount < 1) {
+      throw new IllegalArgumentException("socketCount must be at least 1, was " + socketCount);
+    }
+    this.socketCount = socketCount;
+    this.channels = new DatagramChannel[socketCount];
+    this.readers = new Thread[socketCount];
+    this.packets = new AtomicLongArray(socketCount);
+    this.bytes = new AtomicLongArray(socketCount);
+  }
+
+  @Override
+  public synchronized void listen() throws IOException {
+    if (listening) {
+      throw new IllegalStateException("Transport mapping is already listening on " + udpAddress);
+    }
+    InetSocketAddress bindAddress = new InetSocketAddress(udpAddress.getInetAddress(), udpAddress.getPort());
+    try {
+      for (int i = 0; i < socketCount; i++) {
+        channels[i] = openChannel(bindAddress);
+      }
+    } catch (IOException | RuntimeException e) {
+      closeChannels();
+      throw e;
+    }
+    listening = true;
+    for (int i = 0; i < socketCount; i++) {
+      final int socket = i;
+      Thread reader = new Thread(() -> receive(socket), "ReusePortUdpTransportMapping_" + udpAddress + "-" + socket);
+      reader.setDaemon(true);
+      reader.setPriority(priority);
+      readers[i] = reader;
+      reader.start();
+    }
+    log.info("listen() - Listening on {} with {} SO_REUSEPORT socket(s)", udpAddress, socketCount);
+  }
+
+  DatagramChannel openChannel(InetSocketAddress bindAddress) throws IOException {
+    DatagramChannel channel = DatagramChannel.open(
+        bindAddress.getAddress() instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET
+    );
+    if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+      channel.close();
+      throw new UnsupportedOperationException("SO_REUSEPORT is not supported on this platform");
+    }
+    channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+    if (receiveBufferSize > 0) {
+      channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+    }
+    channel.bind(bindAddress);
+    return channel;
+  }
+
+  private void receive(int socket) {
+    final DatagramChannel channel = channels[socket];
+    final ByteBuffer buffer = ByteBuffer.allocate(getMaxInboundMessageSize());
+    while (listening) {
+      try {
+        buffer.clear();
+        InetSocketAddress from = (InetSocketAddress) channel.receive(buffer);
+        buffer.flip();
+        int length = buffer.remaining();
+        packets.incrementAndGet(socket);
+        bytes.addAndGet(socket, length);
+
+        ByteBuffer message;
+        if (isAsyncMsgProcessingSupported()) {
+          // The dispatcher keeps the buffer past this call, so it cannot share the receive buffer
+          byte[] copy = new byte[length];
+          buffer.get(copy);
+          message = ByteBuffer.wrap(copy);
+        } else {
+          message = buffer;
+        }
+
+        UdpAddress peer = new UdpAddress(from.getAddress(), from.getPort());
+        TransportStateReference stateReference = new TransportStateReference(
+            this, udpAddress, null, SecurityLevel.undefined, SecurityLevel.undefined, false, channel
+        );
+        fireProcessMessage(peer, message, stateReference);
+      } catch (ClosedChannelException e) {
+        break;
+      } catch (IOException e) {
+        log.warn("receive() - Failed to read from socket {} on {}", socket, udpAddress, e);
+      } catch (RuntimeException e) {
+        log.error("receive() - Failed to process message from socket {} on {}", socket, udpAddress, e);
+      }
+    }
+  }
+
+  @Override
+  public void sendMessage(UdpAddress targetAddress, byte[] message, TransportStateReference tmStateReference,
+                          long timeoutMillis, int maxRetries) throws IOException {
+    DatagramChannel channel = null;
+    if (tmStateReference != null && tmStateReference.getSessionID() instanceof DatagramChannel) {
+      channel = (DatagramChannel) tmStateReference.getSessionID();
+    }
+    if (channel == null) {
+      channel = channels[0];
+    }
+    if (channel == null) {
+      throw new IOException("Transport mapping is not listening on " + udpAddress);
+    }
+    channel.send(ByteBuffer.wrap(message), new InetSocketAddress(targetAddress.getInetAddress(), targetAddress.getPort()));
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    listening = false;
+    closeChannels();
+    for (int i = 0; i < socketCount; i++) {
+      Thread reader = readers[i];
+      readers[i] = null;
+      if (reader != null && reader != Thread.currentThread()) {
+        try {
+          reader.join(1000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+  }
+
+  private void closeChannels() {
+    for (int i = 0; i < socketCount; i++) {
+      DatagramChannel channel = channels[i];
+      channels[i] = null;
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          log.warn("close() - Failed to close socket {} on {}", i, udpAddress, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets SO_RCVBUF for every socket, takes effect on the next listen().
+   */
+  public void setReceiveBufferSize(int receiveBufferSize) {
+    this.receiveBufferSize = receiveBufferSize;
+  }
+
+  @Override
+  public int getEffectiveReceiveBufferSize() {
+    DatagramChannel channel = channels[0];
+    if (channel == null) {
+      return -1;
+    }
+    try {
+      return channel.getOption(StandardSocketOptions.SO_RCVBUF);
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public boolean isListening() {
+    return listening;
+  }
+
+  @Override
+  public synchronized void setPriority(int newPriority) {
+    this.priority = newPriority;
+    for (Thread reader : readers) {
+      if (reader != null) {
+        reader.setPriority(newPriority);
+      }
+    }
+  }
+
+  @Override
+  public int getPriority() {
+    return priority;
+  }
+
+  public int getSocketCount() {
+    return socketCount;
+  }
+
+  /**
+   * Datagrams received per socket, showing how evenly the kernel spreads the load.
+   */
+  public long[] getPacketsPerSocket() {
+    long[] result = new long[socketCount];
+    for (int i = 0; i < socketCount; i++) {
+      result[i] = packets.get(i);
+    }
+    return result;
+  }
+
+  public long[] getBytesPerSocket() {
+    long[] result = new long[socketCount];
+    for (int i = 0; i < socketCount; i++) {
+      result[i] = bytes.get(i);
+    }
+    return result;
+  }
+}
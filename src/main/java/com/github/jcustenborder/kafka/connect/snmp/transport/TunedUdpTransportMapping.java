@@ -0,0 +1,49 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+
+/**
+ * {@link DefaultUdpTransportMapping} with a configurable SO_RCVBUF.
+ */
+public class TunedUdpTransportMapping extends DefaultUdpTransportMapping implements ReceiveBufferSized {
+
+  public TunedUdpTransportMapping(UdpAddress udpAddress, int receiveBufferSize) throws IOException {
+    super(udpAddress);
+    if (receiveBufferSize > 0) {
+      setReceiveBufferSize(receiveBufferSize);
+    }
+  }
+
+  @Override
+  public int getEffectiveReceiveBufferSize() {
+    DatagramSocket current = this.socket;
+    if (current == null || current.isClosed()) {
+      return -1;
+    }
+    try {
+      return current.getReceiveBufferSize();
+    } catch (SocketException e) {
+      return -1;
+    }
+  }
+}
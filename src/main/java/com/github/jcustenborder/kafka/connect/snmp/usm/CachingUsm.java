@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.usm;
+
+import org.snmp4j.security.SecurityProtocols;
+import org.snmp4j.security.USM;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.security.UsmUserEntry;
+import org.snmp4j.smi.OctetString;
+
+import java.util.Collection;
+
+/**
+ * {@link USM} that takes localized keys from a {@link LocalizedKeyCache} instead of deriving them from the
+ * passphrases every time a user is first seen from an engine ID.
+ * <p>
+ * snmp4j localizes a user on the fly when a message arrives from an engine it has no entry for, which hashes the
+ * passphrases on the dispatcher thread. Overriding that step lets keys be precomputed for known engines and reused
+ * after a reload or restart.
+ */
+public class CachingUsm extends USM {
+  private final LocalizedKeyCache keyCache;
+
+  public CachingUsm(SecurityProtocols securityProtocols, OctetString localEngineID, int engineBoots,
+                    LocalizedKeyCache keyCache) {
+    super(securityProtocols, localEngineID, engineBoots);
+    this.keyCache = keyCache;
+  }
+
+  public LocalizedKeyCache getKeyCache() {
+    return keyCache;
+  }
+
+  /**
+   * Adds a user that is localized on demand, plus localized entries for the engine IDs already known to send as it.
+   */
+  public void addUser(UsmUser user, Collection<OctetString> engineIds) {
+    addUser(user);
+    if (user.getAuthenticationProtocol() == null) {
+      return;
+    }
+    for (OctetString engineId : engineIds) {
+      localize(engineId, user.getSecurityName(), user);
+    }
+  }
+
+  @Override
+  protected UsmUserEntry addLocalizedUsmUserEntry(OctetString engineID, OctetString securityName, UsmUserEntry entry) {
+    UsmUser user = entry.getUsmUser();
+    if (user.isLocalized() || user.getAuthenticationProtocol() == null) {
+      return super.addLocalizedUsmUserEntry(engineID, securityName, entry);
+    }
+    UsmUserEntry localized = localize(engineID, securityName, user);
+    keyCache.saveQuietly();
+    return localized;
+  }
+
+  private UsmUserEntry localize(OctetString engineId, OctetString securityName, UsmUser user) {
+    LocalizedKeyCache.Keys keys = keyCache.localize(engineId, user);
+    return addLocalizedUser(engineId.getValue(), securityName, user.getAuthenticationProtocol(),
+        keys.authenticationKey, user.getPrivacyProtocol(), keys.privacyKey);
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.usm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.security.SecurityProtocols;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Localized USM keys per engine ID, user and passphrases. Localizing a passphrase hashes about 1 MB
+ * (RFC 3414 A.2), so each key is derived once and then reused, optionally across restarts through a file.
+ * <p>
+ * Entries are keyed by a SHA-256 fingerprint of the protocols and passphrases, so a changed passphrase derives
+ * new keys and the stale entry is never used. {@link UsmUserStore} prunes stale entries whenever it loads the users.
+ * The file holds one entry per line as hex and is written with owner only permissions where the file system
+ * supports them; it contains key material and should be protected like the users file.
+ * <pre>
+ * engine ID | user name | fingerprint | authentication key | privacy key or -
+ * </pre>
+ */
+public class LocalizedKeyCache {
+  private static final Logger log = LoggerFactory.getLogger(LocalizedKeyCache.class);
+  static final HexFormat HEX = HexFormat.of();
+
+  static final class Keys {
+    final byte[] authenticationKey;
+    final byte[] privacyKey;
+
+    Keys(byte[] authenticationKey, byte[] privacyKey) {
+      this.authenticationKey = authenticationKey;
+      this.privacyKey = privacyKey;
+    }
+  }
+
+  private final SecurityProtocols securityProtocols;
+  private final Path file;
+  private final Map<String, Keys> keys = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder derivations = new LongAdder();
+  private final LongAdder derivationNanos = new LongAdder();
+  private volatile boolean dirty;
+
+  /**
+   * @param file where keys are persisted, null to keep them in memory only
+   */
+  public LocalizedKeyCache(SecurityProtocols securityProtocols, Path file) throws IOException {
+    this.securityProtocols = securityProtocols;
+    this.file = file;
+    if (file != null && Files.exists(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+        String[] columns = line.trim().split(" ");
+        if (columns.length != 5) {
+          continue;
+        }
+        keys.put(columns[0] + ' ' + columns[1] + ' ' + columns[2], new Keys(
+            HEX.parseHex(columns[3]),
+            "-".equals(columns[4]) ? null : HEX.parseHex(columns[4])
+        ));
+      }
+      log.info("LocalizedKeyCache() - Loaded {} localized keys from {}", keys.size(), file);
+    }
+  }
+
+  /**
+   * @return the keys of an authenticating user localized to the engine ID
+   */
+  Keys localize(OctetString engineId, UsmUser user) {
+    String key = HEX.formatHex(engineId.getValue()) + ' ' + userKey(user.getSecurityName(), fingerprint(user));
+    Keys localized = keys.get(key);
+    if (localized != null) {
+      hits.increment();
+      return localized;
+    }
+    long started = System.nanoTime();
+    OID authenticationProtocol = user.getAuthenticationProtocol();
+    byte[] authenticationKey = securityProtocols.passwordToKey(authenticationProtocol,
+        user.getAuthenticationPassphrase(), engineId.getValue());
+    byte[] privacyKey = user.getPrivacyProtocol() == null ? null : securityProtocols.passwordToKey(
+        user.getPrivacyProtocol(), authenticationProtocol, user.getPrivacyPassphrase(), engineId.getValue());
+    if (authenticationKey == null) {
+      throw new IllegalArgumentException("Authentication protocol " + authenticationProtocol + " of " +
+          user.getSecurityName() + " is not available");
+    }
+    derivationNanos.add(System.nanoTime() - started);
+    derivations.increment();
+    localized = new Keys(authenticationKey, privacyKey);
+    keys.put(key, localized);
+    dirty = true;
+    return localized;
+  }
+
+  /**
+   * Removes the keys of users and passphrases that are no longer configured, so the file does not keep the keys
+   * of every passphrase it has seen.
+   *
+   * @param userKeys {@link #userKey(OctetString, String)} of each configured user
+   * @return the number of entries removed
+   */
+  int retain(Set<String> userKeys) {
+    int before = keys.size();
+    keys.keySet().removeIf(key -> !userKeys.contains(key.substring(key.indexOf(' ') + 1)));
+    int removed = before - keys.size();
+    if (removed > 0) {
+      dirty = true;
+    }
+    return removed;
+  }
+
+  static String userKey(OctetString securityName, String fingerprint) {
+    return HEX.formatHex(securityName.getValue()) + ' ' + fingerprint;
+  }
+
+  static String fingerprint(UsmUser user) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (Object part : new Object[]{user.getAuthenticationProtocol(), user.getAuthenticationPassphrase(),
+          user.getPrivacyProtocol(), user.getPrivacyPassphrase()}) {
+        digest.update(part == null ? new byte[0] : part.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+      }
+      return HEX.formatHex(digest.digest(), 0, 16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes the keys to the file if any were derived since the last save.
+   */
+  public synchronized void save() throws IOException {
+    if (file == null || !dirty) {
+      return;
+    }
+    dirty = false;
+    List<String> lines = new ArrayList<>(keys.size());
+    keys.forEach((key, localized) -> lines.add(key + ' ' + HEX.formatHex(localized.authenticationKey)
+        + ' ' + (localized.privacyKey == null ? "-" : HEX.formatHex(localized.privacyKey))));
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.deleteIfExists(temp);
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    }
+    Files.write(temp, lines, StandardCharsets.US_ASCII);
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  void saveQuietly() {
+    try {
+      save();
+    } catch (IOException e) {
+      log.warn("saveQuietly() - Could not persist localized keys to {}", file, e);
+    }
+  }
+
+  public int size() {
+    return keys.size();
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long derivations() {
+    return derivations.sum();
+  }
+
+  public long derivationNanos() {
+    return derivationNanos.sum();
+  }
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.usm;
+
+import com.github.jcustenborder.kafka.connect.snmp.enums.AuthenticationProtocol;
+import com.github.jcustenborder.kafka.connect.snmp.enums.PrivacyProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.security.AuthHMAC384SHA512;
+import org.snmp4j.security.AuthMD5;
+import org.snmp4j.security.AuthSHA;
+import org.snmp4j.security.Priv3DES;
+import org.snmp4j.security.PrivAES128;
+import org.snmp4j.security.PrivAES256;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads USM users from a file into a {@link CachingUsm} and reloads it when it changes, without restarting the task.
+ * One user per line, fields separated by whitespace, lines starting with # are ignored:
+ * <pre>
+ * userName  MD5|SHA|SHA2_512|NONE  authPassphrase|-  DES3|AES128|AES256|NONE  privPassphrase|-  [engineId,...]
+ * </pre>
+ * The optional engine IDs are hex and name the agents known to send as the user; their keys are localized when the
+ * file is loaded instead of when the first trap arrives. Other engines are still localized on demand.
+ * <p>
+ * A reload only touches users that were added, removed or changed. A file that fails to parse is logged and the
+ * users loaded before stay in place.
+ */
+public class UsmUserStore implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(UsmUserStore.class);
+  static final String NONE = "NONE";
+  static final String NO_PASSPHRASE = "-";
+
+  static final class Entry {
+    final UsmUser user;
+    final String fingerprint;
+    final Set<OctetString> engineIds;
+
+    Entry(UsmUser user, Set<OctetString> engineIds) {
+      this.user = user;
+      this.fingerprint = LocalizedKeyCache.fingerprint(user);
+      this.engineIds = engineIds;
+    }
+
+    boolean sameUser(Entry other) {
+      return Objects.equals(fingerprint, other.fingerprint);
+    }
+  }
+
+  private final CachingUsm usm;
+  private final Path file;
+  private final ScheduledExecutorService executor;
+  private final AtomicLong reloads = new AtomicLong();
+  private final AtomicLong failedReloads = new AtomicLong();
+  private volatile Map<OctetString, Entry> users = Map.of();
+  private FileTime lastModified;
+  private long lastSize = -1L;
+
+  /**
+   * Loads the file and, if {@code reloadIntervalMs} is above 0, checks it for changes at that interval.
+   *
+   * @throws IOException if the file can not be read or parsed on the first load
+   */
+  public UsmUserStore(CachingUsm usm, Path file, long reloadIntervalMs) throws IOException {
+    this.usm = usm;
+    this.file = file;
+    load();
+    if (reloadIntervalMs > 0) {
+      this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "UsmUserStore-" + file.getFileName());
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.executor.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+    } else {
+      this.executor = null;
+    }
+  }
+
+  void reloadIfChanged() {
+    try {
+      FileTime modified = Files.getLastModifiedTime(file);
+      long size = Files.size(file);
+      if (modified.equals(lastModified) && size == lastSize) {
+        return;
+      }
+      load();
+    } catch (IOException | RuntimeException e) {
+      failedReloads.incrementAndGet();
+      log.warn("reloadIfChanged() - Could not reload USM users from {}, keeping {} user(s)", file, users.size(), e);
+    }
+  }
+
+  /**
+   * Reads the file and applies the difference to the loaded users.
+   */
+  synchronized void load() throws IOException {
+    FileTime modified = Files.getLastModifiedTime(file);
+    long size = Files.size(file);
+    Map<OctetString, Entry> loaded = parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    Map<OctetString, Entry> current = this.users;
+    int added = 0;
+    int removed = 0;
+    int changed = 0;
+    for (OctetString name : current.keySet()) {
+      if (!loaded.containsKey(name)) {
+        usm.removeAllUsers(name);
+        removed++;
+      }
+    }
+    for (Map.Entry<OctetString, Entry> e : loaded.entrySet()) {
+      Entry previous = current.get(e.getKey());
+      Entry entry = e.getValue();
+      if (previous == null) {
+        usm.addUser(entry.user, entry.engineIds);
+        added++;
+      } else if (!previous.sameUser(entry)) {
+        usm.removeAllUsers(e.getKey());
+        usm.addUser(entry.user, entry.engineIds);
+        changed++;
+      } else if (!previous.engineIds.containsAll(entry.engineIds)) {
+        Set<OctetString> newEngineIds = new LinkedHashSet<>(entry.engineIds);
+        newEngineIds.removeAll(previous.engineIds);
+        usm.addUser(entry.user, newEngineIds);
+        changed++;
+      }
+    }
+    this.users = loaded;
+    this.lastModified = modified;
+    this.lastSize = size;
+    this.reloads.incrementAndGet();
+    Set<String> userKeys = new HashSet<>(loaded.size() * 2);
+    for (Entry entry : loaded.values()) {
+      userKeys.add(LocalizedKeyCache.userKey(entry.user.getSecurityName(), entry.fingerprint));
+    }
+    int pruned = usm.getKeyCache().retain(userKeys);
+    usm.getKeyCache().saveQuietly();
+    log.info("load() - Loaded {} USM user(s) from {}: {} added, {} changed, {} removed, {} stale key(s) pruned",
+        loaded.size(), file, added, changed, removed, pruned);
+  }
+
+  static Map<OctetString, Entry> parse(List<String> lines) throws IOException {
+    Map<OctetString, Entry> result = new HashMap<>(lines.size() * 2);
+    int lineNumber = 0;
+    for (String line : lines) {
+      lineNumber++;
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+        continue;
+      }
+      try {
+        Entry entry = parseLine(trimmed);
+        if (result.put(entry.user.getSecurityName(), entry) != null) {
+          throw new IllegalArgumentException("user is defined more than once");
+        }
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid USM user on line " + lineNumber + ": " + e.getMessage(), e);
+      }
+    }
+    return result;
+  }
+
+  static Entry parseLine(String line) {
+    String[] columns = line.split("\\s+");
+    if (columns.length != 5 && columns.length != 6) {
+      throw new IllegalArgumentException("expected 5 or 6 fields, found " + columns.length);
+    }
+    OctetString name = new OctetString(columns[0]);
+    OID authenticationProtocol = NONE.equalsIgnoreCase(columns[1]) ? null
+        : authenticationProtocol(AuthenticationProtocol.valueOf(columns[1].toUpperCase()));
+    OID privacyProtocol = NONE.equalsIgnoreCase(columns[3]) ? null
+        : privacyProtocol(PrivacyProtocol.valueOf(columns[3].toUpperCase()));
+    OctetString authenticationPassphrase = passphrase(columns[2], authenticationProtocol, "authentication");
+    OctetString privacyPassphrase = passphrase(columns[4], privacyProtocol, "privacy");
+    if (privacyProtocol != null && authenticationProtocol == null) {
+      throw new IllegalArgumentException("privacy requires an authentication protocol");
+    }
+    Set<OctetString> engineIds = new LinkedHashSet<>();
+    if (columns.length == 6) {
+      for (String engineId : columns[5].split(",")) {
+        if (!engineId.isEmpty()) {
+          engineIds.add(new OctetString(LocalizedKeyCache.HEX.parseHex(engineId)));
+        }
+      }
+    }
+    return new Entry(new UsmUser(name, authenticationProtocol, authenticationPassphrase, privacyProtocol,
+        privacyPassphrase), engineIds);
+  }
+
+  private static OctetString passphrase(String value, OID protocol, String kind) {
+    if (protocol == null) {
+      return null;
+    }
+    if (NO_PASSPHRASE.equals(value) || value.length() < 8) {
+      throw new IllegalArgumentException(kind + " passphrase must be at least 8 characters");
+    }
+    return new OctetString(value);
+  }
+
+  public static OID authenticationProtocol(AuthenticationProtocol authenticationProtocol) {
+    return switch (authenticationProtocol) {
+      case MD5 -> AuthMD5.ID;
+      case SHA -> AuthSHA.ID;
+      case SHA2_512 -> AuthHMAC384SHA512.ID;
+    };
+  }
+
+  public static OID privacyProtocol(PrivacyProtocol privacyProtocol) {
+    return switch (privacyProtocol) {
+      case DES3 -> Priv3DES.ID;
+      case AES128 -> PrivAES128.ID;
+      case AES256 -> PrivAES256.ID;
+    };
+  }
+
+  public List<OctetString> userNames() {
+    return new ArrayList<>(users.keySet());
+  }
+
+  public int size() {
+    return users.size();
+  }
+
+  public long reloads() {
+    return reloads.get();
+  }
+
+  public long failedReloads() {
+    return failedReloads.get();
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
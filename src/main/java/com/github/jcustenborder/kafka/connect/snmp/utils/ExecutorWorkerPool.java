@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.util.WorkerPool;
+import org.snmp4j.util.WorkerTask;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * snmp4j {@link WorkerPool} backed by an {@link ExecutorService}.
+ * <p>
+ * Unlike {@link org.snmp4j.util.ThreadPool}, which blocks the listener thread while all of its workers are busy,
+ * this pool admits at most {@code maxInFlight} messages and rejects the rest straight away. The listener keeps
+ * draining the socket and the rejected messages are counted instead of piling up unseen in the kernel.
+ */
+public class ExecutorWorkerPool implements WorkerPool {
+  private static final Logger log = LoggerFactory.getLogger(ExecutorWorkerPool.class);
+  static final long STOP_TIMEOUT_MS = 5_000L;
+
+  private final String name;
+  private final ExecutorService executor;
+  private final int maxInFlight;
+  private final Semaphore inFlight;
+  private final LongAdder executed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  public ExecutorWorkerPool(String name, ExecutorService executor, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive, was " + maxInFlight);
+    }
+    this.name = name;
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+    this.inFlight = new Semaphore(maxInFlight);
+  }
+
+  /**
+   * A pool of {@code threads} platform threads. Work waiting for a thread is bounded by {@code maxInFlight}.
+   */
+  public static ExecutorWorkerPool fixed(String name, int threads, int maxInFlight) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), daemonThreads(name));
+    return new ExecutorWorkerPool(name, executor, maxInFlight);
+  }
+
+  /**
+   * One virtual thread per message. Virtual threads need Java 21, on older runtimes this falls back to a cached
+   * pool of platform threads, which is still bounded by {@code maxInFlight}.
+   */
+  public static ExecutorWorkerPool virtualThreads(String name, int maxInFlight) {
+    ExecutorService executor;
+    try {
+      executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log.warn("virtualThreads() - Virtual threads are not available on Java {}, using platform threads for {}",
+          System.getProperty("java.specification.version"), name);
+      executor = Executors.newCachedThreadPool(daemonThreads(name));
+    }
+    return new ExecutorWorkerPool(name, executor, maxInFlight);
+  }
+
+  private static ThreadFactory daemonThreads(String name) {
+    AtomicInteger counter = new AtomicInteger();
+    return r -> {
+      Thread thread = new Thread(r, name + "." + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  @Override
+  public void execute(WorkerTask task) {
+    if (!tryToExecute(task)) {
+      log.debug("execute() - {} rejected {}, limit of {} message(s) in flight reached", name, task, maxInFlight);
+    }
+  }
+
+  @Override
+  public boolean tryToExecute(WorkerTask task) {
+    if (!inFlight.tryAcquire()) {
+      rejected.increment();
+      return false;
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          inFlight.release();
+          executed.increment();
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      inFlight.release();
+      rejected.increment();
+      return false;
+    }
+  }
+
+  /**
+   * Stops accepting work and waits for messages in flight to finish.
+   */
+  @Override
+  public void stop() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        log.warn("stop() - {} still had {} message(s) in flight after {} ms", name, getInFlight(), STOP_TIMEOUT_MS);
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public boolean isIdle() {
+    return inFlight.availablePermits() == maxInFlight;
+  }
+
+  public int getInFlight() {
+    return maxInFlight - inFlight.availablePermits();
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public long getExecuted() {
+    return executed.sum();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutorWorkerPool[name=" + name + ", maxInFlight=" + maxInFlight + "]";
+  }
+}
@@ -0,0 +1,600 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only journal of received traps, so traps that Kafka has not acknowledged survive a task restart.
+ * <p>
+ * Every entry gets the next offset and is framed as {@code int length | long offset | payload} in segment files
+ * named after their first offset. Appends are copied into a write buffer; a flusher thread writes the buffer and
+ * fsyncs every {@code fsyncIntervalMs}, so one fsync covers all traps received in that interval (group commit).
+ * Each entry is written exactly once and segments are deleted rather than compacted, so the only write
+ * amplification is the 12 byte frame.
+ * <p>
+ * Acknowledgements are kept per entry, since Kafka acknowledges records in any order and a later offset being
+ * committed says nothing about earlier ones. The flusher appends them to an {@code .ack} file next to their segment
+ * without an fsync; an acknowledgement lost in a crash only replays a trap Kafka already has. Acknowledging an
+ * entry twice has no effect. {@link #truncate()} deletes the oldest segments once every entry in them is
+ * acknowledged and a newer segment exists. On open, the remaining segments are recovered and {@link #replay()}
+ * returns their unacknowledged entries.
+ */
+public class Journal implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(Journal.class);
+  static final String SEGMENT_PREFIX = "journal-";
+  static final String SEGMENT_SUFFIX = ".log";
+  static final String ACK_SUFFIX = ".ack";
+  static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+  static final int WRITE_BUFFER_BYTES = 256 * 1024;
+
+  public static final class Entry {
+    private final long offset;
+    private final byte[] payload;
+
+    Entry(long offset, byte[] payload) {
+      this.offset = offset;
+      this.payload = payload;
+    }
+
+    public long offset() {
+      return offset;
+    }
+
+    public byte[] payload() {
+      return payload;
+    }
+  }
+
+  private static final class Segment {
+    final long baseOffset;
+    final Path path;
+    final Path ackPath;
+    FileChannel channel;
+    long bytes;
+    volatile int records;
+    // Guarded by the segment
+    final BitSet acked = new BitSet();
+    volatile int ackedCount;
+    int[] pendingAcks = new int[16];
+    int pending;
+    // Guarded by the journal's ack lock
+    FileChannel ackChannel;
+
+    Segment(long baseOffset, Path path, Path ackPath) {
+      this.baseOffset = baseOffset;
+      this.path = path;
+      this.ackPath = ackPath;
+    }
+
+    synchronized void ack(long offset) {
+      long index = offset - baseOffset;
+      if (index < 0 || index >= records || acked.get((int) index)) {
+        return;
+      }
+      acked.set((int) index);
+      ackedCount++;
+      if (pending == pendingAcks.length) {
+        pendingAcks = Arrays.copyOf(pendingAcks, pending * 2);
+      }
+      pendingAcks[pending++] = (int) index;
+    }
+
+    synchronized boolean isAcked(long offset) {
+      return acked.get((int) (offset - baseOffset));
+    }
+
+    /**
+     * @return the acknowledgements not yet written to the ack file, null if none
+     */
+    synchronized ByteBuffer takePendingAcks() {
+      if (pending == 0) {
+        return null;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(pending * Integer.BYTES);
+      for (int i = 0; i < pending; i++) {
+        buffer.putInt(pendingAcks[i]);
+      }
+      pending = 0;
+      return buffer.flip();
+    }
+  }
+
+  private final Path directory;
+  private final long segmentBytes;
+  private final long fsyncIntervalMs;
+  private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  private final List<Segment> recovered = new ArrayList<>();
+  private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+  private final Thread flusher;
+  private final Object ackLock = new Object();
+  private volatile Segment current;
+  private long nextOffset;
+  private volatile long durableOffset = -1L;
+  private volatile boolean closed;
+
+  private final LongAdder appendedBytes = new LongAdder();
+  private final LongAdder writtenBytes = new LongAdder();
+  private final LongAdder fsyncs = new LongAdder();
+  private final LongAdder fsyncNanos = new LongAdder();
+
+  /**
+   * @param directory where segment files are kept, created if missing
+   * @param segmentBytes size after which a new segment is started
+   * @param fsyncIntervalMs how often buffered appends are written and fsynced
+   */
+  public Journal(Path directory, long segmentBytes, long fsyncIntervalMs) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.segmentBytes = segmentBytes;
+    this.fsyncIntervalMs = fsyncIntervalMs;
+    recover();
+    this.flusher = new Thread(this::runFlusher, "snmp-journal-flusher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  private void recover() throws IOException {
+    List<Long> baseOffsets = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          baseOffsets.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          log.warn("recover() - Ignoring {}", file);
+        }
+      }
+    }
+    Collections.sort(baseOffsets);
+    long records = 0L;
+    long acked = 0L;
+    for (long baseOffset : baseOffsets) {
+      Segment segment = newSegment(baseOffset);
+      long lastOffset = scan(segment);
+      if (segment.records == 0) {
+        Files.deleteIfExists(segment.path);
+        continue;
+      }
+      recoverAcks(segment);
+      segments.put(baseOffset, segment);
+      recovered.add(segment);
+      records += segment.records;
+      acked += segment.ackedCount;
+      nextOffset = lastOffset + 1;
+    }
+    // Ack files of segments deleted just before a crash
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + ACK_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (!segments.containsKey(parseOffset(name.substring(SEGMENT_PREFIX.length(), name.length() - ACK_SUFFIX.length())))) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+    durableOffset = nextOffset - 1;
+    if (!recovered.isEmpty()) {
+      log.info("recover() - Found {} journaled trap(s), {} acknowledged, in {} segment(s) in {}",
+          records, acked, recovered.size(), directory);
+    }
+  }
+
+  private static long parseOffset(String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+
+  /**
+   * Reads the acknowledged entries of a recovered segment and cuts off a torn write at the end of its ack file.
+   */
+  private void recoverAcks(Segment segment) throws IOException {
+    if (!Files.exists(segment.ackPath)) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(segment.ackPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = channel.size() - channel.size() % Integer.BYTES;
+      if (size < channel.size()) {
+        channel.truncate(size);
+      }
+      ByteBuffer acks = ByteBuffer.allocate((int) size);
+      while (acks.hasRemaining() && channel.read(acks, acks.position()) >= 0) {
+        // Read the whole file
+      }
+      acks.flip();
+      while (acks.remaining() >= Integer.BYTES) {
+        int index = acks.getInt();
+        if (index >= 0 && index < segment.records && !segment.acked.get(index)) {
+          segment.acked.set(index);
+          segment.ackedCount++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts the complete entries of a segment and cuts off a torn write at its end.
+   *
+   * @return the offset of the last complete entry
+   */
+  private long scan(Segment segment) throws IOException {
+    long lastOffset = segment.baseOffset - 1;
+    try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      long position = 0L;
+      long size = channel.size();
+      while (position + HEADER_BYTES <= size) {
+        header.clear();
+        channel.read(header, position);
+        header.flip();
+        int length = header.getInt();
+        long offset = header.getLong();
+        if (length < 0 || position + HEADER_BYTES + length > size) {
+          break;
+        }
+        position += HEADER_BYTES + length;
+        lastOffset = offset;
+        segment.records++;
+      }
+      if (position < size) {
+        log.warn("recover() - Truncating {} from {} to {} byte(s)", segment.path, size, position);
+        channel.truncate(position);
+      }
+      segment.bytes = position;
+    }
+    return lastOffset;
+  }
+
+  private Segment newSegment(long baseOffset) {
+    String name = SEGMENT_PREFIX + String.format("%020d", baseOffset);
+    return new Segment(baseOffset, directory.resolve(name + SEGMENT_SUFFIX), directory.resolve(name + ACK_SUFFIX));
+  }
+
+  /**
+   * Returns the recovered entries that were not acknowledged, read lazily segment by segment.
+   */
+  public Iterator<Entry> replay() {
+    List<Segment> toReplay = new ArrayList<>(recovered);
+    recovered.clear();
+    return new Iterator<Entry>() {
+      final Iterator<Segment> pending = toReplay.iterator();
+      Segment segment;
+      DataInputStream input;
+      int remaining;
+      Entry next;
+
+      @Override
+      public boolean hasNext() {
+        try {
+          while (next == null) {
+            if (remaining == 0) {
+              closeInput();
+              if (!pending.hasNext()) {
+                return false;
+              }
+              segment = pending.next();
+              remaining = segment.records;
+              input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path), 64 * 1024));
+            }
+            byte[] payload = new byte[input.readInt()];
+            long offset = input.readLong();
+            input.readFully(payload);
+            remaining--;
+            if (!segment.isAcked(offset)) {
+              next = new Entry(offset, payload);
+            }
+          }
+          return true;
+        } catch (EOFException e) {
+          throw new IllegalStateException("Journal segment " + segment.path + " is shorter than when it was recovered", e);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      @Override
+      public Entry next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Entry entry = next;
+        next = null;
+        return entry;
+      }
+
+      private void closeInput() throws IOException {
+        if (input != null) {
+          input.close();
+          input = null;
+        }
+      }
+    };
+  }
+
+  /**
+   * Appends an entry. It is durable once the next group commit has run, see {@link #durableOffset()}.
+   *
+   * @return the offset of the entry
+   */
+  public synchronized long append(byte[] payload) throws IOException {
+    if (closed) {
+      throw new ClosedChannelException();
+    }
+    int frame = HEADER_BYTES + payload.length;
+    if (current == null || (current.bytes + frame > segmentBytes && current.records > 0)) {
+      roll();
+    }
+    long offset = nextOffset++;
+    if (writeBuffer.remaining() < frame) {
+      writeBuffered();
+    }
+    if (writeBuffer.remaining() < frame) {
+      // Larger than the whole write buffer, write it directly
+      ByteBuffer large = ByteBuffer.allocate(frame);
+      large.putInt(payload.length).putLong(offset).put(payload).flip();
+      write(large);
+    } else {
+      writeBuffer.putInt(payload.length).putLong(offset).put(payload);
+    }
+    current.bytes += frame;
+    current.records++;
+    appendedBytes.add(payload.length);
+    return offset;
+  }
+
+  private void roll() throws IOException {
+    if (current != null) {
+      writeBuffered();
+      force(current.channel);
+      current.channel.close();
+      current.channel = null;
+    }
+    Segment segment = newSegment(nextOffset);
+    segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    segments.put(segment.baseOffset, segment);
+    current = segment;
+  }
+
+  private void writeBuffered() throws IOException {
+    if (writeBuffer.position() == 0) {
+      return;
+    }
+    writeBuffer.flip();
+    write(writeBuffer);
+    writeBuffer.clear();
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    int bytes = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      current.channel.write(buffer);
+    }
+    writtenBytes.add(bytes);
+  }
+
+  private void force(FileChannel channel) throws IOException {
+    long start = System.nanoTime();
+    channel.force(false);
+    fsyncNanos.add(System.nanoTime() - start);
+    fsyncs.increment();
+  }
+
+  /**
+   * Writes the buffered appends and fsyncs them, the group commit. Acknowledgements are written along, without an
+   * fsync of their own.
+   */
+  public void flush() throws IOException {
+    writeAcks();
+    final FileChannel channel;
+    final long upTo;
+    synchronized (this) {
+      if (current == null) {
+        return;
+      }
+      writeBuffered();
+      channel = current.channel;
+      upTo = nextOffset - 1;
+    }
+    if (upTo == durableOffset) {
+      return;
+    }
+    try {
+      // Outside the lock, appends continue into the write buffer while the disk syncs
+      force(channel);
+    } catch (ClosedChannelException e) {
+      // The segment was rolled and forced meanwhile
+    }
+    durableOffset = Math.max(durableOffset, upTo);
+  }
+
+  private void runFlusher() {
+    // Parked rather than interrupted on close, an interrupt during force() would close the channel
+    while (!closed) {
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs));
+      if (closed) {
+        return;
+      }
+      try {
+        flush();
+      } catch (IOException e) {
+        log.error("runFlusher() - Could not write journal in {}", directory, e);
+      }
+    }
+  }
+
+  /**
+   * Marks an entry as delivered to Kafka.
+   */
+  public void ack(long offset) {
+    Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+    if (entry != null) {
+      entry.getValue().ack(offset);
+    }
+  }
+
+  private void writeAcks() throws IOException {
+    synchronized (ackLock) {
+      for (Segment segment : segments.values()) {
+        ByteBuffer acks = segment.takePendingAcks();
+        if (acks == null) {
+          continue;
+        }
+        if (segment.ackChannel == null) {
+          segment.ackChannel = FileChannel.open(segment.ackPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+        }
+        while (acks.hasRemaining()) {
+          segment.ackChannel.write(acks);
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the oldest segments whose entries are all acknowledged. The segment being written is kept.
+   *
+   * @return the number of segments deleted
+   */
+  public int truncate() {
+    int deleted = 0;
+    synchronized (ackLock) {
+      while (true) {
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        Segment segment = first == null ? null : first.getValue();
+        if (segment == null || segment == current || segment.ackedCount < segment.records) {
+          return deleted;
+        }
+        segments.remove(first.getKey());
+        try {
+          closeAcks(segment);
+          Files.deleteIfExists(segment.path);
+          Files.deleteIfExists(segment.ackPath);
+        } catch (IOException e) {
+          log.warn("truncate() - Could not delete {}", segment.path, e);
+        }
+        deleted++;
+      }
+    }
+  }
+
+  private static void closeAcks(Segment segment) throws IOException {
+    if (segment.ackChannel != null) {
+      segment.ackChannel.close();
+      segment.ackChannel = null;
+    }
+  }
+
+  /**
+   * @return the offset the next append gets
+   */
+  public synchronized long nextOffset() {
+    return nextOffset;
+  }
+
+  /**
+   * @return the last offset known to be on disk, -1 if none
+   */
+  public long durableOffset() {
+    return durableOffset;
+  }
+
+  public int segments() {
+    return segments.size();
+  }
+
+  /**
+   * @return entries appended or recovered but not yet acknowledged
+   */
+  public long unacknowledged() {
+    long unacknowledged = 0L;
+    for (Segment segment : segments.values()) {
+      unacknowledged += segment.records - segment.ackedCount;
+    }
+    return unacknowledged;
+  }
+
+  public long appendedBytes() {
+    return appendedBytes.sum();
+  }
+
+  public long writtenBytes() {
+    return writtenBytes.sum();
+  }
+
+  public long fsyncs() {
+    return fsyncs.sum();
+  }
+
+  public long fsyncNanos() {
+    return fsyncNanos.sum();
+  }
+
+  /**
+   * Writes and fsyncs what is buffered; the segments and their acknowledgements stay for the next start.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    LockSupport.unpark(flusher);
+    try {
+      flusher.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    writeAcks();
+    synchronized (ackLock) {
+      for (Segment segment : segments.values()) {
+        closeAcks(segment);
+      }
+    }
+    synchronized (this) {
+      if (current != null) {
+        writeBuffered();
+        force(current.channel);
+        current.channel.close();
+        current = null;
+      }
+    }
+  }
+}
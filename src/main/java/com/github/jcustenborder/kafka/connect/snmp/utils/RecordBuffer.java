@@ -15,55 +15,337 @@
  */
 package com.github.jcustenborder.kafka.connect.snmp.utils;
 
-import java.util.LinkedList;
+import com.github.jcustenborder.kafka.connect.snmp.enums.OverflowPolicy;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
 /**
- * Class to handle constant time size check and concurrent deque ops
+ * Bounded lock-free ring buffer between the snmp4j dispatcher threads (producers) and poll() (consumer).
+ * <p>
+ * Slots are claimed with a per-slot sequence number (Vyukov style), so producers never take a lock and
+ * no node is allocated per record. The buffer is bounded by record count and optionally by an estimated
+ * byte size; what happens on overflow is decided by the {@link OverflowPolicy}.
  *
  * @param <T>
  */
 public class RecordBuffer<T> {
-  private LinkedList<T> buffer;
-  private final Object lock;
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+  static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Object[] elements;
+  private final int[] weights;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicInteger highWaterMark = new AtomicInteger();
+
+  private final long maxBytes;
+  private final OverflowPolicy overflowPolicy;
+  private final long blockTimeoutNanos;
+
+  private final LongAdder droppedNewest = new LongAdder();
+  private final LongAdder droppedOldest = new LongAdder();
+  private final LongAdder droppedBlockTimeout = new LongAdder();
+
+  private long[] enqueueNanos;
+  private LongConsumer residencyListener;
+  private Consumer<T> evictionListener;
+
+  private volatile Thread waiter;
+  private volatile int wakeThreshold = Integer.MAX_VALUE;
+  private final AtomicLong wakeUps = new AtomicLong();
 
   public RecordBuffer() {
-    buffer = new LinkedList<>();
-    lock = new Object();
+    this(DEFAULT_CAPACITY, 0L, OverflowPolicy.DROP_NEWEST, 0L);
   }
 
-  public void add(T element) {
-    synchronized (lock) {
-      buffer.add(element);
+  /**
+   * @param capacity maximum number of records, rounded up to the next power of two
+   * @param maxBytes maximum estimated size of buffered records in bytes, 0 for no limit
+   * @param overflowPolicy what to do with a record that does not fit
+   * @param blockTimeoutMs how long a producer waits for room with {@link OverflowPolicy#BLOCK}
+   */
+  public RecordBuffer(int capacity, long maxBytes, OverflowPolicy overflowPolicy, long blockTimeoutMs) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30, was " + capacity);
+    }
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.elements = new Object[size];
+    this.weights = new int[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      this.sequences.set(i, i);
     }
+    this.mask = size - 1;
+    this.maxBytes = maxBytes;
+    this.overflowPolicy = overflowPolicy;
+    this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
   }
 
-  public void addAll(T[] elements) {
-    synchronized (lock) {
-      for (T element : elements) {
-        buffer.add(element);
+  /**
+   * Reports how long in ns every drained record was buffered. Costs a {@link System#nanoTime()} per record and a
+   * long per slot, so it is off by default. Must be called before the buffer is shared with producers.
+   */
+  public void trackResidency(LongConsumer listener) {
+    this.enqueueNanos = new long[elements.length];
+    this.residencyListener = listener;
+  }
+
+  /**
+   * Hands every record evicted by {@link OverflowPolicy#DROP_OLDEST} to the listener, on the producer thread that
+   * evicted it. Must be called before the buffer is shared with producers.
+   */
+  public void onEviction(Consumer<T> listener) {
+    this.evictionListener = listener;
+  }
+
+  public boolean add(T element) {
+    return add(element, 0);
+  }
+
+  /**
+   * Adds a record with its estimated size in bytes.
+   *
+   * @return false if the record was dropped because of the overflow policy
+   */
+  public boolean add(T element, int weight) {
+    long deadline = 0L;
+    while (true) {
+      if (hasRoomFor(weight) && offer(element, weight)) {
+        return true;
+      }
+      switch (overflowPolicy) {
+        case DROP_OLDEST:
+          T evicted = poll();
+          if (evicted == null) {
+            // Nothing to evict, another producer raced us or the record alone exceeds maxBytes
+            droppedNewest.increment();
+            return false;
+          }
+          droppedOldest.increment();
+          if (evictionListener != null) {
+            evictionListener.accept(evicted);
+          }
+          break;
+        case BLOCK:
+          if (deadline == 0L) {
+            deadline = System.nanoTime() + blockTimeoutNanos;
+          } else if (System.nanoTime() - deadline >= 0) {
+            droppedBlockTimeout.increment();
+            return false;
+          }
+          LockSupport.parkNanos(BLOCK_PARK_NANOS);
+          break;
+        default:
+          droppedNewest.increment();
+          return false;
       }
     }
   }
-  public int size() {
-    synchronized (lock) {
-      return buffer.size();
+
+  public void addAll(T[] elements) {
+    for (T element : elements) {
+      add(element);
     }
   }
 
+  public int size() {
+    long currentHead = head.get();
+    long currentTail = tail.get();
+    return (int) Math.max(0L, Math.min(currentTail - currentHead, elements.length));
+  }
+
   public boolean isEmpty() {
-    synchronized (lock) {
-      return buffer.isEmpty();
-    }
+    return size() == 0;
   }
 
   public List<T> drain(int numRecords) {
-    LinkedList<T> result = new LinkedList<>();
-    synchronized (lock) {
-      while (numRecords > 0 && !buffer.isEmpty()) {
-        result.add(buffer.poll());
-        numRecords--;
+    List<T> result = new ArrayList<>(Math.min(numRecords, size()));
+    while (numRecords > 0) {
+      T element = poll();
+      if (element == null) {
+        break;
       }
+      result.add(element);
+      numRecords--;
     }
     return result;
   }
+
+  private boolean hasRoomFor(int weight) {
+    if (maxBytes <= 0L) {
+      return true;
+    }
+    long current = bytes.get();
+    // An oversized record is still admitted to an empty buffer, otherwise it could never be added
+    return current == 0L || current + weight <= maxBytes;
+  }
+
+  private boolean offer(T element, int weight) {
+    long pos = tail.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long diff = sequences.get(index) - pos;
+      if (diff == 0L) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          elements[index] = element;
+          weights[index] = weight;
+          if (enqueueNanos != null) {
+            enqueueNanos[index] = System.nanoTime();
+          }
+          sequences.set(index, pos + 1);
+          if (weight != 0) {
+            bytes.addAndGet(weight);
+          }
+          updateHighWaterMark();
+          signalWaiter();
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0L) {
+        return false;
+      } else {
+        pos = tail.get();
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private T poll() {
+    long pos = head.get();
+    while (true) {
+      int index = (int) (pos & mask);
+      long diff = sequences.get(index) - (pos + 1);
+      if (diff == 0L) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          T element = (T) elements[index];
+          int weight = weights[index];
+          long enqueuedAt = enqueueNanos != null ? enqueueNanos[index] : 0L;
+          elements[index] = null;
+          sequences.set(index, pos + mask + 1);
+          if (weight != 0) {
+            bytes.addAndGet(-weight);
+          }
+          if (residencyListener != null) {
+            residencyListener.accept(System.nanoTime() - enqueuedAt);
+          }
+          return element;
+        }
+        pos = head.get();
+      } else if (diff < 0L) {
+        return null;
+      } else {
+        pos = head.get();
+      }
+    }
+  }
+
+  /**
+   * Blocks the consumer until at least {@code minRecords} are buffered, the timeout passes or {@link #wakeUp()}
+   * is called. Producers only unpark the consumer once the threshold is reached, so a lingering consumer is not
+   * woken for every single record.
+   *
+   * @return true if at least {@code minRecords} are buffered
+   */
+  public boolean await(int minRecords, long timeout, TimeUnit unit) {
+    return await(minRecords, timeout, unit, wakeUps.get());
+  }
+
+  /**
+   * As {@link #await(int, long, TimeUnit)}, but also returns at once if {@link #wakeUp()} was called since
+   * {@code wakeUpsSeen} was read from {@link #wakeUpCount()}. A consumer that samples the count before checking its
+   * own stop flag cannot miss a wake-up that lands in between.
+   */
+  public boolean await(int minRecords, long timeout, TimeUnit unit, long wakeUpsSeen) {
+    if (size() >= minRecords) {
+      return true;
+    }
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    final long wakeUpsAtStart = wakeUpsSeen;
+    waiter = Thread.currentThread();
+    wakeThreshold = minRecords;
+    try {
+      while (true) {
+        if (size() >= minRecords) {
+          return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0L || wakeUps.get() != wakeUpsAtStart || Thread.currentThread().isInterrupted()) {
+          return size() >= minRecords;
+        }
+        LockSupport.parkNanos(this, remaining);
+      }
+    } finally {
+      wakeThreshold = Integer.MAX_VALUE;
+      waiter = null;
+    }
+  }
+
+  /**
+   * Releases a consumer blocked in {@link #await(int, long, TimeUnit)}, used when the task is stopping.
+   */
+  public void wakeUp() {
+    wakeUps.incrementAndGet();
+    Thread thread = waiter;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  public long wakeUpCount() {
+    return wakeUps.get();
+  }
+
+  private void signalWaiter() {
+    Thread thread = waiter;
+    if (thread != null && size() >= wakeThreshold) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void updateHighWaterMark() {
+    int current = size();
+    if (current > highWaterMark.get()) {
+      highWaterMark.accumulateAndGet(current, Math::max);
+    }
+  }
+
+  public int capacity() {
+    return elements.length;
+  }
+
+  public long sizeInBytes() {
+    return bytes.get();
+  }
+
+  public int highWaterMark() {
+    return highWaterMark.get();
+  }
+
+  public OverflowPolicy overflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public long droppedNewest() {
+    return droppedNewest.sum();
+  }
+
+  public long droppedOldest() {
+    return droppedOldest.sum();
+  }
+
+  public long droppedBlockTimeout() {
+    return droppedBlockTimeout.sum();
+  }
 }
@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket per source, so one flooding device cannot take the whole record buffer.
+ * <p>
+ * Buckets live in a Guava cache, which is segmented so threads working on different sources rarely contend, and
+ * which evicts sources idle for {@code idleMs} or over {@code maxSources}. An evicted source starts again with a
+ * full bucket. Each bucket is refilled lazily from the time of the trap, there is no timer.
+ *
+ * @param <K> source key, must not be mutated once passed in
+ */
+public class SourceRateLimiter<K> {
+  private final double permitsPerNano;
+  private final double burst;
+  private final Cache<K, TokenBucket> buckets;
+  private final LongAdder limited = new LongAdder();
+
+  static final class TokenBucket {
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double tokens, long nowNanos) {
+      this.tokens = tokens;
+      this.refilledAt = nowNanos;
+    }
+
+    synchronized boolean tryAcquire(long nowNanos, double permitsPerNano, double burst) {
+      if (nowNanos > refilledAt) {
+        tokens = Math.min(burst, tokens + (nowNanos - refilledAt) * permitsPerNano);
+        refilledAt = nowNanos;
+      }
+      if (tokens >= 1.0) {
+        tokens -= 1.0;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * @param permitsPerSecond sustained traps per second allowed per source
+   * @param burst traps a source may send at once after being quiet, at least 1
+   * @param maxSources sources tracked before the least recently used is evicted
+   * @param idleMs time after which a quiet source is forgotten
+   */
+  public SourceRateLimiter(double permitsPerSecond, int burst, long maxSources, long idleMs) {
+    if (permitsPerSecond <= 0.0 || burst < 1) {
+      throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+    }
+    this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.burst = burst;
+    this.buckets = CacheBuilder.newBuilder()
+        .maximumSize(maxSources)
+        .expireAfterAccess(idleMs, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * @return false if the source has used up its bucket and the trap should be dropped
+   */
+  public boolean tryAcquire(K key, long nowNanos) {
+    TokenBucket bucket = buckets.getIfPresent(key);
+    if (bucket == null) {
+      try {
+        bucket = buckets.get(key, () -> new TokenBucket(burst, nowNanos));
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    if (bucket.tryAcquire(nowNanos, permitsPerNano, burst)) {
+      return true;
+    }
+    limited.increment();
+    return false;
+  }
+
+  public long size() {
+    return buckets.size();
+  }
+
+  public long limited() {
+    return limited.sum();
+  }
+}
@@ -0,0 +1,309 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FIFO queue of byte records in memory-mapped segment files, the overflow tier behind {@link RecordBuffer}.
+ * <p>
+ * Every segment is a file of {@code segmentBytes} mapped once; records are appended as a length prefix followed by
+ * the payload, and a zero length (the file is zero filled) marks the end of the written data. Appending and reading
+ * are plain memory copies, the kernel writes the dirty pages back in the background. A fully read segment is deleted.
+ * The segment count is capped by {@code maxBytes}; a record that does not fit is dropped and its bytes counted.
+ * <p>
+ * Segments left by a previous run are replayed first. Their read position is not persisted, so records of a segment
+ * that was partially read before a crash are replayed again.
+ * <p>
+ * The queue is spilling from the first record appended until {@link #poll()} finds it empty. Both change under the
+ * queue's lock, so {@link #appendIfSpilling(byte[], boolean)} never adds a record behind a reader that already gave up.
+ */
+public class SpillQueue implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(SpillQueue.class);
+  static final String SEGMENT_PREFIX = "spill-";
+  static final String SEGMENT_SUFFIX = ".seg";
+  static final int LENGTH_BYTES = Integer.BYTES;
+
+  /**
+   * Outcome of {@link #appendIfSpilling(byte[], boolean)}.
+   */
+  public enum Append {
+    APPENDED,
+    /**
+     * The disk cap is reached, the record was dropped.
+     */
+    DROPPED,
+    /**
+     * The queue is not spilling, the record belongs in memory.
+     */
+    NOT_SPILLING
+  }
+
+  private static final class Segment {
+    final long id;
+    final Path path;
+    final MappedByteBuffer buffer;
+    int writePosition;
+    int readPosition;
+
+    Segment(long id, Path path, MappedByteBuffer buffer) {
+      this.id = id;
+      this.path = path;
+      this.buffer = buffer;
+    }
+  }
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  private long nextSegmentId;
+  private long backlogBytes;
+  private int backlogRecords;
+  private boolean spilling;
+  private final LongAdder spilledBytes = new LongAdder();
+  private final LongAdder replayedBytes = new LongAdder();
+  private final LongAdder droppedBytes = new LongAdder();
+  private final LongAdder droppedRecords = new LongAdder();
+
+  /**
+   * @param directory where segment files are kept, created if missing
+   * @param segmentBytes size of one segment file
+   * @param maxBytes disk space the segments may take, at least one segment
+   */
+  public SpillQueue(Path directory, int segmentBytes, long maxBytes) throws IOException {
+    if (segmentBytes <= LENGTH_BYTES) {
+      throw new IllegalArgumentException("segmentBytes must be larger than " + LENGTH_BYTES + ", was " + segmentBytes);
+    }
+    this.directory = Files.createDirectories(directory);
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, maxBytes / segmentBytes));
+    recover();
+  }
+
+  private void recover() throws IOException {
+    List<Long> ids = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        try {
+          ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          log.warn("recover() - Ignoring {}", file);
+        }
+      }
+    }
+    Collections.sort(ids);
+    for (long id : ids) {
+      Segment segment = map(id);
+      // Scan to the end of the written data, later appends go to a new segment
+      int position = 0;
+      while (position + LENGTH_BYTES <= segmentBytes) {
+        int length = segment.buffer.getInt(position);
+        if (length <= 0 || position + LENGTH_BYTES + length > segmentBytes) {
+          break;
+        }
+        position += LENGTH_BYTES + length;
+        backlogRecords++;
+      }
+      segment.writePosition = segmentBytes;
+      backlogBytes += position;
+      segments.addLast(segment);
+      nextSegmentId = id + 1;
+    }
+    // Recovered records are older than anything appended now
+    spilling = backlogRecords > 0;
+    if (!ids.isEmpty()) {
+      log.info("recover() - Replaying {} record(s), {} byte(s) from {} segment(s) in {}",
+          backlogRecords, backlogBytes, ids.size(), directory);
+    }
+  }
+
+  private Segment map(long id) throws IOException {
+    Path path = directory.resolve(SEGMENT_PREFIX + String.format("%020d", id) + SEGMENT_SUFFIX);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The mapping stays valid after the channel is closed
+      return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    }
+  }
+
+  /**
+   * Appends a record.
+   *
+   * @return false if the record was dropped because the disk cap is reached
+   */
+  public synchronized boolean append(byte[] record) {
+    return appendIfSpilling(record, true) == Append.APPENDED;
+  }
+
+  /**
+   * Appends a record if the queue is spilling, or starts spilling with it.
+   *
+   * @param start whether to append even if the queue is not spilling
+   */
+  public synchronized Append appendIfSpilling(byte[] record, boolean start) {
+    if (!spilling && !start) {
+      return Append.NOT_SPILLING;
+    }
+    spilling = true;
+    int needed = LENGTH_BYTES + record.length;
+    if (needed > segmentBytes) {
+      return drop(record);
+    }
+    Segment tail = segments.peekLast();
+    if (tail == null || tail.writePosition + needed > segmentBytes) {
+      if (segments.size() >= maxSegments) {
+        return drop(record);
+      }
+      try {
+        tail = map(nextSegmentId++);
+      } catch (IOException e) {
+        log.warn("append() - Could not create a segment in {}", directory, e);
+        return drop(record);
+      }
+      segments.addLast(tail);
+    }
+    // Payload and terminator first, the length makes the record visible to a reader of a recovered segment
+    int next = tail.writePosition + needed;
+    tail.buffer.put(tail.writePosition + LENGTH_BYTES, record);
+    if (next + LENGTH_BYTES <= segmentBytes) {
+      tail.buffer.putInt(next, 0);
+    }
+    tail.buffer.putInt(tail.writePosition, record.length);
+    tail.writePosition = next;
+    backlogBytes += needed;
+    backlogRecords++;
+    spilledBytes.add(record.length);
+    return Append.APPENDED;
+  }
+
+  private Append drop(byte[] record) {
+    droppedBytes.add(record.length);
+    droppedRecords.increment();
+    return Append.DROPPED;
+  }
+
+  /**
+   * @return the oldest record, null if the queue is empty, which also ends spilling
+   */
+  public synchronized byte[] poll() {
+    while (true) {
+      Segment head = segments.peekFirst();
+      if (head == null) {
+        spilling = false;
+        return null;
+      }
+      int position = head.readPosition;
+      int length = position + LENGTH_BYTES <= segmentBytes ? head.buffer.getInt(position) : 0;
+      if (length > 0 && position + LENGTH_BYTES + length <= head.writePosition) {
+        byte[] record = new byte[length];
+        head.buffer.get(position + LENGTH_BYTES, record);
+        head.readPosition = position + LENGTH_BYTES + length;
+        backlogBytes -= LENGTH_BYTES + length;
+        backlogRecords--;
+        replayedBytes.add(length);
+        return record;
+      }
+      if (segments.size() == 1 && head.writePosition < segmentBytes) {
+        // Caught up with the writer, reuse the segment from the start
+        head.buffer.putInt(0, 0);
+        head.readPosition = 0;
+        head.writePosition = 0;
+        spilling = false;
+        return null;
+      }
+      segments.removeFirst();
+      delete(head);
+    }
+  }
+
+  private void delete(Segment segment) {
+    try {
+      Files.deleteIfExists(segment.path);
+    } catch (IOException e) {
+      log.warn("delete() - Could not delete {}", segment.path, e);
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    return backlogRecords == 0;
+  }
+
+  public synchronized boolean isSpilling() {
+    return spilling;
+  }
+
+  public synchronized int size() {
+    return backlogRecords;
+  }
+
+  /**
+   * @return bytes written but not yet replayed, including the length prefixes
+   */
+  public synchronized long backlogBytes() {
+    return backlogBytes;
+  }
+
+  public synchronized int segments() {
+    return segments.size();
+  }
+
+  public long spilledBytes() {
+    return spilledBytes.sum();
+  }
+
+  public long replayedBytes() {
+    return replayedBytes.sum();
+  }
+
+  public long droppedBytes() {
+    return droppedBytes.sum();
+  }
+
+  public long droppedRecords() {
+    return droppedRecords.sum();
+  }
+
+  /**
+   * Forces written records to disk and releases the segments; unread segments stay for the next run.
+   */
+  @Override
+  public synchronized void close() {
+    for (Segment segment : segments) {
+      if (segment.readPosition >= segment.writePosition) {
+        delete(segment);
+      } else {
+        segment.buffer.force();
+      }
+    }
+    segments.clear();
+  }
+}
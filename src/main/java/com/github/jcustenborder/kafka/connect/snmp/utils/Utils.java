@@ -16,6 +16,14 @@
  */
 package com.github.jcustenborder.kafka.connect.snmp.utils;
 
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -25,4 +33,19 @@ public class Utils {
   public static boolean noneNull(Object... args) {
     return Arrays.stream(args).allMatch(Objects::nonNull);
   }
+
+  /**
+   * @return the IP of a peer without its port, null if the transport has no IP address
+   */
+  public static InetAddress inetAddressOf(Address peerAddress) {
+    return peerAddress instanceof IpAddress ? ((IpAddress) peerAddress).getInetAddress() : null;
+  }
+
+  /**
+   * @return the value of snmpTrapOID.0, null if the PDU has none
+   */
+  public static OID trapOidOf(PDU pdu) {
+    Variable trapOid = pdu.getVariable(SnmpConstants.snmpTrapOID);
+    return trapOid instanceof OID ? (OID) trapOid : null;
+  }
 }
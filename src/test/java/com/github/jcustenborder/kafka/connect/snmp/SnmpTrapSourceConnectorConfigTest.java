@@ -22,8 +22,10 @@ import com.github.jcustenborder.kafka.connect.snmp.enums.PrivacyProtocol;
 import com.github.jcustenborder.kafka.connect.utils.config.MarkdownFormatter;
 import org.apache.kafka.common.config.ConfigException;
 import org.junit.jupiter.api.Test;
+import org.snmp4j.smi.OID;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -119,4 +121,28 @@ public class SnmpTrapSourceConnectorConfigTest {
     });
 
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shouldParsePortsAndRanges() {
+    assertEquals(List.of(10161, 10170, 10171, 10172), SnmpTrapSourceConnectorConfig.parsePorts(List.of("10161", " 10170-10172", "10171")));
+
+    Map<String, String> m = settingsV2();
+    m.put(SnmpTrapSourceConnectorConfig.LISTEN_PORTS_CONF, "10172-10170");
+    assertThrows(ConfigException.class, () -> new SnmpTrapSourceConnectorConfig(m));
+    m.put(SnmpTrapSourceConnectorConfig.LISTEN_PORTS_CONF, "snmp");
+    assertThrows(ConfigException.class, () -> new SnmpTrapSourceConnectorConfig(m));
+  }
+
+  @Test
+  public void shouldValidateFilterSettings() {
+    Map<String, String> m = settingsV2();
+    m.put(SnmpTrapSourceConnectorConfig.FILTER_EXCLUDE_TRAP_OIDS_CONF, ".1.3.6.1.4.1.9");
+    m.put(SnmpTrapSourceConnectorConfig.FILTER_INCLUDE_PEERS_CONF, "10.0.0.0/8, 2001:db8::/32");
+    SnmpTrapSourceConnectorConfig config = new SnmpTrapSourceConnectorConfig(m);
+    assertEquals(List.of(new OID("1.3.6.1.4.1.9")), config.filterExcludeTrapOids);
+    assertEquals(List.of("10.0.0.0/8", "2001:db8::/32"), config.filterIncludePeers);
+
+    m.put(SnmpTrapSourceConnectorConfig.FILTER_INCLUDE_PEERS_CONF, "snmp.example.com");
+    assertThrows(ConfigException.class, () -> new SnmpTrapSourceConnectorConfig(m));
+  }
+}
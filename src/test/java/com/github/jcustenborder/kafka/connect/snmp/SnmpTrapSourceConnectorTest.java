@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2021 Elisa Oyj
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class SnmpTrapSourceConnectorTest {
+
+  private static List<Map<String, String>> taskConfigs(Map<String, String> settings, int maxTasks) {
+    SnmpTrapSourceConnector connector = new SnmpTrapSourceConnector();
+    connector.start(settings);
+    return connector.taskConfigs(maxTasks);
+  }
+
+  private static List<String> values(List<Map<String, String>> configs, String key) {
+    return configs.stream().map(c -> c.get(key)).collect(Collectors.toList());
+  }
+
+  @Test
+  public void shouldRunOneTaskByDefault() {
+    List<Map<String, String>> configs = taskConfigs(SnmpTrapSourceConnectorConfigTest.settingsV2(), 4);
+    assertEquals(1, configs.size());
+    assertFalse(configs.get(0).containsKey(SnmpTrapSourceConnectorConfig.TASK_ID_CONF));
+  }
+
+  @Test
+  public void shouldGiveEveryTaskItsOwnPort() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.LISTEN_PORTS_CONF, "10161,10170-10172");
+
+    List<Map<String, String>> configs = taskConfigs(settings, 8);
+    assertEquals(List.of("0", "1", "2", "3"), values(configs, SnmpTrapSourceConnectorConfig.TASK_ID_CONF));
+    assertEquals(List.of("10161", "10170", "10171", "10172"), values(configs, SnmpTrapSourceConnectorConfig.LISTEN_PORT_CONF));
+
+    configs = taskConfigs(settings, 2);
+    assertEquals(List.of("10161", "10170"), values(configs, SnmpTrapSourceConnectorConfig.LISTEN_PORT_CONF));
+  }
+
+  @Test
+  public void shouldShareListenPort() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.LISTEN_PORT_SHARED_CONF, "true");
+
+    List<Map<String, String>> configs = taskConfigs(settings, 3);
+    assertEquals(List.of("0", "1", "2"), values(configs, SnmpTrapSourceConnectorConfig.TASK_ID_CONF));
+    assertEquals(List.of(SnmpTrapSourceConnectorConfigTest.listeningPort, SnmpTrapSourceConnectorConfigTest.listeningPort,
+        SnmpTrapSourceConnectorConfigTest.listeningPort), values(configs, SnmpTrapSourceConnectorConfig.LISTEN_PORT_CONF));
+  }
+}
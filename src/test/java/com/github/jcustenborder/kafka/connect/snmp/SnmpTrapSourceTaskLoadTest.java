@@ -155,6 +155,12 @@ public class SnmpTrapSourceTaskLoadTest {
   public void setUp() throws Exception {
     task = new SnmpTrapSourceTask();
     Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV3();
+    // Compare dispatchers with e.g. -Dload.dispatcher.mode=VIRTUAL_THREAD
+    String dispatcherMode = System.getProperty("load.dispatcher.mode");
+    if (dispatcherMode != null) {
+      settings.put(SnmpTrapSourceConnectorConfig.USE_MULTITHREADED_PROCESSING, "true");
+      settings.put(SnmpTrapSourceConnectorConfig.DISPATCHER_MODE_CONF, dispatcherMode);
+    }
     task.start(settings);
 
     // Specify receiver
@@ -17,30 +17,57 @@
 package com.github.jcustenborder.kafka.connect.snmp;
 
 
+import com.github.jcustenborder.kafka.connect.snmp.enums.DispatcherMode;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.PDUConverter;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.TrapDeduplicator;
+import com.github.jcustenborder.kafka.connect.snmp.transport.EpollUdpTransportMapping;
+import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.source.SourceTaskContext;
+import org.apache.kafka.connect.storage.OffsetStorageReader;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
 import org.snmp4j.Snmp;
+import org.snmp4j.event.ResponseEvent;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.Address;
 import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TcpAddress;
 import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.DefaultTcpTransportMapping;
 import org.snmp4j.transport.DefaultUdpTransportMapping;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.net.SocketException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+import static com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfigTest.batchSize;
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createInform;
 import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createNonTrap;
 import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV2Trap;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class SnmpTrapSourceTaskTest {
   private SnmpTrapSourceTask task;
@@ -77,7 +104,7 @@ public class SnmpTrapSourceTaskTest {
   }
 
   @Test
-  public void shouldBufferTraps() throws InterruptedException, IOException {
+  public void shouldBufferTraps() throws Exception {
 
     int i;
 
@@ -89,6 +116,23 @@ public class SnmpTrapSourceTaskTest {
 
     Thread.sleep(5000);
     assertEquals(i, task.getRecordBuffer().size(), "Sent traps should be equal to buffered records");
+    assertEquals(i, task.getMetrics().getConversionNanos().getCount());
+    String[] topPeers = task.getMetrics().getTopPeers();
+    assertEquals(1, topPeers.length);
+    assertTrue(topPeers[0].startsWith("127.0.0.1 count=" + i), topPeers[0]);
+    assertEquals(1, task.getMetrics().getTopTrapOids().length);
+    assertEquals(i, task.getMetrics().getReceiveToEnqueueNanos().getCount());
+    assertTrue(task.getMetrics().getReceiveToEnqueueNanos().getMax() >= task.getMetrics().getConversionNanos().getP50());
+
+    task.poll();
+    assertEquals(1, task.getMetrics().getPollBatchSize().getCount());
+    assertEquals(batchSize, task.getMetrics().getBufferResidencyNanos().getCount());
+
+    ObjectName metricsName = new ObjectName(SnmpTrapSourceTask.METRICS_NAME);
+    MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    assertEquals((long) i, mbs.getAttribute(metricsName, "ConversionNanos.Count"));
+    mbs.invoke(metricsName, "resetHistograms", new Object[0], new String[0]);
+    assertEquals(0L, mbs.getAttribute(metricsName, "ConversionNanos.Count"));
   }
 
 
@@ -163,5 +207,489 @@ public class SnmpTrapSourceTaskTest {
 
   }
 
+  private void restartWith(String key, String value) {
+    this.task.stop();
+    this.settings.put(key, value);
+    this.task = new SnmpTrapSourceTask();
+    this.task.start(this.settings);
+  }
+
+  @Test
+  public void shouldConvertAndAcknowledgeInforms() throws IOException, InterruptedException {
+    snmp.listen();
+    target.setTimeout(2000);
+    target.setRetries(0);
+
+    ResponseEvent<Address> response = snmp.send(createInform("1.2.3.4.5", "some string"), target);
+    assertNotNull(response.getResponse(), "The INFORM should be acknowledged");
+    assertEquals(PDU.RESPONSE, response.getResponse().getType());
+    assertEquals(1, task.getRecordBuffer().size());
+    assertEquals(1L, task.getMetrics().getInformsReceived());
+    Thread.sleep(100);
+    assertEquals(1L, task.getMetrics().getInformAcksSent());
+    assertEquals(1L, task.getMetrics().getInformAckNanos().getCount());
+    assertEquals(0, task.getMetrics().getInformAcksPending());
+  }
+
+  @Test
+  public void shouldAcknowledgeInformsAfterCommit() throws Exception {
+    restartWith(SnmpTrapSourceConnectorConfig.INFORM_ACK_MODE_CONF, "ON_COMMIT");
+    snmp.listen();
+    target.setTimeout(5000);
+    target.setRetries(0);
+
+    CompletableFuture<ResponseEvent<Address>> response = CompletableFuture.supplyAsync(() -> {
+      try {
+        return snmp.send(createInform("1.2.3.4.5", "some string"), target);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    List<SourceRecord> records = task.poll();
+    assertEquals(1, records.size());
+    Thread.sleep(200);
+    assertFalse(response.isDone(), "The INFORM should not be acknowledged before its record is committed");
+    assertEquals(1, task.getMetrics().getInformAcksPending());
+
+    task.commitRecord(records.get(0), null);
+    assertEquals(PDU.RESPONSE, response.get(5, TimeUnit.SECONDS).getResponse().getType());
+  }
+
+  @Test
+  public void shouldDropInformsAboveMaxPendingAcknowledgements() throws Exception {
+    this.settings.put(SnmpTrapSourceConnectorConfig.INFORM_ACK_MAX_PENDING_CONF, "1");
+    restartWith(SnmpTrapSourceConnectorConfig.INFORM_ACK_MODE_CONF, "ON_COMMIT");
+    snmp.listen();
+    target.setTimeout(500);
+    target.setRetries(0);
+
+    for (int i = 0; i < 2; i++) {
+      String value = "inform " + i;
+      CompletableFuture.runAsync(() -> {
+        try {
+          snmp.send(createInform("1.2.3.4.5", value), target);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      Thread.sleep(200);
+    }
+    List<SourceRecord> records = task.poll();
+    assertEquals(1, records.size(), "The INFORM above the limit should not be sent to Kafka");
+    assertEquals(1L, task.getMetrics().getInformAcksRejected());
+    assertEquals(1, task.getMetrics().getInformAcksPending());
+  }
+
+  @Test
+  public void shouldDropInformsWhenDisabled() throws IOException {
+    restartWith(SnmpTrapSourceConnectorConfig.INFORM_ACK_MODE_CONF, "DISABLED");
+    snmp.listen();
+    target.setTimeout(500);
+    target.setRetries(0);
+
+    assertNull(snmp.send(createInform("1.2.3.4.5", "some string"), target).getResponse());
+    assertEquals(0, task.getRecordBuffer().size());
+    assertEquals(1L, task.getMetrics().getDroppedNotTrap());
+  }
+
+  @Test
+  public void shouldReceiveTrapsAndInformsOverTcp() throws IOException, InterruptedException {
+    restartWith(SnmpTrapSourceConnectorConfig.LISTEN_PROTOCOL_CONF, "TCP");
+    Snmp tcp = new Snmp(new DefaultTcpTransportMapping());
+    try {
+      tcp.listen();
+      target.setAddress(new TcpAddress(String.format("127.0.0.1/%s", SnmpTrapSourceConnectorConfigTest.listeningPort)));
+      target.setTimeout(2000);
+      target.setRetries(0);
+      for (int i = 0; i < 5; i++) {
+        tcp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+      }
+      ResponseEvent<Address> response = tcp.send(createInform("1.2.3.4.5", "some string"), target);
+      assertNotNull(response.getResponse(), "The INFORM should be acknowledged on the same connection");
+
+      assertEquals(6, task.getRecordBuffer().size());
+      assertEquals(1, task.getMetrics().getTcpOpenConnections());
+      assertEquals(6L, task.getMetrics().getTcpMessagesRead());
+      assertTrue(task.getMetrics().getTcpBytesRead() > 0L);
+    } finally {
+      tcp.close();
+    }
+  }
+
+  @Test
+  public void shouldReceiveTrapsAndInformsOverEpollUdp() throws IOException, InterruptedException {
+    assumeTrue(EpollUdpTransportMapping.isAvailable(), "The native epoll transport is only available on Linux");
+    restartWith(SnmpTrapSourceConnectorConfig.LISTEN_PROTOCOL_CONF, "UDP_EPOLL");
+    snmp.listen();
+    target.setTimeout(2000);
+    target.setRetries(0);
+    for (int i = 0; i < 5; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+    }
+    ResponseEvent<Address> response = snmp.send(createInform("1.2.3.4.5", "some string"), target);
+    assertNotNull(response.getResponse(), "The INFORM should be acknowledged from the receiving socket");
+
+    assertEquals(6, task.getRecordBuffer().size());
+    assertEquals(6L, task.getMetrics().getEpollUdpPackets());
+    assertTrue(task.getMetrics().getEpollUdpPacketsPerRead() >= 1.0);
+  }
+
+  @Test
+  public void shouldReturnFromPollWhenTrapArrives() throws IOException {
+    restartWith(SnmpTrapSourceConnectorConfig.POLL_BACKOFF_MS_CONF, "10000");
+
+    CompletableFuture<List<SourceRecord>> polled = CompletableFuture.supplyAsync(() -> this.task.poll());
+    long start = System.nanoTime();
+    snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+
+    List<SourceRecord> records = polled.join();
+    assertNotNull(records, "poll() should return the trap instead of waiting out poll.backoff.ms");
+    assertEquals(1, records.size());
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+  }
+
+  @Test
+  public void shouldReturnFromPollWhenStopping() throws InterruptedException {
+    restartWith(SnmpTrapSourceConnectorConfig.POLL_BACKOFF_MS_CONF, "10000");
+
+    CompletableFuture<List<SourceRecord>> polled = CompletableFuture.supplyAsync(() -> this.task.poll());
+    Thread.sleep(100);
+    long start = System.nanoTime();
+    this.task.stop();
+
+    assertNull(polled.join());
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+  }
+
+  @Test
+  public void shouldNotWaitInPollAfterStop() {
+    restartWith(SnmpTrapSourceConnectorConfig.POLL_BACKOFF_MS_CONF, "10000");
+    this.task.stop();
+
+    long start = System.nanoTime();
+    assertNull(this.task.poll());
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+  }
+
+  @Test
+  public void shouldBufferTrapsFromReusePortSockets() throws IOException, InterruptedException {
+    restartWith(SnmpTrapSourceConnectorConfig.LISTEN_UDP_SOCKETS_CONF, "4");
+
+    int senders = 8;
+    int perSender = 5;
+    for (int s = 0; s < senders; s++) {
+      // Each sender has its own source port, which is what the kernel hashes on
+      Snmp sender = new Snmp(new DefaultUdpTransportMapping());
+      for (int i = 0; i < perSender; i++) {
+        sender.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+      }
+      sender.close();
+    }
+
+    Thread.sleep(2000);
+    assertEquals(senders * perSender, task.getRecordBuffer().size(), "Sent traps should be equal to buffered records");
+    long[] perSocket = task.getMetrics().getUdpSocketPackets();
+    assertEquals(4, perSocket.length);
+    assertEquals(senders * perSender, Arrays.stream(perSocket).sum());
+  }
+
+  @Test
+  public void shouldShareListenPortBetweenTasks() throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.LISTEN_PORT_SHARED_CONF, "true");
+    restartWith(SnmpTrapSourceConnectorConfig.TASK_ID_CONF, "0");
+
+    Map<String, String> secondSettings = new HashMap<>(this.settings);
+    secondSettings.put(SnmpTrapSourceConnectorConfig.TASK_ID_CONF, "1");
+    SnmpTrapSourceTask second = new SnmpTrapSourceTask();
+    second.start(secondSettings);
+    try {
+      int senders = 8;
+      for (int s = 0; s < senders; s++) {
+        Snmp sender = new Snmp(new DefaultUdpTransportMapping());
+        sender.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+        sender.close();
+      }
+
+      Thread.sleep(2000);
+      assertEquals(senders, task.getRecordBuffer().size() + second.getRecordBuffer().size(),
+          "Every trap should be buffered by exactly one of the tasks");
+    } finally {
+      second.stop();
+    }
+  }
+
+  @Test
+  public void shouldBufferTrapsWithExecutorDispatcher() throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.USE_MULTITHREADED_PROCESSING, "true");
+    this.settings.put(SnmpTrapSourceConnectorConfig.DISPATCHER_MAX_IN_FLIGHT_CONF, "100");
+    for (DispatcherMode mode : List.of(DispatcherMode.EXECUTOR, DispatcherMode.VIRTUAL_THREAD)) {
+      restartWith(SnmpTrapSourceConnectorConfig.DISPATCHER_MODE_CONF, mode.name());
+      for (int i = 0; i < 10; i++) {
+        snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+      }
+
+      Thread.sleep(1000);
+      assertEquals(10, task.getRecordBuffer().size(), "Sent traps should be equal to buffered records with " + mode);
+      assertEquals(0L, task.getMetrics().getDispatcherRejected());
+    }
+  }
+
+  @Test
+  public void shouldRateLimitPerPeerBeforeConversion() throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.RATE_LIMIT_BURST_CONF, "3");
+    restartWith(SnmpTrapSourceConnectorConfig.RATE_LIMIT_PER_SECOND_CONF, "0.01");
+
+    for (int i = 0; i < 10; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+    }
 
-}
\ No newline at end of file
+    Thread.sleep(1000);
+    assertEquals(3, task.getRecordBuffer().size());
+    assertEquals(7L, task.getMetrics().getDroppedRateLimited());
+    assertEquals(3L, task.getMetrics().getConversionNanos().getCount(), "Dropped traps should not be converted");
+    assertEquals(1L, task.getMetrics().getRateLimitedSources());
+  }
+
+  @Test
+  public void shouldSuppressRepeatedTraps() throws IOException, InterruptedException {
+    restartWith(SnmpTrapSourceConnectorConfig.DEDUP_WINDOW_MS_CONF, "1000");
+
+    for (int i = 0; i < 5; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+    }
+    snmp.send(createV2Trap("1.2.3.4.5", "other string"), target, null, null);
+
+    Thread.sleep(500);
+    assertEquals(2, task.getRecordBuffer().size());
+    assertEquals(4L, task.getMetrics().getDedupSuppressed());
+    List<SourceRecord> first = task.poll();
+    assertEquals(2, first.size());
+    assertNull(first.get(0).headers().lastWithName(TrapDeduplicator.SUPPRESSED_COUNT_HEADER));
+
+    Thread.sleep(1000);
+    List<SourceRecord> summary = task.poll();
+    assertNotNull(summary);
+    assertEquals(1, summary.size());
+    assertEquals(4, summary.get(0).headers().lastWithName(TrapDeduplicator.SUPPRESSED_COUNT_HEADER).value());
+  }
+
+  @Test
+  public void shouldFilterTrapsBeforeConversion() throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.FILTER_INCLUDE_PEERS_CONF, "127.0.0.0/8,::1/128");
+    restartWith(SnmpTrapSourceConnectorConfig.FILTER_EXCLUDE_TRAP_OIDS_CONF, "1.2.3.4");
+
+    for (int i = 0; i < 3; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+    }
+    snmp.send(createV2Trap("1.2.4.5", "some string"), target, null, null);
+
+    Thread.sleep(500);
+    assertEquals(1, task.getRecordBuffer().size());
+    assertEquals(3L, task.getMetrics().getDroppedFiltered());
+    assertEquals(1L, task.getMetrics().getConversionNanos().getCount(), "Filtered traps should not be converted");
+    assertEquals("exclude.trap.oids=1.2.3.4 hits=3", task.getMetrics().getFilterRuleHits()[0]);
+  }
+
+  @Test
+  public void shouldNotCountDroppedTrapsAsProcessed() throws IOException, InterruptedException {
+    restartWith(SnmpTrapSourceConnectorConfig.BUFFER_CAPACITY_RECORDS_CONF, "2");
+
+    for (int i = 0; i < 5; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "trap " + i), target, null, null);
+    }
+
+    Thread.sleep(500);
+    assertEquals(2, task.getRecordBuffer().size());
+    assertEquals(3L, task.getMetrics().getBufferDroppedNewest());
+    assertEquals(2L, task.getMetrics().getProcessed(), "Traps dropped by a full buffer should not count as processed");
+  }
+
+  @Test
+  public void shouldSpillToDiskAboveWatermarkAndReplayInOrder(@TempDir Path spillDir) throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_CAPACITY_RECORDS_CONF, "16");
+    this.settings.put(SnmpTrapSourceConnectorConfig.SPILL_WATERMARK_CONF, "0.25");
+    this.settings.put(SnmpTrapSourceConnectorConfig.BATCH_SIZE_CONF, "10");
+    restartWith(SnmpTrapSourceConnectorConfig.SPILL_DIR_CONF, spillDir.toString());
+
+    for (int i = 0; i < 25; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "trap " + i), target, null, null);
+      Thread.sleep(10);
+    }
+
+    Thread.sleep(500);
+    assertEquals(4, task.getRecordBuffer().size(), "Traps above the watermark should go to disk");
+    assertEquals(21, task.getMetrics().getSpillBacklogRecords());
+    assertTrue(task.getMetrics().getSpilledBytes() > 0L);
+
+    List<String> values = new ArrayList<>();
+    List<SourceRecord> batch;
+    while ((batch = task.poll()) != null) {
+      for (SourceRecord record : batch) {
+        List<Struct> variables = ((Struct) record.value()).getArray("variables");
+        values.add(variables.get(variables.size() - 1).getString("octetString"));
+      }
+    }
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      expected.add("trap " + i);
+    }
+    assertEquals(expected, values);
+    assertEquals(task.getMetrics().getSpilledBytes(), task.getMetrics().getSpillReplayedBytes());
+    assertEquals(0, task.getMetrics().getSpillBacklogRecords());
+  }
+
+  @Test
+  public void shouldEmitSuppressedSummariesWithoutBlockingOnAFullBuffer() throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_CAPACITY_RECORDS_CONF, "2");
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_OVERFLOW_POLICY_CONF, "BLOCK");
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_BLOCK_TIMEOUT_MS_CONF, "10000");
+    restartWith(SnmpTrapSourceConnectorConfig.DEDUP_WINDOW_MS_CONF, "500");
+
+    snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+    snmp.send(createV2Trap("1.2.3.4.5", "other string"), target, null, null);
+    for (int i = 0; i < 3; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "some string"), target, null, null);
+    }
+
+    Thread.sleep(1000);
+    assertEquals(2, task.getRecordBuffer().size(), "The buffer should be full");
+    final long start = System.nanoTime();
+    List<SourceRecord> summary = task.poll();
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "poll() should not wait for room in its own buffer");
+    assertEquals(1, summary.size());
+    assertEquals(3, summary.get(0).headers().lastWithName(TrapDeduplicator.SUPPRESSED_COUNT_HEADER).value());
+    assertEquals(2, task.poll().size());
+  }
+
+  @Test
+  public void shouldNotCountTrapsDroppedByAFullSpillAsProcessed(@TempDir Path spillDir) throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_CAPACITY_RECORDS_CONF, "4");
+    this.settings.put(SnmpTrapSourceConnectorConfig.SPILL_WATERMARK_CONF, "0.25");
+    this.settings.put(SnmpTrapSourceConnectorConfig.SPILL_SEGMENT_BYTES_CONF, "4096");
+    this.settings.put(SnmpTrapSourceConnectorConfig.SPILL_MAX_BYTES_CONF, "4096");
+    restartWith(SnmpTrapSourceConnectorConfig.SPILL_DIR_CONF, spillDir.toString());
+
+    for (int i = 0; i < 80; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "trap " + i), target, null, null);
+      Thread.sleep(5);
+    }
+
+    Thread.sleep(500);
+    long dropped = task.getMetrics().getSpillDroppedRecords();
+    assertTrue(dropped > 0L, "A single spill segment should not hold every trap");
+    assertEquals(80L - dropped, task.getMetrics().getProcessed());
+    assertEquals(80L - dropped, task.getRecordBuffer().size() + task.getMetrics().getSpillBacklogRecords());
+  }
+
+  @Test
+  public void shouldWriteReceivedPduAsRawBer() throws IOException, InterruptedException {
+    restartWith(SnmpTrapSourceConnectorConfig.OUTPUT_FORMAT_CONF, "RAW_BER");
+
+    PDU trap = createV2Trap("1.2.3.4.5", "some string");
+    snmp.send(trap, target, null, null);
+    Thread.sleep(500);
+    List<SourceRecord> records = task.poll();
+    assertEquals(1, records.size());
+    assertEquals(PDUConverter.RAW_VALUE_SCHEMA, records.get(0).valueSchema());
+    PDU decoded = PDUConverter.decodeRaw((byte[]) records.get(0).value(), SnmpConstants.version2c);
+    assertEquals(trap.getVariableBindings(), decoded.getVariableBindings());
+  }
+
+  @Test
+  public void shouldAcknowledgeJournaledTrapsEvictedFromTheBuffer(@TempDir Path journalDir) throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_CAPACITY_RECORDS_CONF, "4");
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_OVERFLOW_POLICY_CONF, "DROP_OLDEST");
+    this.settings.put(SnmpTrapSourceConnectorConfig.JOURNAL_SEGMENT_BYTES_CONF, "4096");
+    restartWith(SnmpTrapSourceConnectorConfig.JOURNAL_DIR_CONF, journalDir.toString());
+
+    for (int i = 0; i < 100; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "trap " + i), target, null, null);
+      Thread.sleep(2);
+    }
+    Thread.sleep(500);
+    assertEquals(96L, task.getMetrics().getBufferDroppedOldest());
+    assertTrue(task.getMetrics().getJournalSegments() > 1);
+
+    for (SourceRecord record : task.poll()) {
+      task.commitRecord(record, null);
+    }
+    task.commit();
+    assertEquals(0L, task.getMetrics().getJournalUnacknowledged(), "Evicted traps should not be replayed");
+    assertEquals(1, task.getMetrics().getJournalSegments(), "Only the segment being written should be kept");
+  }
+
+  @Test
+  public void shouldReplayUncommittedTrapsFromJournal(@TempDir Path journalDir) throws IOException, InterruptedException {
+    restartWith(SnmpTrapSourceConnectorConfig.JOURNAL_DIR_CONF, journalDir.toString());
+
+    for (int i = 0; i < 3; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "trap " + i), target, null, null);
+      Thread.sleep(20);
+    }
+    Thread.sleep(500);
+    List<SourceRecord> records = task.poll();
+    assertEquals(3, records.size());
+    assertEquals(Map.of("offset", 0L), records.get(0).sourceOffset());
+    assertEquals(Map.of("offset", 2L), records.get(2).sourceOffset());
+    // Kafka acknowledged the first and the last record, out of order
+    task.commitRecord(records.get(2), null);
+    task.commitRecord(records.get(0), null);
+    task.commitRecord(records.get(0), null);
+    assertEquals(1L, task.getMetrics().getJournalUnacknowledged());
+
+    // Connect committed the last record's offset before the task was restarted
+    this.task.stop();
+    OffsetStorageReader offsetReader = mock(OffsetStorageReader.class);
+    when(offsetReader.offset(records.get(0).sourcePartition())).thenReturn(Map.of("offset", 2L));
+    SourceTaskContext context = mock(SourceTaskContext.class);
+    when(context.offsetStorageReader()).thenReturn(offsetReader);
+    this.task = new SnmpTrapSourceTask();
+    this.task.initialize(context);
+    this.task.start(this.settings);
+
+    List<SourceRecord> replayed = task.poll();
+    assertEquals(1, replayed.size(), "Only the trap Kafka did not acknowledge should be replayed");
+    assertEquals(records.get(1).sourceOffset(), replayed.get(0).sourceOffset());
+    assertEquals(records.get(1).value(), replayed.get(0).value());
+    assertEquals(records.get(1).timestamp(), replayed.get(0).timestamp());
+
+    snmp.send(createV2Trap("1.2.3.4.5", "trap 3"), target, null, null);
+    Thread.sleep(500);
+    List<SourceRecord> fresh = task.poll();
+    assertEquals(1, fresh.size());
+    assertEquals(Map.of("offset", 3L), fresh.get(0).sourceOffset());
+  }
+
+  @Test
+  public void shouldNotReplaySpilledTrapsTwiceWithJournal(@TempDir Path dir) throws IOException, InterruptedException {
+    this.settings.put(SnmpTrapSourceConnectorConfig.BUFFER_CAPACITY_RECORDS_CONF, "16");
+    this.settings.put(SnmpTrapSourceConnectorConfig.SPILL_WATERMARK_CONF, "0.25");
+    this.settings.put(SnmpTrapSourceConnectorConfig.SPILL_DIR_CONF, dir.resolve("spill").toString());
+    restartWith(SnmpTrapSourceConnectorConfig.JOURNAL_DIR_CONF, dir.resolve("journal").toString());
+
+    for (int i = 0; i < 10; i++) {
+      snmp.send(createV2Trap("1.2.3.4.5", "trap " + i), target, null, null);
+      Thread.sleep(10);
+    }
+    Thread.sleep(500);
+    assertEquals(6, task.getMetrics().getSpillBacklogRecords());
+
+    // Neither the buffered nor the spilled traps reached Kafka before the restart
+    restartWith(SnmpTrapSourceConnectorConfig.JOURNAL_DIR_CONF, dir.resolve("journal").toString());
+    List<String> values = new ArrayList<>();
+    List<SourceRecord> batch;
+    while ((batch = task.poll()) != null) {
+      for (SourceRecord record : batch) {
+        List<Struct> variables = ((Struct) record.value()).getArray("variables");
+        values.add(variables.get(variables.size() - 1).getString("octetString"));
+        task.commitRecord(record, null);
+      }
+    }
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      expected.add("trap " + i);
+    }
+    assertEquals(expected, values);
+    assertEquals(0L, task.getMetrics().getJournalUnacknowledged());
+  }
+}
@@ -0,0 +1,114 @@
+package com.github.jcustenborder.kafka.connect.snmp.filter;
+
+import org.junit.jupiter.api.Test;
+import org.snmp4j.smi.OID;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrapFilterTest {
+  static final byte[] PUBLIC = "public".getBytes(StandardCharsets.UTF_8);
+
+  private static List<OID> oids(String... oids) {
+    return Arrays.stream(oids).map(OID::new).collect(Collectors.toList());
+  }
+
+  private static InetAddress ip(String address) throws Exception {
+    return InetAddress.getByName(address);
+  }
+
+  @Test
+  public void shouldMatchLongestOidPrefix() {
+    OidPrefixTrie<String> trie = new OidPrefixTrie<>();
+    trie.put(new OID("1.3.6.1.4.1"), "enterprises");
+    trie.put(new OID("1.3.6.1.4.1.9"), "cisco");
+    trie.put(new OID("1.3.6.1.4.1.2636"), "juniper");
+
+    assertEquals(3, trie.size());
+    assertEquals("cisco", trie.longestPrefix(new OID("1.3.6.1.4.1.9.9.41.2.0.1")));
+    assertEquals("juniper", trie.longestPrefix(new OID("1.3.6.1.4.1.2636")));
+    assertEquals("enterprises", trie.longestPrefix(new OID("1.3.6.1.4.1.8072.4")));
+    assertNull(trie.longestPrefix(new OID("1.3.6.1.4")));
+    assertNull(trie.longestPrefix(new OID("1.3.6.1.6.3.1.1.5.3")));
+  }
+
+  @Test
+  public void shouldMatchLongestNetwork() throws Exception {
+    CidrTrie<String> trie = new CidrTrie<>();
+    trie.put(ip("10.0.0.0"), 8, "ten");
+    trie.put(ip("10.1.0.0"), 16, "ten-one");
+    trie.put(ip("2001:db8::"), 32, "doc");
+
+    assertEquals("ten-one", trie.longestPrefix(ip("10.1.2.3")));
+    assertEquals("ten", trie.longestPrefix(ip("10.2.2.3")));
+    assertNull(trie.longestPrefix(ip("192.168.1.1")));
+    assertEquals("doc", trie.longestPrefix(ip("2001:db8::1")));
+    assertNull(trie.longestPrefix(ip("2001:db9::1")));
+  }
+
+  @Test
+  public void shouldExcludeBeforeInclude() throws Exception {
+    TrapFilter filter = new TrapFilter(
+        oids("1.3.6.1.4.1"), oids("1.3.6.1.4.1.9.9.41"),
+        Collections.emptyList(), Collections.singletonList("10.0.0.0/8"),
+        Collections.emptyList(), Collections.emptyList()
+    );
+
+    assertTrue(filter.accept(ip("192.168.1.1"), PUBLIC, new OID("1.3.6.1.4.1.9.9.43.2.0.1")));
+    assertFalse(filter.accept(ip("192.168.1.1"), PUBLIC, new OID("1.3.6.1.4.1.9.9.41.2.0.1")));
+    assertFalse(filter.accept(ip("10.0.0.1"), PUBLIC, new OID("1.3.6.1.4.1.9.9.43.2.0.1")));
+    assertFalse(filter.accept(ip("192.168.1.1"), PUBLIC, new OID("1.3.6.1.6.3.1.1.5.3")));
+    assertFalse(filter.accept(ip("192.168.1.1"), PUBLIC, null), "A trap without snmpTrapOID.0 matches no include");
+    assertEquals(4L, filter.rejected());
+
+    assertEquals(
+        Arrays.asList(
+            "exclude.trap.oids=1.3.6.1.4.1.9.9.41 hits=1",
+            "exclude.peers=10.0.0.0/8 hits=1",
+            "include.trap.oids=1.3.6.1.4.1 hits=1",
+            "include.trap.oids no match hits=2"
+        ),
+        filter.rules().stream().map(TrapFilter.Rule::toString).collect(Collectors.toList())
+    );
+  }
+
+  @Test
+  public void shouldFilterOnSecurityName() throws Exception {
+    TrapFilter filter = new TrapFilter(
+        Collections.emptyList(), Collections.emptyList(),
+        Collections.singletonList("2001:db8::/32"), Collections.emptyList(),
+        Collections.singletonList("public"), Collections.emptyList()
+    );
+
+    assertTrue(filter.accept(ip("2001:db8::1"), PUBLIC, null));
+    assertFalse(filter.accept(ip("2001:db8::1"), "private".getBytes(StandardCharsets.UTF_8), null));
+    assertFalse(filter.accept(ip("2001:db9::1"), PUBLIC, null));
+    assertFalse(filter.accept(null, PUBLIC, null));
+  }
+
+  @Test
+  public void shouldBeEmptyWithoutRules() throws Exception {
+    TrapFilter filter = new TrapFilter(Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+        Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    assertTrue(filter.isEmpty());
+    assertTrue(filter.accept(ip("10.0.0.1"), PUBLIC, new OID("1.3.6.1.4.1")));
+  }
+
+  @Test
+  public void shouldRejectInvalidNetworks() {
+    TrapFilter.validateCidr("10.0.0.0/8");
+    TrapFilter.validateCidr("192.168.1.1");
+    TrapFilter.validateCidr("::1/128");
+    assertThrows(IllegalArgumentException.class, () -> TrapFilter.validateCidr("example.com/24"));
+    assertThrows(IllegalArgumentException.class, () -> TrapFilter.validateCidr("cafe.beef"));
+    assertThrows(IllegalArgumentException.class, () -> TrapFilter.validateCidr("dead::beef.cafe/64"));
+    assertThrows(IllegalArgumentException.class, () -> TrapFilter.validateCidr("10.0.0.0/x"));
+    assertThrows(IllegalArgumentException.class, () -> TrapFilter.validateCidr("10.0.0.0/33"));
+  }
+}
@@ -0,0 +1,86 @@
+package com.github.jcustenborder.kafka.connect.snmp.mib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.snmp4j.smi.OID;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MibIndexTest {
+  @TempDir
+  Path dir;
+
+  private MibIndex compile(String... lines) throws IOException {
+    Path names = dir.resolve("names.txt");
+    Files.write(names, List.of(lines));
+    return MibIndex.load(names, dir.resolve("names.idx"));
+  }
+
+  private static String lookup(MibIndex index, String oid) {
+    long found = index.lookup(new OID(oid));
+    return found == MibIndex.NOT_FOUND ? null : index.name((int) (found >>> 32)) + "/" + (int) found;
+  }
+
+  @Test
+  public void shouldFindLongestNamedPrefix() throws IOException {
+    MibIndex index = compile(
+        "# comment",
+        "1.3.6.1.2.1.2 IF-MIB::interfaces",
+        "",
+        "1.3.6.1.2.1.2.2.1.1 = IF-MIB::ifIndex",
+        "\"linkDown\"\t\t\".1.3.6.1.6.3.1.1.5.3\"",
+        "1.3.6.1.4.1.9.4294967295 BIG"
+    );
+    assertEquals("IF-MIB::ifIndex/10", lookup(index, "1.3.6.1.2.1.2.2.1.1"));
+    assertEquals("IF-MIB::ifIndex/10", lookup(index, "1.3.6.1.2.1.2.2.1.1.3"));
+    assertEquals("IF-MIB::interfaces/7", lookup(index, "1.3.6.1.2.1.2.2.1.2.3"));
+    assertEquals("linkDown/10", lookup(index, "1.3.6.1.6.3.1.1.5.3"));
+    assertEquals("BIG/8", lookup(index, "1.3.6.1.4.1.9.4294967295"));
+    assertEquals(null, lookup(index, "1.3.6.1.2.1.1"));
+    assertEquals(null, lookup(index, "2"));
+  }
+
+  @Test
+  public void shouldRecompileWhenNamesChange() throws IOException {
+    assertEquals("a/3", lookup(compile("1.2.3 a"), "1.2.3"));
+    Path names = dir.resolve("names.txt");
+    Files.write(names, List.of("1.2.3 b"));
+    Files.setLastModifiedTime(names, FileTime.fromMillis(System.currentTimeMillis() + 10_000L));
+    assertEquals("b/3", lookup(MibIndex.load(names, dir.resolve("names.idx")), "1.2.3"));
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(Set.of(names, dir.resolve("names.idx")), files.collect(Collectors.toSet()), "temp files left behind");
+    }
+  }
+
+  @Test
+  public void shouldRejectMalformedInput() throws IOException {
+    assertThrows(IOException.class, () -> compile("1.2.3"));
+    assertThrows(IOException.class, () -> compile("a b"));
+    Path notAnIndex = dir.resolve("other.idx");
+    Files.write(notAnIndex, new byte[64]);
+    assertThrows(IOException.class, () -> MibIndex.open(notAnIndex));
+  }
+
+  @Test
+  public void shouldIndexManyObjects() throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      lines.add("1.3.6.1.4.1." + (i % 97) + "." + i + " OBJ-" + i);
+    }
+    MibIndex index = compile(lines.toArray(new String[0]));
+    for (int i = 0; i < 50_000; i += 997) {
+      assertEquals("OBJ-" + i + "/8", lookup(index, "1.3.6.1.4.1." + (i % 97) + "." + i + ".5"));
+    }
+  }
+}
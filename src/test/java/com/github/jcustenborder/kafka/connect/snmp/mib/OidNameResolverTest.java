@@ -0,0 +1,56 @@
+package com.github.jcustenborder.kafka.connect.snmp.mib;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.snmp4j.smi.OID;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OidNameResolverTest {
+  @TempDir
+  Path dir;
+
+  private OidNameResolver resolver(int cacheSize) throws IOException {
+    Path names = dir.resolve("names.txt");
+    Files.write(names, List.of("1.3.6.1.2.1.2.2.1.1 IF-MIB::ifIndex", "1.3.6.1.6.3.1.1.5.3 IF-MIB::linkDown"));
+    return new OidNameResolver(MibIndex.load(names, dir.resolve("names.idx")), cacheSize);
+  }
+
+  @Test
+  public void shouldResolveWithInstanceSuffix() throws IOException {
+    OidNameResolver resolver = resolver(16);
+    assertEquals("IF-MIB::linkDown", resolver.resolve(new OID("1.3.6.1.6.3.1.1.5.3")));
+    assertEquals("IF-MIB::ifIndex.3", resolver.resolve(new OID("1.3.6.1.2.1.2.2.1.1.3")));
+    assertEquals("IF-MIB::ifIndex.4294967295.1", resolver.resolve(new OID("1.3.6.1.2.1.2.2.1.1.4294967295.1")));
+    assertNull(resolver.resolve(new OID("1.3.6.1.2.1.1.3.0")));
+    assertNull(resolver.resolve(null));
+  }
+
+  @Test
+  public void shouldReturnCachedNameOnHit() throws IOException {
+    OidNameResolver resolver = resolver(16);
+    OID oid = new OID("1.3.6.1.2.1.2.2.1.1.3");
+    String first = resolver.resolve(oid);
+    oid.setValue("1.3.6.1.2.1.2.2.1.1.4");
+    assertEquals("IF-MIB::ifIndex.4", resolver.resolve(oid), "The cached key must not follow the mutated OID");
+    assertSame(first, resolver.resolve(new OID("1.3.6.1.2.1.2.2.1.1.3")));
+    assertEquals(1, resolver.hits());
+    assertEquals(2, resolver.misses());
+  }
+
+  @Test
+  public void shouldResolveCorrectlyWhenSlotsCollide() throws IOException {
+    OidNameResolver resolver = resolver(2);
+    for (int i = 0; i < 3; i++) {
+      assertEquals("IF-MIB::ifIndex.1", resolver.resolve(new OID("1.3.6.1.2.1.2.2.1.1.1")));
+      assertEquals("IF-MIB::ifIndex.2", resolver.resolve(new OID("1.3.6.1.2.1.2.2.1.1.2")));
+    }
+  }
+}
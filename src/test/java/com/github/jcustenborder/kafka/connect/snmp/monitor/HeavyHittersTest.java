@@ -0,0 +1,89 @@
+package com.github.jcustenborder.kafka.connect.snmp.monitor;
+
+import org.junit.jupiter.api.Test;
+import org.snmp4j.smi.OID;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+  static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void shouldFindHeavyKeysAmongManyRareOnes() {
+    HeavyHitters<String> heavyHitters = new HeavyHitters<>(50, 60_000L, 1, 0L);
+    for (int i = 0; i < 40_000; i++) {
+      heavyHitters.add("device-" + i, SECOND);
+      if (i % 10 == 0) {
+        heavyHitters.add("storm-1", SECOND);
+      }
+      if (i % 20 == 0) {
+        heavyHitters.add("storm-2", SECOND);
+      }
+    }
+
+    List<HeavyHitters.Hitter<String>> top = heavyHitters.top(2, 2 * SECOND);
+    assertEquals(List.of("storm-1", "storm-2"), top.stream().map(h -> h.key).collect(Collectors.toList()));
+    HeavyHitters.Hitter<String> first = top.get(0);
+    assertTrue(first.count >= 4_000 && first.count - first.error <= 4_000, first.toString());
+    assertEquals(first.count / 2.0, first.ratePerSecond, 0.001);
+  }
+
+  @Test
+  public void shouldEvictTheLowestCountAndInheritItAsError() {
+    HeavyHitters<String> heavyHitters = new HeavyHitters<>(2, 60_000L, 1, 0L);
+    for (String key : new String[]{"a", "a", "a", "b", "b", "c"}) {
+      heavyHitters.add(key, SECOND);
+    }
+
+    List<HeavyHitters.Hitter<String>> top = heavyHitters.top(10, SECOND);
+    assertEquals(2, top.size());
+    Map<String, HeavyHitters.Hitter<String>> byKey = top.stream().collect(Collectors.toMap(h -> h.key, h -> h));
+    assertEquals(3L, byKey.get("a").count);
+    assertEquals(0L, byKey.get("a").error);
+    assertEquals(3L, byKey.get("c").count, "c takes over b's count of 2 and adds its own");
+    assertEquals(2L, byKey.get("c").error);
+  }
+
+  @Test
+  public void shouldCopyKeysOnAdmission() {
+    HeavyHitters<OID> heavyHitters = new HeavyHitters<>(10, 60_000L, OID::new, 1, 0L);
+    OID trapOid = new OID("1.3.6.1.6.3.1.1.5.3");
+    heavyHitters.add(trapOid, SECOND);
+    trapOid.setValue("1.2.3");
+
+    assertEquals(new OID("1.3.6.1.6.3.1.1.5.3"), heavyHitters.top(1, SECOND).get(0).key);
+  }
+
+  @Test
+  public void shouldForgetKeysAfterTwoWindows() {
+    HeavyHitters<String> heavyHitters = new HeavyHitters<>(10, 1_000L, 1, 0L);
+    heavyHitters.add("old", 0L);
+    heavyHitters.add("new", SECOND + 1);
+    assertEquals(2, heavyHitters.top(10, SECOND + 2).size(), "The previous window still counts");
+
+    heavyHitters.add("new", 2 * SECOND + 1);
+    List<HeavyHitters.Hitter<String>> top = heavyHitters.top(10, 2 * SECOND + 2);
+    assertEquals(1, top.size());
+    assertEquals("new", top.get(0).key);
+    assertEquals(2L, top.get(0).count);
+  }
+
+  @Test
+  public void shouldMergeStripes() {
+    HeavyHitters<String> heavyHitters = new HeavyHitters<>(10, 60_000L, 4, 0L);
+    IntStream.range(0, 8).mapToObj(t -> CompletableFuture.runAsync(() -> {
+      for (int i = 0; i < 1_000; i++) {
+        heavyHitters.add("peer", SECOND);
+      }
+    })).collect(Collectors.toList()).forEach(CompletableFuture::join);
+
+    assertEquals(8_000L, heavyHitters.top(1, SECOND).get(0).count);
+  }
+}
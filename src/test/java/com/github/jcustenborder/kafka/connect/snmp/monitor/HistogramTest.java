@@ -0,0 +1,62 @@
+package com.github.jcustenborder.kafka.connect.snmp.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+  @Test
+  public void bucketsCoverEveryValue() {
+    int previous = -1;
+    for (long value : new long[]{0, 1, 31, 32, 33, 34, 1000, 1_000_000, Long.MAX_VALUE}) {
+      int bucket = Histogram.bucketOf(value);
+      assertTrue(bucket >= previous, "Buckets should not shrink as the value grows");
+      assertTrue(Histogram.upperBoundOf(bucket) >= value);
+      assertTrue(Histogram.upperBoundOf(bucket) - value <= value / Histogram.SUB_BUCKETS, "Bucket too wide for " + value);
+      previous = bucket;
+    }
+    assertTrue(Histogram.bucketOf(Long.MAX_VALUE) < Histogram.BUCKETS);
+    assertEquals(0, Histogram.bucketOf(-5));
+  }
+
+  @Test
+  public void percentiles() {
+    Histogram histogram = new Histogram();
+    assertEquals(0L, histogram.getP99());
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    assertEquals(1000L, histogram.getCount());
+    assertEquals(1000L, histogram.getMax());
+    assertEquals(500.0, histogram.getP50(), 500 / 16.0);
+    assertEquals(990.0, histogram.getP99(), 990 / 16.0);
+    assertEquals(999.0, histogram.getP999(), 999 / 16.0);
+  }
+
+  @Test
+  public void percentilesAreWithinBucketPrecision() {
+    Histogram histogram = new Histogram();
+    Random random = new Random(42);
+    long[] values = random.longs(10_000, 0, 10_000_000L).sorted().toArray();
+    for (long value : values) {
+      histogram.record(value);
+    }
+    long exact = values[(int) Math.ceil(0.99 * values.length) - 1];
+    long p99 = histogram.getP99();
+    assertTrue(p99 >= exact && p99 - exact <= exact / Histogram.SUB_BUCKETS, exact + " vs " + p99);
+  }
+
+  @Test
+  public void reset() {
+    Histogram histogram = new Histogram();
+    histogram.record(1_000_000L);
+    histogram.reset();
+    histogram.record(10L);
+    assertEquals(1L, histogram.getCount());
+    assertEquals(10L, histogram.getMax());
+    assertEquals(10L, histogram.getP999());
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.jcustenborder.kafka.connect.snmp.monitor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UdpDropSamplerTest {
+  static final String HEADER = "   sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode ref pointer drops";
+  // 0x2B5F = 11103
+  static final String LISTEN_LINE = "   0: 00000000:2B5F 00000000:0000 07 00000000:00000100 00:00000000 00000000     0        0 16213 2 0000000000000000 42";
+  static final String OTHER_LINE = "   1: 00000000:0044 00000000:0000 07 00000000:00000000 00:00000000 00000000     0        0 16214 2 0000000000000000 7";
+  static final String LISTEN_LINE_V6 = "   2: 00000000000000000000000000000000:2B5F 00000000000000000000000000000000:0000 07 00000000:00000020 00:00000000 00000000     0        0 16215 2 0000000000000000 3";
+
+  @Test
+  public void parseLine() {
+    assertNull(UdpDropSampler.parseLine(HEADER, 11103));
+    assertNull(UdpDropSampler.parseLine(OTHER_LINE, 11103));
+    assertArrayEquals(new long[]{0x100, 42}, UdpDropSampler.parseLine(LISTEN_LINE, 11103));
+    assertArrayEquals(new long[]{0x20, 3}, UdpDropSampler.parseLine(LISTEN_LINE_V6, 11103));
+  }
+
+  @Test
+  public void sampleSumsMatchingSockets(@TempDir Path dir) throws IOException {
+    Path udp = Files.write(dir.resolve("udp"), List.of(HEADER, LISTEN_LINE, OTHER_LINE));
+    Path udp6 = Files.write(dir.resolve("udp6"), List.of(HEADER, LISTEN_LINE_V6));
+    try (UdpDropSampler sampler = new UdpDropSampler(11103, 60_000L, List.of(udp, udp6, dir.resolve("missing")))) {
+      sampler.sample();
+      assertEquals(45L, sampler.getDrops());
+      assertEquals(0x120L, sampler.getReceiveQueueBytes());
+      assertEquals(2, sampler.getSockets());
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.MessageDispatcher;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.security.SecurityModel;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.UdpAddress;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createInform;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InformResponderTest {
+  private final MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+  private final List<Long> latencies = new ArrayList<>();
+  private InformResponder responder;
+
+  @AfterEach
+  public void after() {
+    responder.close();
+  }
+
+  private CommandResponderEvent<UdpAddress> inform(int requestId) {
+    PDU pdu = createInform("1.2.3.4.5", "some string");
+    pdu.setRequestID(new Integer32(requestId));
+    return new CommandResponderEvent<>(dispatcher, null, new UdpAddress("127.0.0.1/162"), MPv2c.ID,
+        SecurityModel.SECURITY_MODEL_SNMPv2c, "public".getBytes(StandardCharsets.UTF_8), SecurityLevel.NOAUTH_NOPRIV,
+        null, pdu, 65535, null);
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  @Test
+  public void shouldRespondFromSenderThread() throws Exception {
+    responder = new InformResponder("test", 10, 1000L, latencies::add);
+    assertTrue(responder.acknowledge(inform(42), System.nanoTime()));
+
+    ArgumentCaptor<PDU> response = ArgumentCaptor.forClass(PDU.class);
+    verify(dispatcher, timeout(5000)).returnResponsePdu(eq(MPv2c.ID), eq(SecurityModel.SECURITY_MODEL_SNMPv2c),
+        any(byte[].class), eq(SecurityLevel.NOAUTH_NOPRIV), response.capture(), eq(65535), any(), any());
+    assertEquals(PDU.RESPONSE, response.getValue().getType());
+    assertEquals(42, response.getValue().getRequestID().getValue());
+    assertEquals(4, response.getValue().size());
+    await(() -> responder.sent() == 1L);
+    assertEquals(0, responder.pending());
+    assertEquals(1, latencies.size());
+  }
+
+  @Test
+  public void shouldRespondOnlyAfterCommit() throws Exception {
+    responder = new InformResponder("test", 10, 60_000L, null);
+    Object committed = new Object();
+    Object dropped = new Object();
+    assertTrue(responder.register(committed, inform(1), System.nanoTime()));
+    assertTrue(responder.register(dropped, inform(2), System.nanoTime()));
+    Thread.sleep(200);
+    verify(dispatcher, never()).returnResponsePdu(anyInt(), anyInt(), any(), anyInt(), any(), anyInt(), any(), any());
+    assertEquals(2, responder.pending());
+
+    responder.discard(dropped);
+    responder.committed(committed);
+    responder.committed(new Object());
+    await(() -> responder.sent() == 1L);
+    assertEquals(0, responder.pending());
+  }
+
+  @Test
+  public void shouldExpireUncommitted() throws Exception {
+    responder = new InformResponder("test", 10, 1L, null);
+    Object record = new Object();
+    assertTrue(responder.register(record, inform(1), System.nanoTime()));
+    await(() -> responder.expired() == 1L);
+    responder.committed(record);
+    Thread.sleep(200);
+    assertEquals(0L, responder.sent());
+    assertEquals(0, responder.pending());
+  }
+
+  @Test
+  public void shouldRejectAboveMaxPending() throws Exception {
+    responder = new InformResponder("test", 2, 60_000L, null);
+    assertTrue(responder.register(new Object(), inform(1), System.nanoTime()));
+    assertTrue(responder.register(new Object(), inform(2), System.nanoTime()));
+    assertFalse(responder.acknowledge(inform(3), System.nanoTime()));
+    assertEquals(1L, responder.rejected());
+    assertEquals(2, responder.pending());
+  }
+
+  @Test
+  public void shouldCountFailedResponses() throws Exception {
+    when(dispatcher.returnResponsePdu(anyInt(), anyInt(), any(), anyInt(), any(), anyInt(), any(), any()))
+        .thenReturn(SnmpConstants.SNMP_ERROR_TOO_BIG);
+    responder = new InformResponder("test", 10, 1000L, null);
+    responder.acknowledge(inform(1), System.nanoTime());
+    await(() -> responder.failed() == 1L);
+    assertEquals(0L, responder.sent());
+  }
+}
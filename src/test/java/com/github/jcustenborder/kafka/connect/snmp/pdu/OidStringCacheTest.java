@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2023 Elisa Oyj
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.junit.jupiter.api.Test;
+import org.snmp4j.smi.OID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OidStringCacheTest {
+
+  @Test
+  public void testHitReturnsCanonicalString() {
+    OidStringCache cache = new OidStringCache(10);
+    String first = cache.toDottedString(new OID("1.3.6.1.6.3.1.1.5.3"));
+    String second = cache.toDottedString(new OID("1.3.6.1.6.3.1.1.5.3"));
+
+    assertEquals("1.3.6.1.6.3.1.1.5.3", first);
+    assertSame(first, second, "Repeated OIDs should share one string");
+    assertEquals(1, cache.stats().hitCount());
+    assertEquals(1, cache.stats().missCount());
+  }
+
+  @Test
+  public void testKeyIsCopied() {
+    OidStringCache cache = new OidStringCache(10);
+    OID oid = new OID("1.2.3");
+    cache.toDottedString(oid);
+    oid.append(4);
+
+    assertEquals("1.2.3.4", cache.toDottedString(oid));
+    assertEquals("1.2.3", cache.toDottedString(new OID("1.2.3")));
+  }
+
+  @Test
+  public void testBounded() {
+    OidStringCache cache = new OidStringCache(100);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("1.2." + i, cache.toDottedString(new OID("1.2." + i)));
+    }
+
+    assertTrue(cache.size() <= 100);
+    assertTrue(cache.stats().evictionCount() >= 900);
+  }
+
+  @Test
+  public void testDisabled() {
+    OidStringCache cache = new OidStringCache(0);
+    assertEquals("1.2.3", cache.toDottedString(new OID("1.2.3")));
+    assertEquals(0, cache.size());
+  }
+}
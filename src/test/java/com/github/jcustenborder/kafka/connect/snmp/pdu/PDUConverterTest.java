@@ -18,24 +18,50 @@ package com.github.jcustenborder.kafka.connect.snmp.pdu;
 
 import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfig;
 import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfigTest;
+import com.github.jcustenborder.kafka.connect.snmp.mib.MibIndex;
+import com.github.jcustenborder.kafka.connect.snmp.mib.OidNameResolver;
 import org.apache.kafka.common.utils.SystemTime;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.apache.kafka.connect.json.JsonConverterConfig;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.snmp4j.CommandResponderEvent;
 import org.snmp4j.PDU;
+import org.snmp4j.ScopedPDU;
 import org.snmp4j.smi.Address;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Gauge32;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.IpAddress;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Opaque;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV2Trap;
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV3Trap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -101,4 +127,189 @@ class PDUConverterTest {
 
   }
 
-}
\ No newline at end of file
+  private static PDUConverter converter(boolean validate) {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.VALIDATE_RECORDS_CONF, String.valueOf(validate));
+    return new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+  }
+
+  @Test
+  public void testConvertVariableBindings() {
+    OID oid = new OID("1.3.6.1.4.1.1.1.0");
+    Map<Variable, Object[]> expectations = Map.of(
+        new Counter32(123L), new Object[]{PDUConverter.VariableBindingConstants.FIELD_COUNTER32, 123},
+        new Counter64(1234567890123L), new Object[]{PDUConverter.VariableBindingConstants.FIELD_COUNTER64, 1234567890123L},
+        new Gauge32(42L), new Object[]{PDUConverter.VariableBindingConstants.FIELD_GAUGE32, 42},
+        new Integer32(-7), new Object[]{PDUConverter.VariableBindingConstants.FIELD_INTEGER, -7},
+        new IpAddress("10.1.2.3"), new Object[]{PDUConverter.VariableBindingConstants.FIELD_IPADDRESS, "10.1.2.3"},
+        new Null(), new Object[]{PDUConverter.VariableBindingConstants.FIELD_NULL, null},
+        new OID("1.3.6.1.6.3.1.1.5.3"), new Object[]{PDUConverter.VariableBindingConstants.FIELD_OBJECTIDENTIFIER, "1.3.6.1.6.3.1.1.5.3"},
+        new OctetString("link down"), new Object[]{PDUConverter.VariableBindingConstants.FIELD_OCTETSTRING, "link down"},
+        new TimeTicks(5000L), new Object[]{PDUConverter.VariableBindingConstants.FIELD_TIMETICKS, 5000}
+    );
+
+    PDUConverter validating = converter(true);
+    for (Map.Entry<Variable, Object[]> e : expectations.entrySet()) {
+      VariableBinding binding = new VariableBinding(oid, e.getKey());
+      Struct struct = converter.convertVariableBinding(binding);
+      String type = (String) e.getValue()[0];
+
+      assertEquals(oid.toDottedString(), struct.get(PDUConverter.VariableBindingConstants.FIELD_OID));
+      assertEquals(type, struct.get(PDUConverter.VariableBindingConstants.FIELD_TYPE));
+      assertEquals(e.getValue()[1], struct.get(type));
+      assertEquals(struct, validating.convertVariableBinding(binding), "Validation should not change the output");
+    }
+  }
+
+  @Test
+  public void testConvertWithAndWithoutValidation() {
+    PDU pdu = createV2Trap("1.2.3.4.5", "string");
+    when(event.getPDU()).thenReturn(pdu);
+    when(event.getSecurityName()).thenReturn("secName".getBytes(StandardCharsets.UTF_8));
+    when(addr.toString()).thenReturn("0.0.0.0:1234");
+    when(event.getPeerAddress()).thenReturn(addr);
+
+    SourceRecord fast = converter(false).convert(event);
+    SourceRecord validated = converter(true).convert(event);
+
+    assertEquals(validated.key(), fast.key());
+    assertEquals(validated.value(), fast.value());
+    assertEquals(validated.topic(), fast.topic());
+  }
+
+  @Test
+  public void testConvertRoutesByTrapOid() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.TOPIC_ROUTES_CONF, "oid:1.2.3=routed,security.name:other=other-topic");
+    PDUConverter routing = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+    when(event.getSecurityName()).thenReturn("secName".getBytes(StandardCharsets.UTF_8));
+    when(addr.toString()).thenReturn("0.0.0.0:1234");
+    when(event.getPeerAddress()).thenReturn(addr);
+
+    when(event.getPDU()).thenReturn(createV2Trap("1.2.3.4.5", "string"));
+    assertEquals("routed", routing.convert(event).topic());
+    when(event.getPDU()).thenReturn(createV2Trap("1.2.4.5", "string"));
+    assertEquals("testing", routing.convert(event).topic());
+  }
+
+  @Test
+  public void testConvertRawBer() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.OUTPUT_FORMAT_CONF, "RAW_BER");
+    PDUConverter raw = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+    when(event.getSecurityName()).thenReturn("secName".getBytes(StandardCharsets.UTF_8));
+    when(addr.toString()).thenReturn("0.0.0.0:1234");
+    when(event.getPeerAddress()).thenReturn(addr);
+    PDU pdu = createV3Trap("1.2.3.4.5", "string");
+    when(event.getPDU()).thenReturn(pdu);
+
+    SourceRecord record = raw.convert(event);
+    assertEquals(PDUConverter.RAW_VALUE_SCHEMA, record.valueSchema());
+    assertEquals("0.0.0.0:1234", ((Struct) record.key()).getString("peerAddress"));
+    assertEquals(3, record.headers().lastWithName(PDUConverter.HEADER_VERSION).value());
+    assertEquals("secName", record.headers().lastWithName(PDUConverter.HEADER_SECURITY_NAME).value());
+    assertEquals(record.timestamp(), record.headers().lastWithName(PDUConverter.HEADER_RECEIVED_MS).value());
+
+    PDU decoded = PDUConverter.decodeRaw((byte[]) record.value(), 3);
+    assertTrue(decoded instanceof ScopedPDU);
+    assertEquals(pdu.getVariableBindings(), decoded.getVariableBindings());
+    assertEquals(converter.convert(event).value(), converter.convertValue("0.0.0.0:1234", "secName", decoded));
+  }
+
+  @Test
+  public void testConvertCompactVariableBindings() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.VARIABLE_BINDING_LAYOUT_CONF, "COMPACT");
+    settings.put(SnmpTrapSourceConnectorConfig.VALIDATE_RECORDS_CONF, "true");
+    PDUConverter compact = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+    OID oid = new OID("1.3.6.1.4.1.1.1.0");
+    Map<Variable, Object[]> expectations = Map.of(
+        new Counter32(4294967295L), new Object[]{PDUConverter.VariableBindingConstants.FIELD_COUNTER32, 4294967295L, null},
+        new Counter64(1234567890123L), new Object[]{PDUConverter.VariableBindingConstants.FIELD_COUNTER64, 1234567890123L, null},
+        new Integer32(-7), new Object[]{PDUConverter.VariableBindingConstants.FIELD_INTEGER, -7L, null},
+        new IpAddress("10.1.2.3"), new Object[]{PDUConverter.VariableBindingConstants.FIELD_IPADDRESS, null, "10.1.2.3"},
+        new Null(), new Object[]{PDUConverter.VariableBindingConstants.FIELD_NULL, null, null},
+        new OctetString("link down"), new Object[]{PDUConverter.VariableBindingConstants.FIELD_OCTETSTRING, null, "link down"},
+        new TimeTicks(5000L), new Object[]{PDUConverter.VariableBindingConstants.FIELD_TIMETICKS, 5000L, null}
+    );
+
+    for (Map.Entry<Variable, Object[]> e : expectations.entrySet()) {
+      Struct struct = compact.convertVariableBinding(new VariableBinding(oid, e.getKey()));
+      assertEquals(PDUConverter.COMPACT_VARIABLE_BINDING_SCHEMA, struct.schema());
+      assertEquals(oid.toDottedString(), struct.get(PDUConverter.VariableBindingConstants.FIELD_OID));
+      assertEquals(e.getValue()[0], struct.get(PDUConverter.VariableBindingConstants.FIELD_TYPE));
+      assertEquals(e.getValue()[1], struct.get(PDUConverter.CompactVariableBindingConstants.FIELD_LONG));
+      assertEquals(e.getValue()[2], struct.get(PDUConverter.CompactVariableBindingConstants.FIELD_STRING));
+      assertNull(struct.get(PDUConverter.CompactVariableBindingConstants.FIELD_BYTES));
+    }
+    Struct opaque = compact.convertVariableBinding(new VariableBinding(oid, new Opaque(new byte[]{1, 2, 3})));
+    assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) opaque.get(PDUConverter.CompactVariableBindingConstants.FIELD_BYTES));
+  }
+
+  @Test
+  public void testCompactLayoutSerializesSmaller() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.VARIABLE_BINDING_LAYOUT_CONF, "COMPACT");
+    PDUConverter compact = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+    CommandResponderEvent<UdpAddress> trap = PDUGen.createV2Event(createV2Trap("1.2.3.4.5", "string"), "127.0.0.1/162", "public");
+    JsonConverter json = new JsonConverter();
+    json.configure(Map.of(JsonConverterConfig.SCHEMAS_ENABLE_CONFIG, false), false);
+
+    SourceRecord sparseRecord = converter.convert(trap);
+    SourceRecord compactRecord = compact.convert(trap);
+    assertEquals(PDUConverter.COMPACT_VALUE_SCHEMA, compactRecord.valueSchema());
+    int sparseBytes = json.fromConnectData("t", sparseRecord.valueSchema(), sparseRecord.value()).length;
+    int compactBytes = json.fromConnectData("t", compactRecord.valueSchema(), compactRecord.value()).length;
+    assertTrue(compactBytes < sparseBytes / 2, "compact " + compactBytes + " bytes, sparse " + sparseBytes + " bytes");
+  }
+
+  @Test
+  public void testConvertTypedLayout() {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.VARIABLE_BINDING_LAYOUT_CONF, "TYPED");
+    settings.put(SnmpTrapSourceConnectorConfig.VALIDATE_RECORDS_CONF, "true");
+    PDUConverter typed = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+    PDU pdu = createV2Trap("1.2.3.4.5", "string");
+    pdu.add(new VariableBinding(new OID("1.2.3.4.6"), new Counter32(4294967295L)));
+    pdu.add(new VariableBinding(new OID("1.2.3.4.7"), new Opaque(new byte[]{1, 2})));
+    CommandResponderEvent<UdpAddress> trap = PDUGen.createV2Event(pdu, "127.0.0.1/162", "public");
+
+    SourceRecord first = typed.convert(trap);
+    SourceRecord second = typed.convert(trap);
+    Struct value = (Struct) first.value();
+    assertSame(first.valueSchema(), second.valueSchema());
+    assertSame(value.schema(), first.valueSchema());
+    assertEquals("127.0.0.1/162", value.get(PDUConverter.ValueSchemaConstants.FIELD_PEER_ADDRESS));
+    assertEquals("public", value.get(PDUConverter.ValueSchemaConstants.FIELD_SECURITY_NAME));
+    assertEquals("string", value.get("oid_1_2_3_4_5"));
+    assertEquals(4294967295L, value.get("oid_1_2_3_4_6"));
+    assertArrayEquals(new byte[]{1, 2}, (byte[]) value.get("oid_1_2_3_4_7"));
+    assertEquals(pdu.size() + 2, first.valueSchema().fields().size());
+    assertEquals(1, typed.getTypedSchemaCache().stats().hitCount());
+  }
+
+  @Test
+  public void testConvertWithMibNames(@TempDir Path dir) throws IOException {
+    Path names = dir.resolve("names.txt");
+    Files.write(names, List.of("1.2.3.4 TEST-MIB::testTrap", "1.2.3.4.6 TEST-MIB::counter"));
+    OidNameResolver resolver = new OidNameResolver(MibIndex.load(names, dir.resolve("names.idx")), 16);
+    PDU pdu = createV2Trap("1.2.3.4.5", "string");
+    pdu.add(new VariableBinding(new OID("1.2.3.4.6.1"), new Counter32(1)));
+    CommandResponderEvent<UdpAddress> trap = PDUGen.createV2Event(pdu, "127.0.0.1/162", "public");
+
+    for (String layout : List.of("SPARSE", "COMPACT", "TYPED")) {
+      Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+      settings.put(SnmpTrapSourceConnectorConfig.VARIABLE_BINDING_LAYOUT_CONF, layout);
+      settings.put(SnmpTrapSourceConnectorConfig.VALIDATE_RECORDS_CONF, "true");
+      PDUConverter named = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings), resolver);
+      Struct value = (Struct) named.convert(trap).value();
+      assertEquals("TEST-MIB::testTrap.5", value.get(PDUConverter.ValueSchemaConstants.FIELD_TRAP_NAME), layout);
+      if (!"TYPED".equals(layout)) {
+        List<Struct> variables = value.getArray(PDUConverter.ValueSchemaConstants.FIELD_VARIABLES);
+        Struct last = variables.get(variables.size() - 1);
+        assertEquals("TEST-MIB::counter.1", last.get(PDUConverter.VariableBindingConstants.FIELD_NAME), layout);
+        assertNull(variables.get(0).get(PDUConverter.VariableBindingConstants.FIELD_NAME), layout);
+      }
+    }
+  }
+}
@@ -16,15 +16,23 @@
  */
 package com.github.jcustenborder.kafka.connect.snmp.pdu;
 
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.MessageDispatcherImpl;
 import org.snmp4j.PDU;
 import org.snmp4j.ScopedPDU;
+import org.snmp4j.mp.MPv2c;
 import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.security.SecurityModel;
 import org.snmp4j.smi.OID;
 import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.UdpAddress;
 import org.snmp4j.smi.Variable;
 import org.snmp4j.smi.VariableBinding;
 
+import java.nio.charset.StandardCharsets;
+
 
 public class PDUGen {
   public static VariableBinding createCustomVarBinding(String oidString, String oidVal) {
@@ -35,7 +43,7 @@ public class PDUGen {
 
   public static PDU createNonTrap(String oidStr, String oidVal) {
     PDU pdu = new PDU();
-    pdu.setType(PDU.INFORM);
+    pdu.setType(PDU.GET);
     pdu.add(createCustomVarBinding(oidStr, oidVal));
     return pdu;
   }
@@ -64,4 +72,29 @@ public class PDUGen {
     pdu.add(createCustomVarBinding(oidStr, oidVal));
     return pdu;
   }
+
+  public static PDU createInform(String oidStr, String oidVal) {
+    PDU pdu = createV2Trap(oidStr, oidVal);
+    pdu.setType(PDU.INFORM);
+    return pdu;
+  }
+
+  /**
+   * Event as the message dispatcher would hand it to a CommandResponder for a v2c trap, without any transport.
+   */
+  public static CommandResponderEvent<UdpAddress> createV2Event(PDU pdu, String peerAddress, String community) {
+    return new CommandResponderEvent<>(
+        new MessageDispatcherImpl(),
+        null,
+        new UdpAddress(peerAddress),
+        MPv2c.ID,
+        SecurityModel.SECURITY_MODEL_SNMPv2c,
+        community.getBytes(StandardCharsets.UTF_8),
+        SecurityLevel.NOAUTH_NOPRIV,
+        null,
+        pdu,
+        65535,
+        null
+    );
+  }
 }
@@ -0,0 +1,73 @@
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.junit.jupiter.api.Test;
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.PDU;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.asn1.BER;
+import org.snmp4j.asn1.BEROutputStream;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.UdpAddress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV2Trap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+class RawCapturingMessageDispatcherTest {
+
+  static byte[] message(int version, PDU pdu) throws IOException {
+    byte[] community = "public".getBytes(StandardCharsets.UTF_8);
+    int length = BER.getBERLengthOfLength(1) + 2 + BER.getBERLengthOfLength(community.length) + 1 + community.length
+        + pdu.getBERLength();
+    ByteBuffer buffer = ByteBuffer.allocate(length + 1 + BER.getBERLengthOfLength(length));
+    BEROutputStream out = new BEROutputStream(buffer);
+    BER.encodeHeader(out, BER.SEQUENCE, length);
+    BER.encodeInteger(out, BER.INTEGER, version);
+    BER.encodeString(out, BER.OCTETSTRING, community);
+    pdu.encodeBER(out);
+    return buffer.array();
+  }
+
+  @Test
+  public void shouldSliceThePduOutOfCommunityMessages() throws IOException {
+    PDU pdu = createV2Trap("1.2.3.4.5", "some string");
+    byte[] expected = PDUConverter.encodeRaw(pdu);
+    assertArrayEquals(expected, RawCapturingMessageDispatcher.communityPdu(ByteBuffer.wrap(message(SnmpConstants.version2c, pdu))));
+    assertArrayEquals(expected, RawCapturingMessageDispatcher.communityPdu(ByteBuffer.wrap(message(SnmpConstants.version1, pdu))));
+    assertNull(RawCapturingMessageDispatcher.communityPdu(ByteBuffer.wrap(message(SnmpConstants.version3, pdu))));
+    byte[] truncated = message(SnmpConstants.version2c, pdu);
+    assertNull(RawCapturingMessageDispatcher.communityPdu(ByteBuffer.wrap(truncated, 0, truncated.length - 1).slice()));
+  }
+
+  @Test
+  public void shouldExposeTheReceivedPduWhileDispatching() throws IOException {
+    RawCapturingMessageDispatcher dispatcher = new RawCapturingMessageDispatcher();
+    dispatcher.addMessageProcessingModel(new MPv2c());
+    List<byte[]> received = new ArrayList<>();
+    dispatcher.addCommandResponder(new CommandResponder() {
+      @Override
+      public <A extends Address> void processPdu(CommandResponderEvent<A> event) {
+        received.add(RawCapturingMessageDispatcher.receivedPdu());
+      }
+    });
+    PDU pdu = createV2Trap("1.2.3.4.5", "some string");
+    @SuppressWarnings("unchecked")
+    TransportMapping<UdpAddress> transport = mock(TransportMapping.class);
+    dispatcher.processMessage(transport, new UdpAddress("127.0.0.1/162"), ByteBuffer.wrap(message(SnmpConstants.version2c, pdu)), null);
+
+    assertEquals(1, received.size());
+    assertArrayEquals(PDUConverter.encodeRaw(pdu), received.get(0));
+    assertNull(RawCapturingMessageDispatcher.receivedPdu(), "Nothing is kept after the dispatch");
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.junit.jupiter.api.Test;
+import org.snmp4j.PDU;
+import org.snmp4j.ScopedPDU;
+import org.snmp4j.smi.GenericAddress;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TcpAddress;
+import org.snmp4j.smi.UdpAddress;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV2Trap;
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV3Trap;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpilledTrapTest {
+
+  @Test
+  public void shouldRoundTripV2Trap() throws IOException {
+    PDU pdu = createV2Trap("1.2.3.4.5", "some string");
+    UdpAddress peer = new UdpAddress("10.0.0.1/1162");
+    byte[] community = "public".getBytes(StandardCharsets.UTF_8);
+
+    byte[] bytes = SpilledTrap.encode(peer, community, pdu, 1234L);
+    assertTrue(bytes.length < pdu.getBERLength() + 32, "Encoding should stay close to the wire size");
+
+    SpilledTrap trap = SpilledTrap.decode(bytes);
+    assertEquals(peer, trap.peerAddress());
+    assertArrayEquals(community, trap.securityName());
+    assertEquals(pdu, trap.pdu());
+    assertEquals(1234L, trap.receivedMillis());
+  }
+
+  @Test
+  public void shouldRoundTripScopedPduOverTcp() throws IOException {
+    ScopedPDU pdu = createV3Trap("1.2.3.4.5", "some string");
+    pdu.setContextName(new OctetString("context"));
+    TcpAddress peer = new TcpAddress("2001:db8::1/65000");
+
+    SpilledTrap trap = SpilledTrap.decode(SpilledTrap.encode(peer, "user".getBytes(StandardCharsets.UTF_8), pdu, 1L));
+    assertEquals(peer, trap.peerAddress());
+    assertTrue(trap.pdu() instanceof ScopedPDU);
+    assertEquals(pdu, trap.pdu());
+  }
+
+  @Test
+  public void shouldNotEncodeOtherTransports() throws IOException {
+    assertNull(SpilledTrap.encode(GenericAddress.parse("tls:10.0.0.1/10162"), new byte[0], new PDU(), 1L));
+  }
+}
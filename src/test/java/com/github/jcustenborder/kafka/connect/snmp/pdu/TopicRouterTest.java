@@ -0,0 +1,69 @@
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.junit.jupiter.api.Test;
+import org.snmp4j.smi.OID;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicRouterTest {
+
+  private static InetAddress ip(String address) throws Exception {
+    return InetAddress.getByName(address);
+  }
+
+  @Test
+  public void shouldPreferTrapOidThenPeerThenSecurityName() throws Exception {
+    TopicRouter router = new TopicRouter("traps", Arrays.asList(
+        "oid:1.3.6.1.4.1.9=cisco",
+        "oid:.1.3.6.1.4.1.9.9.41=cisco-syslog",
+        "peer:10.0.0.0/8=lab",
+        "peer:10.1.0.0/16=lab-one",
+        "peer:2001:db8::/32=lab-v6",
+        "security.name:private=private"
+    ));
+
+    assertEquals("cisco-syslog", router.route(ip("10.1.0.1"), "private", new OID("1.3.6.1.4.1.9.9.41.2.0.1")).topic());
+    assertEquals("cisco", router.route(ip("10.1.0.1"), "private", new OID("1.3.6.1.4.1.9.9.43.2.0.1")).topic());
+    assertEquals("lab-one", router.route(ip("10.1.0.1"), "private", new OID("1.3.6.1.6.3.1.1.5.3")).topic());
+    assertEquals("lab", router.route(ip("10.2.0.1"), "private", null).topic());
+    assertEquals("lab-v6", router.route(ip("2001:db8::1"), "public", null).topic());
+    assertEquals("private", router.route(ip("192.168.1.1"), "private", null).topic());
+    assertEquals("traps", router.route(ip("192.168.1.1"), "public", null).topic());
+    assertEquals("traps", router.route(null, null, null).topic());
+
+    assertEquals(
+        Arrays.asList("traps records=2", "cisco records=1", "cisco-syslog records=1", "lab records=1",
+            "lab-one records=1", "lab-v6 records=1", "private records=1"),
+        router.routes().stream().map(TopicRouter.Route::toString).collect(Collectors.toList())
+    );
+  }
+
+  @Test
+  public void shouldCountRoutesSharingATopic() throws Exception {
+    TopicRouter router = new TopicRouter("traps", Arrays.asList("oid:1.3.6.1.4.1.9=vendor", "oid:1.3.6.1.4.1.2636=vendor"));
+    router.route(null, null, new OID("1.3.6.1.4.1.9.1"));
+    router.route(null, null, new OID("1.3.6.1.4.1.2636.1"));
+    assertEquals(2, router.routes().size());
+    assertEquals(2L, router.routes().stream().filter(r -> r.topic().equals("vendor")).findFirst().get().records());
+  }
+
+  @Test
+  public void shouldBeEmptyWithoutRoutes() {
+    TopicRouter router = new TopicRouter("traps", Collections.emptyList());
+    assertTrue(router.isEmpty());
+    assertEquals("traps", router.route(null, "public", new OID("1.3.6.1")).topic());
+  }
+
+  @Test
+  public void shouldRejectMalformedRoutes() {
+    assertThrows(IllegalArgumentException.class, () -> new TopicRouter("traps", Collections.singletonList("1.3.6.1=topic")));
+    assertThrows(IllegalArgumentException.class, () -> new TopicRouter("traps", Collections.singletonList("oid:1.3.6.1")));
+    assertThrows(IllegalArgumentException.class, () -> new TopicRouter("traps", Collections.singletonList("oid:1.3.x=topic")));
+    assertThrows(IllegalArgumentException.class, () -> new TopicRouter("traps", Collections.singletonList("peer:lab.example.com=topic")));
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV2Event;
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV2Trap;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrapDeduplicatorTest {
+  static final String PEER = "10.0.0.1/162";
+
+  private static PDU trap(String value, long upTime) {
+    PDU pdu = createV2Trap("1.2.3.4.5", value);
+    pdu.set(1, new VariableBinding(SnmpConstants.sysUpTime, new TimeTicks(upTime)));
+    return pdu;
+  }
+
+  @Test
+  public void hashIgnoresVolatileOids() {
+    Set<OID> upTime = Set.of(SnmpConstants.sysUpTime);
+    assertEquals(TrapDeduplicator.hash("a", trap("x", 1), upTime), TrapDeduplicator.hash("a", trap("x", 2), upTime));
+    assertNotEquals(TrapDeduplicator.hash("a", trap("x", 1), Set.of()), TrapDeduplicator.hash("a", trap("x", 2), Set.of()));
+    assertNotEquals(TrapDeduplicator.hash("a", trap("x", 1), upTime), TrapDeduplicator.hash("a", trap("y", 1), upTime));
+    assertNotEquals(TrapDeduplicator.hash("a", trap("x", 1), upTime), TrapDeduplicator.hash("b", trap("x", 1), upTime));
+  }
+
+  @Test
+  public void suppressesWithinWindowAndReportsOnExpiry() {
+    AtomicLong nanos = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    };
+    List<Integer> reported = new ArrayList<>();
+    List<CommandResponderEvent<?>> lastDuplicates = new ArrayList<>();
+    TrapDeduplicator dedup = new TrapDeduplicator(1_000L, 100, List.of(SnmpConstants.sysUpTime), (event, suppressed) -> {
+      lastDuplicates.add(event);
+      reported.add(suppressed);
+    }, ticker);
+
+    assertFalse(dedup.isDuplicate("peer", createV2Event(trap("x", 1), PEER, "public")));
+    assertFalse(dedup.isDuplicate("peer", createV2Event(trap("y", 1), PEER, "public")));
+    CommandResponderEvent<?> last = null;
+    for (int i = 2; i < 5; i++) {
+      last = createV2Event(trap("x", i), PEER, "public");
+      assertTrue(dedup.isDuplicate("peer", last));
+    }
+    assertEquals(3L, dedup.suppressed());
+    assertEquals(2L, dedup.size());
+
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_001L));
+    dedup.cleanUp();
+    assertEquals(List.of(3), reported, "Only the window with repeats is reported");
+    assertSame(last, lastDuplicates.get(0));
+    assertEquals(0L, dedup.size());
+
+    assertFalse(dedup.isDuplicate("peer", createV2Event(trap("x", 9), PEER, "public")), "A new window starts after expiry");
+  }
+
+  @Test
+  public void doesNotSuppressTrapsThatOnlyCollideOnHashCode() {
+    Set<OID> upTime = Set.of(SnmpConstants.sysUpTime);
+    // "Aa" and "BB" have the same hashCode()
+    assertEquals(TrapDeduplicator.hash("peer", trap("Aa", 1), upTime), TrapDeduplicator.hash("peer", trap("BB", 1), upTime));
+    TrapDeduplicator dedup = new TrapDeduplicator(1_000L, 100, upTime, (event, suppressed) -> { });
+
+    assertFalse(dedup.isDuplicate("peer", createV2Event(trap("Aa", 1), PEER, "public")));
+    assertFalse(dedup.isDuplicate("peer", createV2Event(trap("BB", 1), PEER, "public")), "A different trap is not a repeat");
+    assertTrue(dedup.isDuplicate("peer", createV2Event(trap("BB", 2), PEER, "public")));
+    assertEquals(2L, dedup.size());
+  }
+}
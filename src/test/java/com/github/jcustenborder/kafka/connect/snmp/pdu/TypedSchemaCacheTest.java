@@ -0,0 +1,90 @@
+package com.github.jcustenborder.kafka.connect.snmp.pdu;
+
+import org.apache.kafka.connect.data.Schema;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.PDU;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.regex.Pattern;
+
+import static com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen.createV2Trap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypedSchemaCacheTest {
+  private static final OID TRAP_OID = new OID("1.3.6.1.6.3.1.1.5.3");
+
+  private static PDU trap(VariableBinding... bindings) {
+    PDU pdu = new PDU();
+    pdu.setType(PDU.TRAP);
+    pdu.add(new VariableBinding(SnmpConstants.snmpTrapOID, TRAP_OID));
+    for (VariableBinding binding : bindings) {
+      pdu.add(binding);
+    }
+    return pdu;
+  }
+
+  @Test
+  public void shouldReuseSchemaForSameSignature() {
+    TypedSchemaCache cache = new TypedSchemaCache(10);
+    Schema first = cache.schemaFor(TRAP_OID, trap(new VariableBinding(new OID("1.2.3"), new Counter32(1))));
+    Schema second = cache.schemaFor(new OID(TRAP_OID), trap(new VariableBinding(new OID("1.2.3"), new Counter32(2))));
+
+    assertSame(first, second);
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.stats().hitCount());
+    assertEquals(1, cache.stats().missCount());
+    assertTrue(first.name().matches(Pattern.quote(TypedSchemaCache.SCHEMA_NAME_PREFIX + "_1_3_6_1_6_3_1_1_5_3_")
+        + "[0-9a-f]{16}"), first.name());
+    assertEquals(Schema.Type.INT64, first.field("oid_1_2_3").schema().type());
+  }
+
+  @Test
+  public void shouldBuildNewSchemaForDifferentBindings() {
+    TypedSchemaCache cache = new TypedSchemaCache(10);
+    Schema counter = cache.schemaFor(TRAP_OID, trap(new VariableBinding(new OID("1.2.3"), new Counter32(1))));
+    Schema string = cache.schemaFor(TRAP_OID, trap(new VariableBinding(new OID("1.2.3"), new OctetString("a"))));
+    Schema otherOid = cache.schemaFor(TRAP_OID, trap(new VariableBinding(new OID("1.2.4"), new Counter32(1))));
+
+    assertNotEquals(counter.name(), string.name());
+    assertNotEquals(counter.name(), otherOid.name());
+    assertEquals(Schema.Type.STRING, string.field("oid_1_2_3").schema().type());
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void shouldNotShareKeyWithMutablePdu() {
+    TypedSchemaCache cache = new TypedSchemaCache(10);
+    PDU pdu = trap(new VariableBinding(new OID("1.2.3"), new Counter32(1)));
+    Schema schema = cache.schemaFor(TRAP_OID, pdu);
+    pdu.get(1).getOid().setValue("9.9.9");
+
+    assertSame(schema, cache.schemaFor(TRAP_OID, trap(new VariableBinding(new OID("1.2.3"), new Counter32(1)))));
+  }
+
+  @Test
+  public void shouldNameDuplicateOidsApart() {
+    Schema schema = new TypedSchemaCache(10).schemaFor(TRAP_OID, trap(
+        new VariableBinding(new OID("1.2.3"), new Counter32(1)),
+        new VariableBinding(new OID("1.2.3"), new Counter32(2))
+    ));
+    assertEquals(5, schema.fields().size());
+    assertEquals("oid_1_2_3__2", schema.fields().get(4).name());
+  }
+
+  @Test
+  public void shouldEvictBeyondMaximumSize() {
+    TypedSchemaCache cache = new TypedSchemaCache(2);
+    for (int i = 0; i < 10; i++) {
+      cache.schemaFor(TRAP_OID, createV2Trap("1.2.3." + i, "value"));
+    }
+    assertTrue(cache.size() <= 2);
+    assertEquals(10, cache.stats().missCount());
+  }
+}
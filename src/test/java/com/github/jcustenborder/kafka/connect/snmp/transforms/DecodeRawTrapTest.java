@@ -0,0 +1,71 @@
+package com.github.jcustenborder.kafka.connect.snmp.transforms;
+
+import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfig;
+import com.github.jcustenborder.kafka.connect.snmp.SnmpTrapSourceConnectorConfigTest;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.PDUConverter;
+import com.github.jcustenborder.kafka.connect.snmp.pdu.PDUGen;
+import org.apache.kafka.common.utils.SystemTime;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.PDU;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DecodeRawTrapTest {
+  private DecodeRawTrap<SourceRecord> transform;
+
+  @BeforeEach
+  public void setup() {
+    transform = new DecodeRawTrap<>();
+    transform.configure(Collections.emptyMap());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    transform.close();
+  }
+
+  private static SourceRecord convert(String outputFormat, PDU pdu) {
+    Map<String, String> settings = SnmpTrapSourceConnectorConfigTest.settingsV2();
+    settings.put(SnmpTrapSourceConnectorConfig.OUTPUT_FORMAT_CONF, outputFormat);
+    PDUConverter converter = new PDUConverter(new SystemTime(), new SnmpTrapSourceConnectorConfig(settings));
+    return converter.convert(PDUGen.createV2Event(pdu, "127.0.0.1/162", "public"));
+  }
+
+  @Test
+  public void shouldDecodeToTheStructOutput() {
+    PDU pdu = PDUGen.createV2Trap("1.2.3.4.5", "string");
+    SourceRecord expected = convert("STRUCT", pdu);
+    SourceRecord raw = convert("RAW_BER", pdu);
+
+    SourceRecord decoded = transform.apply(raw);
+    assertEquals(expected.valueSchema(), decoded.valueSchema());
+    assertEquals(expected.value(), decoded.value());
+    assertEquals(expected.key(), decoded.key());
+    assertEquals(raw.timestamp(), decoded.timestamp());
+    assertEquals(raw.headers(), decoded.headers());
+  }
+
+  @Test
+  public void shouldPassOnOtherRecords() {
+    SourceRecord record = convert("STRUCT", PDUGen.createV2Trap("1.2.3.4.5", "string"));
+    assertSame(record, transform.apply(record));
+  }
+
+  @Test
+  public void shouldRejectRawTrapWithoutHeaders() {
+    SourceRecord raw = convert("RAW_BER", PDUGen.createV2Trap("1.2.3.4.5", "string"));
+    SourceRecord stripped = raw.newRecord(raw.topic(), null, Schema.STRING_SCHEMA, "key",
+        raw.valueSchema(), raw.value(), raw.timestamp(), null);
+    assertThrows(DataException.class, () -> transform.apply(stripped));
+  }
+}
@@ -0,0 +1,152 @@
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.transport.TransportListener;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.jcustenborder.kafka.connect.snmp.transport.NioTcpTransportMappingTest.await;
+import static com.github.jcustenborder.kafka.connect.snmp.transport.NioTcpTransportMappingTest.message;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class EpollUdpTransportMappingTest {
+  private final List<byte[]> messages = new CopyOnWriteArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private EpollUdpTransportMapping transport;
+
+  @BeforeAll
+  public static void epollAvailable() {
+    assumeTrue(EpollUdpTransportMapping.isAvailable(), "The native epoll transport is only available on Linux");
+  }
+
+  @AfterEach
+  public void after() throws IOException {
+    release.countDown();
+    if (transport != null) {
+      transport.close();
+    }
+  }
+
+  private void listen(int sockets, boolean echo) throws IOException {
+    transport = new EpollUdpTransportMapping(new UdpAddress(InetAddress.getLoopbackAddress(), 0), sockets, 16, 1024, false);
+    transport.setAsyncMsgProcessingSupported(false);
+    transport.addTransportListener(new TransportListener() {
+      @Override
+      public <A extends Address> void processMessage(TransportMapping<? super A> mapping, A address, ByteBuffer message,
+                                                     TransportStateReference stateReference) {
+        byte[] bytes = new byte[message.remaining()];
+        message.get(bytes);
+        if (messages.isEmpty()) {
+          // Hold the event loop so the datagrams sent meanwhile queue up in the socket
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        messages.add(bytes);
+        if (echo) {
+          try {
+            transport.sendMessage((UdpAddress) address, bytes, stateReference, 0L, 0);
+          } catch (IOException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      }
+    });
+    transport.listen();
+  }
+
+  private DatagramChannel sender() throws IOException {
+    DatagramChannel channel = DatagramChannel.open();
+    channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    return channel;
+  }
+
+  private InetSocketAddress target() {
+    UdpAddress address = transport.getListenAddress();
+    return new InetSocketAddress(address.getInetAddress(), address.getPort());
+  }
+
+  @Test
+  public void shouldReadQueuedDatagramsInBatches() throws Exception {
+    listen(1, false);
+    try (DatagramChannel sender = sender()) {
+      sender.send(ByteBuffer.wrap(message(10, 0)), target());
+      await(() -> transport.getPackets() == 1L);
+      for (int i = 1; i <= 100; i++) {
+        sender.send(ByteBuffer.wrap(message(100, i)), target());
+      }
+      release.countDown();
+      await(() -> messages.size() == 101);
+    }
+    for (int i = 1; i <= 100; i++) {
+      assertArrayEquals(message(100, i), messages.get(i));
+    }
+    assertEquals(101L, transport.getPackets());
+    assertEquals(14L + 100L * 104L, transport.getBytes());
+    assertTrue(transport.getPacketsPerRead() > 1.0, "Queued datagrams should be read several at a time");
+  }
+
+  @Test
+  public void shouldRespondFromTheReceivingSocket() throws Exception {
+    listen(1, true);
+    release.countDown();
+    try (DatagramChannel sender = sender()) {
+      byte[] request = message(20, 7);
+      sender.send(ByteBuffer.wrap(request), target());
+      DatagramPacket response = new DatagramPacket(new byte[64], 64);
+      sender.socket().setSoTimeout(5000);
+      sender.socket().receive(response);
+      assertEquals(target(), response.getSocketAddress());
+      assertArrayEquals(request, Arrays.copyOf(response.getData(), response.getLength()));
+    }
+    assertEquals(0L, transport.getSendFailures());
+  }
+
+  @Test
+  public void shouldShareThePortBetweenSockets() throws Exception {
+    listen(4, false);
+    release.countDown();
+    int senders = 8;
+    for (int s = 0; s < senders; s++) {
+      try (DatagramChannel sender = sender()) {
+        for (int i = 0; i < 5; i++) {
+          sender.send(ByteBuffer.wrap(message(10, i)), target());
+        }
+      }
+    }
+    await(() -> messages.size() == senders * 5);
+    assertEquals(4, transport.getSocketCount());
+    assertTrue(transport.getEffectiveReceiveBufferSize() > 0);
+  }
+
+  @Test
+  public void shouldStopListeningOnClose() throws Exception {
+    listen(2, false);
+    assertTrue(transport.isListening());
+    transport.close();
+    assertFalse(transport.isListening());
+    assertEquals(-1, transport.getEffectiveReceiveBufferSize());
+  }
+}
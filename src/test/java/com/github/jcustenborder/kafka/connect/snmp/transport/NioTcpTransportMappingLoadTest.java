@@ -0,0 +1,88 @@
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.TcpAddress;
+import org.snmp4j.transport.TransportListener;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.jcustenborder.kafka.connect.snmp.transport.NioTcpTransportMappingTest.await;
+import static com.github.jcustenborder.kafka.connect.snmp.transport.NioTcpTransportMappingTest.message;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Holds {@code load.tcp.connections} (10000 by default) local connections open at once. Both ends live in this JVM,
+ * so it needs twice as many file descriptors.
+ */
+@Tag("load")
+public class NioTcpTransportMappingLoadTest {
+  static final int CONNECTIONS = Integer.getInteger("load.tcp.connections", 10_000);
+
+  @Test
+  public void shouldHoldTenThousandConnections() throws Exception {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    assumeTrue(!(os instanceof UnixOperatingSystemMXBean)
+            || ((UnixOperatingSystemMXBean) os).getMaxFileDescriptorCount() > 2L * CONNECTIONS + 1000,
+        "Not enough file descriptors for " + CONNECTIONS + " connections, raise ulimit -n");
+
+    AtomicInteger received = new AtomicInteger();
+    NioTcpTransportMapping transport = new NioTcpTransportMapping(new TcpAddress(InetAddress.getLoopbackAddress(), 0),
+        CONNECTIONS, 0L, NioTcpTransportMapping.DEFAULT_READ_BUFFER_BYTES, 0, 0, false);
+    transport.addTransportListener(new TransportListener() {
+      @Override
+      public <A extends Address> void processMessage(TransportMapping<? super A> mapping, A peer, ByteBuffer message,
+                                                     TransportStateReference stateReference) {
+        received.incrementAndGet();
+      }
+    });
+    transport.listen();
+    InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), transport.getListenAddress().getPort());
+    List<SocketChannel> clients = new ArrayList<>(CONNECTIONS);
+    byte[] message = message(200, 1);
+    try {
+      System.gc();
+      long heapBefore = usedHeap();
+      long start = System.nanoTime();
+      for (int i = 0; i < CONNECTIONS; i++) {
+        SocketChannel client = SocketChannel.open(address);
+        client.write(ByteBuffer.wrap(message));
+        clients.add(client);
+      }
+      await(() -> received.get() == CONNECTIONS);
+      long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+      assertEquals(CONNECTIONS, transport.getOpenConnections());
+      assertEquals(0L, transport.getRejectedConnections());
+      System.gc();
+      System.out.printf("%d connections accepted and read in %d ms, %d heap bytes per connection%n",
+          CONNECTIONS, elapsedMs, (usedHeap() - heapBefore) / CONNECTIONS);
+
+      clients.add(SocketChannel.open(address));
+      await(() -> transport.getRejectedConnections() == 1L);
+    } finally {
+      for (SocketChannel client : clients) {
+        client.close();
+      }
+      transport.close();
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
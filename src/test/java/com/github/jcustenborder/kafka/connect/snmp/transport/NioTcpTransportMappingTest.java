@@ -0,0 +1,192 @@
+package com.github.jcustenborder.kafka.connect.snmp.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.TransportStateReference;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.TcpAddress;
+import org.snmp4j.transport.TransportListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NioTcpTransportMappingTest {
+  private final List<byte[]> messages = new CopyOnWriteArrayList<>();
+  private final List<TransportStateReference> stateReferences = new CopyOnWriteArrayList<>();
+  private NioTcpTransportMapping transport;
+
+  @AfterEach
+  public void after() throws IOException {
+    transport.close();
+  }
+
+  private void listen(int maxConnections, long idleTimeoutMs) throws IOException {
+    transport = new NioTcpTransportMapping(new TcpAddress(InetAddress.getLoopbackAddress(), 0), maxConnections,
+        idleTimeoutMs, 512, 2, 0, false);
+    transport.addTransportListener(new TransportListener() {
+      @Override
+      public <A extends Address> void processMessage(TransportMapping<? super A> mapping, A address, ByteBuffer message,
+                                                     TransportStateReference stateReference) {
+        byte[] bytes = new byte[message.remaining()];
+        message.get(bytes);
+        messages.add(bytes);
+        stateReferences.add(stateReference);
+      }
+    });
+    transport.listen();
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(), transport.getListenAddress().getPort());
+    socket.setSoTimeout(5000);
+    return socket;
+  }
+
+  /**
+   * A BER sequence with a long form length, as SNMP messages are framed.
+   */
+  static byte[] message(int payloadBytes, int fill) {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + payloadBytes);
+    buffer.put((byte) 0x30).put((byte) 0x82).putShort((short) payloadBytes);
+    while (buffer.hasRemaining()) {
+      buffer.put((byte) fill);
+    }
+    return buffer.array();
+  }
+
+  static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  @Test
+  public void shouldFrameMessagesSplitAcrossReads() throws Exception {
+    listen(10, 0L);
+    byte[] small = message(100, 1);
+    byte[] large = message(2000, 2);
+    try (Socket socket = connect()) {
+      OutputStream out = socket.getOutputStream();
+      // Header split from its body, then two messages in one write
+      out.write(small, 0, 3);
+      out.flush();
+      Thread.sleep(50);
+      out.write(small, 3, small.length - 3);
+      ByteBuffer both = ByteBuffer.allocate(large.length + small.length).put(large).put(small);
+      for (int i = 0; i < both.capacity(); i += 700) {
+        out.write(both.array(), i, Math.min(700, both.capacity() - i));
+        out.flush();
+        Thread.sleep(10);
+      }
+      await(() -> messages.size() == 3);
+      // A burst of messages that all arrive in one read
+      ByteBuffer burst = ByteBuffer.allocate(3 * small.length).put(small).put(small).put(small);
+      out.write(burst.array());
+      out.flush();
+      await(() -> messages.size() == 6);
+    }
+    assertArrayEquals(small, messages.get(0));
+    assertArrayEquals(large, messages.get(1));
+    for (int i = 2; i < 6; i++) {
+      assertArrayEquals(small, messages.get(i));
+    }
+    assertEquals(6L, transport.getMessagesRead());
+    assertEquals(5L * small.length + large.length, transport.getBytesRead());
+    await(() -> transport.getOpenConnections() == 0);
+  }
+
+  @Test
+  public void shouldRespondOnTheReceivingConnection() throws Exception {
+    listen(10, 0L);
+    try (Socket socket = connect()) {
+      socket.getOutputStream().write(message(10, 1));
+      await(() -> messages.size() == 1);
+      byte[] response = message(20, 3);
+      transport.sendMessage(transport.getListenAddress(), response, stateReferences.get(0), 0L, 0);
+      byte[] received = socket.getInputStream().readNBytes(response.length);
+      assertArrayEquals(response, received);
+    }
+  }
+
+  @Test
+  public void shouldResetConnectionsAboveMaximum() throws Exception {
+    listen(2, 0L);
+    try (Socket first = connect(); Socket second = connect(); Socket third = connect()) {
+      await(() -> transport.getRejectedConnections() == 1L);
+      assertEquals(2, transport.getOpenConnections());
+      assertEquals(2L, transport.getAcceptedConnections());
+      assertTrue(closedByPeer(third));
+      first.getOutputStream().write(message(10, 1));
+      second.getOutputStream().write(message(10, 2));
+      await(() -> messages.size() == 2);
+    }
+    await(() -> transport.getOpenConnections() == 0);
+  }
+
+  @Test
+  public void shouldCloseIdleConnections() throws Exception {
+    listen(10, 200L);
+    try (Socket idle = connect(); Socket busy = connect()) {
+      await(() -> transport.getOpenConnections() == 2);
+      for (int i = 0; i < 8; i++) {
+        busy.getOutputStream().write(message(10, i));
+        Thread.sleep(50);
+      }
+      await(() -> transport.getIdleClosedConnections() == 1L);
+      assertTrue(closedByPeer(idle));
+      assertEquals(1, transport.getOpenConnections());
+    }
+  }
+
+  @Test
+  public void shouldCloseConnectionOnOversizedMessage() throws Exception {
+    listen(10, 0L);
+    transport.setMaxInboundMessageSize(1000);
+    try (Socket socket = connect()) {
+      socket.getOutputStream().write(message(2000, 1));
+      await(() -> transport.getFramingErrors() == 1L);
+      assertTrue(closedByPeer(socket));
+    }
+    assertEquals(0, messages.size());
+  }
+
+  @Test
+  public void shouldStopItsThreadsOnClose() throws Exception {
+    listen(10, 0L);
+    try (Socket socket = connect()) {
+      await(() -> transport.getOpenConnections() == 1);
+      transport.close();
+      assertTrue(closedByPeer(socket));
+    }
+    String prefix = "NioTcpTransportMapping_" + new TcpAddress(InetAddress.getLoopbackAddress(), 0);
+    assertEquals(List.of(), Thread.getAllStackTraces().keySet().stream()
+        .map(Thread::getName)
+        .filter(name -> name.startsWith(prefix))
+        .collect(Collectors.toList()));
+  }
+
+  private static boolean closedByPeer(Socket socket) {
+    try {
+      InputStream in = socket.getInputStream();
+      return in.read() < 0;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.github.jcustenborder.kafka.connect.snmp.usm;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.snmp4j.security.AuthSHA;
+import org.snmp4j.security.PrivAES128;
+import org.snmp4j.security.SecurityProtocols;
+import org.snmp4j.security.UsmUserEntry;
+import org.snmp4j.smi.OctetString;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UsmUserStoreTest {
+  static final String ENGINE_HEX = "80001f8880e9630000d61ff449";
+  static final String OTHER_ENGINE_HEX = "80001f8880aa";
+  static final OctetString ENGINE = OctetString.fromHexStringPairs(ENGINE_HEX);
+  static final OctetString OTHER_ENGINE = OctetString.fromHexStringPairs(OTHER_ENGINE_HEX);
+  static final OctetString ALICE = new OctetString("alice");
+
+  @TempDir
+  Path dir;
+  SecurityProtocols securityProtocols;
+  Path usersFile;
+
+  @BeforeEach
+  public void before() {
+    securityProtocols = SecurityProtocols.getInstance().addDefaultProtocols();
+    securityProtocols.addAuthenticationProtocol(new AuthSHA());
+    securityProtocols.addPrivacyProtocol(new PrivAES128());
+    usersFile = dir.resolve("users.txt");
+  }
+
+  private CachingUsm usm(LocalizedKeyCache keyCache) {
+    return new CachingUsm(securityProtocols, new OctetString("test"), 0, keyCache);
+  }
+
+  private void users(String... lines) throws IOException {
+    Files.write(usersFile, List.of(lines));
+  }
+
+  private byte[] authenticationKey(String passphrase, OctetString engineId) {
+    return securityProtocols.passwordToKey(AuthSHA.ID, new OctetString(passphrase), engineId.getValue());
+  }
+
+  @Test
+  public void shouldLocalizeKnownEnginesOnLoad() throws IOException {
+    users(
+        "# name auth authPass priv privPass engines",
+        "alice SHA authpass1 AES128 privpass1 " + ENGINE_HEX,
+        "bob NONE - NONE -"
+    );
+    LocalizedKeyCache keyCache = new LocalizedKeyCache(securityProtocols, null);
+    CachingUsm usm = usm(keyCache);
+    try (UsmUserStore store = new UsmUserStore(usm, usersFile, 0L)) {
+      assertEquals(2, store.size());
+      UsmUserEntry entry = usm.getUserTable().getUser(ENGINE, ALICE);
+      assertNotNull(entry);
+      assertArrayEquals(authenticationKey("authpass1", ENGINE), entry.getAuthenticationKey());
+      assertArrayEquals(securityProtocols.passwordToKey(PrivAES128.ID, AuthSHA.ID, new OctetString("privpass1"),
+          ENGINE.getValue()), entry.getPrivacyKey());
+      assertNotNull(usm.getUserTable().getUser(new OctetString("bob")));
+      assertEquals(1, keyCache.derivations());
+    }
+  }
+
+  @Test
+  public void shouldApplyChangesOnReload() throws IOException {
+    users(
+        "alice SHA authpass1 AES128 privpass1 " + ENGINE_HEX,
+        "bob NONE - NONE -"
+    );
+    CachingUsm usm = usm(new LocalizedKeyCache(securityProtocols, null));
+    try (UsmUserStore store = new UsmUserStore(usm, usersFile, 0L)) {
+      users(
+          "alice SHA authpass2 AES128 privpass2 " + ENGINE_HEX,
+          "carol SHA carolpass NONE -"
+      );
+      store.load();
+      assertEquals(2, store.reloads());
+      assertNull(usm.getUserTable().getUser(new OctetString("bob")));
+      assertNotNull(usm.getUserTable().getUser(new OctetString("carol")));
+      assertArrayEquals(authenticationKey("authpass2", ENGINE), usm.getUserTable().getUser(ENGINE, ALICE).getAuthenticationKey());
+    }
+  }
+
+  @Test
+  public void shouldKeepUsersWhenReloadFails() throws IOException {
+    users("alice SHA authpass1 AES128 privpass1");
+    CachingUsm usm = usm(new LocalizedKeyCache(securityProtocols, null));
+    try (UsmUserStore store = new UsmUserStore(usm, usersFile, 0L)) {
+      users("alice SHA short AES128 privpass1", "and some garbage");
+      store.reloadIfChanged();
+      assertEquals(1, store.failedReloads());
+      assertEquals(1, store.size());
+      assertNotNull(usm.getUserTable().getUser(ALICE));
+    }
+    users("alice SHA authpass1 AES128 privpass1", "alice NONE - NONE -");
+    assertThrows(IOException.class, () -> new UsmUserStore(usm(new LocalizedKeyCache(securityProtocols, null)), usersFile, 0L));
+  }
+
+  @Test
+  public void shouldLocalizeUnknownEngineOnceAndCacheIt() throws IOException {
+    users("alice SHA authpass1 AES128 privpass1");
+    LocalizedKeyCache keyCache = new LocalizedKeyCache(securityProtocols, null);
+    CachingUsm usm = usm(keyCache);
+    try (UsmUserStore store = new UsmUserStore(usm, usersFile, 0L)) {
+      assertEquals(1, store.size());
+      UsmUserEntry entry = usm.getUser(OTHER_ENGINE, ALICE);
+      assertArrayEquals(authenticationKey("authpass1", OTHER_ENGINE), entry.getAuthenticationKey());
+      assertEquals(1, keyCache.derivations());
+      usm.getUser(OTHER_ENGINE, ALICE);
+      assertEquals(1, keyCache.derivations());
+
+      CachingUsm reloaded = usm(keyCache);
+      reloaded.addUser(usm.getUserTable().getUser(ALICE).getUsmUser());
+      reloaded.getUser(OTHER_ENGINE, ALICE);
+      assertEquals(1, keyCache.derivations());
+      assertEquals(1, keyCache.hits());
+    }
+  }
+
+  @Test
+  public void shouldReusePersistedKeys() throws IOException {
+    users("alice SHA authpass1 AES128 privpass1 " + ENGINE_HEX + "," + OTHER_ENGINE_HEX);
+    Path keysFile = dir.resolve("keys.txt");
+    LocalizedKeyCache keyCache = new LocalizedKeyCache(securityProtocols, keysFile);
+    new UsmUserStore(usm(keyCache), usersFile, 0L).close();
+    assertEquals(2, keyCache.derivations());
+    assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(keysFile)));
+
+    LocalizedKeyCache restarted = new LocalizedKeyCache(securityProtocols, keysFile);
+    CachingUsm usm = usm(restarted);
+    new UsmUserStore(usm, usersFile, 0L).close();
+    assertEquals(0, restarted.derivations());
+    assertEquals(2, restarted.hits());
+    assertArrayEquals(authenticationKey("authpass1", OTHER_ENGINE),
+        usm.getUserTable().getUser(OTHER_ENGINE, ALICE).getAuthenticationKey());
+
+    users("alice SHA authpass2 AES128 privpass1 " + ENGINE_HEX);
+    new UsmUserStore(usm(restarted), usersFile, 0L).close();
+    assertEquals(1, restarted.derivations());
+    assertEquals(1, restarted.size(), "keys of the old passphrase are pruned");
+    assertEquals(1, Files.readAllLines(keysFile).size());
+
+    users("bob NONE - NONE -");
+    new UsmUserStore(usm(restarted), usersFile, 0L).close();
+    assertEquals(0, restarted.size(), "keys of removed users are pruned");
+    assertEquals(List.of(), Files.readAllLines(keysFile));
+  }
+}
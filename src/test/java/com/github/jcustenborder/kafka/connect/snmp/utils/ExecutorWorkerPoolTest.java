@@ -0,0 +1,75 @@
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.snmp4j.util.WorkerTask;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutorWorkerPoolTest {
+
+  private static WorkerTask task(Runnable runnable) {
+    return new WorkerTask() {
+      @Override
+      public void run() {
+        runnable.run();
+      }
+
+      @Override
+      public void terminate() {
+      }
+
+      @Override
+      public void join() {
+      }
+
+      @Override
+      public void interrupt() {
+      }
+    };
+  }
+
+  @Test
+  public void shouldRejectOverInFlightLimit() throws InterruptedException {
+    ExecutorWorkerPool pool = ExecutorWorkerPool.fixed("test", 1, 2);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger ran = new AtomicInteger();
+    Runnable blocked = () -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      ran.incrementAndGet();
+    };
+
+    assertTrue(pool.tryToExecute(task(blocked)));
+    assertTrue(pool.tryToExecute(task(blocked)));
+    assertFalse(pool.tryToExecute(task(blocked)));
+    pool.execute(task(blocked));
+    assertEquals(2, pool.getInFlight());
+    assertEquals(2, pool.getRejected());
+    assertFalse(pool.isIdle());
+
+    release.countDown();
+    pool.stop();
+    assertEquals(2, ran.get());
+    assertEquals(2, pool.getExecuted());
+    assertTrue(pool.isIdle());
+  }
+
+  @Test
+  public void shouldRunOnVirtualOrFallbackThreads() throws InterruptedException {
+    ExecutorWorkerPool pool = ExecutorWorkerPool.virtualThreads("test", 100);
+    CountDownLatch done = new CountDownLatch(50);
+    for (int i = 0; i < 50; i++) {
+      pool.execute(task(done::countDown));
+    }
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    pool.stop();
+    assertEquals(0, pool.getRejected());
+  }
+}
@@ -0,0 +1,186 @@
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+  private static byte[] payload(int i) {
+    return ("trap-" + i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<Path> segmentFiles(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static List<Long> offsets(Iterator<Journal.Entry> entries) {
+    List<Long> offsets = new ArrayList<>();
+    entries.forEachRemaining(e -> offsets.add(e.offset()));
+    return offsets;
+  }
+
+  @Test
+  public void shouldGroupCommitAppends(@TempDir Path dir) throws IOException {
+    Journal journal = new Journal(dir, 1 << 20, 60_000L);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, journal.append(payload(i)));
+    }
+    assertEquals(-1L, journal.durableOffset(), "Nothing is durable before the group commit");
+    assertEquals(0L, journal.fsyncs());
+
+    journal.flush();
+    assertEquals(99L, journal.durableOffset());
+    assertEquals(1L, journal.fsyncs(), "One fsync should cover the whole batch");
+    assertEquals(journal.appendedBytes() + 100L * Journal.HEADER_BYTES, journal.writtenBytes());
+    journal.close();
+  }
+
+  @Test
+  public void shouldTruncateAcknowledgedSegments(@TempDir Path dir) throws IOException {
+    Journal journal = new Journal(dir, 64, 60_000L);
+    for (int i = 0; i < 10; i++) {
+      journal.append(payload(i));
+    }
+    int segments = journal.segments();
+    assertTrue(segments > 2);
+    assertEquals(10L, journal.unacknowledged());
+
+    journal.ack(1L);
+    assertEquals(0, journal.truncate(), "The first segment still has an unacknowledged trap");
+    // 18 byte entries, three per 64 byte segment
+    journal.ack(0L);
+    journal.ack(2L);
+    assertEquals(1, journal.truncate());
+    for (int i = 3; i < 10; i++) {
+      journal.ack(i);
+    }
+    journal.truncate();
+    assertEquals(1, journal.segments(), "The segment being written is kept");
+    assertEquals(0L, journal.unacknowledged());
+    journal.close();
+  }
+
+  @Test
+  public void shouldReplayUnacknowledgedEntries(@TempDir Path dir) throws IOException {
+    Journal journal = new Journal(dir, 64, 60_000L);
+    for (int i = 0; i < 10; i++) {
+      journal.append(payload(i));
+    }
+    for (long offset : new long[] {0L, 1L, 2L, 3L, 5L}) {
+      journal.ack(offset);
+    }
+    journal.close();
+
+    Journal reopened = new Journal(dir, 64, 60_000L);
+    assertEquals(5L, reopened.unacknowledged());
+    Iterator<Journal.Entry> replay = reopened.replay();
+    Journal.Entry first = replay.next();
+    assertEquals(4L, first.offset());
+    assertArrayEquals(payload(4), first.payload());
+    assertEquals(List.of(6L, 7L, 8L, 9L), offsets(replay));
+
+    assertEquals(10L, reopened.append(payload(10)), "Offsets continue after the recovered entries");
+    reopened.close();
+  }
+
+  @Test
+  public void shouldReplayEntriesAcknowledgedOutOfOrder(@TempDir Path dir) throws Exception {
+    Journal journal = new Journal(dir, 1 << 20, 60_000L);
+    CountDownLatch appended = new CountDownLatch(1);
+    CountDownLatch delivered = new CountDownLatch(1);
+    AtomicLong slowOffset = new AtomicLong();
+    // The first thread journals its trap first but is overtaken before it hands the trap over
+    Thread slow = new Thread(() -> {
+      try {
+        slowOffset.set(journal.append(payload(0)));
+        appended.countDown();
+        delivered.await();
+      } catch (IOException | InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    AtomicLong fastOffset = new AtomicLong();
+    Thread fast = new Thread(() -> {
+      try {
+        appended.await();
+        fastOffset.set(journal.append(payload(1)));
+        journal.ack(fastOffset.get());
+        delivered.countDown();
+      } catch (IOException | InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    slow.start();
+    fast.start();
+    slow.join();
+    fast.join();
+    assertTrue(slowOffset.get() < fastOffset.get());
+    journal.close();
+
+    Journal reopened = new Journal(dir, 1 << 20, 60_000L);
+    assertEquals(List.of(slowOffset.get()), offsets(reopened.replay()), "The later offset being acknowledged says nothing about the earlier one");
+    reopened.close();
+  }
+
+  @Test
+  public void shouldIgnoreRepeatedAcknowledgements(@TempDir Path dir) throws IOException {
+    Journal journal = new Journal(dir, 64, 60_000L);
+    for (int i = 0; i < 6; i++) {
+      journal.append(payload(i));
+    }
+    // A trap emitted twice is acknowledged twice
+    journal.ack(0L);
+    journal.ack(0L);
+    journal.ack(1L);
+    assertEquals(0, journal.truncate(), "The first segment still has an unacknowledged trap");
+    assertEquals(4L, journal.unacknowledged());
+    journal.flush();
+    journal.close();
+
+    Journal reopened = new Journal(dir, 64, 60_000L);
+    assertEquals(4L, reopened.unacknowledged());
+    assertEquals(List.of(2L, 3L, 4L, 5L), offsets(reopened.replay()));
+    reopened.ack(2L);
+    assertEquals(1, reopened.truncate());
+    assertFalse(Files.exists(dir.resolve(String.format("journal-%020d.ack", 0L))), "Ack files go with their segment");
+    reopened.close();
+  }
+
+  @Test
+  public void shouldCutOffTornWrite(@TempDir Path dir) throws IOException {
+    Journal journal = new Journal(dir, 1 << 20, 60_000L);
+    for (int i = 0; i < 3; i++) {
+      journal.append(payload(i));
+    }
+    journal.close();
+    Path segment = segmentFiles(dir).get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      // A header promising more payload than was written before the crash
+      channel.write(ByteBuffer.allocate(Journal.HEADER_BYTES + 2).putInt(100).putLong(3L).flip());
+    }
+
+    Journal reopened = new Journal(dir, 1 << 20, 60_000L);
+    assertEquals(List.of(0L, 1L, 2L), offsets(reopened.replay()));
+    assertEquals(3L, reopened.append(payload(3)));
+    reopened.close();
+  }
+}
@@ -1,9 +1,14 @@
 package com.github.jcustenborder.kafka.connect.snmp.utils;
 
+import com.github.jcustenborder.kafka.connect.snmp.enums.OverflowPolicy;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,7 +47,7 @@ class RecordBufferTest {
 
   @Test
   public void testMany() {
-    RecordBuffer<String> rbs = new RecordBuffer<>();
+    RecordBuffer<String> rbs = new RecordBuffer<>(1 << 20, 0L, OverflowPolicy.DROP_NEWEST, 0L);
     String last = "";
     int cnt = 1_000_000;
     for(int i = 0; i < cnt; i++) {
@@ -75,4 +80,161 @@ class RecordBufferTest {
     assertTrue(drain.isEmpty());
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testDropNewest() {
+    RecordBuffer<String> rbs = new RecordBuffer<>(4, 0L, OverflowPolicy.DROP_NEWEST, 0L);
+    for (int i = 0; i < 6; i++) {
+      rbs.add("" + i);
+    }
+
+    assertEquals(4, rbs.size());
+    assertEquals(2, rbs.droppedNewest());
+    assertEquals(List.of("0", "1", "2", "3"), rbs.drain(10));
+  }
+
+  @Test
+  public void testDropOldest() {
+    RecordBuffer<String> rbs = new RecordBuffer<>(4, 0L, OverflowPolicy.DROP_OLDEST, 0L);
+    List<String> evicted = new ArrayList<>();
+    rbs.onEviction(evicted::add);
+    for (int i = 0; i < 6; i++) {
+      assertTrue(rbs.add("" + i));
+    }
+
+    assertEquals(4, rbs.size());
+    assertEquals(2, rbs.droppedOldest());
+    assertEquals(List.of("0", "1"), evicted);
+    assertEquals(List.of("2", "3", "4", "5"), rbs.drain(10));
+  }
+
+  @Test
+  public void testBlockTimesOut() {
+    RecordBuffer<String> rbs = new RecordBuffer<>(2, 0L, OverflowPolicy.BLOCK, 10L);
+    assertTrue(rbs.add("a"));
+    assertTrue(rbs.add("b"));
+    assertFalse(rbs.add("c"));
+    assertEquals(1, rbs.droppedBlockTimeout());
+    assertEquals(List.of("a", "b"), rbs.drain(10));
+  }
+
+  @Test
+  public void testBlockWaitsForDrain() {
+    RecordBuffer<String> rbs = new RecordBuffer<>(2, 0L, OverflowPolicy.BLOCK, 5_000L);
+    rbs.add("a");
+    rbs.add("b");
+
+    CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> rbs.add("c"));
+    assertEquals(List.of("a"), rbs.drain(1));
+    assertTrue(blocked.join());
+    assertEquals(List.of("b", "c"), rbs.drain(10));
+    assertEquals(0, rbs.droppedBlockTimeout());
+  }
+
+  @Test
+  public void testByteCapacity() {
+    RecordBuffer<String> rbs = new RecordBuffer<>(16, 100L, OverflowPolicy.DROP_NEWEST, 0L);
+    assertTrue(rbs.add("a", 60));
+    assertFalse(rbs.add("b", 60));
+    assertTrue(rbs.add("c", 40));
+    assertEquals(100L, rbs.sizeInBytes());
+
+    rbs.drain(1);
+    assertEquals(40L, rbs.sizeInBytes());
+    // Oversized records are still accepted into an empty buffer
+    rbs.drain(1);
+    assertTrue(rbs.add("d", 1000));
+  }
+
+  @Test
+  public void testHighWaterMark() {
+    RecordBuffer<String> rbs = new RecordBuffer<>(8, 0L, OverflowPolicy.DROP_NEWEST, 0L);
+    for (int i = 0; i < 5; i++) {
+      rbs.add("" + i);
+    }
+    rbs.drain(5);
+    rbs.add("x");
+
+    assertEquals(5, rbs.highWaterMark());
+    assertEquals(8, rbs.capacity());
+  }
+
+  @Test
+  public void testConcurrentProducers() {
+    RecordBuffer<Integer> rbs = new RecordBuffer<>(1 << 10, 0L, OverflowPolicy.BLOCK, 10_000L);
+    int producers = 8;
+    int perProducer = 50_000;
+    List<CompletableFuture<Void>> cfs = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final int offset = p * perProducer;
+      cfs.add(CompletableFuture.runAsync(() -> {
+        for (int i = 0; i < perProducer; i++) {
+          rbs.add(offset + i);
+        }
+      }));
+    }
+
+    Set<Integer> seen = new HashSet<>();
+    while (seen.size() < producers * perProducer) {
+      for (Integer i : rbs.drain(512)) {
+        assertTrue(seen.add(i), "Record should only be drained once");
+      }
+    }
+    cfs.forEach(CompletableFuture::join);
+
+    assertTrue(rbs.isEmpty());
+    assertEquals(0, rbs.droppedBlockTimeout());
+  }
+
+  @Test
+  public void testAwaitTimesOut() {
+    RecordBuffer<String> rbs = new RecordBuffer<>();
+    long start = System.nanoTime();
+    assertFalse(rbs.await(1, 50, TimeUnit.MILLISECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+  }
+
+  @Test
+  public void testAwaitSignalledByProducer() {
+    RecordBuffer<String> rbs = new RecordBuffer<>();
+    CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> rbs.await(2, 10, TimeUnit.SECONDS));
+    rbs.add("a");
+    rbs.add("b");
+
+    long start = System.nanoTime();
+    assertTrue(waiting.join());
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+  }
+
+  @Test
+  public void testAwaitReleasedByWakeUp() throws InterruptedException {
+    RecordBuffer<String> rbs = new RecordBuffer<>();
+    CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> rbs.await(1, 10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    rbs.wakeUp();
+
+    assertFalse(waiting.join());
+  }
+
+  @Test
+  public void testAwaitReleasedByWakeUpBeforeAwait() {
+    RecordBuffer<String> rbs = new RecordBuffer<>();
+    long wakeUps = rbs.wakeUpCount();
+    rbs.wakeUp();
+
+    long start = System.nanoTime();
+    assertFalse(rbs.await(1, 10, TimeUnit.SECONDS, wakeUps));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+  }
+
+  @Test
+  public void shouldReportResidency() throws InterruptedException {
+    List<Long> residencies = new ArrayList<>();
+    RecordBuffer<String> buffer = new RecordBuffer<>(8, 0L, OverflowPolicy.DROP_NEWEST, 0L);
+    buffer.trackResidency(residencies::add);
+    buffer.add("a");
+    Thread.sleep(20);
+    buffer.drain(1);
+    assertEquals(1, residencies.size());
+    assertTrue(residencies.get(0) >= TimeUnit.MILLISECONDS.toNanos(20));
+  }
+}
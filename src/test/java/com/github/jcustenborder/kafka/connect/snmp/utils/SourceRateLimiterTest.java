@@ -0,0 +1,46 @@
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceRateLimiterTest {
+  static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void shouldAllowBurstThenRate() {
+    SourceRateLimiter<String> limiter = new SourceRateLimiter<>(10.0, 5, 100, 60_000L);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(limiter.tryAcquire("a", SECOND));
+    }
+    assertFalse(limiter.tryAcquire("a", SECOND));
+    assertTrue(limiter.tryAcquire("b", SECOND), "Other sources have their own bucket");
+
+    assertTrue(limiter.tryAcquire("a", SECOND + SECOND / 10), "One token refilled after 100 ms");
+    assertFalse(limiter.tryAcquire("a", SECOND + SECOND / 10));
+
+    assertEquals(2L, limiter.limited());
+    assertEquals(2L, limiter.size());
+  }
+
+  @Test
+  public void shouldNotRefillBeyondBurst() {
+    SourceRateLimiter<String> limiter = new SourceRateLimiter<>(1000.0, 2, 100, 60_000L);
+    assertTrue(limiter.tryAcquire("a", 0L));
+    long later = 60 * SECOND;
+    assertTrue(limiter.tryAcquire("a", later));
+    assertTrue(limiter.tryAcquire("a", later));
+    assertFalse(limiter.tryAcquire("a", later));
+  }
+
+  @Test
+  public void shouldBoundTrackedSources() {
+    SourceRateLimiter<Integer> limiter = new SourceRateLimiter<>(1.0, 1, 100, 60_000L);
+    for (int i = 0; i < 10_000; i++) {
+      limiter.tryAcquire(i, SECOND);
+    }
+    assertTrue(limiter.size() <= 100);
+  }
+}
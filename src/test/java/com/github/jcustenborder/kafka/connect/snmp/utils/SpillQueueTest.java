@@ -0,0 +1,120 @@
+package com.github.jcustenborder.kafka.connect.snmp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillQueueTest {
+
+  private static byte[] record(int i) {
+    return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static long segmentFiles(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.count();
+    }
+  }
+
+  @Test
+  public void shouldReplayInOrderAcrossSegments(@TempDir Path dir) throws IOException {
+    SpillQueue queue = new SpillQueue(dir, 64, 1024);
+    for (int i = 0; i < 20; i++) {
+      assertTrue(queue.append(record(i)));
+    }
+    assertEquals(20, queue.size());
+    assertTrue(queue.segments() > 1, "Records should rotate into several segments");
+
+    for (int i = 0; i < 20; i++) {
+      assertArrayEquals(record(i), queue.poll());
+    }
+    assertNull(queue.poll());
+    assertTrue(queue.isEmpty());
+    assertEquals(0L, queue.backlogBytes());
+    assertEquals(queue.spilledBytes(), queue.replayedBytes());
+    assertEquals(1L, segmentFiles(dir), "Fully read segments should be deleted");
+    queue.close();
+    assertEquals(0L, segmentFiles(dir));
+  }
+
+  @Test
+  public void shouldDropWhenDiskCapIsReached(@TempDir Path dir) throws IOException {
+    SpillQueue queue = new SpillQueue(dir, 64, 128);
+    int appended = 0;
+    for (int i = 0; i < 20; i++) {
+      if (queue.append(record(i))) {
+        appended++;
+      }
+    }
+    assertEquals(2, queue.segments());
+    assertEquals(appended, queue.size());
+    assertEquals((20 - appended) * (long) record(10).length, queue.droppedBytes());
+    assertFalse(queue.append(new byte[64]), "A record larger than a segment can never be spilled");
+
+    assertArrayEquals(record(0), queue.poll());
+    queue.close();
+  }
+
+  @Test
+  public void shouldRecoverUnreadSegments(@TempDir Path dir) throws IOException {
+    SpillQueue queue = new SpillQueue(dir, 64, 1024);
+    for (int i = 0; i < 10; i++) {
+      queue.append(record(i));
+    }
+    queue.close();
+
+    SpillQueue recovered = new SpillQueue(dir, 64, 1024);
+    assertEquals(10, recovered.size());
+    recovered.append(record(10));
+    for (int i = 0; i <= 10; i++) {
+      assertArrayEquals(record(i), recovered.poll());
+    }
+    assertNull(recovered.poll());
+    recovered.close();
+  }
+
+  @Test
+  public void shouldReuseCaughtUpSegment(@TempDir Path dir) throws IOException {
+    SpillQueue queue = new SpillQueue(dir, 64, 64);
+    for (int round = 0; round < 10; round++) {
+      assertTrue(queue.append(record(round)), "Reading everything should free the only segment");
+      assertArrayEquals(record(round), queue.poll());
+      assertNull(queue.poll());
+    }
+    assertEquals(1, queue.segments());
+    queue.close();
+  }
+
+  @Test
+  public void shouldSpillUntilPollFindsTheQueueEmpty(@TempDir Path dir) throws IOException {
+    SpillQueue queue = new SpillQueue(dir, 64, 1024);
+    assertEquals(SpillQueue.Append.NOT_SPILLING, queue.appendIfSpilling(record(0), false));
+    assertEquals(SpillQueue.Append.APPENDED, queue.appendIfSpilling(record(1), true));
+    assertEquals(SpillQueue.Append.APPENDED, queue.appendIfSpilling(record(2), false), "Later records follow the spilled ones");
+    assertArrayEquals(record(1), queue.poll());
+    assertArrayEquals(record(2), queue.poll());
+    assertTrue(queue.isSpilling(), "Spilling ends only when a reader finds the queue empty");
+    assertEquals(SpillQueue.Append.APPENDED, queue.appendIfSpilling(record(3), false));
+    assertArrayEquals(record(3), queue.poll());
+    assertNull(queue.poll());
+    assertFalse(queue.isSpilling());
+    assertEquals(SpillQueue.Append.NOT_SPILLING, queue.appendIfSpilling(record(4), false));
+    queue.close();
+
+    SpillQueue full = new SpillQueue(dir.resolve("full"), 64, 64);
+    int appended = 0;
+    while (full.appendIfSpilling(record(appended), true) == SpillQueue.Append.APPENDED) {
+      appended++;
+    }
+    assertEquals(SpillQueue.Append.DROPPED, full.appendIfSpilling(record(appended), false));
+    assertEquals(2L, full.droppedRecords());
+    full.close();
+  }
+}